@@ -0,0 +1,246 @@
+package com.example.ldapwebtool.config;
+
+import com.example.ldapwebtool.service.AccessLog;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Servlet filter that records every authenticated /api request in the {@link AccessLog}.
+ *
+ * It runs after Basic authentication so the caller's bind DN is known, and before rate
+ * limiting so rejected requests are logged too. The response is wrapped to count the bytes
+ * sent. Controllers describe the request through the request attributes below, recorded in
+ * {@link HandlerAttributes}; the entry count comes from {@link RateLimitFilter#ENTRY_COUNT_ATTRIBUTE}.
+ * Requests handled off the servlet thread are logged when their async dispatch completes.
+ */
+public class AccessLogFilter extends OncePerRequestFilter {
+
+    /**
+     * Request attribute holding the backend name or LDAP URI the request went to, as a String.
+     */
+    public static final String BACKEND_ATTRIBUTE = AccessLogFilter.class.getName() + ".backend";
+
+    /**
+     * Request attribute holding the normalized search filter, as a String.
+     */
+    public static final String FILTER_ATTRIBUTE = AccessLogFilter.class.getName() + ".filter";
+
+    /**
+     * Request attribute holding the LDAP result code of a failed operation, as a Number.
+     */
+    public static final String RESULT_CODE_ATTRIBUTE = AccessLogFilter.class.getName() + ".resultCode";
+
+    /**
+     * Request attribute holding the {@link System#nanoTime()} at which the handler started
+     * running, as a Number; the time before it is reported as queueing.
+     */
+    public static final String HANDLER_START_ATTRIBUTE = AccessLogFilter.class.getName() + ".handlerStart";
+
+    /**
+     * Request attribute holding the nanoseconds spent waiting for the directory, as a Number.
+     */
+    public static final String DIRECTORY_NANOS_ATTRIBUTE = AccessLogFilter.class.getName() + ".directoryNanos";
+
+    private static final String EXCHANGE_ATTRIBUTE = AccessLogFilter.class.getName() + ".exchange";
+
+    private final AccessLog accessLog;
+
+    public AccessLogFilter(AccessLog accessLog) {
+        this.accessLog = accessLog;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !accessLog.isEnabled() || !request.getRequestURI().startsWith(request.getContextPath() + "/api/");
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (isAsyncDispatch(request)) {
+            Exchange exchange = (Exchange) request.getAttribute(EXCHANGE_ATTRIBUTE);
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                if (exchange != null && !request.isAsyncStarted()) {
+                    log(request, exchange);
+                }
+            }
+            return;
+        }
+
+        Exchange exchange = new Exchange(resolveCaller(), new CountingResponse(response));
+        request.setAttribute(EXCHANGE_ATTRIBUTE, exchange);
+        try {
+            filterChain.doFilter(request, exchange.response);
+        } finally {
+            if (!request.isAsyncStarted()) {
+                log(request, exchange);
+            }
+        }
+    }
+
+    private void log(HttpServletRequest request, Exchange exchange) {
+        HandlerAttributes.apply(request);
+        AccessLog.Record record = accessLog.claim();
+        if (record == null) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            record.setTimestampMillis(exchange.startMillis);
+            record.setCaller(exchange.caller);
+            record.setRemoteAddress(request.getRemoteAddr());
+            record.setMethod(request.getMethod());
+            record.setPath(request.getRequestURI());
+            record.setBackend(stringAttribute(request, BACKEND_ATTRIBUTE));
+            record.setFilter(stringAttribute(request, FILTER_ATTRIBUTE));
+            record.setStatus(exchange.response.getStatus());
+            record.setResultCode(numberAttribute(request, RESULT_CODE_ATTRIBUTE));
+            record.setEntries(numberAttribute(request, RateLimitFilter.ENTRY_COUNT_ATTRIBUTE));
+            record.setBytes(exchange.response.byteCount);
+            long handlerStart = numberAttribute(request, HANDLER_START_ATTRIBUTE);
+            if (handlerStart >= 0) {
+                record.setQueueMillis(TimeUnit.NANOSECONDS.toMillis(Math.max(0, handlerStart - exchange.startNanos)));
+            }
+            long directoryNanos = numberAttribute(request, DIRECTORY_NANOS_ATTRIBUTE);
+            if (directoryNanos >= 0) {
+                record.setDirectoryMillis(TimeUnit.NANOSECONDS.toMillis(directoryNanos));
+            }
+            record.setTotalMillis(TimeUnit.NANOSECONDS.toMillis(now - exchange.startNanos));
+        } finally {
+            record.publish();
+        }
+    }
+
+    private static String stringAttribute(HttpServletRequest request, String name) {
+        Object value = request.getAttribute(name);
+        return value instanceof String ? (String) value : null;
+    }
+
+    private static long numberAttribute(HttpServletRequest request, String name) {
+        Object value = request.getAttribute(name);
+        return value instanceof Number ? ((Number) value).longValue() : -1;
+    }
+
+    private static String resolveCaller() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken
+                || !authentication.isAuthenticated()) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    private static final class Exchange {
+
+        private final long startNanos = System.nanoTime();
+        private final long startMillis = System.currentTimeMillis();
+        private final String caller;
+        private final CountingResponse response;
+
+        private Exchange(String caller, CountingResponse response) {
+            this.caller = caller;
+            this.response = response;
+        }
+    }
+
+    /**
+     * Counts what the handler writes. Output through the writer is counted in characters.
+     */
+    private static final class CountingResponse extends HttpServletResponseWrapper {
+
+        private volatile long byteCount;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        private CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                ServletOutputStream delegate = super.getOutputStream();
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        delegate.write(b);
+                        byteCount++;
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        delegate.write(b, off, len);
+                        byteCount += len;
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        delegate.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        delegate.close();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                        delegate.setWriteListener(writeListener);
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                PrintWriter delegate = super.getWriter();
+                writer = new PrintWriter(new Writer() {
+                    @Override
+                    public void write(char[] cbuf, int off, int len) {
+                        delegate.write(cbuf, off, len);
+                        byteCount += len;
+                    }
+
+                    @Override
+                    public void flush() {
+                        delegate.flush();
+                    }
+
+                    @Override
+                    public void close() {
+                        delegate.close();
+                    }
+                });
+            }
+            return writer;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.ldapwebtool.config;
+
+import jakarta.servlet.ServletRequest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Request attributes recorded by a handler, for {@link AccessLogFilter} and {@link RateLimitFilter}.
+ *
+ * Handlers that run off the servlet thread must not touch the request: once it times out or
+ * the client goes away, the container may complete and recycle it while the handler is still
+ * running. They record the attributes here instead, and the filters copy them onto the request
+ * on the container's thread, just before reading them. Anything recorded after that is dropped.
+ */
+public final class HandlerAttributes {
+
+    private static final String ATTRIBUTE = HandlerAttributes.class.getName();
+
+    private final Map<String, Object> values = new ConcurrentHashMap<>();
+
+    private HandlerAttributes() {
+    }
+
+    /**
+     * Attaches a new set of attributes to the request. Call this on the servlet thread.
+     */
+    public static HandlerAttributes attach(ServletRequest request) {
+        HandlerAttributes attributes = new HandlerAttributes();
+        request.setAttribute(ATTRIBUTE, attributes);
+        return attributes;
+    }
+
+    /**
+     * Records an attribute; null values are ignored. Safe from any thread.
+     */
+    public void set(String name, Object value) {
+        if (value != null) {
+            values.put(name, value);
+        }
+    }
+
+    /**
+     * Copies the attributes recorded so far onto the request and detaches them from it.
+     */
+    static void apply(ServletRequest request) {
+        Object attributes = request.getAttribute(ATTRIBUTE);
+        if (attributes instanceof HandlerAttributes) {
+            request.removeAttribute(ATTRIBUTE);
+            ((HandlerAttributes) attributes).values.forEach(request::setAttribute);
+        }
+    }
+}
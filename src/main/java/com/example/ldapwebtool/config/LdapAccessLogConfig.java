@@ -0,0 +1,96 @@
+package com.example.ldapwebtool.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the structured access log.
+ *
+ * Each /api request is recorded in a preallocated ring buffer on the request thread and
+ * written as one JSON line by a background thread, to files rotated by size. When the
+ * buffer is full new records are dropped and counted rather than making requests wait.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ldap.access-log")
+public class LdapAccessLogConfig {
+
+    /**
+     * Whether requests are logged at all.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Directory holding the log files.
+     */
+    private String directory = System.getProperty("java.io.tmpdir") + "/ldap-web-tool/access-log";
+
+    /**
+     * Name of the file being written; rotated files get .1, .2, ... inserted before the extension.
+     */
+    private String fileName = "access.jsonl";
+
+    /**
+     * Size at which the file is rotated.
+     */
+    private long maxFileBytes = 104857600;
+
+    /**
+     * Rotated files kept besides the current one.
+     */
+    private int maxFiles = 10;
+
+    /**
+     * Records the ring buffer holds, rounded up to a power of two.
+     */
+    private int bufferSize = 8192;
+
+    // Getters and setters
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public long getMaxFileBytes() {
+        return maxFileBytes;
+    }
+
+    public void setMaxFileBytes(long maxFileBytes) {
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    public int getMaxFiles() {
+        return maxFiles;
+    }
+
+    public void setMaxFiles(int maxFiles) {
+        this.maxFiles = maxFiles;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+}
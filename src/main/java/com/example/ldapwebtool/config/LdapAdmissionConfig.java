@@ -0,0 +1,83 @@
+package com.example.ldapwebtool.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for per-backend admission control.
+ * Each backend (distinct LDAP URI) gets its own concurrency limit, wait queue and
+ * circuit breaker, so a slow or failing directory cannot exhaust the whole proxy.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ldap.admission")
+public class LdapAdmissionConfig {
+
+    /**
+     * Maximum number of requests running against one backend at the same time.
+     */
+    private int maxConcurrentRequests = 20;
+
+    /**
+     * Maximum number of requests waiting for a slot on one backend.
+     * Requests arriving when the queue is full are rejected immediately with 503.
+     */
+    private int maxQueuedRequests = 50;
+
+    /**
+     * Maximum time in milliseconds a request waits in the queue before it is rejected with 503.
+     */
+    private long maxQueueWaitMillis = 2000;
+
+    /**
+     * Number of consecutive connect or timeout failures that opens the circuit breaker.
+     * Zero disables the circuit breaker.
+     */
+    private int circuitBreakerFailureThreshold = 5;
+
+    /**
+     * Time in milliseconds the circuit stays open before a single probe request is let through.
+     */
+    private long circuitBreakerOpenMillis = 30000;
+
+    // Getters and setters
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    public int getMaxQueuedRequests() {
+        return maxQueuedRequests;
+    }
+
+    public void setMaxQueuedRequests(int maxQueuedRequests) {
+        this.maxQueuedRequests = maxQueuedRequests;
+    }
+
+    public long getMaxQueueWaitMillis() {
+        return maxQueueWaitMillis;
+    }
+
+    public void setMaxQueueWaitMillis(long maxQueueWaitMillis) {
+        this.maxQueueWaitMillis = maxQueueWaitMillis;
+    }
+
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+
+    public long getCircuitBreakerOpenMillis() {
+        return circuitBreakerOpenMillis;
+    }
+
+    public void setCircuitBreakerOpenMillis(long circuitBreakerOpenMillis) {
+        this.circuitBreakerOpenMillis = circuitBreakerOpenMillis;
+    }
+}
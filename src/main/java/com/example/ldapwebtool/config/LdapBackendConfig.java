@@ -0,0 +1,340 @@
+package com.example.ldapwebtool.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration properties for named LDAP backends.
+ * A request may name a backend instead of passing a URI; reads are then sent to the
+ * backend's replicas and writes to its primary.
+ *
+ * Each backend may also carry its own tuning profile: pool sizes and timeouts, admission
+ * limits, TLS trust settings, the ranged-values page size and whether entries are cached.
+ * Settings left unset fall back to the global ldap.pool, ldap.admission, ldap.ssl,
+ * ldap.search and ldap.entry-cache properties.
+ *
+ * Example:
+ * ldap.backends.corp.primary=ldap://master.example.com:389
+ * ldap.backends.corp.replicas[0]=ldap://replica1.example.com:389
+ * ldap.backends.corp.replicas[1]=ldap://replica2.example.com:389
+ * ldap.backends.corp.read-consistency=csn
+ * ldap.backends.corp.naming-context=dc=example,dc=com
+ * ldap.backends.corp.pool.max-connections=40
+ * ldap.backends.corp.admission.max-concurrent-requests=60
+ * ldap.backends.corp.ssl.truststore-path=/etc/ldap-web-tool/corp-truststore.jks
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ldap")
+public class LdapBackendConfig {
+
+    /**
+     * Named backends, keyed by the name clients pass in the "backend" request field.
+     */
+    private Map<String, Backend> backends = new LinkedHashMap<>();
+
+    /**
+     * Whether requests may pass any URI. When false, only the URIs of the backends above
+     * (primaries, replicas, or the replicas together) are accepted.
+     */
+    private boolean allowArbitraryUris = true;
+
+    public Map<String, Backend> getBackends() {
+        return backends;
+    }
+
+    public void setBackends(Map<String, Backend> backends) {
+        this.backends = backends;
+    }
+
+    public boolean isAllowArbitraryUris() {
+        return allowArbitraryUris;
+    }
+
+    public void setAllowArbitraryUris(boolean allowArbitraryUris) {
+        this.allowArbitraryUris = allowArbitraryUris;
+    }
+
+    /**
+     * A primary server for writes and a set of replicas for reads.
+     */
+    public static class Backend {
+
+        /**
+         * URI of the server that accepts writes. May list several hosts for failover.
+         */
+        private String primary;
+
+        /**
+         * URIs of the read replicas. When empty, reads also go to the primary.
+         */
+        private List<String> replicas = new ArrayList<>();
+
+        /**
+         * How reads that follow a write by the same caller are routed.
+         *
+         * pin: send the caller's reads to the primary until the window expires (default).
+         * csn: send them only to replicas whose contextCSN has caught up with the primary,
+         *      falling back to the primary when none has.
+         * none: always read from the replicas.
+         */
+        private String readConsistency = "pin";
+
+        /**
+         * How long in milliseconds a caller's reads stay pinned after a write.
+         */
+        private long readYourWritesWindowMillis = 5000;
+
+        /**
+         * Naming context whose contextCSN is compared when readConsistency=csn.
+         */
+        private String namingContext;
+
+        /**
+         * Connection pool settings for the backend's servers.
+         */
+        private Pool pool = new Pool();
+
+        /**
+         * Admission limits for the backend's servers.
+         */
+        private Admission admission = new Admission();
+
+        /**
+         * TLS settings for the backend's ldaps:// servers.
+         */
+        private Ssl ssl = new Ssl();
+
+        /**
+         * Default page size of GET /api/entry/{dn}/values/{attribute}.
+         */
+        private Integer valuesPageSize;
+
+        /**
+         * Whether GET /api/entry/{dn} caches entries read from the backend. Has no effect
+         * when the entry cache is disabled globally.
+         */
+        private Boolean entryCacheEnabled;
+
+        public String getPrimary() {
+            return primary;
+        }
+
+        public void setPrimary(String primary) {
+            this.primary = primary;
+        }
+
+        public List<String> getReplicas() {
+            return replicas;
+        }
+
+        public void setReplicas(List<String> replicas) {
+            this.replicas = replicas;
+        }
+
+        public String getReadConsistency() {
+            return readConsistency;
+        }
+
+        public void setReadConsistency(String readConsistency) {
+            this.readConsistency = readConsistency;
+        }
+
+        public long getReadYourWritesWindowMillis() {
+            return readYourWritesWindowMillis;
+        }
+
+        public void setReadYourWritesWindowMillis(long readYourWritesWindowMillis) {
+            this.readYourWritesWindowMillis = readYourWritesWindowMillis;
+        }
+
+        public String getNamingContext() {
+            return namingContext;
+        }
+
+        public void setNamingContext(String namingContext) {
+            this.namingContext = namingContext;
+        }
+
+        public Pool getPool() {
+            return pool;
+        }
+
+        public void setPool(Pool pool) {
+            this.pool = pool;
+        }
+
+        public Admission getAdmission() {
+            return admission;
+        }
+
+        public void setAdmission(Admission admission) {
+            this.admission = admission;
+        }
+
+        public Ssl getSsl() {
+            return ssl;
+        }
+
+        public void setSsl(Ssl ssl) {
+            this.ssl = ssl;
+        }
+
+        public Integer getValuesPageSize() {
+            return valuesPageSize;
+        }
+
+        public void setValuesPageSize(Integer valuesPageSize) {
+            this.valuesPageSize = valuesPageSize;
+        }
+
+        public Boolean getEntryCacheEnabled() {
+            return entryCacheEnabled;
+        }
+
+        public void setEntryCacheEnabled(Boolean entryCacheEnabled) {
+            this.entryCacheEnabled = entryCacheEnabled;
+        }
+    }
+
+    /**
+     * Overrides of {@link LdapPoolConfig} for one backend.
+     */
+    public static class Pool {
+
+        private Integer initialConnections;
+        private Integer maxConnections;
+        private Integer connectTimeoutMillis;
+        private Long responseTimeoutMillis;
+
+        public Integer getInitialConnections() {
+            return initialConnections;
+        }
+
+        public void setInitialConnections(Integer initialConnections) {
+            this.initialConnections = initialConnections;
+        }
+
+        public Integer getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(Integer maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public Integer getConnectTimeoutMillis() {
+            return connectTimeoutMillis;
+        }
+
+        public void setConnectTimeoutMillis(Integer connectTimeoutMillis) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+        }
+
+        public Long getResponseTimeoutMillis() {
+            return responseTimeoutMillis;
+        }
+
+        public void setResponseTimeoutMillis(Long responseTimeoutMillis) {
+            this.responseTimeoutMillis = responseTimeoutMillis;
+        }
+    }
+
+    /**
+     * Overrides of {@link LdapAdmissionConfig} for one backend.
+     */
+    public static class Admission {
+
+        private Integer maxConcurrentRequests;
+        private Integer maxQueuedRequests;
+        private Long maxQueueWaitMillis;
+
+        public Integer getMaxConcurrentRequests() {
+            return maxConcurrentRequests;
+        }
+
+        public void setMaxConcurrentRequests(Integer maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+        }
+
+        public Integer getMaxQueuedRequests() {
+            return maxQueuedRequests;
+        }
+
+        public void setMaxQueuedRequests(Integer maxQueuedRequests) {
+            this.maxQueuedRequests = maxQueuedRequests;
+        }
+
+        public Long getMaxQueueWaitMillis() {
+            return maxQueueWaitMillis;
+        }
+
+        public void setMaxQueueWaitMillis(Long maxQueueWaitMillis) {
+            this.maxQueueWaitMillis = maxQueueWaitMillis;
+        }
+    }
+
+    /**
+     * Overrides of {@link LdapSslConfig} for one backend.
+     */
+    public static class Ssl {
+
+        private Boolean trustAll;
+        private String truststorePath;
+        private String truststorePassword;
+        private String truststoreType;
+        private Boolean hostnameVerification;
+
+        /**
+         * Whether any of the settings is overridden, so the backend needs its own TLS context.
+         */
+        public boolean isCustomized() {
+            return trustAll != null || truststorePath != null || truststorePassword != null
+                || truststoreType != null || hostnameVerification != null;
+        }
+
+        public Boolean getTrustAll() {
+            return trustAll;
+        }
+
+        public void setTrustAll(Boolean trustAll) {
+            this.trustAll = trustAll;
+        }
+
+        public String getTruststorePath() {
+            return truststorePath;
+        }
+
+        public void setTruststorePath(String truststorePath) {
+            this.truststorePath = truststorePath;
+        }
+
+        public String getTruststorePassword() {
+            return truststorePassword;
+        }
+
+        public void setTruststorePassword(String truststorePassword) {
+            this.truststorePassword = truststorePassword;
+        }
+
+        public String getTruststoreType() {
+            return truststoreType;
+        }
+
+        public void setTruststoreType(String truststoreType) {
+            this.truststoreType = truststoreType;
+        }
+
+        public Boolean getHostnameVerification() {
+            return hostnameVerification;
+        }
+
+        public void setHostnameVerification(Boolean hostnameVerification) {
+            this.hostnameVerification = hostnameVerification;
+        }
+    }
+}
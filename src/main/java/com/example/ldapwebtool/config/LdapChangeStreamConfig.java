@@ -0,0 +1,112 @@
+package com.example.ldapwebtool.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the change stream (GET /api/changes/stream).
+ *
+ * Clients subscribing with the same target, bind DN, base, scope, filter, attributes and
+ * change types share one upstream search; each client has a bounded buffer of events.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ldap.changes")
+public class LdapChangeStreamConfig {
+
+    /**
+     * How changes are read from the directory: persistent-search, content-sync (RFC 4533
+     * refreshAndPersist), or auto to pick whichever the server's root DSE lists, preferring
+     * persistent search.
+     */
+    private String mechanism = "auto";
+
+    /**
+     * Maximum number of distinct subscriptions, i.e. upstream searches held open at once.
+     */
+    private int maxSubscriptions = 64;
+
+    /**
+     * Maximum number of connected stream clients over all subscriptions.
+     */
+    private int maxSubscribers = 1000;
+
+    /**
+     * Events buffered per client. A client that falls further behind loses its buffered
+     * events and is sent a resync event instead.
+     */
+    private int bufferSize = 1000;
+
+    /**
+     * Interval of the keep-alive comments sent to idle clients, which also detect clients
+     * that went away.
+     */
+    private long heartbeatIntervalMillis = 15000;
+
+    /**
+     * How long one stream stays open before the client is made to reconnect. 0 for no limit.
+     */
+    private long maxStreamMillis = 3600000;
+
+    /**
+     * Reconnect delay suggested to clients in the stream.
+     */
+    private long retryMillis = 5000;
+
+    // Getters and setters
+
+    public String getMechanism() {
+        return mechanism;
+    }
+
+    public void setMechanism(String mechanism) {
+        this.mechanism = mechanism;
+    }
+
+    public int getMaxSubscriptions() {
+        return maxSubscriptions;
+    }
+
+    public void setMaxSubscriptions(int maxSubscriptions) {
+        this.maxSubscriptions = maxSubscriptions;
+    }
+
+    public int getMaxSubscribers() {
+        return maxSubscribers;
+    }
+
+    public void setMaxSubscribers(int maxSubscribers) {
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public long getHeartbeatIntervalMillis() {
+        return heartbeatIntervalMillis;
+    }
+
+    public void setHeartbeatIntervalMillis(long heartbeatIntervalMillis) {
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+    }
+
+    public long getMaxStreamMillis() {
+        return maxStreamMillis;
+    }
+
+    public void setMaxStreamMillis(long maxStreamMillis) {
+        this.maxStreamMillis = maxStreamMillis;
+    }
+
+    public long getRetryMillis() {
+        return retryMillis;
+    }
+
+    public void setRetryMillis(long retryMillis) {
+        this.retryMillis = retryMillis;
+    }
+}
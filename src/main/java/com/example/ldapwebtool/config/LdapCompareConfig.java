@@ -0,0 +1,110 @@
+package com.example.ldapwebtool.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for batched compares (POST /api/compare/batch).
+ *
+ * Each batch is spread over a few pooled connections, and on each connection compares are
+ * pipelined: up to pipeline-depth requests are sent before the first answer is awaited.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ldap.compare")
+public class LdapCompareConfig {
+
+    /**
+     * Maximum number of assertions in one batch.
+     */
+    private int maxAssertions = 10000;
+
+    /**
+     * Maximum number of pooled connections one batch uses at the same time.
+     */
+    private int connectionsPerBatch = 4;
+
+    /**
+     * Maximum number of compares outstanding on one connection.
+     */
+    private int pipelineDepth = 128;
+
+    /**
+     * Threads running the further connections' shares of batches, across all batches. When
+     * all are busy a batch runs its shares on the request thread, one after another.
+     */
+    private int maxThreads = 16;
+
+    /**
+     * How long cached answers are used, for batches that ask for caching. 0 disables the cache.
+     */
+    private long cacheTtlMillis = 5000;
+
+    /**
+     * Maximum number of DNs with cached answers.
+     */
+    private int cacheSize = 10000;
+
+    /**
+     * How long a caller's password, once checked with a bind, is trusted for batches answered
+     * entirely from the cache.
+     */
+    private long credentialTtlMillis = 60000;
+
+    // Getters and setters
+
+    public int getMaxAssertions() {
+        return maxAssertions;
+    }
+
+    public void setMaxAssertions(int maxAssertions) {
+        this.maxAssertions = maxAssertions;
+    }
+
+    public int getConnectionsPerBatch() {
+        return connectionsPerBatch;
+    }
+
+    public void setConnectionsPerBatch(int connectionsPerBatch) {
+        this.connectionsPerBatch = connectionsPerBatch;
+    }
+
+    public int getPipelineDepth() {
+        return pipelineDepth;
+    }
+
+    public void setPipelineDepth(int pipelineDepth) {
+        this.pipelineDepth = pipelineDepth;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    public long getCacheTtlMillis() {
+        return cacheTtlMillis;
+    }
+
+    public void setCacheTtlMillis(long cacheTtlMillis) {
+        this.cacheTtlMillis = cacheTtlMillis;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public long getCredentialTtlMillis() {
+        return credentialTtlMillis;
+    }
+
+    public void setCredentialTtlMillis(long credentialTtlMillis) {
+        this.credentialTtlMillis = credentialTtlMillis;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.ldapwebtool.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for diffs between a desired-state LDIF and the live directory.
+ *
+ * Both sides are sorted by DN with an external merge sort, so memory use is bounded by
+ * the sort budget whatever the size of the data; the rest goes to temporary files.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ldap.diff")
+public class LdapDiffConfig {
+
+    /**
+     * Directory for the sort runs of diffs in progress.
+     */
+    private String tempDirectory = System.getProperty("java.io.tmpdir") + "/ldap-web-tool/diff";
+
+    /**
+     * Memory each side of a diff may use for sorting before spilling runs to disk.
+     */
+    private long sortMemoryBytes = 67108864;
+
+    // Getters and setters
+
+    public String getTempDirectory() {
+        return tempDirectory;
+    }
+
+    public void setTempDirectory(String tempDirectory) {
+        this.tempDirectory = tempDirectory;
+    }
+
+    public long getSortMemoryBytes() {
+        return sortMemoryBytes;
+    }
+
+    public void setSortMemoryBytes(long sortMemoryBytes) {
+        this.sortMemoryBytes = sortMemoryBytes;
+    }
+}
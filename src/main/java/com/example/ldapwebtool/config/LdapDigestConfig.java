@@ -0,0 +1,43 @@
+package com.example.ldapwebtool.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for subtree digests (hash trees).
+ *
+ * Digests are computed while the search results stream past, keeping one accumulator per
+ * reported subtree rather than the entries, so memory depends on the requested depth only.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ldap.digest")
+public class LdapDigestConfig {
+
+    /**
+     * Deepest breakdown a request may ask for, in levels below the base.
+     */
+    private int maxDepth = 4;
+
+    /**
+     * Most subtrees a single digest may report; deeper drill-downs need separate requests.
+     */
+    private int maxNodes = 50000;
+
+    // Getters and setters
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    public void setMaxNodes(int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+}
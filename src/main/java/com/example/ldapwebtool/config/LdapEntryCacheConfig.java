@@ -0,0 +1,86 @@
+package com.example.ldapwebtool.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the entry cache behind GET /api/entry/{dn}.
+ *
+ * Cached entries are revalidated with an LDAP compare on their change stamp (entryCSN, or
+ * modifyTimestamp) before being served, unless they are within one of the windows below.
+ * Changes made through this service drop the affected entries at once; changes made by other
+ * clients are only noticed on revalidation.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ldap.entry-cache")
+public class LdapEntryCacheConfig {
+
+    /**
+     * Whether entries are cached at all.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Maximum number of DNs held; each DN holds one copy per backend URI and bind DN.
+     */
+    private int maxEntries = 10000;
+
+    /**
+     * Age up to which a cached entry is served without contacting the directory.
+     */
+    private long revalidateAfterMillis = 0;
+
+    /**
+     * Further age up to which a cached entry is served at once while it is revalidated in
+     * the background; older entries are revalidated before being served.
+     */
+    private long staleWhileRevalidateMillis = 0;
+
+    /**
+     * How long a caller's password, once checked with a bind, is trusted for entries served
+     * without contacting the directory.
+     */
+    private long credentialTtlMillis = 60000;
+
+    // Getters and setters
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public long getRevalidateAfterMillis() {
+        return revalidateAfterMillis;
+    }
+
+    public void setRevalidateAfterMillis(long revalidateAfterMillis) {
+        this.revalidateAfterMillis = revalidateAfterMillis;
+    }
+
+    public long getStaleWhileRevalidateMillis() {
+        return staleWhileRevalidateMillis;
+    }
+
+    public void setStaleWhileRevalidateMillis(long staleWhileRevalidateMillis) {
+        this.staleWhileRevalidateMillis = staleWhileRevalidateMillis;
+    }
+
+    public long getCredentialTtlMillis() {
+        return credentialTtlMillis;
+    }
+
+    public void setCredentialTtlMillis(long credentialTtlMillis) {
+        this.credentialTtlMillis = credentialTtlMillis;
+    }
+}
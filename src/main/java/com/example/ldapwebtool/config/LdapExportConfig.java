@@ -0,0 +1,155 @@
+package com.example.ldapwebtool.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for partitioned exports.
+ *
+ * A subtree export is split into partitions, one per child entry of the base, which are
+ * searched in parallel over pooled connections. A partition is split further, one level at
+ * a time, whenever workers would otherwise sit idle, so that one large subtree does not end
+ * up running alone on a single connection.
+ *
+ * Export jobs run the same export in the background into a gzip spool file, which is kept
+ * for the job TTL so that it can be downloaded, and resumed, any number of times.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ldap.export")
+public class LdapExportConfig {
+
+    /**
+     * Number of partitions searched at the same time when the request does not say.
+     */
+    private int parallelism = 4;
+
+    /**
+     * Upper limit on the parallelism a request may ask for.
+     */
+    private int maxParallelism = 16;
+
+    /**
+     * Partition searches running at the same time across all exports and export jobs. Kept
+     * below the backends' admission limit so that exports cannot take every slot from
+     * interactive requests; partitions beyond it wait their turn.
+     */
+    private int maxConcurrentSearches = 8;
+
+    /**
+     * Maximum number of levels below the base at which partitions are split.
+     */
+    private int maxSplitDepth = 4;
+
+    /**
+     * A partition whose entry has more children than this is searched as a whole instead
+     * of being split, to avoid enumerating very flat containers.
+     */
+    private int splitFanoutLimit = 1000;
+
+    /**
+     * Number of serialized entries buffered between the searches and the response writer.
+     */
+    private int bufferEntries = 1000;
+
+    /**
+     * Directory holding the spool files of export jobs.
+     */
+    private String jobSpoolDirectory = System.getProperty("java.io.tmpdir") + "/ldap-web-tool/exports";
+
+    /**
+     * Maximum number of export jobs running at the same time; further jobs are refused.
+     */
+    private int maxConcurrentJobs = 2;
+
+    /**
+     * How long a finished job and its spool file are kept.
+     */
+    private long jobTtlMillis = 86400000;
+
+    /**
+     * How often expired jobs are removed.
+     */
+    private long jobCleanupIntervalMillis = 60000;
+
+    // Getters and setters
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getMaxParallelism() {
+        return maxParallelism;
+    }
+
+    public void setMaxParallelism(int maxParallelism) {
+        this.maxParallelism = maxParallelism;
+    }
+
+    public int getMaxConcurrentSearches() {
+        return maxConcurrentSearches;
+    }
+
+    public void setMaxConcurrentSearches(int maxConcurrentSearches) {
+        this.maxConcurrentSearches = maxConcurrentSearches;
+    }
+
+    public int getMaxSplitDepth() {
+        return maxSplitDepth;
+    }
+
+    public void setMaxSplitDepth(int maxSplitDepth) {
+        this.maxSplitDepth = maxSplitDepth;
+    }
+
+    public int getSplitFanoutLimit() {
+        return splitFanoutLimit;
+    }
+
+    public void setSplitFanoutLimit(int splitFanoutLimit) {
+        this.splitFanoutLimit = splitFanoutLimit;
+    }
+
+    public int getBufferEntries() {
+        return bufferEntries;
+    }
+
+    public void setBufferEntries(int bufferEntries) {
+        this.bufferEntries = bufferEntries;
+    }
+
+    public String getJobSpoolDirectory() {
+        return jobSpoolDirectory;
+    }
+
+    public void setJobSpoolDirectory(String jobSpoolDirectory) {
+        this.jobSpoolDirectory = jobSpoolDirectory;
+    }
+
+    public int getMaxConcurrentJobs() {
+        return maxConcurrentJobs;
+    }
+
+    public void setMaxConcurrentJobs(int maxConcurrentJobs) {
+        this.maxConcurrentJobs = maxConcurrentJobs;
+    }
+
+    public long getJobTtlMillis() {
+        return jobTtlMillis;
+    }
+
+    public void setJobTtlMillis(long jobTtlMillis) {
+        this.jobTtlMillis = jobTtlMillis;
+    }
+
+    public long getJobCleanupIntervalMillis() {
+        return jobCleanupIntervalMillis;
+    }
+
+    public void setJobCleanupIntervalMillis(long jobCleanupIntervalMillis) {
+        this.jobCleanupIntervalMillis = jobCleanupIntervalMillis;
+    }
+}
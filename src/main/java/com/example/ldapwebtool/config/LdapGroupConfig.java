@@ -0,0 +1,181 @@
+package com.example.ldapwebtool.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration properties for nested group expansion (GET /api/groups/...).
+ *
+ * Groups are recognized by object class and list their members in the member attributes.
+ * Looked-up edges of the group graph are memoized for the cache TTL; changes made through
+ * this service to member attributes, object classes or group entries clear them at once.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ldap.groups")
+public class LdapGroupConfig {
+
+    /**
+     * Object classes of group entries.
+     */
+    private List<String> objectClasses = new ArrayList<>(List.of("groupOfNames", "groupOfUniqueNames", "group"));
+
+    /**
+     * Attributes holding the DNs of a group's members.
+     */
+    private List<String> memberAttributes = new ArrayList<>(List.of("member", "uniqueMember"));
+
+    /**
+     * Whether to use the matching-rule-in-chain filter on Active Directory, which expands
+     * nesting in a single search.
+     */
+    private boolean useInChain = true;
+
+    /**
+     * Whether to read memberOf to find a member's groups on servers whose schema defines it,
+     * rather than searching for groups listing the member.
+     */
+    private boolean useMemberOf = true;
+
+    /**
+     * Maximum number of lookups one expansion runs at the same time.
+     */
+    private int parallelism = 4;
+
+    /**
+     * Threads shared by all expansions for their further lookups. When every thread is busy,
+     * an expansion runs its lookups on the request thread.
+     */
+    private int maxThreads = 16;
+
+    /**
+     * Maximum nesting depth followed.
+     */
+    private int maxDepth = 32;
+
+    /**
+     * Maximum number of groups one expansion may reach.
+     */
+    private int maxGroups = 10000;
+
+    /**
+     * Maximum number of members a transitive member expansion may return.
+     */
+    private int maxMembers = 100000;
+
+    /**
+     * How long looked-up group graph edges are reused. 0 disables the cache.
+     */
+    private long cacheTtlMillis = 60000;
+
+    /**
+     * Maximum number of cached lookups.
+     */
+    private int cacheSize = 10000;
+
+    /**
+     * How long a password that passed a bind is trusted for expansions answered entirely
+     * from the cache. 0 checks it with a bind every time.
+     */
+    private long credentialTtlMillis = 60000;
+
+    // Getters and setters
+
+    public List<String> getObjectClasses() {
+        return objectClasses;
+    }
+
+    public void setObjectClasses(List<String> objectClasses) {
+        this.objectClasses = objectClasses;
+    }
+
+    public List<String> getMemberAttributes() {
+        return memberAttributes;
+    }
+
+    public void setMemberAttributes(List<String> memberAttributes) {
+        this.memberAttributes = memberAttributes;
+    }
+
+    public boolean isUseInChain() {
+        return useInChain;
+    }
+
+    public void setUseInChain(boolean useInChain) {
+        this.useInChain = useInChain;
+    }
+
+    public boolean isUseMemberOf() {
+        return useMemberOf;
+    }
+
+    public void setUseMemberOf(boolean useMemberOf) {
+        this.useMemberOf = useMemberOf;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public int getMaxGroups() {
+        return maxGroups;
+    }
+
+    public void setMaxGroups(int maxGroups) {
+        this.maxGroups = maxGroups;
+    }
+
+    public int getMaxMembers() {
+        return maxMembers;
+    }
+
+    public void setMaxMembers(int maxMembers) {
+        this.maxMembers = maxMembers;
+    }
+
+    public long getCacheTtlMillis() {
+        return cacheTtlMillis;
+    }
+
+    public void setCacheTtlMillis(long cacheTtlMillis) {
+        this.cacheTtlMillis = cacheTtlMillis;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public long getCredentialTtlMillis() {
+        return credentialTtlMillis;
+    }
+
+    public void setCredentialTtlMillis(long credentialTtlMillis) {
+        this.credentialTtlMillis = credentialTtlMillis;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.ldapwebtool.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for LDIF import jobs.
+ *
+ * An uploaded LDIF file is spooled to disk and applied in the background. Progress is
+ * checkpointed to disk, so a job that fails or is interrupted by a restart can be resumed
+ * from the record where it stopped.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ldap.import")
+public class LdapImportConfig {
+
+    /**
+     * Directory holding uploaded LDIF files, checkpoints and failure reports of import jobs.
+     */
+    private String spoolDirectory = System.getProperty("java.io.tmpdir") + "/ldap-web-tool/imports";
+
+    /**
+     * Maximum number of import jobs running at the same time; further jobs are refused.
+     */
+    private int maxConcurrentJobs = 2;
+
+    /**
+     * Number of records applied on one pooled connection before it is returned to the pool.
+     */
+    private int batchSize = 100;
+
+    /**
+     * How often the progress of a running job is written to its checkpoint file.
+     */
+    private long checkpointIntervalMillis = 5000;
+
+    /**
+     * How long a job that is not running, and its files, are kept after it last ran.
+     */
+    private long jobTtlMillis = 86400000;
+
+    /**
+     * How often expired jobs are removed.
+     */
+    private long jobCleanupIntervalMillis = 60000;
+
+    // Getters and setters
+
+    public String getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
+    public void setSpoolDirectory(String spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    public int getMaxConcurrentJobs() {
+        return maxConcurrentJobs;
+    }
+
+    public void setMaxConcurrentJobs(int maxConcurrentJobs) {
+        this.maxConcurrentJobs = maxConcurrentJobs;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getCheckpointIntervalMillis() {
+        return checkpointIntervalMillis;
+    }
+
+    public void setCheckpointIntervalMillis(long checkpointIntervalMillis) {
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+    }
+
+    public long getJobTtlMillis() {
+        return jobTtlMillis;
+    }
+
+    public void setJobTtlMillis(long jobTtlMillis) {
+        this.jobTtlMillis = jobTtlMillis;
+    }
+
+    public long getJobCleanupIntervalMillis() {
+        return jobCleanupIntervalMillis;
+    }
+
+    public void setJobCleanupIntervalMillis(long jobCleanupIntervalMillis) {
+        this.jobCleanupIntervalMillis = jobCleanupIntervalMillis;
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.ldapwebtool.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Configuration properties for local replicas: subtrees loaded into memory and kept current
+ * by following their changes, so that searches within them can be answered without asking
+ * the directory.
+ *
+ * Example:
+ * ldap.local-replicas.people.backend=corp
+ * ldap.local-replicas.people.base=ou=people,dc=example,dc=com
+ * ldap.local-replicas.people.bind-dn=cn=replicator,ou=services,dc=example,dc=com
+ * ldap.local-replicas.people.bind-password=secret
+ * ldap.local-replicas.people.caller-pattern=uid=[^,]+,ou=services,dc=example,dc=com
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ldap")
+public class LdapLocalReplicaConfig {
+
+    /**
+     * Replicated subtrees, keyed by a name used in logs and metrics.
+     */
+    private Map<String, Subtree> localReplicas = new LinkedHashMap<>();
+
+    public Map<String, Subtree> getLocalReplicas() {
+        return localReplicas;
+    }
+
+    public void setLocalReplicas(Map<String, Subtree> localReplicas) {
+        this.localReplicas = localReplicas;
+    }
+
+    /**
+     * One replicated subtree.
+     */
+    public static class Subtree {
+
+        /**
+         * URI of the replicated server (or give backend).
+         */
+        private String uri;
+
+        /**
+         * Name of a configured backend; the replica follows its primary and serves searches
+         * naming the backend.
+         */
+        private String backend;
+
+        /**
+         * Base DN of the replicated subtree. Searches at or below it may be answered locally.
+         */
+        private String base;
+
+        /**
+         * Account that reads the subtree. It should be able to read every entry and attribute
+         * that the callers allowed below may search for.
+         */
+        private String bindDn;
+
+        /**
+         * Password of the bind DN.
+         */
+        private String bindPassword;
+
+        /**
+         * Regular expression for the bind DNs (lower case) whose searches may be answered
+         * locally. Callers see what the bind DN sees, so this should only match callers
+         * entitled to that. If unset, only the bind DN itself is served locally.
+         */
+        private String callerPattern;
+
+        /**
+         * How changes are followed: persistent-search, content-sync or auto.
+         */
+        private String mechanism = "auto";
+
+        /**
+         * Searches are only answered locally if the replica was confirmed current within this
+         * many milliseconds; otherwise they go to the directory. Replicas are confirmed every
+         * half of this, without reading the subtree.
+         */
+        private long maxStalenessMillis = 5000;
+
+        /**
+         * Interval of sweeps of replicas following persistent search, which does not report
+         * entries moved out of the subtree by other clients: the DNs of the subtree are read
+         * and the entries no longer there dropped. Independent of the staleness bound, as a
+         * sweep reads every DN; 0 disables them.
+         */
+        private long sweepIntervalMillis = 900000;
+
+        /**
+         * Largest number of entries loaded. A larger subtree is not replicated.
+         */
+        private int maxEntries = 1000000;
+
+        /**
+         * Wait before reloading after the change search was lost.
+         */
+        private long reloadDelayMillis = 5000;
+
+        /**
+         * Interval of full reloads, a safety net against anything following changes and
+         * confirmations has missed. 0 disables them.
+         */
+        private long reloadIntervalMillis = 3600000;
+
+        /**
+         * How long a caller's password, once checked with a bind, is trusted for local answers.
+         */
+        private long credentialTtlMillis = 60000;
+
+        public String getUri() {
+            return uri;
+        }
+
+        public void setUri(String uri) {
+            this.uri = uri;
+        }
+
+        public String getBackend() {
+            return backend;
+        }
+
+        public void setBackend(String backend) {
+            this.backend = backend;
+        }
+
+        public String getBase() {
+            return base;
+        }
+
+        public void setBase(String base) {
+            this.base = base;
+        }
+
+        public String getBindDn() {
+            return bindDn;
+        }
+
+        public void setBindDn(String bindDn) {
+            this.bindDn = bindDn;
+        }
+
+        public String getBindPassword() {
+            return bindPassword;
+        }
+
+        public void setBindPassword(String bindPassword) {
+            this.bindPassword = bindPassword;
+        }
+
+        public String getCallerPattern() {
+            return callerPattern;
+        }
+
+        public void setCallerPattern(String callerPattern) {
+            this.callerPattern = callerPattern;
+        }
+
+        public String getMechanism() {
+            return mechanism;
+        }
+
+        public void setMechanism(String mechanism) {
+            this.mechanism = mechanism;
+        }
+
+        public long getMaxStalenessMillis() {
+            return maxStalenessMillis;
+        }
+
+        public void setMaxStalenessMillis(long maxStalenessMillis) {
+            this.maxStalenessMillis = maxStalenessMillis;
+        }
+
+        public long getSweepIntervalMillis() {
+            return sweepIntervalMillis;
+        }
+
+        public void setSweepIntervalMillis(long sweepIntervalMillis) {
+            this.sweepIntervalMillis = sweepIntervalMillis;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public long getReloadDelayMillis() {
+            return reloadDelayMillis;
+        }
+
+        public void setReloadDelayMillis(long reloadDelayMillis) {
+            this.reloadDelayMillis = reloadDelayMillis;
+        }
+
+        public long getReloadIntervalMillis() {
+            return reloadIntervalMillis;
+        }
+
+        public void setReloadIntervalMillis(long reloadIntervalMillis) {
+            this.reloadIntervalMillis = reloadIntervalMillis;
+        }
+
+        public long getCredentialTtlMillis() {
+            return credentialTtlMillis;
+        }
+
+        public void setCredentialTtlMillis(long credentialTtlMillis) {
+            this.credentialTtlMillis = credentialTtlMillis;
+        }
+    }
+}
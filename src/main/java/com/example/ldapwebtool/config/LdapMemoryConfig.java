@@ -0,0 +1,70 @@
+package com.example.ldapwebtool.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the heap budget shared by all requests.
+ *
+ * Searches, LDIF modifies and diffs reserve an estimate of the memory they hold against
+ * the budget. Searches and modifies that do not fit are rejected with 503; diffs sort with
+ * smaller buffers and spill to disk sooner.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ldap.memory")
+public class LdapMemoryConfig {
+
+    /**
+     * Whether memory is accounted at all.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Bytes all requests together may hold. Zero means a quarter of the maximum heap.
+     */
+    private long budgetBytes = 0;
+
+    /**
+     * Smallest sort buffer a diff side is shrunk to when the budget is tight.
+     */
+    private long minSortMemoryBytes = 1048576;
+
+    /**
+     * Retry-After sent with requests rejected for lack of memory.
+     */
+    private long retryAfterSeconds = 1;
+
+    // Getters and setters
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    public long getMinSortMemoryBytes() {
+        return minSortMemoryBytes;
+    }
+
+    public void setMinSortMemoryBytes(long minSortMemoryBytes) {
+        this.minSortMemoryBytes = minSortMemoryBytes;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public void setRetryAfterSeconds(long retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.ldapwebtool.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for LDAP connection pooling and server selection.
+ * A pool is created per distinct LDAP URI (including every host listed in it) and
+ * connections are re-bound with the caller's credentials each time they are checked out.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ldap.pool")
+public class LdapPoolConfig {
+
+    /**
+     * Number of connections to open when a pool is first created.
+     */
+    private int initialConnections = 1;
+
+    /**
+     * Maximum number of connections each pool keeps open.
+     */
+    private int maxConnections = 10;
+
+    /**
+     * How to pick a server when a URI lists more than one host.
+     *
+     * round-robin: cycle through the hosts (default).
+     * fewest-connections: pick the host with the fewest connections established by this application.
+     * fastest-connect: connect to all hosts in parallel and keep the first to answer.
+     */
+    private String serverSelection = "round-robin";
+
+    /**
+     * Timeout in milliseconds for establishing a connection to a single host.
+     */
+    private int connectTimeoutMillis = 10000;
+
+    /**
+     * Maximum time in milliseconds to wait for a response to an LDAP operation.
+     */
+    private long responseTimeoutMillis = 300000;
+
+    /**
+     * Interval in milliseconds between background health checks.
+     * Pooled connections are validated and unhealthy hosts are re-checked at this interval,
+     * so a failed host is put back into rotation within one interval of recovering.
+     */
+    private long healthCheckIntervalMillis = 30000;
+
+    /**
+     * Maximum age in milliseconds of a pooled connection before it is replaced.
+     * Zero disables age-based replacement.
+     */
+    private long maxConnectionAgeMillis = 0;
+
+    /**
+     * Time in milliseconds after which a pool that has not been used is closed.
+     */
+    private long idlePoolTimeoutMillis = 600000;
+
+    // Getters and setters
+
+    public int getInitialConnections() {
+        return initialConnections;
+    }
+
+    public void setInitialConnections(int initialConnections) {
+        this.initialConnections = initialConnections;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public String getServerSelection() {
+        return serverSelection;
+    }
+
+    public void setServerSelection(String serverSelection) {
+        this.serverSelection = serverSelection;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public long getResponseTimeoutMillis() {
+        return responseTimeoutMillis;
+    }
+
+    public void setResponseTimeoutMillis(long responseTimeoutMillis) {
+        this.responseTimeoutMillis = responseTimeoutMillis;
+    }
+
+    public long getHealthCheckIntervalMillis() {
+        return healthCheckIntervalMillis;
+    }
+
+    public void setHealthCheckIntervalMillis(long healthCheckIntervalMillis) {
+        this.healthCheckIntervalMillis = healthCheckIntervalMillis;
+    }
+
+    public long getMaxConnectionAgeMillis() {
+        return maxConnectionAgeMillis;
+    }
+
+    public void setMaxConnectionAgeMillis(long maxConnectionAgeMillis) {
+        this.maxConnectionAgeMillis = maxConnectionAgeMillis;
+    }
+
+    public long getIdlePoolTimeoutMillis() {
+        return idlePoolTimeoutMillis;
+    }
+
+    public void setIdlePoolTimeoutMillis(long idlePoolTimeoutMillis) {
+        this.idlePoolTimeoutMillis = idlePoolTimeoutMillis;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.ldapwebtool.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the per-backend schema cache.
+ * The schema of each backend is read once and kept while its connection pool is open.
+ * It is used to reject malformed requests before they are sent, and to decide how
+ * attribute values are serialized (binary values as base64, single-valued attributes
+ * as scalars and multi-valued attributes as arrays).
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ldap.schema")
+public class LdapSchemaConfig {
+
+    /**
+     * Whether backend schemas are read and cached.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Whether filters and modifications are checked against the schema before they are sent.
+     */
+    private boolean validateRequests = true;
+
+    /**
+     * Interval in milliseconds between checks of the subschema entry's modifyTimestamp.
+     * The schema is reloaded when it has changed.
+     */
+    private long refreshIntervalMillis = 300000;
+
+    // Getters and setters
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isValidateRequests() {
+        return validateRequests;
+    }
+
+    public void setValidateRequests(boolean validateRequests) {
+        this.validateRequests = validateRequests;
+    }
+
+    public long getRefreshIntervalMillis() {
+        return refreshIntervalMillis;
+    }
+
+    public void setRefreshIntervalMillis(long refreshIntervalMillis) {
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+}
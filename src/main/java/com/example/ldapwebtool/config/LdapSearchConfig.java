@@ -0,0 +1,54 @@
+package com.example.ldapwebtool.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for search processing.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ldap.search")
+public class LdapSearchConfig {
+
+    /**
+     * Maximum number of compiled search plans (parsed filter, scope and sort keys) kept in memory,
+     * and of search shapes whose schema validation is remembered.
+     */
+    private int planCacheSize = 1000;
+
+    /**
+     * Default number of values per page when paging through one attribute's values.
+     */
+    private int valuesPageSize = 1000;
+
+    /**
+     * Largest page of values a client may ask for.
+     */
+    private int maxValuesPageSize = 10000;
+
+    // Getters and setters
+
+    public int getPlanCacheSize() {
+        return planCacheSize;
+    }
+
+    public void setPlanCacheSize(int planCacheSize) {
+        this.planCacheSize = planCacheSize;
+    }
+
+    public int getValuesPageSize() {
+        return valuesPageSize;
+    }
+
+    public void setValuesPageSize(int valuesPageSize) {
+        this.valuesPageSize = valuesPageSize;
+    }
+
+    public int getMaxValuesPageSize() {
+        return maxValuesPageSize;
+    }
+
+    public void setMaxValuesPageSize(int maxValuesPageSize) {
+        this.maxValuesPageSize = maxValuesPageSize;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.ldapwebtool.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration properties for per-operation timeouts.
+ *
+ * Searches and exports run under a deadline: the endpoint's timeout, or the one the request
+ * asks for with timeoutMillis. When it passes, or the HTTP client disconnects, the directory
+ * operation is abandoned and its connection returned to the pool.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ldap.timeouts")
+public class LdapTimeoutConfig {
+
+    /**
+     * Timeout in milliseconds for endpoints without one of their own. Zero means none beyond
+     * the pool's response timeout.
+     */
+    private long defaultMillis = 0;
+
+    /**
+     * Largest timeout in milliseconds a request may ask for. Zero means no limit.
+     */
+    private long maxMillis = 600000;
+
+    /**
+     * Timeouts in milliseconds by endpoint: search, search-ldif, export.
+     */
+    private Map<String, Long> endpoints = new HashMap<>();
+
+    /**
+     * Requests that may run off the servlet thread at once.
+     */
+    private int maxConcurrentRequests = 200;
+
+    /**
+     * Requests that may wait for one of those threads. Beyond that requests are answered
+     * with 503 and Retry-After.
+     */
+    private int maxQueuedRequests = 100;
+
+    // Getters and setters
+
+    public long getDefaultMillis() {
+        return defaultMillis;
+    }
+
+    public void setDefaultMillis(long defaultMillis) {
+        this.defaultMillis = defaultMillis;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public void setMaxMillis(long maxMillis) {
+        this.maxMillis = maxMillis;
+    }
+
+    public Map<String, Long> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(Map<String, Long> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    public int getMaxQueuedRequests() {
+        return maxQueuedRequests;
+    }
+
+    public void setMaxQueuedRequests(int maxQueuedRequests) {
+        this.maxQueuedRequests = maxQueuedRequests;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.ldapwebtool.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration properties for warming up LDAP connection pools at startup.
+ * Every configured backend (ldap.backends.*) is warmed, plus any URIs listed here.
+ * The application reports itself ready only once warm-up has finished.
+ *
+ * Example:
+ * ldap.warmup.uris[0]=ldaps://ldap1.example.com,ldap2.example.com:636
+ * ldap.warmup.synthetic-requests=500
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ldap.warmup")
+public class LdapWarmupConfig {
+
+    /**
+     * Whether pools are warmed up at startup.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Additional LDAP URIs to warm up besides the configured backends.
+     */
+    private List<String> uris = new ArrayList<>();
+
+    /**
+     * Number of synthetic searches run per URI to warm up the search and serialization code.
+     * Zero only opens connections.
+     */
+    private int syntheticRequests = 0;
+
+    /**
+     * Base DN of the synthetic search. The default reads the root DSE.
+     */
+    private String searchBase = "";
+
+    /**
+     * Filter of the synthetic search.
+     */
+    private String searchFilter = "(objectClass=*)";
+
+    /**
+     * Scope of the synthetic search.
+     */
+    private String searchScope = "base";
+
+    /**
+     * Bind DN for the synthetic search. Empty binds anonymously.
+     */
+    private String bindDn = "";
+
+    /**
+     * Password for the synthetic search bind DN.
+     */
+    private String bindPassword = "";
+
+    /**
+     * Maximum time in milliseconds to wait for warm-up before reporting ready anyway.
+     */
+    private long timeoutMillis = 60000;
+
+    // Getters and setters
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<String> getUris() {
+        return uris;
+    }
+
+    public void setUris(List<String> uris) {
+        this.uris = uris;
+    }
+
+    public int getSyntheticRequests() {
+        return syntheticRequests;
+    }
+
+    public void setSyntheticRequests(int syntheticRequests) {
+        this.syntheticRequests = syntheticRequests;
+    }
+
+    public String getSearchBase() {
+        return searchBase;
+    }
+
+    public void setSearchBase(String searchBase) {
+        this.searchBase = searchBase;
+    }
+
+    public String getSearchFilter() {
+        return searchFilter;
+    }
+
+    public void setSearchFilter(String searchFilter) {
+        this.searchFilter = searchFilter;
+    }
+
+    public String getSearchScope() {
+        return searchScope;
+    }
+
+    public void setSearchScope(String searchScope) {
+        this.searchScope = searchScope;
+    }
+
+    public String getBindDn() {
+        return bindDn;
+    }
+
+    public void setBindDn(String bindDn) {
+        this.bindDn = bindDn;
+    }
+
+    public String getBindPassword() {
+        return bindPassword;
+    }
+
+    public void setBindPassword(String bindPassword) {
+        this.bindPassword = bindPassword;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+}
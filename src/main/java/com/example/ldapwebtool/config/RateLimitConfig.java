@@ -0,0 +1,182 @@
+package com.example.ldapwebtool.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration properties for per-identity and per-client rate limiting.
+ *
+ * Every bind DN gets a request budget and an entry budget (entries returned by searches);
+ * every client IP gets a request budget. The first rule whose dn-pattern matches the
+ * caller's DN supplies the DN limits; callers that match no rule use the defaults.
+ *
+ * Example:
+ * ldap.rate-limit.enabled=true
+ * ldap.rate-limit.rules[0].dn-pattern=(?i)uid=batch-.*,ou=services,dc=example,dc=com
+ * ldap.rate-limit.rules[0].requests-per-second=5
+ * ldap.rate-limit.rules[0].entries-per-second=2000
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ldap.rate-limit")
+public class RateLimitConfig {
+
+    /**
+     * Whether rate limiting is enforced.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Limits applied to bind DNs that match no rule.
+     */
+    private Limits defaults = new Limits();
+
+    /**
+     * Per-DN-pattern limits, checked in order.
+     */
+    private List<Rule> rules = new ArrayList<>();
+
+    /**
+     * Requests per second allowed from one client IP. Zero disables the per-IP limit.
+     */
+    private double ipRequestsPerSecond = 200;
+
+    /**
+     * Number of requests a client IP may send in a burst.
+     */
+    private int ipRequestBurst = 400;
+
+    /**
+     * Time in milliseconds after which an unused bucket is dropped from the table.
+     */
+    private long idleEvictionMillis = 300000;
+
+    // Getters and setters
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Limits getDefaults() {
+        return defaults;
+    }
+
+    public void setDefaults(Limits defaults) {
+        this.defaults = defaults;
+    }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    public void setRules(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    public double getIpRequestsPerSecond() {
+        return ipRequestsPerSecond;
+    }
+
+    public void setIpRequestsPerSecond(double ipRequestsPerSecond) {
+        this.ipRequestsPerSecond = ipRequestsPerSecond;
+    }
+
+    public int getIpRequestBurst() {
+        return ipRequestBurst;
+    }
+
+    public void setIpRequestBurst(int ipRequestBurst) {
+        this.ipRequestBurst = ipRequestBurst;
+    }
+
+    public long getIdleEvictionMillis() {
+        return idleEvictionMillis;
+    }
+
+    public void setIdleEvictionMillis(long idleEvictionMillis) {
+        this.idleEvictionMillis = idleEvictionMillis;
+    }
+
+    /**
+     * Request and entry-volume limits for one identity. A rate of zero means unlimited.
+     */
+    public static class Limits {
+
+        /**
+         * Requests per second.
+         */
+        private double requestsPerSecond = 50;
+
+        /**
+         * Number of requests allowed in a burst.
+         */
+        private int requestBurst = 100;
+
+        /**
+         * Search result entries per second.
+         */
+        private double entriesPerSecond = 20000;
+
+        /**
+         * Number of entries allowed in a burst.
+         */
+        private int entryBurst = 100000;
+
+        public double getRequestsPerSecond() {
+            return requestsPerSecond;
+        }
+
+        public void setRequestsPerSecond(double requestsPerSecond) {
+            this.requestsPerSecond = requestsPerSecond;
+        }
+
+        public int getRequestBurst() {
+            return requestBurst;
+        }
+
+        public void setRequestBurst(int requestBurst) {
+            this.requestBurst = requestBurst;
+        }
+
+        public double getEntriesPerSecond() {
+            return entriesPerSecond;
+        }
+
+        public void setEntriesPerSecond(double entriesPerSecond) {
+            this.entriesPerSecond = entriesPerSecond;
+        }
+
+        public int getEntryBurst() {
+            return entryBurst;
+        }
+
+        public void setEntryBurst(int entryBurst) {
+            this.entryBurst = entryBurst;
+        }
+    }
+
+    /**
+     * Limits for bind DNs matching a regular expression.
+     */
+    public static class Rule extends Limits {
+
+        /**
+         * Regular expression matched against the whole bind DN as sent by the client.
+         */
+        private String dnPattern;
+
+        public String getDnPattern() {
+            return dnPattern;
+        }
+
+        public void setDnPattern(String dnPattern) {
+            this.dnPattern = dnPattern;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.ldapwebtool.config;
+
+import com.example.ldapwebtool.model.ErrorResponse;
+import com.example.ldapwebtool.service.RateLimiter;
+import com.example.ldapwebtool.util.CredentialExtractor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Servlet filter that applies {@link RateLimiter} to /api requests before they reach a controller.
+ *
+ * It runs after Basic authentication so the caller's bind DN is known. Rejected requests get
+ * 429 with a Retry-After header. Controllers report the number of entries a search returned
+ * through the {@link #ENTRY_COUNT_ATTRIBUTE} request attribute, recorded in {@link HandlerAttributes},
+ * which is charged to the caller once the request has completed.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    /**
+     * Request attribute holding the number of entries returned by a search, as a Number.
+     */
+    public static final String ENTRY_COUNT_ATTRIBUTE = RateLimitFilter.class.getName() + ".entryCount";
+
+    private final RateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+
+    public RateLimitFilter(RateLimiter rateLimiter, ObjectMapper objectMapper) {
+        this.rateLimiter = rateLimiter;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !rateLimiter.isEnabled() || !request.getRequestURI().startsWith(request.getContextPath() + "/api/");
+    }
+
+    /**
+     * Handlers that run off the servlet thread finish in an async dispatch, which is where
+     * their entries are charged.
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        CredentialExtractor.Credentials caller = resolveCaller(request);
+        if (isAsyncDispatch(request)) {
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                chargeEntries(request, caller);
+            }
+            return;
+        }
+
+        long retryAfterSeconds = caller != null
+            ? rateLimiter.tryAcquire(caller.getUsername(), caller.getPassword(), request.getRemoteAddr())
+            : rateLimiter.tryAcquire(null, null, request.getRemoteAddr());
+        if (retryAfterSeconds > 0) {
+            ErrorResponse error = new ErrorResponse(
+                "RATE_LIMITED",
+                "Rate limit exceeded, retry after " + retryAfterSeconds + " seconds",
+                HttpStatus.TOO_MANY_REQUESTS.value()
+            );
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(), error);
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (!request.isAsyncStarted()) {
+                chargeEntries(request, caller);
+            }
+        }
+    }
+
+    private void chargeEntries(HttpServletRequest request, CredentialExtractor.Credentials caller) {
+        HandlerAttributes.apply(request);
+        Object entryCount = request.getAttribute(ENTRY_COUNT_ATTRIBUTE);
+        if (caller != null && entryCount instanceof Number) {
+            rateLimiter.chargeEntries(caller.getUsername(), caller.getPassword(), ((Number) entryCount).longValue());
+        }
+    }
+
+    /**
+     * Returns the bind DN and password the request gives, which are not verified yet; the
+     * rate limiter keeps them apart per password.
+     */
+    private CredentialExtractor.Credentials resolveCaller(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken
+                || !authentication.isAuthenticated()) {
+            return null;
+        }
+
+        CredentialExtractor.ExtractionResult result = CredentialExtractor.extractCredentials(request, authentication);
+        if (result.isSuccess()) {
+            return result.getCredentials();
+        }
+        return new CredentialExtractor.Credentials(authentication.getName(), null);
+    }
+}
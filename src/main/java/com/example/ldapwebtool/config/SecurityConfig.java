@@ -1,5 +1,8 @@
 package com.example.ldapwebtool.config;
 
+import com.example.ldapwebtool.service.AccessLog;
+import com.example.ldapwebtool.service.RateLimiter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -7,6 +10,7 @@ import org.springframework.security.config.annotation.authentication.builders.Au
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 @Configuration
 @EnableWebSecurity
@@ -15,6 +19,15 @@ public class SecurityConfig {
     @Autowired
     private LdapAuthenticationProvider ldapAuthenticationProvider;
     
+    @Autowired
+    private RateLimiter rateLimiter;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private AccessLog accessLog;
+    
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
@@ -24,7 +37,9 @@ public class SecurityConfig {
                 .requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/swagger-ui.html").permitAll()
                 .anyRequest().permitAll()
             )
-            .httpBasic(httpBasic -> {});
+            .httpBasic(httpBasic -> {})
+            .addFilterAfter(new AccessLogFilter(accessLog), BasicAuthenticationFilter.class)
+            .addFilterAfter(new RateLimitFilter(rateLimiter, objectMapper), AccessLogFilter.class);
         
         return http.build();
     }
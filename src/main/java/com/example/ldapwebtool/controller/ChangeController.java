@@ -0,0 +1,145 @@
+package com.example.ldapwebtool.controller;
+
+import com.example.ldapwebtool.config.LdapChangeStreamConfig;
+import com.example.ldapwebtool.model.ChangeStreamEvent;
+import com.example.ldapwebtool.model.ErrorResponse;
+import com.example.ldapwebtool.service.ChangeStreamService;
+import com.example.ldapwebtool.util.CredentialExtractor;
+import com.example.ldapwebtool.util.ErrorResponses;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api")
+@Tag(name = "LDAP Changes", description = "REST API for streaming directory changes")
+@SecurityRequirement(name = "basicAuth")
+public class ChangeController {
+
+    @Autowired
+    private ChangeStreamService changeStreamService;
+
+    @Autowired
+    private LdapChangeStreamConfig streamConfig;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Operation(
+        summary = "Stream directory changes",
+        description = "Streams changes below the base DN as server-sent events, read with a persistent search or " +
+                      "content synchronization (RFC 4533). Clients subscribing with the same parameters and bind DN " +
+                      "share one upstream search. Each change is a \"change\" event; a \"resync\" event means changes " +
+                      "may have been missed (the client fell behind, or the upstream search ended) and the client " +
+                      "should re-read what it tracks.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Event stream",
+                content = @Content(mediaType = "text/event-stream", schema = @Schema(implementation = ChangeStreamEvent.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid base DN, filter or change type, or the server " +
+                                                             "supports no change search",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "401", description = "Authentication failed",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Backend unavailable, or too many streams; see Retry-After",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+        }
+    )
+    @GetMapping(value = "/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(
+            @Parameter(description = "Base DN of the watched subtree", required = true, example = "ou=users,dc=example,dc=com")
+            @RequestParam("base") String base,
+            @Parameter(description = "Search scope (base, one, sub)", example = "sub")
+            @RequestParam(value = "scope", defaultValue = "sub") String scope,
+            @Parameter(description = "Filter selecting the watched entries", example = "(objectClass=person)")
+            @RequestParam(value = "filter", defaultValue = "(objectClass=*)") String filter,
+            @Parameter(description = "Attributes returned with each change; all user attributes if omitted", example = "cn,mail")
+            @RequestParam(value = "attributes", required = false) List<String> attributes,
+            @Parameter(description = "Change types to stream (add, delete, modify, moddn); all if omitted", example = "add,delete")
+            @RequestParam(value = "changeTypes", required = false) List<String> changeTypes,
+            @Parameter(description = "LDAP URI (required unless backend is given)", example = "ldap://localhost:389")
+            @RequestParam(value = "uri", required = false) String uri,
+            @Parameter(description = "Name of a configured backend; changes are read from its primary", example = "corp")
+            @RequestParam(value = "backend", required = false) String backend,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse,
+            Authentication authentication) throws IOException {
+        CredentialExtractor.ExtractionResult credentials = CredentialExtractor.extractCredentials(httpRequest, authentication);
+        if (!credentials.isSuccess()) {
+            writeError(credentials.getErrorResponse(), httpResponse);
+            return null;
+        }
+
+        long timeout = streamConfig.getMaxStreamMillis() > 0 ? streamConfig.getMaxStreamMillis() : 0;
+        SseEmitter emitter = new SseEmitter(timeout);
+        ChangeStreamService.Subscription subscription;
+        try {
+            subscription = changeStreamService.subscribe(uri, backend, base, scope, filter, attributes, changeTypes,
+                credentials.getCredentials().getUsername(), credentials.getCredentials().getPassword(),
+                new EmitterSink(emitter));
+        } catch (Exception e) {
+            writeError(ErrorResponses.fromException("CHANGE_STREAM_ERROR", "Failed to subscribe to changes: ", e), httpResponse);
+            return null;
+        }
+
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(e -> subscription.close());
+        emitter.send(SseEmitter.event().reconnectTime(streamConfig.getRetryMillis()).comment(subscription.getMechanism()));
+        return emitter;
+    }
+
+    /**
+     * Errors are written directly, as the handler's return type only allows an event stream.
+     */
+    private void writeError(ResponseEntity<?> error, HttpServletResponse httpResponse) throws IOException {
+        httpResponse.setStatus(error.getStatusCode().value());
+        error.getHeaders().forEach((name, values) -> values.forEach(value -> httpResponse.addHeader(name, value)));
+        httpResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(httpResponse.getOutputStream(), error.getBody());
+    }
+
+    private static final class EmitterSink implements ChangeStreamService.ChangeSink {
+
+        private final SseEmitter emitter;
+
+        private EmitterSink(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void send(String event, long id, String data) throws IOException {
+            emitter.send(SseEmitter.event().name(event).id(Long.toString(id)).data(data, MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        public void heartbeat() throws IOException {
+            emitter.send(SseEmitter.event().comment("keep-alive"));
+        }
+
+        @Override
+        public void close() {
+            emitter.complete();
+        }
+    }
+}
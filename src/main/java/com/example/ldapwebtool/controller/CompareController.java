@@ -0,0 +1,77 @@
+package com.example.ldapwebtool.controller;
+
+import com.example.ldapwebtool.model.CompareBatchRequest;
+import com.example.ldapwebtool.model.CompareBatchResponse;
+import com.example.ldapwebtool.model.ErrorResponse;
+import com.example.ldapwebtool.service.CompareService;
+import com.example.ldapwebtool.util.CredentialExtractor;
+import com.example.ldapwebtool.util.ErrorResponses;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api")
+@Tag(name = "LDAP Compare", description = "REST API for checking attribute values with LDAP compare operations")
+@SecurityRequirement(name = "basicAuth")
+public class CompareController {
+
+    @Autowired
+    private CompareService compareService;
+
+    @Operation(
+        summary = "Compare a batch of attribute values",
+        description = "Checks each assertion with an LDAP compare and answers true or false in request order. The " +
+                      "compares are pipelined over a few pooled connections. Assertions whose compare fails (e.g. no " +
+                      "such entry) are answered with null and listed in errors.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Assertions answered",
+                content = @Content(schema = @Schema(implementation = CompareBatchResponse.class),
+                          examples = @ExampleObject(value = "{\"results\":[true,false,null],\"errors\":[{\"index\":2,\"resultCode\":\"no such object\",\"message\":\"Entry does not exist\"}]}"))),
+            @ApiResponse(responseCode = "400", description = "Invalid request or too many assertions",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "401", description = "Authentication failed",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Backend overloaded or unavailable; see Retry-After",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+        }
+    )
+    @PostMapping(value = "/compare/batch",
+                 consumes = MediaType.APPLICATION_JSON_VALUE,
+                 produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> compareBatch(
+            @Parameter(description = "JSON batch of assertions", required = true,
+                      examples = @ExampleObject(value = "{\"uri\":\"ldap://localhost:389\",\"assertions\":[{\"dn\":\"cn=admins,ou=groups,dc=example,dc=com\",\"attribute\":\"member\",\"value\":\"uid=jdoe,ou=users,dc=example,dc=com\"}]}"))
+            @Valid @RequestBody CompareBatchRequest request,
+            HttpServletRequest httpRequest,
+            Authentication authentication) {
+        CredentialExtractor.ExtractionResult credentials = CredentialExtractor.extractCredentials(httpRequest, authentication);
+        if (!credentials.isSuccess()) {
+            return credentials.getErrorResponse();
+        }
+
+        try {
+            return ResponseEntity.ok(compareService.compare(request,
+                credentials.getCredentials().getUsername(), credentials.getCredentials().getPassword()));
+        } catch (Exception e) {
+            return ErrorResponses.fromException("COMPARE_ERROR", "Failed to compare: ", e);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.ldapwebtool.controller;
+
+import com.example.ldapwebtool.model.DiffResult;
+import com.example.ldapwebtool.model.ErrorResponse;
+import com.example.ldapwebtool.model.SearchRequest;
+import com.example.ldapwebtool.service.DirectoryDiffService;
+import com.example.ldapwebtool.service.OperationTimeouts;
+import com.example.ldapwebtool.util.CredentialExtractor;
+import com.example.ldapwebtool.util.ErrorResponses;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.parameters.RequestBody;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api")
+@Tag(name = "LDAP Diff", description = "REST API for comparing a desired state with the directory")
+@SecurityRequirement(name = "basicAuth")
+public class DiffController {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiffController.class);
+
+    @Autowired
+    private DirectoryDiffService directoryDiffService;
+
+    @Autowired
+    private OperationTimeouts operationTimeouts;
+
+    @Operation(
+        summary = "Diff a desired-state LDIF against the directory",
+        description = "Compares the uploaded entries with the live entries under the base DN that match the scope and " +
+                      "filter, and returns the add, modify and delete change records that would make the directory " +
+                      "match. Adds are written parent first and deletes child first. With apply=true the change " +
+                      "records are submitted as a background import job instead.",
+        requestBody = @RequestBody(description = "Desired entries as LDIF content records", required = true,
+            content = @Content(mediaType = "application/ldif")),
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Change records streaming",
+                content = @Content(mediaType = "application/ldif")),
+            @ApiResponse(responseCode = "202", description = "Change records submitted as an import job",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = DiffResult.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid request or LDIF",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "401", description = "Authentication failed",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Backend unavailable or too many import jobs running; see Retry-After",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+        }
+    )
+    @PostMapping(value = "/diff",
+                 consumes = "application/ldif",
+                 produces = {"application/ldif", MediaType.APPLICATION_JSON_VALUE})
+    public WebAsyncTask<ResponseEntity<?>> diff(
+            @Parameter(description = "LDAP URI (required unless backend is given)", example = "ldap://localhost:389")
+            @RequestParam(value = "uri", required = false) String uri,
+            @Parameter(description = "Name of a configured backend; entries are read from its primary", example = "corp")
+            @RequestParam(value = "backend", required = false) String backend,
+            @Parameter(description = "Base DN of the compared subtree", required = true, example = "ou=people,dc=example,dc=com")
+            @RequestParam("base") String base,
+            @Parameter(description = "Filter selecting the compared entries", example = "(objectClass=person)")
+            @RequestParam(value = "filter", defaultValue = "(objectClass=*)") String filter,
+            @Parameter(description = "Search scope (base, one, sub)", example = "sub")
+            @RequestParam(value = "scope", defaultValue = "sub") String scope,
+            @Parameter(description = "Attributes to compare; all user attributes if omitted", example = "cn,mail")
+            @RequestParam(value = "attributes", required = false) List<String> attributes,
+            @Parameter(description = "Whether to delete live entries missing from the desired state")
+            @RequestParam(value = "deletes", defaultValue = "true") boolean deletes,
+            @Parameter(description = "Whether to apply the change records as an import job instead of returning them")
+            @RequestParam(value = "apply", defaultValue = "false") boolean apply,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse,
+            Authentication authentication) {
+        CredentialExtractor.ExtractionResult credentials = CredentialExtractor.extractCredentials(httpRequest, authentication);
+        if (!credentials.isSuccess()) {
+            return completed(credentials.getErrorResponse());
+        }
+
+        SearchRequest target = new SearchRequest(uri, base, filter, scope);
+        target.setBackend(backend);
+        String username = credentials.getCredentials().getUsername();
+        String password = credentials.getCredentials().getPassword();
+
+        DirectoryDiffService.Diff diff;
+        try {
+            // Both sides are sorted to disk before anything is returned, so errors still get a status code
+            diff = directoryDiffService.prepare(httpRequest.getInputStream(), target, attributes, deletes, username, password);
+        } catch (Exception e) {
+            return completed(ErrorResponses.fromException("DIFF_ERROR", "Failed to diff: ", e));
+        }
+
+        if (apply) {
+            try {
+                return completed(ResponseEntity.accepted().body(directoryDiffService.apply(diff, username, password)));
+            } catch (Exception e) {
+                return completed(ErrorResponses.fromException("DIFF_ERROR", "Failed to apply diff: ", e));
+            } finally {
+                closeQuietly(diff);
+            }
+        }
+
+        StreamingResponseBody body = out -> {
+            try {
+                diff.writeTo(out);
+            } catch (IOException e) {
+                logger.warn("Diff of {} ended after {} change records: {}", base,
+                    diff.getAdds() + diff.getModifies() + diff.getDeletes(), e.getMessage());
+                throw e;
+            } finally {
+                closeQuietly(diff);
+            }
+        };
+        // Written from the sorted files on disk, which the body closes; nothing to abandon
+        return StreamingTasks.stream(operationTimeouts.getExecutor(), 0, httpResponse, "application/ldif", body, () -> { });
+    }
+
+    private static WebAsyncTask<ResponseEntity<?>> completed(ResponseEntity<?> response) {
+        return new WebAsyncTask<>(() -> response);
+    }
+
+    private static void closeQuietly(DirectoryDiffService.Diff diff) {
+        try {
+            diff.close();
+        } catch (IOException e) {
+            logger.debug("Unable to remove diff sort files: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.ldapwebtool.controller;
+
+import com.example.ldapwebtool.model.DigestResponse;
+import com.example.ldapwebtool.model.ErrorResponse;
+import com.example.ldapwebtool.service.DigestService;
+import com.example.ldapwebtool.util.CredentialExtractor;
+import com.example.ldapwebtool.util.ErrorResponses;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api")
+@Tag(name = "LDAP Digest", description = "REST API for hash trees used to reconcile mirrored subtrees")
+@SecurityRequirement(name = "basicAuth")
+public class DigestController {
+
+    @Autowired
+    private DigestService digestService;
+
+    @Operation(
+        summary = "Get the hash tree of a subtree",
+        description = "Hashes every entry under the base DN that matches the filter and returns the hash of the whole " +
+                      "subtree, broken down into child subtrees down to the requested depth. A mirror compares the " +
+                      "hashes with its own copy and repeats the request with a mismatched child as base to narrow " +
+                      "down the differences.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Hash tree",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = DigestResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid request, or too many subtrees for the depth",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "401", description = "Authentication failed",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Backend overloaded or unavailable; see Retry-After",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+        }
+    )
+    @GetMapping(value = "/digest", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> digest(
+            @Parameter(description = "LDAP URI (required unless backend is given)", example = "ldap://localhost:389")
+            @RequestParam(value = "uri", required = false) String uri,
+            @Parameter(description = "Name of a configured backend", example = "corp")
+            @RequestParam(value = "backend", required = false) String backend,
+            @Parameter(description = "Base DN of the subtree", required = true, example = "ou=people,dc=example,dc=com")
+            @RequestParam("base") String base,
+            @Parameter(description = "Filter selecting the hashed entries", example = "(objectClass=person)")
+            @RequestParam(value = "filter", defaultValue = "(objectClass=*)") String filter,
+            @Parameter(description = "Attributes to hash; all user attributes if omitted", example = "cn,mail")
+            @RequestParam(value = "attributes", required = false) List<String> attributes,
+            @Parameter(description = "Levels below the base to break down into child subtrees", example = "1")
+            @RequestParam(value = "depth", defaultValue = "1") int depth,
+            HttpServletRequest httpRequest,
+            Authentication authentication) {
+        CredentialExtractor.ExtractionResult credentials = CredentialExtractor.extractCredentials(httpRequest, authentication);
+        if (!credentials.isSuccess()) {
+            return credentials.getErrorResponse();
+        }
+
+        try {
+            DigestResponse response = digestService.digest(uri, backend, base, filter, attributes, depth,
+                credentials.getCredentials().getUsername(), credentials.getCredentials().getPassword());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ErrorResponses.fromException("DIGEST_ERROR", "Failed to compute digest: ", e);
+        }
+    }
+}
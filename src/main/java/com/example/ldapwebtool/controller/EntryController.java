@@ -0,0 +1,146 @@
+package com.example.ldapwebtool.controller;
+
+import com.example.ldapwebtool.model.AttributeValuesResponse;
+import com.example.ldapwebtool.model.ErrorResponse;
+import com.example.ldapwebtool.model.SearchResponse;
+import com.example.ldapwebtool.service.EntryService;
+import com.example.ldapwebtool.util.CredentialExtractor;
+import com.example.ldapwebtool.util.ErrorResponses;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api")
+@Tag(name = "LDAP Entries", description = "REST API for reading single entries by DN")
+@SecurityRequirement(name = "basicAuth")
+public class EntryController {
+
+    @Autowired
+    private EntryService entryService;
+
+    @Operation(
+        summary = "Get an entry by DN",
+        description = "Returns the entry with the given DN and all its user attributes. Entries are cached and " +
+                      "revalidated against the directory with a compare on their change stamp.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Entry found",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = SearchResponse.LdapEntry.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid DN",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "401", description = "Authentication failed",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "404", description = "No such entry",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Backend overloaded or unavailable; see Retry-After",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+        }
+    )
+    @GetMapping(value = "/entry/{dn}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getEntry(
+            @Parameter(description = "DN of the entry", required = true, example = "uid=jdoe,ou=users,dc=example,dc=com")
+            @PathVariable String dn,
+            @Parameter(description = "LDAP URI (required unless backend is given)", example = "ldap://localhost:389")
+            @RequestParam(value = "uri", required = false) String uri,
+            @Parameter(description = "Name of a configured backend; reads go to its replicas", example = "corp")
+            @RequestParam(value = "backend", required = false) String backend,
+            HttpServletRequest httpRequest,
+            Authentication authentication) {
+        CredentialExtractor.ExtractionResult credentials = CredentialExtractor.extractCredentials(httpRequest, authentication);
+        if (!credentials.isSuccess()) {
+            return credentials.getErrorResponse();
+        }
+
+        try {
+            SearchResponse.LdapEntry entry = entryService.getEntry(uri, backend, dn,
+                credentials.getCredentials().getUsername(), credentials.getCredentials().getPassword());
+            if (entry == null) {
+                ErrorResponse error = new ErrorResponse(
+                    "ENTRY_NOT_FOUND",
+                    "No entry " + dn,
+                    HttpStatus.NOT_FOUND.value()
+                );
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.APPLICATION_JSON).body(error);
+            }
+            return ResponseEntity.ok(entry);
+        } catch (Exception e) {
+            return ErrorResponses.fromException("ENTRY_ERROR", "Failed to read entry: ", e);
+        }
+    }
+
+    @Operation(
+        summary = "Page through the values of one attribute",
+        description = "Returns up to limit values of the attribute, starting at offset, with the offset of the next " +
+                      "page. Meant for attributes too large to return whole, such as the member attribute of huge " +
+                      "groups. On servers that return values in ranges (Active Directory) only the page is read, and " +
+                      "a page may hold fewer values than asked for; keep following next until it is absent.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Page of values",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = AttributeValuesResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid DN, attribute, offset or limit",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "401", description = "Authentication failed",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "404", description = "No such entry",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Backend overloaded or unavailable; see Retry-After",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+        }
+    )
+    @GetMapping(value = "/entry/{dn}/values/{attribute}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getValues(
+            @Parameter(description = "DN of the entry", required = true, example = "cn=all-staff,ou=groups,dc=example,dc=com")
+            @PathVariable String dn,
+            @Parameter(description = "Attribute name, without options", required = true, example = "member")
+            @PathVariable String attribute,
+            @Parameter(description = "Position of the first value to return", example = "0")
+            @RequestParam(value = "offset", defaultValue = "0") long offset,
+            @Parameter(description = "Maximum number of values to return; the configured default if omitted", example = "1000")
+            @RequestParam(value = "limit", defaultValue = "0") int limit,
+            @Parameter(description = "LDAP URI (required unless backend is given)", example = "ldap://localhost:389")
+            @RequestParam(value = "uri", required = false) String uri,
+            @Parameter(description = "Name of a configured backend; reads go to its replicas", example = "corp")
+            @RequestParam(value = "backend", required = false) String backend,
+            HttpServletRequest httpRequest,
+            Authentication authentication) {
+        CredentialExtractor.ExtractionResult credentials = CredentialExtractor.extractCredentials(httpRequest, authentication);
+        if (!credentials.isSuccess()) {
+            return credentials.getErrorResponse();
+        }
+
+        try {
+            AttributeValuesResponse values = entryService.getValues(uri, backend, dn, attribute, offset, limit,
+                credentials.getCredentials().getUsername(), credentials.getCredentials().getPassword());
+            if (values == null) {
+                ErrorResponse error = new ErrorResponse(
+                    "ENTRY_NOT_FOUND",
+                    "No entry " + dn,
+                    HttpStatus.NOT_FOUND.value()
+                );
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.APPLICATION_JSON).body(error);
+            }
+            return ResponseEntity.ok(values);
+        } catch (Exception e) {
+            return ErrorResponses.fromException("ENTRY_ERROR", "Failed to read values: ", e);
+        }
+    }
+}
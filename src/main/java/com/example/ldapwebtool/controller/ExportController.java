@@ -0,0 +1,328 @@
+package com.example.ldapwebtool.controller;
+
+import com.example.ldapwebtool.model.ErrorResponse;
+import com.example.ldapwebtool.model.ExportJobStatus;
+import com.example.ldapwebtool.model.ExportRequest;
+import com.example.ldapwebtool.service.ExportJobService;
+import com.example.ldapwebtool.service.OperationHandle;
+import com.example.ldapwebtool.service.OperationTimeouts;
+import com.example.ldapwebtool.service.PartitionedExporter;
+import com.example.ldapwebtool.util.ByteRange;
+import com.example.ldapwebtool.util.CredentialExtractor;
+import com.example.ldapwebtool.util.ErrorResponses;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+@RestController
+@RequestMapping("/api")
+@Tag(name = "LDAP Export", description = "REST API for exporting large subtrees")
+@SecurityRequirement(name = "basicAuth")
+public class ExportController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportController.class);
+
+    // Tomcat serves a file named in these request attributes with sendfile once the handler returns
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private PartitionedExporter partitionedExporter;
+
+    @Autowired
+    private ExportJobService exportJobService;
+
+    @Autowired
+    private OperationTimeouts operationTimeouts;
+
+    @Operation(
+        summary = "Export a subtree (streamed LDIF or NDJSON)",
+        description = "Streams every entry matching the filter under the base DN. Subtree exports are split into " +
+                      "partitions that are searched in parallel. With ordered=true (the default) each entry is " +
+                      "written after its parent; with ordered=false entries are written as they arrive.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Export streaming",
+                content = {@Content(mediaType = "application/ldif"), @Content(mediaType = "application/x-ndjson")}),
+            @ApiResponse(responseCode = "400", description = "Invalid request",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "401", description = "Authentication failed",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Backend overloaded or unavailable; see Retry-After",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+        }
+    )
+    @PostMapping(value = "/export",
+                 consumes = MediaType.APPLICATION_JSON_VALUE,
+                 produces = {"application/ldif", "application/x-ndjson", MediaType.APPLICATION_JSON_VALUE})
+    public WebAsyncTask<ResponseEntity<?>> export(
+            @Parameter(description = "Export request parameters", required = true)
+            @Valid @RequestBody ExportRequest request,
+            @Parameter(description = "Milliseconds the export may run; once passed the stream is cut off")
+            @RequestParam(value = "timeoutMillis", required = false) Long timeoutMillis,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse,
+            Authentication authentication) {
+        CredentialExtractor.ExtractionResult credentials = CredentialExtractor.extractCredentials(httpRequest, authentication);
+        if (!credentials.isSuccess()) {
+            ResponseEntity<?> error = credentials.getErrorResponse();
+            return new WebAsyncTask<>(() -> error);
+        }
+
+        PartitionedExporter.Export export;
+        OperationHandle handle;
+        try {
+            handle = operationTimeouts.open(OperationTimeouts.EXPORT, timeoutMillis);
+            export = partitionedExporter.prepare(request,
+                credentials.getCredentials().getUsername(), credentials.getCredentials().getPassword());
+        } catch (Exception e) {
+            ResponseEntity<?> error = ErrorResponses.fromException("EXPORT_ERROR", "Failed to export: ", e);
+            return new WebAsyncTask<>(() -> error);
+        }
+
+        StreamingResponseBody body = out -> {
+            try {
+                export.writeTo(out, handle);
+            } catch (IOException e) {
+                // The status line has been sent; a truncated body is all the client can be told
+                logger.warn("Export of {} ended after {} entries: {}", request.getBase(), export.getEntryCount(), e.getMessage());
+                throw e;
+            }
+        };
+        // The export enforces its own timeout; the container's is only a backstop
+        long asyncTimeout = handle.getTimeoutMillis() > 0 ? handle.getTimeoutMillis() + OperationTimeouts.ASYNC_GRACE_MILLIS : 0;
+        return StreamingTasks.stream(operationTimeouts.getExecutor(), asyncTimeout, httpResponse, export.getContentType(), body,
+            () -> {
+                handle.cancel("client disconnected");
+                export.cancel();
+            });
+    }
+
+    @Operation(
+        summary = "Start a background export job",
+        description = "Validates the export request and runs it in the background into a gzip compressed spool file. " +
+                      "Poll the returned status until the job has completed, then download the file.",
+        responses = {
+            @ApiResponse(responseCode = "202", description = "Job started",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = ExportJobStatus.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid request",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "401", description = "Authentication failed",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Backend unavailable or too many jobs running; see Retry-After",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+        }
+    )
+    @PostMapping(value = "/exports",
+                 consumes = MediaType.APPLICATION_JSON_VALUE,
+                 produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> createJob(
+            @Parameter(description = "Export request parameters", required = true)
+            @Valid @RequestBody ExportRequest request,
+            HttpServletRequest httpRequest,
+            Authentication authentication) {
+        CredentialExtractor.ExtractionResult credentials = CredentialExtractor.extractCredentials(httpRequest, authentication);
+        if (!credentials.isSuccess()) {
+            return credentials.getErrorResponse();
+        }
+
+        try {
+            ExportJobStatus status = exportJobService.create(request,
+                credentials.getCredentials().getUsername(), credentials.getCredentials().getPassword());
+            return ResponseEntity.accepted()
+                .location(URI.create("/api/exports/" + status.getId()))
+                .body(status);
+        } catch (Exception e) {
+            return ErrorResponses.fromException("EXPORT_ERROR", "Failed to start export: ", e);
+        }
+    }
+
+    @Operation(
+        summary = "Get the status of an export job",
+        description = "Returns the state and progress of a job: entries and bytes exported, spool file size and rate.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Job status",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = ExportJobStatus.class))),
+            @ApiResponse(responseCode = "404", description = "No such job",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+        }
+    )
+    @GetMapping(value = "/exports/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getJob(
+            @Parameter(description = "Job identifier", required = true) @PathVariable String id,
+            HttpServletRequest httpRequest,
+            Authentication authentication) {
+        CredentialExtractor.ExtractionResult credentials = CredentialExtractor.extractCredentials(httpRequest, authentication);
+        if (!credentials.isSuccess()) {
+            return credentials.getErrorResponse();
+        }
+
+        ExportJobStatus status = exportJobService.getStatus(id, credentials.getCredentials().getUsername());
+        return status != null ? ResponseEntity.ok(status) : jobNotFound(id);
+    }
+
+    @Operation(
+        summary = "Download the spool file of a completed export job",
+        description = "Serves the gzip compressed export. Supports single byte ranges (Range, If-Range) " +
+                      "so that interrupted downloads can be resumed.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Whole file", content = @Content(mediaType = "application/gzip")),
+            @ApiResponse(responseCode = "206", description = "Requested range", content = @Content(mediaType = "application/gzip")),
+            @ApiResponse(responseCode = "404", description = "No such job",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "409", description = "Job has not completed",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "416", description = "Range not satisfiable")
+        }
+    )
+    @GetMapping(value = "/exports/{id}/download")
+    public ResponseEntity<?> downloadJob(
+            @Parameter(description = "Job identifier", required = true) @PathVariable String id,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse,
+            Authentication authentication) throws IOException {
+        CredentialExtractor.ExtractionResult credentials = CredentialExtractor.extractCredentials(httpRequest, authentication);
+        if (!credentials.isSuccess()) {
+            return credentials.getErrorResponse();
+        }
+
+        String username = credentials.getCredentials().getUsername();
+        ExportJobStatus status = exportJobService.getStatus(id, username);
+        Path file = exportJobService.getSpoolFile(id, username);
+        if (status == null) {
+            return jobNotFound(id);
+        }
+        if (file == null || !Files.exists(file)) {
+            ErrorResponse error = new ErrorResponse(
+                "JOB_NOT_COMPLETE",
+                "Export job " + id + " is " + status.getState(),
+                HttpStatus.CONFLICT.value()
+            );
+            return ResponseEntity.status(HttpStatus.CONFLICT).contentType(MediaType.APPLICATION_JSON).body(error);
+        }
+
+        // The spool file never changes once complete, so the job id is a strong validator
+        long length = Files.size(file);
+        String etag = "\"" + id + "\"";
+        String ifRange = httpRequest.getHeader(HttpHeaders.IF_RANGE);
+        ByteRange range = ifRange == null || ifRange.equals(etag)
+            ? ByteRange.parse(httpRequest.getHeader(HttpHeaders.RANGE), length)
+            : null;
+
+        httpResponse.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        httpResponse.setHeader(HttpHeaders.ETAG, etag);
+        if (range != null && !range.isSatisfiable()) {
+            httpResponse.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            httpResponse.setHeader(HttpHeaders.CONTENT_RANGE, range.toContentRange(length));
+            return null;
+        }
+
+        long start = 0;
+        long count = length;
+        if (range != null) {
+            start = range.getStart();
+            count = range.getLength();
+            httpResponse.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            httpResponse.setHeader(HttpHeaders.CONTENT_RANGE, range.toContentRange(length));
+        }
+        httpResponse.setContentType("application/gzip");
+        httpResponse.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            "attachment; filename=\"" + ExportJobService.downloadFileName(file) + "\"");
+        httpResponse.setContentLengthLong(count);
+
+        if (Boolean.TRUE.equals(httpRequest.getAttribute(SENDFILE_SUPPORT))) {
+            // Zero-copy: the container hands the file region to the kernel
+            httpRequest.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            httpRequest.setAttribute(SENDFILE_START, start);
+            httpRequest.setAttribute(SENDFILE_END, start + count);
+        } else {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(httpResponse.getOutputStream());
+                long position = start;
+                long remaining = count;
+                while (remaining > 0) {
+                    long transferred = channel.transferTo(position, remaining, target);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    position += transferred;
+                    remaining -= transferred;
+                }
+            }
+        }
+        // The response has been written directly; a null entity tells Spring MVC it is handled
+        return null;
+    }
+
+    @Operation(
+        summary = "Cancel and delete an export job",
+        description = "Stops the job if it is running and removes its spool file.",
+        responses = {
+            @ApiResponse(responseCode = "204", description = "Job deleted"),
+            @ApiResponse(responseCode = "404", description = "No such job",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+        }
+    )
+    @DeleteMapping(value = "/exports/{id}")
+    public ResponseEntity<?> deleteJob(
+            @Parameter(description = "Job identifier", required = true) @PathVariable String id,
+            HttpServletRequest httpRequest,
+            Authentication authentication) {
+        CredentialExtractor.ExtractionResult credentials = CredentialExtractor.extractCredentials(httpRequest, authentication);
+        if (!credentials.isSuccess()) {
+            return credentials.getErrorResponse();
+        }
+
+        return exportJobService.delete(id, credentials.getCredentials().getUsername())
+            ? ResponseEntity.noContent().build()
+            : jobNotFound(id);
+    }
+
+    private static ResponseEntity<ErrorResponse> jobNotFound(String id) {
+        ErrorResponse error = new ErrorResponse(
+            "JOB_NOT_FOUND",
+            "No export job " + id,
+            HttpStatus.NOT_FOUND.value()
+        );
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.APPLICATION_JSON).body(error);
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.ldapwebtool.controller;
+
+import com.example.ldapwebtool.model.ErrorResponse;
+import com.example.ldapwebtool.model.GroupExpansionResponse;
+import com.example.ldapwebtool.service.GroupService;
+import com.example.ldapwebtool.util.CredentialExtractor;
+import com.example.ldapwebtool.util.ErrorResponses;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api")
+@Tag(name = "LDAP Groups", description = "REST API for expanding nested group membership")
+@SecurityRequirement(name = "basicAuth")
+public class GroupController {
+
+    @Autowired
+    private GroupService groupService;
+
+    @Operation(
+        summary = "Get a member's effective groups",
+        description = "Returns every group under the base DN that the member belongs to, directly or through " +
+                      "nested groups. Uses the matching-rule-in-chain filter on Active Directory, memberOf where the " +
+                      "schema defines it, and otherwise searches level by level.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Groups found",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = GroupExpansionResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid DN, or nesting beyond the configured limits",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "401", description = "Authentication failed",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Backend overloaded or unavailable; see Retry-After",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+        }
+    )
+    @GetMapping(value = "/groups/effective", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> effectiveGroups(
+            @Parameter(description = "DN of the member", required = true, example = "uid=jdoe,ou=users,dc=example,dc=com")
+            @RequestParam("member") String member,
+            @Parameter(description = "Base DN under which groups are looked for", required = true, example = "ou=groups,dc=example,dc=com")
+            @RequestParam("base") String base,
+            @Parameter(description = "LDAP URI (required unless backend is given)", example = "ldap://localhost:389")
+            @RequestParam(value = "uri", required = false) String uri,
+            @Parameter(description = "Name of a configured backend; lookups go to its replicas", example = "corp")
+            @RequestParam(value = "backend", required = false) String backend,
+            HttpServletRequest httpRequest,
+            Authentication authentication) {
+        CredentialExtractor.ExtractionResult credentials = CredentialExtractor.extractCredentials(httpRequest, authentication);
+        if (!credentials.isSuccess()) {
+            return credentials.getErrorResponse();
+        }
+
+        try {
+            return ResponseEntity.ok(groupService.effectiveGroups(uri, backend, member, base,
+                credentials.getCredentials().getUsername(), credentials.getCredentials().getPassword()));
+        } catch (Exception e) {
+            return ErrorResponses.fromException("GROUP_ERROR", "Failed to expand groups: ", e);
+        }
+    }
+
+    @Operation(
+        summary = "Get a group's members",
+        description = "Returns the group's direct members, or with transitive=true the members of all nested groups " +
+                      "as well, split into nested groups and other members.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Members found",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = GroupExpansionResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid DN, missing base, or expansion beyond the configured limits",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "401", description = "Authentication failed",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Backend overloaded or unavailable; see Retry-After",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+        }
+    )
+    @GetMapping(value = "/groups/{dn}/members", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> members(
+            @Parameter(description = "DN of the group", required = true, example = "cn=admins,ou=groups,dc=example,dc=com")
+            @PathVariable String dn,
+            @Parameter(description = "Whether to include the members of nested groups")
+            @RequestParam(value = "transitive", defaultValue = "false") boolean transitive,
+            @Parameter(description = "Base DN under which nested groups are recognized; required with transitive=true",
+                      example = "ou=groups,dc=example,dc=com")
+            @RequestParam(value = "base", required = false) String base,
+            @Parameter(description = "LDAP URI (required unless backend is given)", example = "ldap://localhost:389")
+            @RequestParam(value = "uri", required = false) String uri,
+            @Parameter(description = "Name of a configured backend; lookups go to its replicas", example = "corp")
+            @RequestParam(value = "backend", required = false) String backend,
+            HttpServletRequest httpRequest,
+            Authentication authentication) {
+        CredentialExtractor.ExtractionResult credentials = CredentialExtractor.extractCredentials(httpRequest, authentication);
+        if (!credentials.isSuccess()) {
+            return credentials.getErrorResponse();
+        }
+
+        try {
+            return ResponseEntity.ok(groupService.members(uri, backend, dn, base, transitive,
+                credentials.getCredentials().getUsername(), credentials.getCredentials().getPassword()));
+        } catch (Exception e) {
+            return ErrorResponses.fromException("GROUP_ERROR", "Failed to expand group: ", e);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.ldapwebtool.controller;
+
+import com.example.ldapwebtool.model.ErrorResponse;
+import com.example.ldapwebtool.model.ImportJobStatus;
+import com.example.ldapwebtool.service.ImportJobService;
+import com.example.ldapwebtool.util.CredentialExtractor;
+import com.example.ldapwebtool.util.ErrorResponses;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.parameters.RequestBody;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.nio.file.Path;
+
+@RestController
+@RequestMapping("/api")
+@Tag(name = "LDAP Import", description = "REST API for background LDIF import jobs")
+@SecurityRequirement(name = "basicAuth")
+public class ImportController {
+
+    @Autowired
+    private ImportJobService importJobService;
+
+    @Operation(
+        summary = "Start a background LDIF import job",
+        description = "Spools the uploaded LDIF change records to disk and applies them in the background. " +
+                      "Progress is checkpointed so that a failed or interrupted job can be resumed.",
+        requestBody = @RequestBody(description = "LDIF change records", required = true,
+            content = @Content(mediaType = "application/ldif")),
+        responses = {
+            @ApiResponse(responseCode = "202", description = "Job started",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = ImportJobStatus.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid request",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "401", description = "Authentication failed",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Too many import jobs running; see Retry-After",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+        }
+    )
+    @PostMapping(value = "/imports",
+                 consumes = "application/ldif",
+                 produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> createJob(
+            @Parameter(description = "LDAP URI (required unless backend is given)", example = "ldap://localhost:389")
+            @RequestParam(value = "uri", required = false) String uri,
+            @Parameter(description = "Name of a configured backend; writes go to its primary", example = "corp")
+            @RequestParam(value = "backend", required = false) String backend,
+            @Parameter(description = "Whether to skip records the directory rejects (true) or stop at the first one (false)")
+            @RequestParam(value = "continueOnError", defaultValue = "true") boolean continueOnError,
+            HttpServletRequest httpRequest,
+            Authentication authentication) {
+        CredentialExtractor.ExtractionResult credentials = CredentialExtractor.extractCredentials(httpRequest, authentication);
+        if (!credentials.isSuccess()) {
+            return credentials.getErrorResponse();
+        }
+
+        try {
+            // The body is copied straight to the spool file rather than read into memory
+            ImportJobStatus status = importJobService.create(httpRequest.getInputStream(), uri, backend, continueOnError,
+                credentials.getCredentials().getUsername(), credentials.getCredentials().getPassword());
+            return ResponseEntity.accepted()
+                .location(URI.create("/api/imports/" + status.getId()))
+                .body(status);
+        } catch (Exception e) {
+            return ErrorResponses.fromException("IMPORT_ERROR", "Failed to start import: ", e);
+        }
+    }
+
+    @Operation(
+        summary = "Get the status of an import job",
+        description = "Returns the state, checkpoint position, record counts, throughput and estimated time to completion.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Job status",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = ImportJobStatus.class))),
+            @ApiResponse(responseCode = "404", description = "No such job",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+        }
+    )
+    @GetMapping(value = "/imports/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getJob(
+            @Parameter(description = "Job identifier", required = true) @PathVariable String id,
+            HttpServletRequest httpRequest,
+            Authentication authentication) {
+        CredentialExtractor.ExtractionResult credentials = CredentialExtractor.extractCredentials(httpRequest, authentication);
+        if (!credentials.isSuccess()) {
+            return credentials.getErrorResponse();
+        }
+
+        ImportJobStatus status = importJobService.getStatus(id, credentials.getCredentials().getUsername());
+        return status != null ? ResponseEntity.ok(status) : jobNotFound(id);
+    }
+
+    @Operation(
+        summary = "Get the failure report of an import job",
+        description = "One JSON object per failed record: record index, byte offset, DN, result code and message.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Failure report",
+                content = @Content(mediaType = "application/x-ndjson")),
+            @ApiResponse(responseCode = "404", description = "No such job, or no failures",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+        }
+    )
+    @GetMapping(value = "/imports/{id}/failures")
+    public ResponseEntity<?> getFailures(
+            @Parameter(description = "Job identifier", required = true) @PathVariable String id,
+            HttpServletRequest httpRequest,
+            Authentication authentication) {
+        CredentialExtractor.ExtractionResult credentials = CredentialExtractor.extractCredentials(httpRequest, authentication);
+        if (!credentials.isSuccess()) {
+            return credentials.getErrorResponse();
+        }
+
+        Path report = importJobService.getFailureReport(id, credentials.getCredentials().getUsername());
+        if (report == null) {
+            return jobNotFound(id);
+        }
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/x-ndjson"))
+            .body(new FileSystemResource(report));
+    }
+
+    @Operation(
+        summary = "Resume an import job from its checkpoint",
+        description = "Continues a failed, interrupted or cancelled job with the first record that was not processed.",
+        responses = {
+            @ApiResponse(responseCode = "202", description = "Job resumed",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = ImportJobStatus.class))),
+            @ApiResponse(responseCode = "404", description = "No such job",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "409", description = "Job is running or has completed",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Too many import jobs running; see Retry-After",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+        }
+    )
+    @PostMapping(value = "/imports/{id}/resume", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> resumeJob(
+            @Parameter(description = "Job identifier", required = true) @PathVariable String id,
+            HttpServletRequest httpRequest,
+            Authentication authentication) {
+        CredentialExtractor.ExtractionResult credentials = CredentialExtractor.extractCredentials(httpRequest, authentication);
+        if (!credentials.isSuccess()) {
+            return credentials.getErrorResponse();
+        }
+
+        try {
+            ImportJobStatus status = importJobService.resume(id,
+                credentials.getCredentials().getUsername(), credentials.getCredentials().getPassword());
+            return status != null ? ResponseEntity.accepted().body(status) : jobNotFound(id);
+        } catch (IllegalStateException e) {
+            ErrorResponse error = new ErrorResponse(
+                "JOB_CONFLICT",
+                e.getMessage(),
+                HttpStatus.CONFLICT.value()
+            );
+            return ResponseEntity.status(HttpStatus.CONFLICT).contentType(MediaType.APPLICATION_JSON).body(error);
+        } catch (Exception e) {
+            return ErrorResponses.fromException("IMPORT_ERROR", "Failed to resume import: ", e);
+        }
+    }
+
+    @Operation(
+        summary = "Stop and delete an import job",
+        description = "Stops the job if it is running and removes its spooled LDIF, checkpoint and failure report.",
+        responses = {
+            @ApiResponse(responseCode = "204", description = "Job deleted"),
+            @ApiResponse(responseCode = "404", description = "No such job",
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+        }
+    )
+    @DeleteMapping(value = "/imports/{id}")
+    public ResponseEntity<?> deleteJob(
+            @Parameter(description = "Job identifier", required = true) @PathVariable String id,
+            HttpServletRequest httpRequest,
+            Authentication authentication) {
+        CredentialExtractor.ExtractionResult credentials = CredentialExtractor.extractCredentials(httpRequest, authentication);
+        if (!credentials.isSuccess()) {
+            return credentials.getErrorResponse();
+        }
+
+        return importJobService.delete(id, credentials.getCredentials().getUsername())
+            ? ResponseEntity.noContent().build()
+            : jobNotFound(id);
+    }
+
+    private static ResponseEntity<ErrorResponse> jobNotFound(String id) {
+        ErrorResponse error = new ErrorResponse(
+            "JOB_NOT_FOUND",
+            "No import job " + id,
+            HttpStatus.NOT_FOUND.value()
+        );
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.APPLICATION_JSON).body(error);
+    }
+}
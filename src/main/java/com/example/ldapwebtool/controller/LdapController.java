@@ -1,7 +1,19 @@
 package com.example.ldapwebtool.controller;
 
+import com.example.ldapwebtool.config.AccessLogFilter;
+import com.example.ldapwebtool.config.HandlerAttributes;
+import com.example.ldapwebtool.config.RateLimitFilter;
 import com.example.ldapwebtool.model.*;
+import com.example.ldapwebtool.service.BackendUnavailableException;
 import com.example.ldapwebtool.service.LdapService;
+import com.example.ldapwebtool.service.MemoryBudget;
+import com.example.ldapwebtool.service.OperationHandle;
+import com.example.ldapwebtool.service.OperationTimeoutException;
+import com.example.ldapwebtool.service.OperationTimeouts;
+import com.example.ldapwebtool.service.ResultETag;
+import com.example.ldapwebtool.util.ErrorResponses;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -13,13 +25,17 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
 import java.util.Base64;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api")
@@ -30,6 +46,67 @@ public class LdapController {
     @Autowired
     private LdapService ldapService;
     
+    @Autowired
+    private OperationTimeouts operationTimeouts;
+    
+    @Autowired
+    private MemoryBudget memoryBudget;
+    
+    /**
+     * Body of a search endpoint; its directory work runs under the given handle, and what its
+     * response holds is reserved on the lease. It runs off the servlet thread, so it describes
+     * the request through the attributes rather than on the request itself.
+     */
+    @FunctionalInterface
+    private interface CancellableHandler {
+        ResponseEntity<?> handle(OperationHandle handle, MemoryBudget.Lease lease, HandlerAttributes attributes) throws Exception;
+    }
+    
+    /**
+     * Runs the handler off the request thread under the endpoint's timeout. If the servlet
+     * container reports that the client went away, or the timeout passes first, the handle is
+     * cancelled, which abandons the directory operation and returns its connection to the pool.
+     * The memory lease is closed only when the request completes, after the response body has
+     * been written, since that is when the most of it is live.
+     *
+     * Modifications do not run through here: abandoning a write would leave the client not
+     * knowing whether it was applied, so they run to completion on the servlet thread.
+     */
+    private WebAsyncTask<ResponseEntity<?>> cancellable(String endpoint, Long timeoutMillis, HttpServletRequest httpRequest,
+                                                        CancellableHandler handler) {
+        OperationHandle handle;
+        try {
+            handle = operationTimeouts.open(endpoint, timeoutMillis);
+        } catch (Exception e) {
+            ResponseEntity<?> error = ErrorResponses.fromException("SEARCH_ERROR", "Failed to perform LDAP search: ", e);
+            return new WebAsyncTask<>(() -> error);
+        }
+        HandlerAttributes attributes = HandlerAttributes.attach(httpRequest);
+        MemoryBudget.Lease lease = memoryBudget.open();
+        long timeout = handle.getTimeoutMillis();
+        // The handle enforces the deadline itself; the container's timeout is only a backstop
+        Long asyncTimeout = timeout > 0 ? timeout + OperationTimeouts.ASYNC_GRACE_MILLIS : null;
+        WebAsyncTask<ResponseEntity<?>> task = new WebAsyncTask<>(asyncTimeout, operationTimeouts.getExecutor(), () -> {
+            attributes.set(AccessLogFilter.HANDLER_START_ATTRIBUTE, System.nanoTime());
+            try {
+                return handler.handle(handle, lease, attributes);
+            } finally {
+                attributes.set(AccessLogFilter.DIRECTORY_NANOS_ATTRIBUTE, handle.getDirectoryNanos());
+            }
+        });
+        task.onTimeout(() -> {
+            handle.cancel("timed out");
+            return ErrorResponses.fromException("SEARCH_ERROR", "Failed to perform LDAP search: ",
+                new OperationTimeoutException(timeout));
+        });
+        task.onError(() -> {
+            handle.cancel("client disconnected");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        });
+        task.onCompletion(lease::close);
+        return task;
+    }
+    
     /**
      * Extract credentials from the Authorization header
      */
@@ -48,6 +125,69 @@ public class LdapController {
         return null;
     }
     
+    /**
+     * Names the backend a request goes to for the access log.
+     */
+    private static void describeTarget(HandlerAttributes attributes, String uri, String backend) {
+        attributes.set(AccessLogFilter.BACKEND_ATTRIBUTE, backend != null ? backend : uri);
+    }
+    
+    /**
+     * Names the backend and normalized filter of a search for the access log.
+     */
+    private static void describeSearch(HandlerAttributes attributes, SearchRequest request) {
+        describeTarget(attributes, request.getUri(), request.getBackend());
+        try {
+            attributes.set(AccessLogFilter.FILTER_ATTRIBUTE, Filter.create(request.getFilter()).toNormalizedString());
+        } catch (LDAPException e) {
+            // The search reports the invalid filter itself
+        }
+    }
+    
+    /**
+     * Builds the error response for a failed operation, noting its LDAP result code for the access log.
+     */
+    private static ResponseEntity<?> failed(HandlerAttributes attributes, String error, String messagePrefix, Exception e) {
+        if (e instanceof LDAPException) {
+            attributes.set(AccessLogFilter.RESULT_CODE_ATTRIBUTE, ((LDAPException) e).getResultCode().intValue());
+        }
+        return ErrorResponses.fromException(error, messagePrefix, e);
+    }
+    
+    /**
+     * Count the entries in an LDIF search result
+     */
+    private static int countLdifEntries(String ldif) {
+        int count = ldif.startsWith("dn:") ? 1 : 0;
+        int index = 0;
+        while ((index = ldif.indexOf("\ndn:", index)) >= 0) {
+            count++;
+            index += 4;
+        }
+        return count;
+    }
+    
+    /**
+     * Answers 304 to a client whose If-None-Match names the result's current tag.
+     */
+    private static ResponseEntity<?> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+    
+    /**
+     * Returns a search result with its tag, or 304 if the client already has it.
+     */
+    private static ResponseEntity<?> searchResult(String ifNoneMatch, String etag, MediaType contentType, Object body) {
+        if (ResultETag.matches(ifNoneMatch, etag)) {
+            return notModified(etag);
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().contentType(contentType);
+        if (etag != null) {
+            builder.eTag(etag);
+        }
+        return builder.body(body);
+    }
+    
     @Operation(
         summary = "Perform LDAP search (JSON response)",
         description = "Search for LDAP entries with configurable base, filter, and scope. Returns JSON format response.",
@@ -55,59 +195,73 @@ public class LdapController {
             @ApiResponse(responseCode = "200", description = "Search successful",
                 content = @Content(mediaType = "application/json", 
                             schema = @Schema(implementation = SearchResponse.class),
-                            examples = @ExampleObject(value = "{\"entries\":[{\"dn\":\"cn=John Doe,ou=users,dc=example,dc=com\",\"attributes\":{\"cn\":\"John Doe\",\"mail\":\"john@example.com\"}}],\"count\":1}"))),
+                            examples = @ExampleObject(value = "{\"entries\":[{\"dn\":\"cn=John Doe,ou=users,dc=example,dc=com\",\"attributes\":{\"cn\":[\"John Doe\"],\"mail\":[\"john@example.com\"],\"displayName\":\"John Doe\"}}],\"count\":1}"))),
+            @ApiResponse(responseCode = "304", description = "Result unchanged since the ETag given in If-None-Match"),
             @ApiResponse(responseCode = "400", description = "Invalid request", 
                 content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "401", description = "Authentication failed", 
                 content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "500", description = "Internal server error", 
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Backend overloaded or unavailable; see Retry-After", 
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "504", description = "Directory did not answer within the timeout", 
                 content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
         }
     )
     @PostMapping(value = "/search", 
                  consumes = MediaType.APPLICATION_JSON_VALUE,
                  produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> search(
+    public WebAsyncTask<ResponseEntity<?>> search(
             @Parameter(description = "LDAP search request parameters", required = true)
             @Valid @RequestBody SearchRequest request,
+            @Parameter(description = "Milliseconds to wait for the directory before answering 504; defaults per endpoint")
+            @RequestParam(value = "timeoutMillis", required = false) Long timeoutMillis,
             HttpServletRequest httpRequest,
             Authentication authentication) {
-        try {
-            // Try to get credentials from the Authorization header first
-            String[] credentials = extractCredentials(httpRequest);
-            String username, password;
+        return cancellable(OperationTimeouts.SEARCH, timeoutMillis, httpRequest, (handle, lease, attributes) -> {
+            describeSearch(attributes, request);
+            try {
+                // Try to get credentials from the Authorization header first
+                String[] credentials = extractCredentials(httpRequest);
+                String username, password;
             
-            if (credentials != null) {
-                username = credentials[0];
-                password = credentials[1];
-            } else {
-                // Fallback to authentication object
-                username = authentication.getName();
-                password = (String) authentication.getCredentials();
+                if (credentials != null) {
+                    username = credentials[0];
+                    password = credentials[1];
+                } else {
+                    // Fallback to authentication object
+                    username = authentication.getName();
+                    password = (String) authentication.getCredentials();
                 
-                // If password is still null/empty, return an error
-                if (password == null || password.trim().isEmpty()) {
-                    ErrorResponse error = new ErrorResponse(
-                        "AUTHENTICATION_ERROR",
-                        "Unable to extract password from authentication. Please ensure Basic Auth is properly configured.",
-                        HttpStatus.UNAUTHORIZED.value()
-                    );
-                    return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+                    // If password is still null/empty, return an error
+                    if (password == null || password.trim().isEmpty()) {
+                        ErrorResponse error = new ErrorResponse(
+                            "AUTHENTICATION_ERROR",
+                            "Unable to extract password from authentication. Please ensure Basic Auth is properly configured.",
+                            HttpStatus.UNAUTHORIZED.value()
+                        );
+                        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+                    }
                 }
-            }
             
-            SearchResponse response = ldapService.search(request, username, password);
-            return ResponseEntity.ok(response);
+                String ifNoneMatch = httpRequest.getHeader(HttpHeaders.IF_NONE_MATCH);
+                String currentETag = ifNoneMatch != null
+                    ? ldapService.currentETag(request, ResultETag.JSON, username, password, handle)
+                    : null;
+                if (ResultETag.matches(ifNoneMatch, currentETag)) {
+                    return notModified(currentETag);
+                }
             
-        } catch (Exception e) {
-            ErrorResponse error = new ErrorResponse(
-                "SEARCH_ERROR",
-                "Failed to perform LDAP search: " + e.getMessage(),
-                HttpStatus.INTERNAL_SERVER_ERROR.value(),
-                e.getClass().getSimpleName()
-            );
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
-        }
+                ResultETag etag = new ResultETag(ResultETag.JSON, username);
+                SearchResponse response = ldapService.search(request, username, password, etag, handle, lease);
+                attributes.set(RateLimitFilter.ENTRY_COUNT_ATTRIBUTE, response.getCount());
+                return searchResult(ifNoneMatch, etag.getValue(), MediaType.APPLICATION_JSON, response);
+            
+            } catch (Exception e) {
+                return failed(attributes, "SEARCH_ERROR", "Failed to perform LDAP search: ", e);
+            }
+        });
     }
 
     @Operation(
@@ -117,69 +271,86 @@ public class LdapController {
             @ApiResponse(responseCode = "200", description = "Search successful",
                 content = @Content(mediaType = "application/json", 
                             schema = @Schema(implementation = SearchResponse.class))),
+            @ApiResponse(responseCode = "304", description = "Result unchanged since the ETag given in If-None-Match"),
             @ApiResponse(responseCode = "400", description = "Invalid request", 
                 content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "401", description = "Authentication failed", 
                 content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "500", description = "Internal server error", 
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Backend overloaded or unavailable; see Retry-After", 
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "504", description = "Directory did not answer within the timeout", 
                 content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
         }
     )
     @GetMapping(value = "/search", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> searchGet(
-            @Parameter(description = "LDAP URI", example = "ldap://localhost:389", required = true)
-            @RequestParam(value = "uri") String uri,
+    public WebAsyncTask<ResponseEntity<?>> searchGet(
+            @Parameter(description = "LDAP URI (required unless backend is given)", example = "ldap://localhost:389")
+            @RequestParam(value = "uri", required = false) String uri,
+            @Parameter(description = "Name of a configured backend; reads go to its replicas", example = "corp")
+            @RequestParam(value = "backend", required = false) String backend,
             @Parameter(description = "Search base DN", example = "ou=users,dc=example,dc=com", required = true)
             @RequestParam(value = "base") String base,
             @Parameter(description = "Search filter", example = "(objectClass=person)", required = true)
             @RequestParam(value = "filter") String filter,
             @Parameter(description = "Search scope", example = "sub")
             @RequestParam(value = "scope", defaultValue = "sub") String scope,
+            @Parameter(description = "Milliseconds to wait for the directory before answering 504; defaults per endpoint")
+            @RequestParam(value = "timeoutMillis", required = false) Long timeoutMillis,
             HttpServletRequest httpRequest,
             Authentication authentication) {
-        try {
-            // Create SearchRequest from query parameters
-            SearchRequest request = new SearchRequest();
-            request.setUri(uri);
-            request.setBase(base);
-            request.setFilter(filter);
-            request.setScope(scope);
+        return cancellable(OperationTimeouts.SEARCH, timeoutMillis, httpRequest, (handle, lease, attributes) -> {
+            try {
+                // Create SearchRequest from query parameters
+                SearchRequest request = new SearchRequest();
+                request.setUri(uri);
+                request.setBackend(backend);
+                request.setBase(base);
+                request.setFilter(filter);
+                request.setScope(scope);
+                describeSearch(attributes, request);
 
-            // Try to get credentials from the Authorization header first
-            String[] credentials = extractCredentials(httpRequest);
-            String username, password;
+                // Try to get credentials from the Authorization header first
+                String[] credentials = extractCredentials(httpRequest);
+                String username, password;
             
-            if (credentials != null) {
-                username = credentials[0];
-                password = credentials[1];
-            } else {
-                // Fallback to authentication object
-                username = authentication.getName();
-                password = (String) authentication.getCredentials();
+                if (credentials != null) {
+                    username = credentials[0];
+                    password = credentials[1];
+                } else {
+                    // Fallback to authentication object
+                    username = authentication.getName();
+                    password = (String) authentication.getCredentials();
                 
-                // If password is still null/empty, return an error
-                if (password == null || password.trim().isEmpty()) {
-                    ErrorResponse error = new ErrorResponse(
-                        "AUTHENTICATION_ERROR",
-                        "Unable to extract password from authentication. Please ensure Basic Auth is properly configured.",
-                        HttpStatus.UNAUTHORIZED.value()
-                    );
-                    return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+                    // If password is still null/empty, return an error
+                    if (password == null || password.trim().isEmpty()) {
+                        ErrorResponse error = new ErrorResponse(
+                            "AUTHENTICATION_ERROR",
+                            "Unable to extract password from authentication. Please ensure Basic Auth is properly configured.",
+                            HttpStatus.UNAUTHORIZED.value()
+                        );
+                        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+                    }
                 }
-            }
             
-            SearchResponse response = ldapService.search(request, username, password);
-            return ResponseEntity.ok(response);
+                String ifNoneMatch = httpRequest.getHeader(HttpHeaders.IF_NONE_MATCH);
+                String currentETag = ifNoneMatch != null
+                    ? ldapService.currentETag(request, ResultETag.JSON, username, password, handle)
+                    : null;
+                if (ResultETag.matches(ifNoneMatch, currentETag)) {
+                    return notModified(currentETag);
+                }
             
-        } catch (Exception e) {
-            ErrorResponse error = new ErrorResponse(
-                "SEARCH_ERROR",
-                "Failed to perform LDAP search: " + e.getMessage(),
-                HttpStatus.INTERNAL_SERVER_ERROR.value(),
-                e.getClass().getSimpleName()
-            );
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
-        }
+                ResultETag etag = new ResultETag(ResultETag.JSON, username);
+                SearchResponse response = ldapService.search(request, username, password, etag, handle, lease);
+                attributes.set(RateLimitFilter.ENTRY_COUNT_ATTRIBUTE, response.getCount());
+                return searchResult(ifNoneMatch, etag.getValue(), MediaType.APPLICATION_JSON, response);
+            
+            } catch (Exception e) {
+                return failed(attributes, "SEARCH_ERROR", "Failed to perform LDAP search: ", e);
+            }
+        });
     }
 
     @Operation(
@@ -189,60 +360,72 @@ public class LdapController {
             @ApiResponse(responseCode = "200", description = "Search successful",
                 content = @Content(mediaType = "application/ldif", 
                           examples = @ExampleObject(value = "dn: cn=John Doe,ou=users,dc=example,dc=com\\ncn: John Doe\\nmail: john@example.com\\n\\n"))),
+            @ApiResponse(responseCode = "304", description = "Result unchanged since the ETag given in If-None-Match"),
             @ApiResponse(responseCode = "400", description = "Invalid request", 
                 content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "401", description = "Authentication failed", 
                 content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "500", description = "Internal server error", 
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Backend overloaded or unavailable; see Retry-After", 
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "504", description = "Directory did not answer within the timeout", 
                 content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
         }
     )
     @PostMapping(value = "/search/ldif", 
                  consumes = MediaType.APPLICATION_JSON_VALUE,
                  produces = "application/ldif")
-    public ResponseEntity<?> searchLdif(
+    public WebAsyncTask<ResponseEntity<?>> searchLdif(
             @Parameter(description = "LDAP search request parameters", required = true)
             @Valid @RequestBody SearchRequest request,
+            @Parameter(description = "Milliseconds to wait for the directory before answering 504; defaults per endpoint")
+            @RequestParam(value = "timeoutMillis", required = false) Long timeoutMillis,
             HttpServletRequest httpRequest,
             Authentication authentication) {
-        try {
-            // Try to get credentials from the Authorization header first
-            String[] credentials = extractCredentials(httpRequest);
-            String username, password;
+        return cancellable(OperationTimeouts.SEARCH_LDIF, timeoutMillis, httpRequest, (handle, lease, attributes) -> {
+            describeSearch(attributes, request);
+            try {
+                // Try to get credentials from the Authorization header first
+                String[] credentials = extractCredentials(httpRequest);
+                String username, password;
             
-            if (credentials != null) {
-                username = credentials[0];
-                password = credentials[1];
-            } else {
-                // Fallback to authentication object
-                username = authentication.getName();
-                password = (String) authentication.getCredentials();
+                if (credentials != null) {
+                    username = credentials[0];
+                    password = credentials[1];
+                } else {
+                    // Fallback to authentication object
+                    username = authentication.getName();
+                    password = (String) authentication.getCredentials();
                 
-                // If password is still null/empty, return an error
-                if (password == null || password.trim().isEmpty()) {
-                    ErrorResponse error = new ErrorResponse(
-                        "AUTHENTICATION_ERROR",
-                        "Unable to extract password from authentication. Please ensure Basic Auth is properly configured.",
-                        HttpStatus.UNAUTHORIZED.value()
-                    );
-                    return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+                    // If password is still null/empty, return an error
+                    if (password == null || password.trim().isEmpty()) {
+                        ErrorResponse error = new ErrorResponse(
+                            "AUTHENTICATION_ERROR",
+                            "Unable to extract password from authentication. Please ensure Basic Auth is properly configured.",
+                            HttpStatus.UNAUTHORIZED.value()
+                        );
+                        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+                    }
                 }
-            }
             
-            String ldifResult = ldapService.searchToLdif(request, username, password);
-            return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType("application/ldif"))
-                .body(ldifResult);
+                String ifNoneMatch = httpRequest.getHeader(HttpHeaders.IF_NONE_MATCH);
+                String currentETag = ifNoneMatch != null
+                    ? ldapService.currentETag(request, ResultETag.LDIF, username, password, handle)
+                    : null;
+                if (ResultETag.matches(ifNoneMatch, currentETag)) {
+                    return notModified(currentETag);
+                }
             
-        } catch (Exception e) {
-            ErrorResponse error = new ErrorResponse(
-                "SEARCH_ERROR",
-                "Failed to perform LDAP search: " + e.getMessage(),
-                HttpStatus.INTERNAL_SERVER_ERROR.value(),
-                e.getClass().getSimpleName()
-            );
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
-        }
+                ResultETag etag = new ResultETag(ResultETag.LDIF, username);
+                String ldifResult = ldapService.searchToLdif(request, username, password, etag, handle, lease);
+                attributes.set(RateLimitFilter.ENTRY_COUNT_ATTRIBUTE, countLdifEntries(ldifResult));
+                return searchResult(ifNoneMatch, etag.getValue(), MediaType.parseMediaType("application/ldif"), ldifResult);
+            
+            } catch (Exception e) {
+                return failed(attributes, "SEARCH_ERROR", "Failed to perform LDAP search: ", e);
+            }
+        });
     }
 
     @Operation(
@@ -251,75 +434,88 @@ public class LdapController {
         responses = {
             @ApiResponse(responseCode = "200", description = "Search successful",
                 content = @Content(mediaType = "application/ldif")),
+            @ApiResponse(responseCode = "304", description = "Result unchanged since the ETag given in If-None-Match"),
             @ApiResponse(responseCode = "400", description = "Invalid request", 
                 content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "401", description = "Authentication failed", 
                 content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "500", description = "Internal server error", 
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Backend overloaded or unavailable; see Retry-After", 
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "504", description = "Directory did not answer within the timeout", 
                 content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
         }
     )
     @GetMapping(value = "/search/ldif", produces = "application/ldif")
-    public ResponseEntity<?> searchLdifGet(
-            @Parameter(description = "LDAP URI", example = "ldap://localhost:389", required = true)
-            @RequestParam(value = "uri") String uri,
+    public WebAsyncTask<ResponseEntity<?>> searchLdifGet(
+            @Parameter(description = "LDAP URI (required unless backend is given)", example = "ldap://localhost:389")
+            @RequestParam(value = "uri", required = false) String uri,
+            @Parameter(description = "Name of a configured backend; reads go to its replicas", example = "corp")
+            @RequestParam(value = "backend", required = false) String backend,
             @Parameter(description = "Search base DN", example = "ou=users,dc=example,dc=com", required = true)
             @RequestParam(value = "base") String base,
             @Parameter(description = "Search filter", example = "(objectClass=person)", required = true)
             @RequestParam(value = "filter") String filter,
             @Parameter(description = "Search scope", example = "sub")
             @RequestParam(value = "scope", defaultValue = "sub") String scope,
+            @Parameter(description = "Milliseconds to wait for the directory before answering 504; defaults per endpoint")
+            @RequestParam(value = "timeoutMillis", required = false) Long timeoutMillis,
             HttpServletRequest httpRequest,
             Authentication authentication) {
-        try {
-            // Create SearchRequest from query parameters
-            SearchRequest request = new SearchRequest();
-            request.setUri(uri);
-            request.setBase(base);
-            request.setFilter(filter);
-            request.setScope(scope);
+        return cancellable(OperationTimeouts.SEARCH_LDIF, timeoutMillis, httpRequest, (handle, lease, attributes) -> {
+            try {
+                // Create SearchRequest from query parameters
+                SearchRequest request = new SearchRequest();
+                request.setUri(uri);
+                request.setBackend(backend);
+                request.setBase(base);
+                request.setFilter(filter);
+                request.setScope(scope);
+                describeSearch(attributes, request);
 
-            // Try to get credentials from the Authorization header first
-            String[] credentials = extractCredentials(httpRequest);
-            String username, password;
+                // Try to get credentials from the Authorization header first
+                String[] credentials = extractCredentials(httpRequest);
+                String username, password;
             
-            if (credentials != null) {
-                username = credentials[0];
-                password = credentials[1];
-            } else {
-                // Fallback to authentication object
-                username = authentication.getName();
-                password = (String) authentication.getCredentials();
+                if (credentials != null) {
+                    username = credentials[0];
+                    password = credentials[1];
+                } else {
+                    // Fallback to authentication object
+                    username = authentication.getName();
+                    password = (String) authentication.getCredentials();
                 
-                // If password is still null/empty, return an error
-                if (password == null || password.trim().isEmpty()) {
-                    ErrorResponse error = new ErrorResponse(
-                        "AUTHENTICATION_ERROR",
-                        "Unable to extract password from authentication. Please ensure Basic Auth is properly configured.",
-                        HttpStatus.UNAUTHORIZED.value()
-                    );
-                    return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .body(error);
+                    // If password is still null/empty, return an error
+                    if (password == null || password.trim().isEmpty()) {
+                        ErrorResponse error = new ErrorResponse(
+                            "AUTHENTICATION_ERROR",
+                            "Unable to extract password from authentication. Please ensure Basic Auth is properly configured.",
+                            HttpStatus.UNAUTHORIZED.value()
+                        );
+                        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .body(error);
+                    }
+                }
+            
+                String ifNoneMatch = httpRequest.getHeader(HttpHeaders.IF_NONE_MATCH);
+                String currentETag = ifNoneMatch != null
+                    ? ldapService.currentETag(request, ResultETag.LDIF, username, password, handle)
+                    : null;
+                if (ResultETag.matches(ifNoneMatch, currentETag)) {
+                    return notModified(currentETag);
                 }
-            }
             
-            String ldifResult = ldapService.searchToLdif(request, username, password);
-            return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType("application/ldif"))
-                .body(ldifResult);
+                ResultETag etag = new ResultETag(ResultETag.LDIF, username);
+                String ldifResult = ldapService.searchToLdif(request, username, password, etag, handle, lease);
+                attributes.set(RateLimitFilter.ENTRY_COUNT_ATTRIBUTE, countLdifEntries(ldifResult));
+                return searchResult(ifNoneMatch, etag.getValue(), MediaType.parseMediaType("application/ldif"), ldifResult);
             
-        } catch (Exception e) {
-            ErrorResponse error = new ErrorResponse(
-                "SEARCH_ERROR",
-                "Failed to perform LDAP search: " + e.getMessage(),
-                HttpStatus.INTERNAL_SERVER_ERROR.value(),
-                e.getClass().getSimpleName()
-            );
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(error);
-        }
+            } catch (Exception e) {
+                return failed(attributes, "SEARCH_ERROR", "Failed to perform LDAP search: ", e);
+            }
+        });
     }
 
     @Operation(
@@ -334,6 +530,8 @@ public class LdapController {
             @ApiResponse(responseCode = "401", description = "Authentication failed", 
                 content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "500", description = "Internal server error", 
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Backend overloaded or unavailable; see Retry-After", 
                 content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
         }
     )
@@ -346,6 +544,8 @@ public class LdapController {
             @Valid @RequestBody ModifyRequest request,
             HttpServletRequest httpRequest,
             Authentication authentication) {
+        HandlerAttributes attributes = HandlerAttributes.attach(httpRequest);
+        describeTarget(attributes, request.getUri(), request.getBackend());
         try {
             // Try to get credentials from the Authorization header first
             String[] credentials = extractCredentials(httpRequest);
@@ -374,13 +574,7 @@ public class LdapController {
             return ResponseEntity.ok(response);
             
         } catch (Exception e) {
-            ErrorResponse error = new ErrorResponse(
-                "MODIFY_ERROR",
-                "Failed to perform LDAP modification: " + e.getMessage(),
-                HttpStatus.INTERNAL_SERVER_ERROR.value(),
-                e.getClass().getSimpleName()
-            );
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return failed(attributes, "MODIFY_ERROR", "Failed to perform LDAP modification: ", e);
         }
     }
 
@@ -396,6 +590,8 @@ public class LdapController {
             @ApiResponse(responseCode = "401", description = "Authentication failed", 
                 content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "500", description = "Internal server error", 
+                content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Backend overloaded or unavailable; see Retry-After", 
                 content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
         }
     )
@@ -406,10 +602,20 @@ public class LdapController {
             @Parameter(description = "LDIF modify request", required = true,
                       examples = @ExampleObject(value = "dn: cn=John,ou=users,dc=example,dc=com\\nchangetype: modify\\nreplace: mail\\nmail: new@email.com\\n-"))
             @RequestBody String ldifContent,
-            @Parameter(description = "LDAP URI", example = "ldap://localhost:389", required = true)
-            @RequestParam(value = "uri") String uri,
+            @Parameter(description = "LDAP URI (required unless backend is given)", example = "ldap://localhost:389")
+            @RequestParam(value = "uri", required = false) String uri,
+            @Parameter(description = "Name of a configured backend; writes go to its primary", example = "corp")
+            @RequestParam(value = "backend", required = false) String backend,
+            @Parameter(description = "Attributes to return as they were before each change (pre-read control); " +
+                                     "\"*\" for all user attributes", example = "mail")
+            @RequestParam(value = "preRead", required = false) List<String> preRead,
+            @Parameter(description = "Attributes to return as they are after each change (post-read control); " +
+                                     "\"*\" for all user attributes", example = "mail,modifyTimestamp")
+            @RequestParam(value = "postRead", required = false) List<String> postRead,
             HttpServletRequest httpRequest,
             Authentication authentication) {
+        HandlerAttributes attributes = HandlerAttributes.attach(httpRequest);
+        describeTarget(attributes, uri, backend);
         try {
             // Try to get credentials from the Authorization header first
             String[] credentials = extractCredentials(httpRequest);
@@ -434,17 +640,11 @@ public class LdapController {
                 }
             }
             
-            ModifyResponse response = ldapService.modifyFromLdif(ldifContent, uri, username, password);
+            ModifyResponse response = ldapService.modifyFromLdif(ldifContent, uri, backend, preRead, postRead, username, password);
             return ResponseEntity.ok(response);
             
         } catch (Exception e) {
-            ErrorResponse error = new ErrorResponse(
-                "MODIFY_ERROR",
-                "Failed to perform LDAP modification: " + e.getMessage(),
-                HttpStatus.INTERNAL_SERVER_ERROR.value(),
-                e.getClass().getSimpleName()
-            );
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return failed(attributes, "MODIFY_ERROR", "Failed to perform LDAP modification: ", e);
         }
     }
     
@@ -466,6 +666,15 @@ public class LdapController {
         return ResponseEntity.badRequest().body(error);
     }
     
+    /**
+     * Every thread for requests running off the servlet thread is busy.
+     */
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<ErrorResponse> handleRejectedTask(TaskRejectedException ex) {
+        return ErrorResponses.fromException("SEARCH_ERROR", "", new BackendUnavailableException(
+            "Too many requests in progress; try again later", OperationTimeouts.RETRY_AFTER_SECONDS));
+    }
+    
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGenericException(Exception ex) {
         ErrorResponse error = new ErrorResponse(
@@ -0,0 +1,45 @@
+package com.example.ldapwebtool.controller;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Runs long streaming responses, such as exports and diffs, as async tasks with their own
+ * container timeout instead of spring.mvc.async.request-timeout, which stays short for every
+ * other endpoint.
+ */
+final class StreamingTasks {
+
+    private StreamingTasks() {
+    }
+
+    /**
+     * Streams a 200 response from the executor.
+     *
+     * @param timeoutMillis container timeout; 0 or less for none, when the stream enforces its own
+     * @param onAbort called if the container times the request out or the client disconnects
+     */
+    static WebAsyncTask<ResponseEntity<?>> stream(AsyncTaskExecutor executor, long timeoutMillis, HttpServletResponse response,
+                                                  String contentType, StreamingResponseBody body, Runnable onAbort) {
+        WebAsyncTask<ResponseEntity<?>> task = new WebAsyncTask<>(timeoutMillis > 0 ? timeoutMillis : -1L, executor, () -> {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            body.writeTo(response.getOutputStream());
+            response.flushBuffer();
+            // Already written; nothing left for Spring MVC to render
+            return null;
+        });
+        task.onTimeout(() -> {
+            onAbort.run();
+            return null;
+        });
+        task.onError(() -> {
+            onAbort.run();
+            return null;
+        });
+        return task;
+    }
+}
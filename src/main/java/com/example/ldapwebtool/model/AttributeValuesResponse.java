@@ -0,0 +1,76 @@
+package com.example.ldapwebtool.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "One page of the values of a single attribute")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AttributeValuesResponse {
+
+    @Schema(description = "DN of the entry", example = "cn=all-staff,ou=groups,dc=example,dc=com")
+    private String dn;
+
+    @Schema(description = "Attribute whose values are listed", example = "member")
+    private String attribute;
+
+    @Schema(description = "Position of the first value of this page", example = "0")
+    private long offset;
+
+    @Schema(description = "Values of this page; binary values are base64 encoded")
+    private List<String> values;
+
+    @Schema(description = "Offset of the next page; absent on the last page", example = "1000")
+    private Long next;
+
+    public AttributeValuesResponse() {}
+
+    public AttributeValuesResponse(String dn, String attribute, long offset, List<String> values, Long next) {
+        this.dn = dn;
+        this.attribute = attribute;
+        this.offset = offset;
+        this.values = values;
+        this.next = next;
+    }
+
+    public String getDn() {
+        return dn;
+    }
+
+    public void setDn(String dn) {
+        this.dn = dn;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    public void setAttribute(String attribute) {
+        this.attribute = attribute;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    public List<String> getValues() {
+        return values;
+    }
+
+    public void setValues(List<String> values) {
+        this.values = values;
+    }
+
+    public Long getNext() {
+        return next;
+    }
+
+    public void setNext(Long next) {
+        this.next = next;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.ldapwebtool.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Data of a change stream event: a change for \"change\" events, the reason for \"resync\" events")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChangeStreamEvent {
+
+    @Schema(description = "DN of the changed entry (its new DN for renames)", example = "uid=jdoe,ou=users,dc=example,dc=com")
+    private String dn;
+
+    @Schema(description = "Kind of change", example = "modify", allowableValues = {"add", "delete", "modify", "moddn"})
+    private String changeType;
+
+    @Schema(description = "DN before a rename, if the server reports it", example = "uid=john,ou=users,dc=example,dc=com")
+    private String previousDn;
+
+    @Schema(description = "Change number, if the server reports one", example = "4711")
+    private Long changeNumber;
+
+    @Schema(description = "The entry as returned with the change, with the subscribed attributes")
+    private SearchResponse.LdapEntry entry;
+
+    @Schema(description = "Why changes may have been missed; resync events only",
+           example = "Events were dropped because the client fell behind")
+    private String reason;
+
+    public ChangeStreamEvent() {}
+
+    public ChangeStreamEvent(String dn, String changeType, String previousDn, Long changeNumber,
+                             SearchResponse.LdapEntry entry) {
+        this.dn = dn;
+        this.changeType = changeType;
+        this.previousDn = previousDn;
+        this.changeNumber = changeNumber;
+        this.entry = entry;
+    }
+
+    public static ChangeStreamEvent resync(String reason) {
+        ChangeStreamEvent event = new ChangeStreamEvent();
+        event.setReason(reason);
+        return event;
+    }
+
+    public String getDn() {
+        return dn;
+    }
+
+    public void setDn(String dn) {
+        this.dn = dn;
+    }
+
+    public String getChangeType() {
+        return changeType;
+    }
+
+    public void setChangeType(String changeType) {
+        this.changeType = changeType;
+    }
+
+    public String getPreviousDn() {
+        return previousDn;
+    }
+
+    public void setPreviousDn(String previousDn) {
+        this.previousDn = previousDn;
+    }
+
+    public Long getChangeNumber() {
+        return changeNumber;
+    }
+
+    public void setChangeNumber(Long changeNumber) {
+        this.changeNumber = changeNumber;
+    }
+
+    public SearchResponse.LdapEntry getEntry() {
+        return entry;
+    }
+
+    public void setEntry(SearchResponse.LdapEntry entry) {
+        this.entry = entry;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.ldapwebtool.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+@Schema(description = "Batch of attribute value assertions, each answered with an LDAP compare")
+public class CompareBatchRequest {
+
+    @Schema(description = "The LDAP URI to send the compares to. Required unless backend is given",
+           example = "ldap://ldap.example.com:389")
+    private String uri;
+
+    @Schema(description = "Name of a configured backend to route the compares to; they go to its replicas",
+           example = "corp")
+    private String backend;
+
+    @Schema(description = "Whether answers may come from, and are stored in, the short-lived compare cache. Defaults to false",
+           defaultValue = "false")
+    private boolean cached;
+
+    @Schema(description = "Assertions to check, answered in the same order")
+    @NotEmpty
+    @Valid
+    private List<Assertion> assertions;
+
+    public CompareBatchRequest() {}
+
+    public String getUri() {
+        return uri;
+    }
+
+    public void setUri(String uri) {
+        this.uri = uri;
+    }
+
+    public String getBackend() {
+        return backend;
+    }
+
+    public void setBackend(String backend) {
+        this.backend = backend;
+    }
+
+    @JsonIgnore
+    @Schema(hidden = true)
+    @AssertTrue(message = "Either uri or backend is required")
+    public boolean isTargetSpecified() {
+        return (uri != null && !uri.isBlank()) || (backend != null && !backend.isBlank());
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    public void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    public List<Assertion> getAssertions() {
+        return assertions;
+    }
+
+    public void setAssertions(List<Assertion> assertions) {
+        this.assertions = assertions;
+    }
+
+    @Schema(description = "Does the entry with this DN have this attribute value?")
+    public static class Assertion {
+
+        @Schema(description = "DN of the entry", example = "cn=admins,ou=groups,dc=example,dc=com")
+        @NotBlank
+        private String dn;
+
+        @Schema(description = "Attribute to compare", example = "member")
+        @NotBlank
+        private String attribute;
+
+        @Schema(description = "Value to look for, compared with the attribute's equality matching rule",
+               example = "uid=jdoe,ou=users,dc=example,dc=com")
+        @NotNull
+        private String value;
+
+        public Assertion() {}
+
+        public Assertion(String dn, String attribute, String value) {
+            this.dn = dn;
+            this.attribute = attribute;
+            this.value = value;
+        }
+
+        public String getDn() {
+            return dn;
+        }
+
+        public void setDn(String dn) {
+            this.dn = dn;
+        }
+
+        public String getAttribute() {
+            return attribute;
+        }
+
+        public void setAttribute(String attribute) {
+            this.attribute = attribute;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+    }
+}
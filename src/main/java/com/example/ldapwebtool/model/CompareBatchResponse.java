@@ -0,0 +1,86 @@
+package com.example.ldapwebtool.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Answers to a batch of assertions")
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class CompareBatchResponse {
+
+    @Schema(description = "One answer per assertion, in request order; null where the compare failed",
+           example = "[true, false, null]")
+    private List<Boolean> results;
+
+    @Schema(description = "Why compares failed, for the assertions whose result is null")
+    private List<CompareError> errors;
+
+    public CompareBatchResponse() {}
+
+    public CompareBatchResponse(List<Boolean> results, List<CompareError> errors) {
+        this.results = results;
+        this.errors = errors;
+    }
+
+    public List<Boolean> getResults() {
+        return results;
+    }
+
+    public void setResults(List<Boolean> results) {
+        this.results = results;
+    }
+
+    public List<CompareError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<CompareError> errors) {
+        this.errors = errors;
+    }
+
+    @Schema(description = "A compare that got neither compareTrue nor compareFalse")
+    public static class CompareError {
+
+        @Schema(description = "Position of the assertion in the request", example = "2")
+        private int index;
+
+        @Schema(description = "LDAP result code", example = "noSuchObject")
+        private String resultCode;
+
+        @Schema(description = "Diagnostic message")
+        private String message;
+
+        public CompareError() {}
+
+        public CompareError(int index, String resultCode, String message) {
+            this.index = index;
+            this.resultCode = resultCode;
+            this.message = message;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public void setIndex(int index) {
+            this.index = index;
+        }
+
+        public String getResultCode() {
+            return resultCode;
+        }
+
+        public void setResultCode(String resultCode) {
+            this.resultCode = resultCode;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
+    }
+}
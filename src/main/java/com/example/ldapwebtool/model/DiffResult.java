@@ -0,0 +1,64 @@
+package com.example.ldapwebtool.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Summary of a diff whose change records were submitted as an import job")
+public class DiffResult {
+
+    @Schema(description = "Entries to be added", example = "12")
+    private long adds;
+
+    @Schema(description = "Entries to be modified", example = "340")
+    private long modifies;
+
+    @Schema(description = "Entries to be deleted", example = "3")
+    private long deletes;
+
+    @Schema(description = "Entries that already match the desired state", example = "98210")
+    private long unchanged;
+
+    @Schema(description = "Import job applying the change records; absent if there were no changes")
+    private ImportJobStatus importJob;
+
+    public DiffResult() {}
+
+    public long getAdds() {
+        return adds;
+    }
+
+    public void setAdds(long adds) {
+        this.adds = adds;
+    }
+
+    public long getModifies() {
+        return modifies;
+    }
+
+    public void setModifies(long modifies) {
+        this.modifies = modifies;
+    }
+
+    public long getDeletes() {
+        return deletes;
+    }
+
+    public void setDeletes(long deletes) {
+        this.deletes = deletes;
+    }
+
+    public long getUnchanged() {
+        return unchanged;
+    }
+
+    public void setUnchanged(long unchanged) {
+        this.unchanged = unchanged;
+    }
+
+    public ImportJobStatus getImportJob() {
+        return importJob;
+    }
+
+    public void setImportJob(ImportJobStatus importJob) {
+        this.importJob = importJob;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.ldapwebtool.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Digest of one subtree in a hash tree")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DigestNode {
+
+    @Schema(description = "DN of the subtree root", example = "ou=people,dc=example,dc=com")
+    private String dn;
+
+    @Schema(description = "Hash of every entry in the subtree, including its root (hex)",
+           example = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08")
+    private String hash;
+
+    @Schema(description = "Hash of the root entry alone (hex); absent if it was not returned by the search")
+    private String entryHash;
+
+    @Schema(description = "Number of entries in the subtree", example = "15230")
+    private long entries;
+
+    @Schema(description = "Child subtrees; absent at the requested depth, where clients drill down with a new request")
+    private List<DigestNode> children;
+
+    public DigestNode() {}
+
+    public DigestNode(String dn) {
+        this.dn = dn;
+    }
+
+    public String getDn() {
+        return dn;
+    }
+
+    public void setDn(String dn) {
+        this.dn = dn;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public String getEntryHash() {
+        return entryHash;
+    }
+
+    public void setEntryHash(String entryHash) {
+        this.entryHash = entryHash;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    public void setEntries(long entries) {
+        this.entries = entries;
+    }
+
+    public List<DigestNode> getChildren() {
+        return children;
+    }
+
+    public void setChildren(List<DigestNode> children) {
+        this.children = children;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.ldapwebtool.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Hash tree of a subtree, for comparison with a mirrored copy")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DigestResponse {
+
+    @Schema(description = "How entry and subtree hashes are computed", example = "sha256-sum")
+    private String algorithm;
+
+    @Schema(description = "Attributes covered by the entry hashes; absent when all user attributes are")
+    private List<String> attributes;
+
+    @Schema(description = "Number of levels below the base that are broken down into children", example = "1")
+    private int depth;
+
+    @Schema(description = "Digest of the base entry's subtree")
+    private DigestNode root;
+
+    public DigestResponse() {}
+
+    public DigestResponse(String algorithm, List<String> attributes, int depth, DigestNode root) {
+        this.algorithm = algorithm;
+        this.attributes = attributes;
+        this.depth = depth;
+        this.root = root;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public List<String> getAttributes() {
+        return attributes;
+    }
+
+    public void setAttributes(List<String> attributes) {
+        this.attributes = attributes;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public DigestNode getRoot() {
+        return root;
+    }
+
+    public void setRoot(DigestNode root) {
+        this.root = root;
+    }
+}
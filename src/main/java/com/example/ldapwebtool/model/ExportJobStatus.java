@@ -0,0 +1,156 @@
+package com.example.ldapwebtool.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+
+@Schema(description = "State and progress of a background export job")
+public class ExportJobStatus {
+
+    @Schema(description = "Job identifier", example = "3f2c9a1e-6a0b-4f53-9a57-4d2b1c7e8f10")
+    private String id;
+
+    @Schema(description = "Job state", example = "running",
+           allowableValues = {"running", "completed", "failed", "cancelled"})
+    private String state;
+
+    @Schema(description = "Output format of the spool file", example = "ldif")
+    private String format;
+
+    @Schema(description = "Base DN of the export", example = "dc=example,dc=com")
+    private String base;
+
+    @Schema(description = "Entries exported so far", example = "125000")
+    private long entries;
+
+    @Schema(description = "Uncompressed bytes exported so far", example = "98304000")
+    private long bytes;
+
+    @Schema(description = "Size of the compressed spool file so far", example = "12582912")
+    private long spoolBytes;
+
+    @Schema(description = "Average entries per second since the job started", example = "4200.5")
+    private double entriesPerSecond;
+
+    @Schema(description = "Error message if the job failed")
+    private String error;
+
+    @Schema(description = "When the job was created")
+    private Instant createdAt;
+
+    @Schema(description = "When the job finished")
+    private Instant finishedAt;
+
+    @Schema(description = "When the job and its spool file will be removed")
+    private Instant expiresAt;
+
+    @Schema(description = "Path of the download endpoint, once the job has completed",
+           example = "/api/exports/3f2c9a1e-6a0b-4f53-9a57-4d2b1c7e8f10/download")
+    private String downloadUrl;
+
+    public ExportJobStatus() {}
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public String getBase() {
+        return base;
+    }
+
+    public void setBase(String base) {
+        this.base = base;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    public void setEntries(long entries) {
+        this.entries = entries;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    public long getSpoolBytes() {
+        return spoolBytes;
+    }
+
+    public void setSpoolBytes(long spoolBytes) {
+        this.spoolBytes = spoolBytes;
+    }
+
+    public double getEntriesPerSecond() {
+        return entriesPerSecond;
+    }
+
+    public void setEntriesPerSecond(double entriesPerSecond) {
+        this.entriesPerSecond = entriesPerSecond;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(Instant finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public String getDownloadUrl() {
+        return downloadUrl;
+    }
+
+    public void setDownloadUrl(String downloadUrl) {
+        this.downloadUrl = downloadUrl;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.ldapwebtool.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Pattern;
+
+@Schema(description = "Export request: a search whose subtree is split into partitions that are searched in parallel")
+public class ExportRequest extends SearchRequest {
+    
+    @Schema(description = "Output format: 'ldif' or 'ndjson' (one JSON entry per line). Defaults to 'ldif'", 
+           example = "ldif", 
+           allowableValues = {"ldif", "ndjson"}, 
+           defaultValue = "ldif")
+    @Pattern(regexp = "(?i)ldif|ndjson", message = "must be 'ldif' or 'ndjson'")
+    private String format = "ldif";
+    
+    @Schema(description = "Whether every entry must follow its parent in the output, as in a single subtree search. " +
+                          "Unordered exports may write children before their parent. Defaults to true", 
+           defaultValue = "true")
+    private boolean ordered = true;
+    
+    @Schema(description = "Number of partitions searched at the same time. Defaults to the server setting", 
+           example = "8")
+    @Min(1)
+    private Integer parallelism;
+    
+    public ExportRequest() {}
+    
+    public ExportRequest(String uri, String base, String filter, String scope) {
+        super(uri, base, filter, scope);
+    }
+    
+    public String getFormat() {
+        return format;
+    }
+    
+    public void setFormat(String format) {
+        this.format = format != null ? format : "ldif";
+    }
+    
+    public boolean isOrdered() {
+        return ordered;
+    }
+    
+    public void setOrdered(boolean ordered) {
+        this.ordered = ordered;
+    }
+    
+    public Integer getParallelism() {
+        return parallelism;
+    }
+    
+    public void setParallelism(Integer parallelism) {
+        this.parallelism = parallelism;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.ldapwebtool.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Groups of a member, or members of a group, with nesting expanded")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class GroupExpansionResponse {
+
+    @Schema(description = "DN of the expanded member or group", example = "uid=jdoe,ou=users,dc=example,dc=com")
+    private String dn;
+
+    @Schema(description = "How nesting was expanded: in-chain (one search with the matching-rule-in-chain filter), " +
+                          "member-of (memberOf lookups) or search (searches for groups listing the member)",
+           example = "search")
+    private String strategy;
+
+    @Schema(description = "Nesting levels followed; absent for in-chain expansion", example = "2")
+    private Integer depth;
+
+    @Schema(description = "Groups reached: the member's groups, or the groups nested in the group")
+    private List<String> groups;
+
+    @Schema(description = "Members that are not groups; absent for effective group lookups")
+    private List<String> members;
+
+    public GroupExpansionResponse() {}
+
+    public GroupExpansionResponse(String dn, String strategy, Integer depth, List<String> groups, List<String> members) {
+        this.dn = dn;
+        this.strategy = strategy;
+        this.depth = depth;
+        this.groups = groups;
+        this.members = members;
+    }
+
+    public String getDn() {
+        return dn;
+    }
+
+    public void setDn(String dn) {
+        this.dn = dn;
+    }
+
+    public String getStrategy() {
+        return strategy;
+    }
+
+    public void setStrategy(String strategy) {
+        this.strategy = strategy;
+    }
+
+    public Integer getDepth() {
+        return depth;
+    }
+
+    public void setDepth(Integer depth) {
+        this.depth = depth;
+    }
+
+    public List<String> getGroups() {
+        return groups;
+    }
+
+    public void setGroups(List<String> groups) {
+        this.groups = groups;
+    }
+
+    public List<String> getMembers() {
+        return members;
+    }
+
+    public void setMembers(List<String> members) {
+        this.members = members;
+    }
+}
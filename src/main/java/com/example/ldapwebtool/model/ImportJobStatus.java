@@ -0,0 +1,188 @@
+package com.example.ldapwebtool.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+
+@Schema(description = "State and progress of a background LDIF import job")
+public class ImportJobStatus {
+
+    @Schema(description = "Job identifier", example = "7b1e0c52-93d4-4a8e-b8f5-2c6a1d9e4f07")
+    private String id;
+
+    @Schema(description = "Job state", example = "running",
+           allowableValues = {"running", "completed", "failed", "interrupted", "cancelled"})
+    private String state;
+
+    @Schema(description = "Name of the backend the records are applied to, if one was given", example = "corp")
+    private String backend;
+
+    @Schema(description = "Size of the uploaded LDIF file", example = "524288000")
+    private long totalBytes;
+
+    @Schema(description = "Byte offset of the checkpoint: every record before it has been processed", example = "131072000")
+    private long processedBytes;
+
+    @Schema(description = "Number of records processed (applied or failed)", example = "250000")
+    private long records;
+
+    @Schema(description = "Number of records applied successfully", example = "249990")
+    private long applied;
+
+    @Schema(description = "Number of records that failed; see the failure report", example = "10")
+    private long failed;
+
+    @Schema(description = "Records per second in the current or last run", example = "850.2")
+    private double recordsPerSecond;
+
+    @Schema(description = "Bytes per second in the current or last run", example = "445000.0")
+    private double bytesPerSecond;
+
+    @Schema(description = "Estimated seconds until the job completes (running jobs only)", example = "884")
+    private Long etaSeconds;
+
+    @Schema(description = "Why the job stopped, if it failed")
+    private String error;
+
+    @Schema(description = "When the job was created")
+    private Instant createdAt;
+
+    @Schema(description = "When the job last stopped running")
+    private Instant finishedAt;
+
+    @Schema(description = "When the job and its files will be removed")
+    private Instant expiresAt;
+
+    @Schema(description = "Path of the failure report", example = "/api/imports/7b1e0c52-93d4-4a8e-b8f5-2c6a1d9e4f07/failures")
+    private String failuresUrl;
+
+    public ImportJobStatus() {}
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public String getBackend() {
+        return backend;
+    }
+
+    public void setBackend(String backend) {
+        this.backend = backend;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    public long getProcessedBytes() {
+        return processedBytes;
+    }
+
+    public void setProcessedBytes(long processedBytes) {
+        this.processedBytes = processedBytes;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public void setRecords(long records) {
+        this.records = records;
+    }
+
+    public long getApplied() {
+        return applied;
+    }
+
+    public void setApplied(long applied) {
+        this.applied = applied;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public double getRecordsPerSecond() {
+        return recordsPerSecond;
+    }
+
+    public void setRecordsPerSecond(double recordsPerSecond) {
+        this.recordsPerSecond = recordsPerSecond;
+    }
+
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public void setBytesPerSecond(double bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public Long getEtaSeconds() {
+        return etaSeconds;
+    }
+
+    public void setEtaSeconds(Long etaSeconds) {
+        this.etaSeconds = etaSeconds;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(Instant finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public String getFailuresUrl() {
+        return failuresUrl;
+    }
+
+    public void setFailuresUrl(String failuresUrl) {
+        this.failuresUrl = failuresUrl;
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.ldapwebtool.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotEmpty;
 import java.util.List;
@@ -8,12 +10,16 @@ import java.util.List;
 @Schema(description = "LDAP modify request with operations to perform")
 public class ModifyRequest {
     
-    @Schema(description = "The LDAP URI to send the request to", 
-           example = "ldap://ldap.example.com:389", 
-           required = true)
-    @NotBlank(message = "URI is required")
+    @Schema(description = "The LDAP URI to send the request to. May list several hosts, e.g. ldap://h1,h2,h3:389. " +
+                          "Required unless backend is given", 
+           example = "ldap://ldap.example.com:389")
     private String uri;
     
+    @Schema(description = "Name of a configured backend to route the request to, instead of a URI. " +
+                          "Writes go to the backend's primary", 
+           example = "corp")
+    private String backend;
+    
     @Schema(description = "Distinguished Name of the entry to modify", 
            example = "cn=John Doe,ou=users,dc=example,dc=com", 
            required = true)
@@ -24,6 +30,16 @@ public class ModifyRequest {
     @NotEmpty(message = "Modifications cannot be empty")
     private List<Modification> modifications;
     
+    @Schema(description = "Attributes to return as they were before the change, read by the server in the same " +
+                          "operation (pre-read control, RFC 4527). An empty list returns all user attributes",
+           example = "[\"mail\"]")
+    private List<String> preRead;
+    
+    @Schema(description = "Attributes to return as they are after the change, read by the server in the same " +
+                          "operation (post-read control, RFC 4527). An empty list returns all user attributes",
+           example = "[\"mail\", \"modifyTimestamp\"]")
+    private List<String> postRead;
+    
     public ModifyRequest() {}
     
     public ModifyRequest(String uri, String dn, List<Modification> modifications) {
@@ -40,6 +56,21 @@ public class ModifyRequest {
         this.uri = uri;
     }
     
+    public String getBackend() {
+        return backend;
+    }
+    
+    public void setBackend(String backend) {
+        this.backend = backend;
+    }
+    
+    @JsonIgnore
+    @Schema(hidden = true)
+    @AssertTrue(message = "Either uri or backend is required")
+    public boolean isTargetSpecified() {
+        return (uri != null && !uri.isBlank()) || (backend != null && !backend.isBlank());
+    }
+    
     public String getDn() {
         return dn;
     }
@@ -56,6 +87,22 @@ public class ModifyRequest {
         this.modifications = modifications;
     }
     
+    public List<String> getPreRead() {
+        return preRead;
+    }
+    
+    public void setPreRead(List<String> preRead) {
+        this.preRead = preRead;
+    }
+    
+    public List<String> getPostRead() {
+        return postRead;
+    }
+    
+    public void setPostRead(List<String> postRead) {
+        this.postRead = postRead;
+    }
+    
     @Schema(description = "Individual modification operation")
     public static class Modification {
         
@@ -1,7 +1,10 @@
 package com.example.ldapwebtool.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 
+import java.util.List;
+
 @Schema(description = "Response from LDAP modify operation")
 public class ModifyResponse {
     
@@ -15,6 +18,20 @@ public class ModifyResponse {
            example = "cn=John Doe,ou=users,dc=example,dc=com")
     private String dn;
     
+    @Schema(description = "The entry's requested attributes before the change, if preRead was given and the server " +
+                          "supports the pre-read control")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private SearchResponse.LdapEntry before;
+    
+    @Schema(description = "The entry's requested attributes after the change, if postRead was given and the server " +
+                          "supports the post-read control")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private SearchResponse.LdapEntry after;
+    
+    @Schema(description = "For LDIF requests with preRead or postRead: the entry state around each applied change record")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<ChangeState> changes;
+    
     public ModifyResponse() {}
     
     public ModifyResponse(boolean success, String message, String dn) {
@@ -46,4 +63,87 @@ public class ModifyResponse {
     public void setDn(String dn) {
         this.dn = dn;
     }
+    
+    public SearchResponse.LdapEntry getBefore() {
+        return before;
+    }
+    
+    public void setBefore(SearchResponse.LdapEntry before) {
+        this.before = before;
+    }
+    
+    public SearchResponse.LdapEntry getAfter() {
+        return after;
+    }
+    
+    public void setAfter(SearchResponse.LdapEntry after) {
+        this.after = after;
+    }
+    
+    public List<ChangeState> getChanges() {
+        return changes;
+    }
+    
+    public void setChanges(List<ChangeState> changes) {
+        this.changes = changes;
+    }
+    
+    @Schema(description = "Entry state read around one applied change record")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class ChangeState {
+        
+        @Schema(description = "DN of the change record", example = "cn=John Doe,ou=users,dc=example,dc=com")
+        private String dn;
+        
+        @Schema(description = "Change type of the record", example = "modify",
+               allowableValues = {"add", "delete", "modify", "moddn"})
+        private String changeType;
+        
+        @Schema(description = "Requested attributes before the change; absent for adds")
+        private SearchResponse.LdapEntry before;
+        
+        @Schema(description = "Requested attributes after the change; absent for deletes")
+        private SearchResponse.LdapEntry after;
+        
+        public ChangeState() {}
+        
+        public ChangeState(String dn, String changeType, SearchResponse.LdapEntry before, SearchResponse.LdapEntry after) {
+            this.dn = dn;
+            this.changeType = changeType;
+            this.before = before;
+            this.after = after;
+        }
+        
+        public String getDn() {
+            return dn;
+        }
+        
+        public void setDn(String dn) {
+            this.dn = dn;
+        }
+        
+        public String getChangeType() {
+            return changeType;
+        }
+        
+        public void setChangeType(String changeType) {
+            this.changeType = changeType;
+        }
+        
+        public SearchResponse.LdapEntry getBefore() {
+            return before;
+        }
+        
+        public void setBefore(SearchResponse.LdapEntry before) {
+            this.before = before;
+        }
+        
+        public SearchResponse.LdapEntry getAfter() {
+            return after;
+        }
+        
+        public void setAfter(SearchResponse.LdapEntry after) {
+            this.after = after;
+        }
+    }
 }
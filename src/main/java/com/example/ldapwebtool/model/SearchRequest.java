@@ -1,17 +1,25 @@
 package com.example.ldapwebtool.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
-import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Min;
+import java.util.List;
 
 @Schema(description = "LDAP search request parameters")
 public class SearchRequest {
     
-    @Schema(description = "The LDAP URI to send the request to", 
-           example = "ldap://ldap.example.com:389", 
-           required = true)
-    @NotBlank(message = "URI is required")
+    @Schema(description = "The LDAP URI to send the request to. May list several hosts, e.g. ldap://h1,h2,h3:389. " +
+                          "Required unless backend is given", 
+           example = "ldap://ldap.example.com:389")
     private String uri;
     
+    @Schema(description = "Name of a configured backend to route the request to, instead of a URI. " +
+                          "Reads go to the backend's replicas", 
+           example = "corp")
+    private String backend;
+    
     @Schema(description = "The LDAP search base. Defaults to empty string", 
            example = "ou=users,dc=example,dc=com", 
            defaultValue = "")
@@ -28,6 +36,15 @@ public class SearchRequest {
            defaultValue = "sub")
     private String scope = "sub";
     
+    @Schema(description = "Server-side sort keys, applied in order. Prefix an attribute with '-' for descending order " +
+                          "and optionally append ':<matchingRuleOID>' to choose the ordering rule", 
+           example = "[\"sn\", \"-givenName\"]")
+    private List<String> sortKeys;
+    
+    @Schema(description = "Virtual List View window to return from the sorted result set. Requires sortKeys")
+    @Valid
+    private VirtualListView vlv;
+    
     public SearchRequest() {}
     
     public SearchRequest(String uri, String base, String filter, String scope) {
@@ -45,6 +62,21 @@ public class SearchRequest {
         this.uri = uri;
     }
     
+    public String getBackend() {
+        return backend;
+    }
+    
+    public void setBackend(String backend) {
+        this.backend = backend;
+    }
+    
+    @JsonIgnore
+    @Schema(hidden = true)
+    @AssertTrue(message = "Either uri or backend is required")
+    public boolean isTargetSpecified() {
+        return (uri != null && !uri.isBlank()) || (backend != null && !backend.isBlank());
+    }
+    
     public String getBase() {
         return base;
     }
@@ -68,4 +100,107 @@ public class SearchRequest {
     public void setScope(String scope) {
         this.scope = scope != null ? scope : "sub";
     }
+    
+    public List<String> getSortKeys() {
+        return sortKeys;
+    }
+    
+    public void setSortKeys(List<String> sortKeys) {
+        this.sortKeys = sortKeys;
+    }
+    
+    public VirtualListView getVlv() {
+        return vlv;
+    }
+    
+    public void setVlv(VirtualListView vlv) {
+        this.vlv = vlv;
+    }
+    
+    @Schema(description = "Virtual List View (VLV) window. The target is either a 1-based offset or an assertion value " +
+                          "matched against the first sort key")
+    public static class VirtualListView {
+        
+        @Schema(description = "1-based position of the target entry in the sorted list. Ignored when assertionValue is set. Defaults to 1", 
+               example = "1")
+        @Min(value = 1, message = "offset must be at least 1")
+        private Integer offset;
+        
+        @Schema(description = "Value of the first sort key to jump to. The target is the first entry greater than or equal to this value", 
+               example = "Smith")
+        private String assertionValue;
+        
+        @Schema(description = "Number of entries to return before the target entry", example = "0", defaultValue = "0")
+        @Min(value = 0, message = "beforeCount must not be negative")
+        private int beforeCount = 0;
+        
+        @Schema(description = "Number of entries to return after the target entry", example = "49", defaultValue = "0")
+        @Min(value = 0, message = "afterCount must not be negative")
+        private int afterCount = 0;
+        
+        @Schema(description = "Client's estimate of the result set size, as returned in a previous response. " +
+                              "Use 0 to let the offset be interpreted against the server's count", 
+               example = "0", defaultValue = "0")
+        @Min(value = 0, message = "contentCount must not be negative")
+        private int contentCount = 0;
+        
+        @Schema(description = "Opaque context identifier returned by the server in a previous response (base64)")
+        private String contextId;
+        
+        public VirtualListView() {}
+        
+        public VirtualListView(Integer offset, int beforeCount, int afterCount) {
+            this.offset = offset;
+            this.beforeCount = beforeCount;
+            this.afterCount = afterCount;
+        }
+        
+        public Integer getOffset() {
+            return offset;
+        }
+        
+        public void setOffset(Integer offset) {
+            this.offset = offset;
+        }
+        
+        public String getAssertionValue() {
+            return assertionValue;
+        }
+        
+        public void setAssertionValue(String assertionValue) {
+            this.assertionValue = assertionValue;
+        }
+        
+        public int getBeforeCount() {
+            return beforeCount;
+        }
+        
+        public void setBeforeCount(int beforeCount) {
+            this.beforeCount = beforeCount;
+        }
+        
+        public int getAfterCount() {
+            return afterCount;
+        }
+        
+        public void setAfterCount(int afterCount) {
+            this.afterCount = afterCount;
+        }
+        
+        public int getContentCount() {
+            return contentCount;
+        }
+        
+        public void setContentCount(int contentCount) {
+            this.contentCount = contentCount;
+        }
+        
+        public String getContextId() {
+            return contextId;
+        }
+        
+        public void setContextId(String contextId) {
+            this.contextId = contextId;
+        }
+    }
 }
@@ -13,6 +13,15 @@ public class SearchResponse {
     @Schema(description = "Total number of entries returned", example = "5")
     private int count;
     
+    @Schema(description = "1-based position of the VLV target entry in the sorted result set (VLV searches only)", example = "1")
+    private Integer targetPosition;
+    
+    @Schema(description = "Server's estimate of the total size of the sorted result set (VLV searches only)", example = "1250000")
+    private Integer contentCount;
+    
+    @Schema(description = "Opaque VLV context identifier to send back with the next window request (base64)")
+    private String contextId;
+    
     public SearchResponse() {}
     
     public SearchResponse(List<LdapEntry> entries) {
@@ -37,6 +46,30 @@ public class SearchResponse {
         this.count = count;
     }
     
+    public Integer getTargetPosition() {
+        return targetPosition;
+    }
+    
+    public void setTargetPosition(Integer targetPosition) {
+        this.targetPosition = targetPosition;
+    }
+    
+    public Integer getContentCount() {
+        return contentCount;
+    }
+    
+    public void setContentCount(Integer contentCount) {
+        this.contentCount = contentCount;
+    }
+    
+    public String getContextId() {
+        return contextId;
+    }
+    
+    public void setContextId(String contextId) {
+        this.contextId = contextId;
+    }
+    
     @Schema(description = "Individual LDAP entry with DN and attributes")
     public static class LdapEntry {
         
@@ -0,0 +1,435 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapAccessLogConfig;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured access log, written off the request thread.
+ *
+ * Requests {@link #claim} a record from a ring buffer of preallocated slots, fill it in and
+ * {@link Record#publish} it; nothing is formatted or written on the request thread. A single
+ * writer thread formats the published records as JSON Lines into a file that is rotated by
+ * size. When the writer falls behind and the ring is full, claim returns null: the record is
+ * dropped and counted, so a slow disk never holds up requests.
+ */
+@Service
+public class AccessLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccessLog.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int FLUSH_EVERY_RECORDS = 512;
+    private static final long DROP_REPORT_MILLIS = 10000;
+
+    private final LdapAccessLogConfig accessLogConfig;
+    private final JsonFactory jsonFactory;
+    private final Record[] slots;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicLong consumedSequence = new AtomicLong();
+    private final AtomicLong unreportedDrops = new AtomicLong();
+    private final Counter written;
+    private final Counter dropped;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    // Only touched by the writer thread
+    private CountingOutputStream file;
+    private JsonGenerator generator;
+    private boolean failing;
+    private long lastDropReport;
+
+    @Autowired
+    public AccessLog(LdapAccessLogConfig accessLogConfig, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.accessLogConfig = accessLogConfig;
+        this.jsonFactory = objectMapper.getFactory();
+
+        int size = Integer.highestOneBit(Math.max(2, accessLogConfig.getBufferSize()) - 1) << 1;
+        this.slots = new Record[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Record();
+        }
+        this.mask = size - 1;
+
+        Gauge.builder("ldap.access.log.backlog", this, AccessLog::getBacklog)
+            .description("Access log records waiting to be written").register(meterRegistry);
+        this.written = Counter.builder("ldap.access.log.records").tag("outcome", "written")
+            .description("Access log records written or dropped").register(meterRegistry);
+        this.dropped = Counter.builder("ldap.access.log.records").tag("outcome", "dropped")
+            .description("Access log records written or dropped").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return accessLogConfig.isEnabled();
+    }
+
+    /**
+     * Starts the writer thread.
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (!accessLogConfig.isEnabled() || writer != null) {
+            return;
+        }
+        running = true;
+        lastDropReport = System.currentTimeMillis();
+        writer = new Thread(this::drain, "ldap-access-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Writes what has been published so far and stops the writer thread.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        running = false;
+        if (writer == null) {
+            return;
+        }
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    /**
+     * Returns an empty record to fill in and publish, or null if the log is disabled or the
+     * ring is full. The record must be published, even if filling it in fails, or the writer
+     * stops at it.
+     */
+    public Record claim() {
+        if (!accessLogConfig.isEnabled()) {
+            return null;
+        }
+        while (true) {
+            long sequence = nextSequence.get();
+            if (sequence - consumedSequence.get() >= slots.length) {
+                dropped.increment();
+                unreportedDrops.incrementAndGet();
+                return null;
+            }
+            if (nextSequence.compareAndSet(sequence, sequence + 1)) {
+                Record record = slots[(int) sequence & mask];
+                record.reset(sequence);
+                return record;
+            }
+        }
+    }
+
+    public long getBacklog() {
+        return nextSequence.get() - consumedSequence.get();
+    }
+
+    private void drain() {
+        long sequence = consumedSequence.get();
+        int unflushed = 0;
+        while (true) {
+            Record record = slots[(int) sequence & mask];
+            if (record.published != sequence) {
+                if (unflushed > 0) {
+                    flush();
+                    unflushed = 0;
+                }
+                reportDrops();
+                if (!running) {
+                    break;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            write(record);
+            consumedSequence.set(++sequence);
+            if (++unflushed >= FLUSH_EVERY_RECORDS) {
+                flush();
+                unflushed = 0;
+            }
+        }
+        closeFile();
+    }
+
+    private void write(Record record) {
+        try {
+            JsonGenerator json = generator();
+            json.writeStartObject();
+            json.writeStringField("time", Instant.ofEpochMilli(record.timestampMillis).toString());
+            writeString(json, "caller", record.caller);
+            writeString(json, "remoteAddress", record.remoteAddress);
+            writeString(json, "method", record.method);
+            writeString(json, "path", record.path);
+            writeString(json, "backend", record.backend);
+            writeString(json, "filter", record.filter);
+            json.writeNumberField("status", record.status);
+            writeNumber(json, "resultCode", record.resultCode);
+            writeNumber(json, "entries", record.entries);
+            writeNumber(json, "bytes", record.bytes);
+            writeNumber(json, "queueMillis", record.queueMillis);
+            writeNumber(json, "directoryMillis", record.directoryMillis);
+            writeNumber(json, "totalMillis", record.totalMillis);
+            json.writeEndObject();
+            json.writeRaw('\n');
+            written.increment();
+            failing = false;
+        } catch (IOException e) {
+            dropped.increment();
+            if (!failing) {
+                logger.warn("Unable to write access log in {}: {}", accessLogConfig.getDirectory(), e.getMessage());
+                failing = true;
+            }
+            closeFile();
+        }
+    }
+
+    private static void writeString(JsonGenerator json, String name, String value) throws IOException {
+        if (value != null) {
+            json.writeStringField(name, value);
+        }
+    }
+
+    private static void writeNumber(JsonGenerator json, String name, long value) throws IOException {
+        if (value >= 0) {
+            json.writeNumberField(name, value);
+        }
+    }
+
+    private void flush() {
+        if (generator == null) {
+            return;
+        }
+        try {
+            generator.flush();
+            if (file.count >= accessLogConfig.getMaxFileBytes()) {
+                rotate();
+            }
+        } catch (IOException e) {
+            if (!failing) {
+                logger.warn("Unable to write access log in {}: {}", accessLogConfig.getDirectory(), e.getMessage());
+                failing = true;
+            }
+            closeFile();
+        }
+    }
+
+    private void reportDrops() {
+        long now = System.currentTimeMillis();
+        if (now - lastDropReport < DROP_REPORT_MILLIS && running) {
+            return;
+        }
+        lastDropReport = now;
+        long drops = unreportedDrops.getAndSet(0);
+        if (drops > 0) {
+            logger.warn("Access log buffer full; dropped {} records", drops);
+        }
+    }
+
+    private JsonGenerator generator() throws IOException {
+        if (generator == null) {
+            Path directory = Paths.get(accessLogConfig.getDirectory());
+            Files.createDirectories(directory);
+            Path current = directory.resolve(accessLogConfig.getFileName());
+            long size = Files.exists(current) ? Files.size(current) : 0;
+            file = new CountingOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(current, StandardOpenOption.CREATE, StandardOpenOption.APPEND), 65536), size);
+            generator = jsonFactory.createGenerator(file);
+            generator.setRootValueSeparator(null);
+        }
+        return generator;
+    }
+
+    private void closeFile() {
+        if (generator == null) {
+            return;
+        }
+        try {
+            generator.close();
+        } catch (IOException e) {
+            logger.debug("Unable to close access log: {}", e.getMessage());
+        }
+        generator = null;
+        file = null;
+    }
+
+    /**
+     * Renames access.jsonl to access.1.jsonl, access.1.jsonl to access.2.jsonl and so on,
+     * dropping the oldest beyond the configured number of files.
+     */
+    private void rotate() throws IOException {
+        closeFile();
+        Path directory = Paths.get(accessLogConfig.getDirectory());
+        Path current = directory.resolve(accessLogConfig.getFileName());
+        if (accessLogConfig.getMaxFiles() <= 0) {
+            Files.deleteIfExists(current);
+            return;
+        }
+        for (int i = accessLogConfig.getMaxFiles(); i >= 1; i--) {
+            Path source = i == 1 ? current : directory.resolve(rotatedName(i - 1));
+            if (Files.exists(source)) {
+                Files.move(source, directory.resolve(rotatedName(i)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private String rotatedName(int index) {
+        String name = accessLogConfig.getFileName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) + "." + index + name.substring(dot) : name + "." + index;
+    }
+
+    /**
+     * One slot of the ring. Numbers left negative and strings left null are omitted from the line.
+     */
+    public static final class Record {
+
+        private volatile long published = -1;
+        private long sequence;
+        private long timestampMillis;
+        private String caller;
+        private String remoteAddress;
+        private String method;
+        private String path;
+        private String backend;
+        private String filter;
+        private int status;
+        private long resultCode;
+        private long entries;
+        private long bytes;
+        private long queueMillis;
+        private long directoryMillis;
+        private long totalMillis;
+
+        private Record() {
+        }
+
+        private void reset(long sequence) {
+            this.sequence = sequence;
+            timestampMillis = 0;
+            caller = null;
+            remoteAddress = null;
+            method = null;
+            path = null;
+            backend = null;
+            filter = null;
+            status = 0;
+            resultCode = -1;
+            entries = -1;
+            bytes = -1;
+            queueMillis = -1;
+            directoryMillis = -1;
+            totalMillis = -1;
+        }
+
+        /**
+         * Hands the record to the writer thread; it must not be touched afterwards.
+         */
+        public void publish() {
+            published = sequence;
+        }
+
+        public void setTimestampMillis(long timestampMillis) {
+            this.timestampMillis = timestampMillis;
+        }
+
+        public void setCaller(String caller) {
+            this.caller = caller;
+        }
+
+        public void setRemoteAddress(String remoteAddress) {
+            this.remoteAddress = remoteAddress;
+        }
+
+        public void setMethod(String method) {
+            this.method = method;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public void setBackend(String backend) {
+            this.backend = backend;
+        }
+
+        public void setFilter(String filter) {
+            this.filter = filter;
+        }
+
+        public void setStatus(int status) {
+            this.status = status;
+        }
+
+        public void setResultCode(long resultCode) {
+            this.resultCode = resultCode;
+        }
+
+        public void setEntries(long entries) {
+            this.entries = entries;
+        }
+
+        public void setBytes(long bytes) {
+            this.bytes = bytes;
+        }
+
+        public void setQueueMillis(long queueMillis) {
+            this.queueMillis = queueMillis;
+        }
+
+        public void setDirectoryMillis(long directoryMillis) {
+            this.directoryMillis = directoryMillis;
+        }
+
+        public void setTotalMillis(long totalMillis) {
+            this.totalMillis = totalMillis;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream out, long count) {
+            super(out);
+            this.count = count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapBackendConfig;
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the URI a request should be sent to.
+ *
+ * Requests that carry a URI are sent there unchanged. Requests that name a backend are
+ * routed by operation: writes go to the primary, reads to the replicas. After a caller
+ * writes, that caller's reads are kept consistent for the backend's read-your-writes
+ * window, either by pinning them to the primary or by only using replicas whose
+ * contextCSN has caught up with the write.
+ */
+@Service
+public class BackendRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackendRouter.class);
+
+    static final String CONSISTENCY_PIN = "pin";
+    static final String CONSISTENCY_CSN = "csn";
+    static final String CONSISTENCY_NONE = "none";
+
+    /** How long a replica's contextCSN reading is reused before it is read again. */
+    private static final long REPLICA_CSN_TTL_MILLIS = 250;
+
+    private final LdapBackendConfig backendConfig;
+    private final LdapConnectionManager connectionManager;
+
+    /** Most recent write per backend and caller, removed once the window has passed. */
+    private final Map<String, WriteMark> recentWrites = new ConcurrentHashMap<>();
+
+    /** Last contextCSN read from each replica URI. */
+    private final Map<String, ReplicaCsn> replicaCsns = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BackendRouter(LdapBackendConfig backendConfig, LdapConnectionManager connectionManager) {
+        this.backendConfig = backendConfig;
+        this.connectionManager = connectionManager;
+    }
+
+    /**
+     * Returns the URI a read (search) should use.
+     *
+     * @throws RequestValidationException if neither or both of URI and backend are given, the
+     *         URI is malformed or the backend is unknown
+     */
+    public String resolveReadUri(String uri, String backendName, String username, String password) throws Exception {
+        if (!StringUtils.hasText(backendName)) {
+            return requireUri(uri);
+        }
+
+        LdapBackendConfig.Backend backend = getBackend(backendName, uri);
+        if (backend.getReplicas() == null || backend.getReplicas().isEmpty()) {
+            return backend.getPrimary();
+        }
+
+        String consistency = consistencyOf(backend);
+        WriteMark mark = CONSISTENCY_NONE.equals(consistency) ? null : recentWrites.get(writeKey(backendName, username));
+        if (mark == null || mark.isExpired()) {
+            return joinUris(backend.getReplicas());
+        }
+
+        if (CONSISTENCY_CSN.equals(consistency) && !mark.csns.isEmpty()) {
+            List<String> caughtUp = new ArrayList<>();
+            for (String replica : backend.getReplicas()) {
+                if (hasCaughtUp(readReplicaCsn(replica, backend.getNamingContext(), username, password), mark.csns)) {
+                    caughtUp.add(replica);
+                }
+            }
+            if (!caughtUp.isEmpty()) {
+                return joinUris(caughtUp);
+            }
+        }
+
+        // Pinned, or no replica has caught up yet
+        return backend.getPrimary();
+    }
+
+    /**
+     * Returns the URIs of every configured backend: each primary, and its replicas as one
+     * multi-host URI, matching the URIs that requests are routed to.
+     */
+    public Set<String> getConfiguredUris() {
+        Set<String> uris = new LinkedHashSet<>();
+        for (LdapBackendConfig.Backend backend : backendConfig.getBackends().values()) {
+            if (StringUtils.hasText(backend.getPrimary())) {
+                uris.add(backend.getPrimary());
+            }
+            if (backend.getReplicas() != null && !backend.getReplicas().isEmpty()) {
+                uris.add(joinUris(backend.getReplicas()));
+            }
+        }
+        return uris;
+    }
+
+    /**
+     * Returns the configuration of the named backend, or null if no backend is named or
+     * there is none by that name.
+     */
+    public LdapBackendConfig.Backend findBackend(String backendName) {
+        return StringUtils.hasText(backendName) ? backendConfig.getBackends().get(backendName) : null;
+    }
+
+    /**
+     * Returns the URI a write (modify) should use.
+     *
+     * @throws RequestValidationException if neither or both of URI and backend are given, the
+     *         URI is malformed or the backend is unknown
+     */
+    public String resolveWriteUri(String uri, String backendName) throws RequestValidationException {
+        if (!StringUtils.hasText(backendName)) {
+            return requireUri(uri);
+        }
+        return getBackend(backendName, uri).getPrimary();
+    }
+
+    /**
+     * Records that the caller has written to the backend, so that their reads stay consistent.
+     * In csn mode the primary's contextCSN is read on the connection that performed the write.
+     */
+    public void recordWrite(String backendName, String username, LDAPConnection primaryConnection) {
+        if (!StringUtils.hasText(backendName)) {
+            return;
+        }
+
+        // The write was routed by name, so the backend exists
+        LdapBackendConfig.Backend backend = backendConfig.getBackends().get(backendName);
+        String consistency = backend != null ? consistencyOf(backend) : CONSISTENCY_NONE;
+        if (CONSISTENCY_NONE.equals(consistency) || backend.getReplicas() == null || backend.getReplicas().isEmpty()) {
+            return;
+        }
+
+        Map<String, String> csns = Collections.emptyMap();
+        if (CONSISTENCY_CSN.equals(consistency)) {
+            try {
+                csns = readContextCsn(primaryConnection, backend.getNamingContext());
+            } catch (LDAPException e) {
+                // Without a CSN the caller is simply pinned to the primary for the window
+                logger.debug("Unable to read contextCSN from primary of backend {}: {}", backendName, e.getMessage());
+            }
+        }
+
+        long expiresAt = System.currentTimeMillis() + backend.getReadYourWritesWindowMillis();
+        recentWrites.put(writeKey(backendName, username), new WriteMark(expiresAt, csns));
+    }
+
+    /**
+     * Forgets writes whose read-your-writes window has passed.
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void expireWriteMarks() {
+        recentWrites.values().removeIf(WriteMark::isExpired);
+        long cutoff = System.currentTimeMillis() - REPLICA_CSN_TTL_MILLIS;
+        replicaCsns.values().removeIf(csn -> csn.readAt < cutoff);
+    }
+
+    private LdapBackendConfig.Backend getBackend(String backendName, String uri) throws RequestValidationException {
+        if (StringUtils.hasText(uri)) {
+            throw new RequestValidationException(ResultCode.PARAM_ERROR, "Specify either a URI or a backend, not both");
+        }
+
+        LdapBackendConfig.Backend backend = backendConfig.getBackends().get(backendName);
+        if (backend == null || !StringUtils.hasText(backend.getPrimary())) {
+            throw new RequestValidationException(ResultCode.PARAM_ERROR, "Unknown LDAP backend: " + backendName);
+        }
+        return backend;
+    }
+
+    private Map<String, String> readReplicaCsn(String replicaUri, String namingContext, String username, String password) {
+        ReplicaCsn cached = replicaCsns.get(replicaUri);
+        if (cached != null && System.currentTimeMillis() - cached.readAt < REPLICA_CSN_TTL_MILLIS) {
+            return cached.csns;
+        }
+
+        Map<String, String> csns;
+        try {
+            csns = connectionManager.withConnection(replicaUri, username, password,
+                connection -> readContextCsn(connection, namingContext));
+        } catch (Exception e) {
+            logger.debug("Unable to read contextCSN from replica {}: {}", replicaUri, e.getMessage());
+            csns = Collections.emptyMap();
+        }
+
+        replicaCsns.put(replicaUri, new ReplicaCsn(System.currentTimeMillis(), csns));
+        return csns;
+    }
+
+    /**
+     * Reads the contextCSN values of a naming context, keyed by server ID.
+     * CSNs have the form "20240101120000.123456Z#000000#001#000000", the third field being the server ID.
+     */
+    static Map<String, String> readContextCsn(LDAPConnection connection, String namingContext) throws LDAPException {
+        if (!StringUtils.hasText(namingContext)) {
+            return Collections.emptyMap();
+        }
+
+        SearchResultEntry entry = connection.getEntry(namingContext, "contextCSN");
+        if (entry == null || !entry.hasAttribute("contextCSN")) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, String> csns = new HashMap<>();
+        for (String csn : entry.getAttributeValues("contextCSN")) {
+            String[] parts = csn.split("#");
+            csns.put(parts.length >= 3 ? parts[2] : "", csn);
+        }
+        return csns;
+    }
+
+    /**
+     * A replica has caught up if, for every server ID seen on the primary, its CSN is at least as recent.
+     */
+    static boolean hasCaughtUp(Map<String, String> replicaCsns, Map<String, String> requiredCsns) {
+        if (replicaCsns.isEmpty()) {
+            return false;
+        }
+        for (Map.Entry<String, String> required : requiredCsns.entrySet()) {
+            String replicaCsn = replicaCsns.get(required.getKey());
+            if (replicaCsn == null || replicaCsn.compareTo(required.getValue()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String consistencyOf(LdapBackendConfig.Backend backend) {
+        return backend.getReadConsistency() != null
+            ? backend.getReadConsistency().toLowerCase(Locale.ROOT)
+            : CONSISTENCY_PIN;
+    }
+
+    private static String requireUri(String uri) throws RequestValidationException {
+        if (!StringUtils.hasText(uri)) {
+            throw new RequestValidationException(ResultCode.PARAM_ERROR, "Either a URI or a backend is required");
+        }
+        try {
+            LdapEndpoint.parse(uri);
+        } catch (IllegalArgumentException e) {
+            throw new RequestValidationException(ResultCode.PARAM_ERROR, e.getMessage());
+        }
+        return uri;
+    }
+
+    private static String joinUris(List<String> uris) {
+        return String.join(" ", uris);
+    }
+
+    private static String writeKey(String backendName, String username) {
+        return backendName + "|" + normalizeCaller(username);
+    }
+
+    static String normalizeCaller(String username) {
+        if (username == null) {
+            return "";
+        }
+        try {
+            return DN.normalize(username);
+        } catch (LDAPException e) {
+            // Not a DN (e.g. a user principal name); compare case-insensitively
+            return username.trim().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final class WriteMark {
+        private final long expiresAt;
+        private final Map<String, String> csns;
+
+        private WriteMark(long expiresAt, Map<String, String> csns) {
+            this.expiresAt = expiresAt;
+            this.csns = csns;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+
+    private static final class ReplicaCsn {
+        private final long readAt;
+        private final Map<String, String> csns;
+
+        private ReplicaCsn(long readAt, Map<String, String> csns) {
+            this.readAt = readAt;
+            this.csns = csns;
+        }
+    }
+}
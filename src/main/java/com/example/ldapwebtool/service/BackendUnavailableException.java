@@ -0,0 +1,22 @@
+package com.example.ldapwebtool.service;
+
+/**
+ * Thrown when a request is refused before reaching the directory because the backend is
+ * saturated or its circuit breaker is open, or because the server is already running as
+ * many export jobs as it allows. Controllers answer it with 503 and Retry-After.
+ */
+public class BackendUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public BackendUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.ldapwebtool.service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of concurrent requests against one backend.
+ *
+ * Requests beyond the limit wait in a bounded queue for up to the configured time. When the
+ * queue is already full, or the wait times out, the request is rejected with a
+ * {@link BackendUnavailableException} instead of piling up on the backend.
+ */
+public final class Bulkhead {
+
+    private final String name;
+    private final Semaphore permits;
+    private final int maxQueued;
+    private final long maxWaitMillis;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public Bulkhead(String name, int maxConcurrent, int maxQueued, long maxWaitMillis) {
+        this.name = name;
+        this.permits = new Semaphore(Math.max(1, maxConcurrent), true);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.maxWaitMillis = Math.max(0, maxWaitMillis);
+    }
+
+    /**
+     * Takes a slot, waiting in the queue if necessary. Every successful call must be paired with {@link #release()}.
+     *
+     * @throws BackendUnavailableException if the queue is full or the wait times out
+     */
+    public void acquire() {
+        if (!permits.tryAcquire()) {
+            if (queued.incrementAndGet() > maxQueued) {
+                queued.decrementAndGet();
+                throw reject("too many requests queued for " + name);
+            }
+
+            try {
+                if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                    throw reject("timed out waiting for a free slot on " + name);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject("interrupted while waiting for a free slot on " + name);
+            } finally {
+                queued.decrementAndGet();
+            }
+        }
+        inFlight.incrementAndGet();
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+        permits.release();
+    }
+
+    private BackendUnavailableException reject(String reason) {
+        rejected.incrementAndGet();
+        return new BackendUnavailableException("Backend is overloaded: " + reason, 1);
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+}
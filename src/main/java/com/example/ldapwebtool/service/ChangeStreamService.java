@@ -0,0 +1,745 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapChangeStreamConfig;
+import com.example.ldapwebtool.model.ChangeStreamEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unboundid.ldap.sdk.AsyncRequestID;
+import com.unboundid.ldap.sdk.AsyncSearchResultListener;
+import com.unboundid.ldap.sdk.ChangeType;
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.IntermediateResponse;
+import com.unboundid.ldap.sdk.IntermediateResponseListener;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.RootDSE;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchResultReference;
+import com.unboundid.ldap.sdk.controls.ContentSyncInfoIntermediateResponse;
+import com.unboundid.ldap.sdk.controls.ContentSyncInfoType;
+import com.unboundid.ldap.sdk.controls.ContentSyncRequestControl;
+import com.unboundid.ldap.sdk.controls.ContentSyncRequestMode;
+import com.unboundid.ldap.sdk.controls.ContentSyncState;
+import com.unboundid.ldap.sdk.controls.ContentSyncStateControl;
+import com.unboundid.ldap.sdk.controls.EntryChangeNotificationControl;
+import com.unboundid.ldap.sdk.controls.PersistentSearchChangeType;
+import com.unboundid.ldap.sdk.controls.PersistentSearchRequestControl;
+import com.unboundid.util.StaticUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams directory changes to HTTP clients (GET /api/changes/stream).
+ *
+ * Each distinct subscription - target URI, bind DN, base, scope, filter, attributes and
+ * change types - is served by one upstream search on a dedicated connection, using the
+ * persistent search control or RFC 4533 content synchronization in refreshAndPersist mode,
+ * however many clients subscribe to it. The upstream search is started by the first client
+ * and abandoned when the last one leaves. Each change is turned into JSON once and handed to
+ * every client's buffer.
+ *
+ * The upstream search never waits for a client: each client has a bounded buffer, drained
+ * by a thread of its own while there is something to send. A client that falls so far
+ * behind that its buffer overflows loses the buffered events and is sent a resync event in
+ * their place, telling it to re-read whatever it tracks. When the upstream search ends
+ * (server limits, restarts, lost connections) every client is sent a resync event and the
+ * stream is closed, so clients reconnect and start a new search.
+ */
+@Service
+public class ChangeStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeStreamService.class);
+
+    public static final String PERSISTENT_SEARCH = "persistent-search";
+    public static final String CONTENT_SYNC = "content-sync";
+    public static final String AUTO = "auto";
+
+    /** Name of events carrying a change. */
+    public static final String CHANGE_EVENT = "change";
+    /** Name of events telling the client that changes may have been missed. */
+    public static final String RESYNC_EVENT = "resync";
+
+    private static final Event HEARTBEAT = new Event(null, 0, null, false);
+
+    private final LdapConnectionManager connectionManager;
+    private final BackendRouter backendRouter;
+    private final SchemaCache schemaCache;
+    private final SearchPlanCache searchPlanCache;
+    private final LdapChangeStreamConfig streamConfig;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Upstream> upstreams = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final Counter dropped;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "ldap-change-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public ChangeStreamService(LdapConnectionManager connectionManager, BackendRouter backendRouter,
+                               SchemaCache schemaCache, SearchPlanCache searchPlanCache,
+                               LdapChangeStreamConfig streamConfig, ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry) {
+        this.connectionManager = connectionManager;
+        this.backendRouter = backendRouter;
+        this.schemaCache = schemaCache;
+        this.searchPlanCache = searchPlanCache;
+        this.streamConfig = streamConfig;
+        this.objectMapper = objectMapper;
+
+        Gauge.builder("ldap.changes.subscriptions", upstreams, Map::size)
+            .description("Upstream change searches held open").register(meterRegistry);
+        Gauge.builder("ldap.changes.subscribers", subscriberCount, AtomicInteger::get)
+            .description("Connected change stream clients").register(meterRegistry);
+        this.dropped = Counter.builder("ldap.changes.dropped")
+            .description("Change events dropped because a client fell behind").register(meterRegistry);
+    }
+
+    /**
+     * Receives the events of one client. Calls never overlap.
+     */
+    public interface ChangeSink {
+
+        void send(String event, long id, String data) throws IOException;
+
+        void heartbeat() throws IOException;
+
+        /**
+         * Ends the stream; called once, after the last event.
+         */
+        void close();
+    }
+
+    /**
+     * Subscribes the sink to changes below the base DN. Changes are read from the target's
+     * primary, as replicas may see them late. Joining a subscription that is already running
+     * checks the caller's credentials with a bind first, as its upstream search runs with
+     * those of the caller who started it.
+     *
+     * @param changeTypes change types to stream (add, delete, modify, moddn); all if null or empty
+     * @throws RequestValidationException if the base, filter or change types are invalid, or
+     *         the server supports no change search
+     * @throws BackendUnavailableException if the subscription or client limit is reached
+     */
+    public Subscription subscribe(String uri, String backend, String base, String scope, String filter,
+                                  List<String> attributes, List<String> changeTypes,
+                                  String username, String password, ChangeSink sink) throws Exception {
+        String targetUri = backendRouter.resolveWriteUri(uri, backend);
+        Query query = new Query(base, searchPlanCache.getPlan(filter, scope, null), attributes, changeTypes);
+        String key = targetUri + '\0' + BackendRouter.normalizeCaller(username) + '\0' + query.key;
+
+        if (subscriberCount.incrementAndGet() > streamConfig.getMaxSubscribers()) {
+            subscriberCount.decrementAndGet();
+            throw new BackendUnavailableException("Too many change stream clients", streamConfig.getRetryMillis() / 1000);
+        }
+        try {
+            while (true) {
+                Upstream upstream = upstream(key, targetUri, query);
+                Subscription subscription = upstream.join(sink, username, password);
+                if (subscription != null) {
+                    return subscription;
+                }
+                // It ended while we were looking it up
+                upstreams.remove(key, upstream);
+            }
+        } catch (Exception | Error e) {
+            subscriberCount.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the upstream search for the key, registering a new one if there is none and the
+     * subscription limit allows it. Registering is serialized so that concurrent first
+     * subscribers cannot both pass the limit; upstreams are only removed outside the lock,
+     * which can only make room.
+     */
+    private Upstream upstream(String key, String targetUri, Query query) throws BackendUnavailableException {
+        Upstream upstream = upstreams.get(key);
+        if (upstream != null) {
+            return upstream;
+        }
+        synchronized (upstreams) {
+            upstream = upstreams.get(key);
+            if (upstream == null) {
+                if (upstreams.size() >= streamConfig.getMaxSubscriptions()) {
+                    throw new BackendUnavailableException("Too many change stream subscriptions",
+                        streamConfig.getRetryMillis() / 1000);
+                }
+                upstream = new Upstream(key, targetUri, query);
+                upstreams.put(key, upstream);
+            }
+            return upstream;
+        }
+    }
+
+    /**
+     * Number of upstream searches held open.
+     */
+    public int getSubscriptionCount() {
+        return upstreams.size();
+    }
+
+    /**
+     * Sends a keep-alive to clients with nothing buffered; sending to a client that has gone
+     * away fails and removes it.
+     */
+    @Scheduled(fixedDelayString = "${ldap.changes.heartbeat-interval-millis:15000}")
+    public void sendHeartbeats() {
+        for (Upstream upstream : upstreams.values()) {
+            for (Subscription subscription : upstream.subscriptions) {
+                subscription.heartbeat();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Upstream upstream : upstreams.values()) {
+            upstream.end("The service is shutting down");
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Resolves a configured mechanism (persistent-search, content-sync or auto) against what
+     * the server's root DSE lists, preferring persistent search.
+     *
+     * @throws RequestValidationException if the mechanism is unknown, or auto finds neither
+     */
+    static String chooseMechanism(String configured, RootDSE rootDSE) throws LDAPException {
+        String mechanism = configured != null ? configured.toLowerCase(Locale.ROOT) : AUTO;
+        switch (mechanism) {
+            case PERSISTENT_SEARCH:
+            case CONTENT_SYNC:
+                return mechanism;
+            case AUTO:
+                if (rootDSE != null && rootDSE.supportsControl(PersistentSearchRequestControl.PERSISTENT_SEARCH_REQUEST_OID)) {
+                    return PERSISTENT_SEARCH;
+                }
+                if (rootDSE != null && rootDSE.supportsControl(ContentSyncRequestControl.SYNC_REQUEST_OID)) {
+                    return CONTENT_SYNC;
+                }
+                throw new RequestValidationException(ResultCode.UNAVAILABLE_CRITICAL_EXTENSION,
+                    "The server supports neither persistent search nor content synchronization");
+            default:
+                throw new RequestValidationException(ResultCode.PARAM_ERROR, "Unknown change mechanism: " + configured
+                    + " (expected " + PERSISTENT_SEARCH + ", " + CONTENT_SYNC + " or " + AUTO + ")");
+        }
+    }
+
+    /**
+     * One upstream change search and the clients it serves.
+     */
+    private final class Upstream implements AsyncSearchResultListener, IntermediateResponseListener {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String key;
+        private final String uri;
+        private final Query query;
+        private final Set<Subscription> subscriptions = new CopyOnWriteArraySet<>();
+        private final AtomicLong sequence = new AtomicLong();
+        /** Completed once the first client's attempt to start the search has finished. */
+        private final CompletableFuture<Void> ready = new CompletableFuture<>();
+
+        // Guarded by this
+        private boolean starting;
+        private boolean closed;
+        private LDAPConnection connection;
+        private AsyncRequestID requestId;
+
+        private volatile String mechanism;
+        private volatile DirectorySchema schema;
+        /** Content sync only: entries of the initial refresh are current content, not changes. */
+        private volatile boolean refreshing;
+
+        private Upstream(String key, String uri, Query query) {
+            this.key = key;
+            this.uri = uri;
+            this.query = query;
+        }
+
+        /**
+         * Adds a client, starting the search for the first one; later clients bind to check
+         * their credentials and wait for the start. Binds and searches run outside the
+         * monitor, so that a slow server does not hold up the other clients' joins and
+         * leaves. Returns null if the search has ended in the meantime.
+         */
+        private Subscription join(ChangeSink sink, String username, String password) throws Exception {
+            boolean first;
+            synchronized (this) {
+                if (closed) {
+                    return null;
+                }
+                first = !starting;
+                starting = true;
+            }
+            if (first) {
+                try {
+                    start(username, password);
+                } catch (Exception | Error e) {
+                    synchronized (this) {
+                        closed = true;
+                    }
+                    upstreams.remove(key, this);
+                    throw e;
+                } finally {
+                    ready.complete(null);
+                }
+            } else {
+                connectionManager.withConnection(uri, username, password, connection -> null);
+                ready.get();
+            }
+            synchronized (this) {
+                if (closed) {
+                    return null;
+                }
+                Subscription subscription = new Subscription(this, sink);
+                subscriptions.add(subscription);
+                return subscription;
+            }
+        }
+
+        private void start(String username, String password) throws LDAPException {
+            LDAPConnection opened = connectionManager.openConnection(uri, username, password);
+            try {
+                opened.setConnectionName("change stream " + query.key);
+                schema = schemaCache.get(uri, opened);
+                if (schema != null && schemaCache.isValidationEnabled()) {
+                    schema.validateFilter(query.plan.getFilter());
+                    schema.validateAttributeNames(query.attributeList, "attributes");
+                }
+                mechanism = chooseMechanism(opened);
+
+                com.unboundid.ldap.sdk.SearchRequest request = new com.unboundid.ldap.sdk.SearchRequest(
+                    this, query.base, query.plan.getScope(), query.plan.getFilter(), query.attributes);
+                // The search runs until abandoned
+                request.setResponseTimeoutMillis(0);
+                if (PERSISTENT_SEARCH.equals(mechanism)) {
+                    request.addControl(new PersistentSearchRequestControl(query.persistentSearchTypes(), true, true));
+                } else {
+                    refreshing = true;
+                    request.addControl(new ContentSyncRequestControl(true, ContentSyncRequestMode.REFRESH_AND_PERSIST, null, false));
+                    request.setIntermediateResponseListener(this);
+                }
+                AsyncRequestID id = opened.asyncSearch(request);
+                synchronized (this) {
+                    if (!closed) {
+                        connection = opened;
+                        requestId = id;
+                        logger.debug("Started {} change search on {} for {}", mechanism, uri, query.key);
+                        return;
+                    }
+                }
+                // Ended (e.g. by shutdown) while starting
+                abandon(opened, id);
+            } catch (LDAPException | RuntimeException e) {
+                opened.close();
+                throw e;
+            }
+        }
+
+        private String chooseMechanism(LDAPConnection opened) throws LDAPException {
+            RootDSE rootDSE = schema != null && schema.getRootDSE() != null ? schema.getRootDSE() : opened.getRootDSE();
+            return ChangeStreamService.chooseMechanism(streamConfig.getMechanism(), rootDSE);
+        }
+
+        @Override
+        public void searchEntryReturned(SearchResultEntry entry) {
+            ChangeStreamEvent event;
+            try {
+                event = toEvent(entry);
+            } catch (LDAPException e) {
+                logger.debug("Ignoring change entry {} with an undecodable control: {}", entry.getDN(), e.getMessage());
+                return;
+            }
+            if (event != null) {
+                publish(CHANGE_EVENT, event, false);
+            }
+        }
+
+        private ChangeStreamEvent toEvent(SearchResultEntry entry) throws LDAPException {
+            String changeType = null;
+            String previousDn = null;
+            Long changeNumber = null;
+            if (PERSISTENT_SEARCH.equals(mechanism)) {
+                EntryChangeNotificationControl control = EntryChangeNotificationControl.get(entry);
+                if (control != null) {
+                    changeType = name(control.getChangeType());
+                    previousDn = control.getPreviousDN();
+                    changeNumber = control.getChangeNumber() >= 0 ? control.getChangeNumber() : null;
+                }
+            } else {
+                ContentSyncStateControl control = ContentSyncStateControl.get(entry);
+                if (refreshing || control == null || control.getState() == ContentSyncState.PRESENT) {
+                    return null;
+                }
+                changeType = name(control.getState());
+                // Content sync cannot be asked for some change types only
+                if (!query.changeTypes.isEmpty() && !query.changeTypes.contains(ChangeType.forName(changeType))) {
+                    return null;
+                }
+            }
+            return new ChangeStreamEvent(entry.getDN(), changeType, previousDn, changeNumber,
+                EntryFormatter.toLdapEntry(entry, schema));
+        }
+
+        @Override
+        public void intermediateResponseReturned(IntermediateResponse response) {
+            if (!ContentSyncInfoIntermediateResponse.SYNC_INFO_OID.equals(response.getOID())) {
+                return;
+            }
+            try {
+                ContentSyncInfoIntermediateResponse info = ContentSyncInfoIntermediateResponse.decode(response);
+                if ((info.getType() == ContentSyncInfoType.REFRESH_DELETE || info.getType() == ContentSyncInfoType.REFRESH_PRESENT)
+                        && info.refreshDone()) {
+                    refreshing = false;
+                }
+            } catch (LDAPException e) {
+                logger.debug("Ignoring undecodable sync info message on {}: {}", uri, e.getMessage());
+            }
+        }
+
+        @Override
+        public void searchReferenceReturned(SearchResultReference reference) {
+            // Referrals are not followed
+        }
+
+        @Override
+        public void searchResultReceived(AsyncRequestID id, SearchResult result) {
+            logger.info("Change search on {} ended: {} {}", uri, result.getResultCode(),
+                result.getDiagnosticMessage() != null ? result.getDiagnosticMessage() : "");
+            // Not on this thread: it is the connection's reader
+            executor.execute(() -> end("The directory ended the change search (" + result.getResultCode().getName() + ")"));
+        }
+
+        private void publish(String name, ChangeStreamEvent event, boolean terminal) {
+            String data;
+            try {
+                data = objectMapper.writeValueAsString(event);
+            } catch (JsonProcessingException e) {
+                logger.warn("Unable to serialize change event for {}: {}", event.getDn(), e.getMessage());
+                return;
+            }
+            Event serialized = new Event(name, sequence.incrementAndGet(), data, terminal);
+            for (Subscription subscription : subscriptions) {
+                if (terminal) {
+                    subscription.end(serialized);
+                } else {
+                    subscription.offer(serialized);
+                }
+            }
+        }
+
+        /**
+         * Ends the search and tells every client to resync.
+         */
+        private void end(String reason) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            upstreams.remove(key, this);
+            publish(RESYNC_EVENT, ChangeStreamEvent.resync(reason), true);
+            closeConnection();
+        }
+
+        private void remove(Subscription subscription) {
+            subscriptions.remove(subscription);
+            synchronized (this) {
+                if (closed || !subscriptions.isEmpty()) {
+                    return;
+                }
+                closed = true;
+            }
+            upstreams.remove(key, this);
+            closeConnection();
+            logger.debug("Abandoned change search on {} for {}", uri, query.key);
+        }
+
+        private void closeConnection() {
+            LDAPConnection closing;
+            AsyncRequestID id;
+            synchronized (this) {
+                closing = connection;
+                id = requestId;
+                connection = null;
+            }
+            if (closing != null) {
+                abandon(closing, id);
+            }
+        }
+
+        private void abandon(LDAPConnection closing, AsyncRequestID id) {
+            try {
+                closing.abandon(id);
+            } catch (LDAPException e) {
+                logger.debug("Unable to abandon change search on {}: {}", uri, e.getMessage());
+            }
+            closing.close();
+        }
+    }
+
+    /**
+     * One client of an upstream search, with its buffer of events not yet sent.
+     */
+    public final class Subscription {
+
+        private final Upstream upstream;
+        private final ChangeSink sink;
+        private final ArrayBlockingQueue<Event> queue = new ArrayBlockingQueue<>(Math.max(1, streamConfig.getBufferSize()));
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        /** Set once the final event is queued; nothing is queued after it. */
+        private boolean ending;
+
+        private Subscription(Upstream upstream, ChangeSink sink) {
+            this.upstream = upstream;
+            this.sink = sink;
+        }
+
+        /**
+         * How the upstream search reads changes: persistent-search or content-sync.
+         */
+        public String getMechanism() {
+            return upstream.mechanism;
+        }
+
+        private synchronized void offer(Event event) {
+            if (ending) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                // Too far behind: drop what it has not read and tell it to start over
+                dropped.increment(queue.size() + 1);
+                queue.clear();
+                queue.offer(resync(event.id, "Events were dropped because the client fell behind", false));
+            }
+            schedule();
+        }
+
+        private synchronized void end(Event event) {
+            if (ending) {
+                return;
+            }
+            ending = true;
+            if (!queue.offer(event)) {
+                dropped.increment(queue.size());
+                queue.clear();
+                queue.offer(event);
+            }
+            schedule();
+        }
+
+        private synchronized void heartbeat() {
+            if (!ending && queue.isEmpty() && queue.offer(HEARTBEAT)) {
+                schedule();
+            }
+        }
+
+        private Event resync(long id, String reason, boolean terminal) {
+            try {
+                return new Event(RESYNC_EVENT, id, objectMapper.writeValueAsString(ChangeStreamEvent.resync(reason)), terminal);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RuntimeException e) {
+                    // Shutting down
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                Event event;
+                while ((event = queue.poll()) != null) {
+                    if (event == HEARTBEAT) {
+                        sink.heartbeat();
+                    } else {
+                        sink.send(event.name, event.id, event.data);
+                    }
+                    if (event.terminal) {
+                        close();
+                        return;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Change stream client went away: {}", e.getMessage());
+                close();
+                return;
+            } finally {
+                draining.set(false);
+            }
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+
+        /**
+         * Unsubscribes and ends the stream. Safe to call more than once.
+         */
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            synchronized (this) {
+                ending = true;
+                queue.clear();
+            }
+            subscriberCount.decrementAndGet();
+            upstream.remove(this);
+            sink.close();
+        }
+    }
+
+    private static final class Event {
+        private final String name;
+        private final long id;
+        private final String data;
+        /** Whether the stream ends after this event. */
+        private final boolean terminal;
+
+        private Event(String name, long id, String data, boolean terminal) {
+            this.name = name;
+            this.id = id;
+            this.data = data;
+            this.terminal = terminal;
+        }
+    }
+
+    /**
+     * What a subscription searches for, with the key shared by identical subscriptions.
+     */
+    private static final class Query {
+        private final String base;
+        private final SearchPlan plan;
+        private final String[] attributes;
+        private final List<String> attributeList;
+        private final Set<ChangeType> changeTypes;
+        private final String key;
+
+        private Query(String base, SearchPlan plan, List<String> attributes, List<String> changeTypes)
+                throws RequestValidationException {
+            DN baseDN;
+            try {
+                baseDN = new DN(base);
+            } catch (LDAPException e) {
+                throw new RequestValidationException(ResultCode.INVALID_DN_SYNTAX, "Invalid base DN: " + base);
+            }
+            this.base = base;
+            this.plan = plan;
+
+            Set<String> attributeNames = new TreeSet<>();
+            this.attributeList = new ArrayList<>();
+            if (attributes != null) {
+                for (String attribute : attributes) {
+                    attributeNames.add(StaticUtils.toLowerCase(attribute));
+                    if (!attribute.equals("*") && !attribute.equals("+") && !attribute.equals("1.1")) {
+                        attributeList.add(attribute);
+                    }
+                }
+            }
+            this.attributes = attributes != null ? attributes.toArray(new String[0]) : new String[0];
+
+            this.changeTypes = EnumSet.noneOf(ChangeType.class);
+            if (changeTypes != null) {
+                for (String changeType : changeTypes) {
+                    ChangeType parsed = ChangeType.forName(changeType);
+                    if (parsed == null) {
+                        throw new RequestValidationException(ResultCode.PARAM_ERROR, "Unknown change type: " + changeType);
+                    }
+                    this.changeTypes.add(parsed);
+                }
+            }
+
+            this.key = baseDN.toNormalizedString() + '|' + plan.getScope().getName() + '|'
+                + plan.getFilter().toNormalizedString() + '|' + attributeNames + '|' + this.changeTypes;
+        }
+
+        private Set<PersistentSearchChangeType> persistentSearchTypes() {
+            if (changeTypes.isEmpty()) {
+                return PersistentSearchChangeType.allChangeTypes();
+            }
+            Set<PersistentSearchChangeType> types = EnumSet.noneOf(PersistentSearchChangeType.class);
+            for (ChangeType changeType : changeTypes) {
+                switch (changeType) {
+                    case ADD:
+                        types.add(PersistentSearchChangeType.ADD);
+                        break;
+                    case DELETE:
+                        types.add(PersistentSearchChangeType.DELETE);
+                        break;
+                    case MODIFY:
+                        types.add(PersistentSearchChangeType.MODIFY);
+                        break;
+                    default:
+                        types.add(PersistentSearchChangeType.MODIFY_DN);
+                        break;
+                }
+            }
+            return types;
+        }
+    }
+
+    static String name(PersistentSearchChangeType changeType) {
+        switch (changeType) {
+            case ADD:
+                return ChangeType.ADD.getName();
+            case DELETE:
+                return ChangeType.DELETE.getName();
+            case MODIFY_DN:
+                return ChangeType.MODIFY_DN.getName();
+            default:
+                return ChangeType.MODIFY.getName();
+        }
+    }
+
+    static String name(ContentSyncState state) {
+        switch (state) {
+            case ADD:
+                return ChangeType.ADD.getName();
+            case DELETE:
+                return ChangeType.DELETE.getName();
+            default:
+                return ChangeType.MODIFY.getName();
+        }
+    }
+}
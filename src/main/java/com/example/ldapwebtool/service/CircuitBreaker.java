@@ -0,0 +1,96 @@
+package com.example.ldapwebtool.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stops sending requests to a backend after consecutive connect or timeout failures.
+ *
+ * CLOSED: requests pass; consecutive failures are counted.
+ * OPEN: requests are rejected until the open period has elapsed.
+ * HALF_OPEN: a single probe request is let through; its outcome closes or re-opens the circuit.
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAt;
+
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Checks whether a request may proceed.
+     *
+     * @return true if the caller is the half-open probe
+     * @throws BackendUnavailableException if the circuit is open or a probe is already in flight
+     */
+    public boolean beforeRequest() {
+        if (failureThreshold <= 0) {
+            return false;
+        }
+
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return false;
+        }
+
+        long remaining = openedAt + openMillis - System.currentTimeMillis();
+        if (current == State.OPEN && remaining <= 0 && state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+            return true;
+        }
+
+        throw new BackendUnavailableException("Circuit breaker is open for " + name,
+            Math.max(1, (remaining + 999) / 1000));
+    }
+
+    /**
+     * The backend answered, even if with an LDAP error unrelated to its availability.
+     */
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        if (state.get() != State.CLOSED) {
+            state.set(State.CLOSED);
+        }
+    }
+
+    /**
+     * The backend could not be reached or did not answer in time.
+     */
+    public void onFailure() {
+        if (failureThreshold <= 0) {
+            return;
+        }
+
+        int failures = consecutiveFailures.incrementAndGet();
+        if (state.get() == State.HALF_OPEN || failures >= failureThreshold) {
+            openedAt = System.currentTimeMillis();
+            state.set(State.OPEN);
+        }
+    }
+
+    /**
+     * The half-open probe never reached the backend (e.g. it was rejected by the bulkhead);
+     * let the next request probe instead.
+     */
+    public void abandonProbe() {
+        state.compareAndSet(State.HALF_OPEN, State.OPEN);
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+}
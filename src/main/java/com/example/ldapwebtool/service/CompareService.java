@@ -0,0 +1,316 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapCompareConfig;
+import com.example.ldapwebtool.config.LdapPoolConfig;
+import com.example.ldapwebtool.model.CompareBatchRequest;
+import com.example.ldapwebtool.model.CompareBatchResponse;
+import com.example.ldapwebtool.util.BoundedCache;
+import com.unboundid.ldap.sdk.CompareRequest;
+import com.unboundid.ldap.sdk.CompareResult;
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.util.StaticUtils;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Answers batches of attribute value assertions with LDAP compare operations.
+ *
+ * A batch is split over up to {@code connectionsPerBatch} pooled connections, and on each
+ * connection the compares are sent asynchronously with up to {@code pipelineDepth} of them
+ * awaiting an answer, so a batch costs a few round trips rather than one per assertion.
+ *
+ * Batches that ask for it use a short-lived cache of true/false answers, kept per backend
+ * URI and bind DN. Changes made through this service ({@link DirectoryChangeEvent}) drop the
+ * cached answers for the changed DN; changes made by other clients are seen once the answers
+ * expire. A batch answered entirely from the cache still checks the caller's password,
+ * with a bind unless the same password passed one within the credential TTL.
+ */
+@Service
+public class CompareService {
+
+    private final LdapConnectionManager connectionManager;
+    private final BackendRouter backendRouter;
+    private final LdapCompareConfig compareConfig;
+    private final LdapPoolConfig poolConfig;
+    private final BoundedCache<String, Map<String, CachedAnswer>> cache;
+    private final VerifiedCredentials credentials;
+    // When every thread is busy the request thread runs the share itself
+    private final ThreadPoolExecutor executor;
+
+    @Autowired
+    public CompareService(LdapConnectionManager connectionManager, BackendRouter backendRouter,
+                          LdapCompareConfig compareConfig, LdapPoolConfig poolConfig) {
+        this.connectionManager = connectionManager;
+        this.backendRouter = backendRouter;
+        this.compareConfig = compareConfig;
+        this.poolConfig = poolConfig;
+        this.cache = new BoundedCache<>(compareConfig.getCacheSize());
+        this.credentials = new VerifiedCredentials(connectionManager, compareConfig.getCredentialTtlMillis());
+
+        int threads = Math.max(1, compareConfig.getMaxThreads());
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "ldap-compare");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Answers every assertion of the batch. Assertions whose compare fails are answered with
+     * null and an error; the batch as a whole only fails if no connection could be used.
+     *
+     * @throws RequestValidationException if the batch has too many assertions
+     */
+    public CompareBatchResponse compare(CompareBatchRequest request, String username, String password) throws Exception {
+        List<CompareBatchRequest.Assertion> assertions = request.getAssertions();
+        if (assertions.size() > compareConfig.getMaxAssertions()) {
+            throw new RequestValidationException(ResultCode.ADMIN_LIMIT_EXCEEDED,
+                "A batch may have at most " + compareConfig.getMaxAssertions() + " assertions");
+        }
+        String uri = backendRouter.resolveReadUri(request.getUri(), request.getBackend(), username, password);
+        String view = uri + '\0' + BackendRouter.normalizeCaller(username);
+        boolean cached = request.isCached() && compareConfig.getCacheTtlMillis() > 0;
+
+        Batch batch = new Batch(assertions);
+        List<Integer> pending = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < assertions.size(); i++) {
+            CompareBatchRequest.Assertion assertion = assertions.get(i);
+            try {
+                batch.dnKeys[i] = new DN(assertion.getDn()).toNormalizedString();
+            } catch (LDAPException e) {
+                batch.fail(i, ResultCode.INVALID_DN_SYNTAX, "Invalid DN: " + assertion.getDn());
+                continue;
+            }
+            CachedAnswer answer = cached ? cachedAnswer(batch.dnKeys[i], view, assertion, now) : null;
+            if (answer != null) {
+                batch.results[i] = answer.value;
+            } else {
+                pending.add(i);
+            }
+        }
+
+        if (pending.isEmpty()) {
+            // No compare will bind with the caller's password
+            credentials.verify(uri, username, password);
+        } else {
+            run(batch, pending, uri, username, password);
+        }
+
+        if (cached) {
+            long expiresAt = System.currentTimeMillis() + compareConfig.getCacheTtlMillis();
+            for (int i : pending) {
+                if (batch.results[i] != null) {
+                    cache.computeIfAbsent(batch.dnKeys[i], k -> new ConcurrentHashMap<>())
+                        .put(answerKey(view, assertions.get(i)), new CachedAnswer(batch.results[i], expiresAt));
+                }
+            }
+        }
+
+        List<CompareBatchResponse.CompareError> errors = new ArrayList<>();
+        for (CompareBatchResponse.CompareError error : batch.errors) {
+            if (error != null) {
+                errors.add(error);
+            }
+        }
+        return new CompareBatchResponse(Arrays.asList(batch.results), errors);
+    }
+
+    /**
+     * Splits the pending assertions over connections and runs them. The first share runs on
+     * the calling thread.
+     */
+    private void run(Batch batch, List<Integer> pending, String uri, String username, String password) throws Exception {
+        int depth = Math.max(1, compareConfig.getPipelineDepth());
+        int shares = Math.max(1, Math.min(compareConfig.getConnectionsPerBatch(), (pending.size() + depth - 1) / depth));
+        int shareSize = (pending.size() + shares - 1) / shares;
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int start = shareSize; start < pending.size(); start += shareSize) {
+            List<Integer> share = pending.subList(start, Math.min(pending.size(), start + shareSize));
+            futures.add(executor.submit(() -> runShare(batch, share, uri, username, password)));
+        }
+
+        List<Exception> failures = new ArrayList<>();
+        Exception failure = runShare(batch, pending.subList(0, Math.min(pending.size(), shareSize)), uri, username, password);
+        if (failure != null) {
+            failures.add(failure);
+        }
+        for (Future<?> future : futures) {
+            try {
+                Object result = future.get();
+                if (result instanceof Exception) {
+                    failures.add((Exception) result);
+                }
+            } catch (ExecutionException e) {
+                failures.add(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+            }
+        }
+        if (failures.size() == futures.size() + 1) {
+            // Nothing got through, e.g. the backend is down or saturated: fail the request as a whole
+            throw failures.get(0);
+        }
+    }
+
+    /**
+     * Runs one share of the batch on one connection. Returns the exception that stopped it,
+     * after recording it for every assertion of the share that got no answer, or null.
+     */
+    private Exception runShare(Batch batch, List<Integer> share, String uri, String username, String password) {
+        try {
+            connectionManager.withConnection(uri, username, password, connection -> {
+                pipeline(connection, batch, share);
+                return null;
+            });
+            return null;
+        } catch (Exception e) {
+            ResultCode resultCode = e instanceof LDAPException ? ((LDAPException) e).getResultCode() : ResultCode.OTHER;
+            synchronized (batch) {
+                for (int i : share) {
+                    if (batch.results[i] == null && batch.errors[i] == null) {
+                        batch.fail(i, resultCode, e.getMessage());
+                    }
+                }
+            }
+            return e;
+        }
+    }
+
+    private void pipeline(LDAPConnection connection, Batch batch, List<Integer> share) throws LDAPException, InterruptedException {
+        Semaphore window = new Semaphore(Math.max(1, compareConfig.getPipelineDepth()));
+        CountDownLatch answered = new CountDownLatch(share.size());
+        ResultCode[] connectionFailure = new ResultCode[1];
+        // Set once the wait below gives up; answers arriving later must not change the response
+        AtomicBoolean completed = new AtomicBoolean();
+
+        for (int i : share) {
+            window.acquire();
+            CompareBatchRequest.Assertion assertion = batch.assertions.get(i);
+            CompareRequest request = new CompareRequest(assertion.getDn(), assertion.getAttribute(), assertion.getValue());
+            request.setResponseTimeoutMillis(poolConfig.getResponseTimeoutMillis());
+            connection.asyncCompare(request, (requestId, result) -> {
+                synchronized (batch) {
+                    if (completed.get()) {
+                        return;
+                    }
+                    record(batch, i, result);
+                }
+                if (!ResultCode.isConnectionUsable(result.getResultCode())) {
+                    connectionFailure[0] = result.getResultCode();
+                }
+                window.release();
+                answered.countDown();
+            });
+        }
+
+        // Timed out compares are answered by the SDK with a TIMEOUT result; the wait is only a backstop
+        long timeout = poolConfig.getResponseTimeoutMillis();
+        if (timeout <= 0) {
+            answered.await();
+        } else if (!answered.await(2 * timeout, TimeUnit.MILLISECONDS)) {
+            synchronized (batch) {
+                completed.set(true);
+            }
+            throw new LDAPException(ResultCode.TIMEOUT, "Compares were not answered in time");
+        }
+        if (connectionFailure[0] != null) {
+            throw new LDAPException(connectionFailure[0], "Connection failed during compares");
+        }
+    }
+
+    private static void record(Batch batch, int index, CompareResult result) {
+        ResultCode resultCode = result.getResultCode();
+        if (resultCode == ResultCode.COMPARE_TRUE) {
+            batch.results[index] = Boolean.TRUE;
+        } else if (resultCode == ResultCode.COMPARE_FALSE) {
+            batch.results[index] = Boolean.FALSE;
+        } else {
+            batch.fail(index, resultCode, result.getDiagnosticMessage());
+        }
+    }
+
+    private CachedAnswer cachedAnswer(String dnKey, String view, CompareBatchRequest.Assertion assertion, long now) {
+        Map<String, CachedAnswer> answers = cache.get(dnKey);
+        CachedAnswer answer = answers != null ? answers.get(answerKey(view, assertion)) : null;
+        return answer != null && answer.expiresAt > now ? answer : null;
+    }
+
+    private static String answerKey(String view, CompareBatchRequest.Assertion assertion) {
+        return view + '\0' + StaticUtils.toLowerCase(assertion.getAttribute()) + '\0' + assertion.getValue();
+    }
+
+    /**
+     * Drops cached answers about a changed entry, and about the entries below it if it was renamed.
+     */
+    @EventListener
+    public void onDirectoryChange(DirectoryChangeEvent event) {
+        String key;
+        try {
+            key = new DN(event.getDn()).toNormalizedString();
+        } catch (LDAPException e) {
+            return;
+        }
+        cache.remove(key);
+        if (event.affectsSubtree()) {
+            String suffix = "," + key;
+            cache.removeIf((dn, answers) -> dn.endsWith(suffix));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Answers of one batch, written by the connections' reader threads while holding its lock.
+     */
+    private static final class Batch {
+        private final List<CompareBatchRequest.Assertion> assertions;
+        private final String[] dnKeys;
+        private final Boolean[] results;
+        private final CompareBatchResponse.CompareError[] errors;
+
+        private Batch(List<CompareBatchRequest.Assertion> assertions) {
+            this.assertions = assertions;
+            this.dnKeys = new String[assertions.size()];
+            this.results = new Boolean[assertions.size()];
+            this.errors = new CompareBatchResponse.CompareError[assertions.size()];
+        }
+
+        private void fail(int index, ResultCode resultCode, String message) {
+            errors[index] = new CompareBatchResponse.CompareError(index, resultCode.getName(), message);
+        }
+    }
+
+    private static final class CachedAnswer {
+        private final boolean value;
+        private final long expiresAt;
+
+        private CachedAnswer(boolean value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
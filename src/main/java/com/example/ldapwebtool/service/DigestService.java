@@ -0,0 +1,294 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapDigestConfig;
+import com.example.ldapwebtool.model.DigestNode;
+import com.example.ldapwebtool.model.DigestResponse;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.RDN;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchResultListener;
+import com.unboundid.ldap.sdk.SearchResultReference;
+import com.unboundid.util.StaticUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes hash trees of subtrees so that mirrors can find what changed without
+ * downloading the entries.
+ *
+ * Each entry is hashed on its own (see {@link #entryHash}); the hash of a subtree is the
+ * sum, modulo 2^256, of the hashes of all entries in it. The sum does not depend on the
+ * order in which entries arrive, so it is accumulated while the search results stream
+ * past and only one accumulator per reported subtree is held. Subtrees below the requested
+ * depth are folded into their ancestor at that depth; a client that finds a mismatch asks
+ * again with the mismatched DN as base.
+ */
+@Service
+public class DigestService {
+
+    public static final String ALGORITHM = "sha256-sum";
+
+    private static final int HASH_BYTES = 32;
+
+    private final LdapConnectionManager connectionManager;
+    private final BackendRouter backendRouter;
+    private final SchemaCache schemaCache;
+    private final SearchPlanCache searchPlanCache;
+    private final LdapDigestConfig digestConfig;
+
+    @Autowired
+    public DigestService(LdapConnectionManager connectionManager, BackendRouter backendRouter,
+                         SchemaCache schemaCache, SearchPlanCache searchPlanCache, LdapDigestConfig digestConfig) {
+        this.connectionManager = connectionManager;
+        this.backendRouter = backendRouter;
+        this.schemaCache = schemaCache;
+        this.searchPlanCache = searchPlanCache;
+        this.digestConfig = digestConfig;
+    }
+
+    /**
+     * Computes the hash tree of the entries under base that match the filter.
+     *
+     * @param attributes attributes to hash, or null/empty for all user attributes
+     * @param depth number of levels below the base to break down into children
+     * @throws RequestValidationException if the depth, filter or base DN is invalid, or the
+     *         tree has more than the configured number of subtrees
+     */
+    public DigestResponse digest(String uri, String backend, String base, String filter, List<String> attributes,
+                                 int depth, String username, String password) throws Exception {
+        if (depth < 0 || depth > digestConfig.getMaxDepth()) {
+            throw new RequestValidationException(ResultCode.PARAM_ERROR,
+                "depth must be between 0 and " + digestConfig.getMaxDepth());
+        }
+        SearchPlan plan = searchPlanCache.getPlan(filter, "sub", null);
+        DN baseDN;
+        try {
+            baseDN = new DN(base);
+        } catch (LDAPException e) {
+            throw new RequestValidationException(ResultCode.INVALID_DN_SYNTAX, "Invalid base DN: " + base);
+        }
+        String[] hashed = attributes != null && !attributes.isEmpty() ? attributes.toArray(new String[0]) : null;
+
+        String targetUri = backendRouter.resolveReadUri(uri, backend, username, password);
+        Accumulator accumulator = connectionManager.withConnection(targetUri, username, password, connection -> {
+            DirectorySchema schema = schemaCache.get(targetUri, connection);
+            if (schema != null && schemaCache.isValidationEnabled() && !plan.isValidatedAgainst(schema)) {
+                schema.validateFilter(plan.getFilter());
+                plan.markValidated(schema);
+            }
+            Accumulator collector = new Accumulator(baseDN, depth, hashed == null, schema);
+            connection.search(new com.unboundid.ldap.sdk.SearchRequest(
+                collector, base, plan.getScope(), plan.getFilter(), hashed != null ? hashed : new String[] {"*"}));
+            if (collector.error != null) {
+                throw collector.error;
+            }
+            return collector;
+        });
+
+        return new DigestResponse(ALGORITHM, hashed != null ? Arrays.asList(hashed) : null, depth, accumulator.build());
+    }
+
+    /**
+     * SHA-256 over the normalized DN and the entry's attributes, in a form that does not
+     * depend on the order of attributes or values: the DN, then for each attribute in order
+     * of its lower-cased name (with options), the name, the value count and each value with
+     * its length, values in unsigned byte order. Strings are UTF-8, each followed by a zero
+     * byte; counts and lengths are 4-byte big-endian integers.
+     */
+    static byte[] entryHash(Entry entry) throws LDAPException {
+        MessageDigest digest = sha256();
+        digest.update(new DN(entry.getDN()).toNormalizedString().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+
+        List<Attribute> attributes = new ArrayList<>(entry.getAttributes());
+        attributes.sort(Comparator.comparing(a -> StaticUtils.toLowerCase(a.getName())));
+        ByteBuffer length = ByteBuffer.allocate(4);
+        for (Attribute attribute : attributes) {
+            digest.update(StaticUtils.toLowerCase(attribute.getName()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            byte[][] values = attribute.getValueByteArrays();
+            Arrays.sort(values, Arrays::compareUnsigned);
+            digest.update(length.clear().putInt(values.length).array());
+            for (byte[] value : values) {
+                digest.update(length.clear().putInt(value.length).array());
+                digest.update(value);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Adds b to a as 256-bit unsigned big-endian integers, discarding the carry out.
+     */
+    static void addHash(byte[] a, byte[] b) {
+        int carry = 0;
+        for (int i = HASH_BYTES - 1; i >= 0; i--) {
+            int sum = (a[i] & 0xff) + (b[i] & 0xff) + carry;
+            a[i] = (byte) sum;
+            carry = sum >>> 8;
+        }
+    }
+
+    /**
+     * One reported subtree: the running sum of its entries' hashes.
+     */
+    private static final class Node {
+        private final DN dn;
+        private final int level;
+        private final byte[] hash = new byte[HASH_BYTES];
+        private byte[] entryHash;
+        private long entries;
+        private List<Node> children;
+
+        private Node(DN dn, int level) {
+            this.dn = dn;
+            this.level = level;
+        }
+
+        private DigestNode toDigestNode() {
+            DigestNode node = new DigestNode(dn.toString());
+            node.setHash(StaticUtils.toHex(hash));
+            node.setEntryHash(entryHash != null ? StaticUtils.toHex(entryHash) : null);
+            node.setEntries(entries);
+            if (children != null) {
+                children.sort(Comparator.comparing(child -> child.dn));
+                List<DigestNode> converted = new ArrayList<>(children.size());
+                for (Node child : children) {
+                    converted.add(child.toDigestNode());
+                }
+                node.setChildren(converted);
+            }
+            return node;
+        }
+    }
+
+    /**
+     * Adds each search result to the node of its ancestor at the requested depth (or its
+     * own node, if it is not deeper), then rolls the nodes up into the tree.
+     */
+    private final class Accumulator implements SearchResultListener {
+
+        private static final long serialVersionUID = 1L;
+
+        private final DN base;
+        private final int baseLength;
+        private final int depth;
+        private final boolean allAttributes;
+        private final transient DirectorySchema schema;
+        private final transient Map<DN, Node> nodes = new HashMap<>();
+        private Exception error;
+
+        /**
+         * @param allAttributes whether "*" was requested, in which case operational attributes
+         *        that some servers return anyway are removed before hashing
+         * @param schema schema used to recognize operational attributes, or null
+         */
+        private Accumulator(DN base, int depth, boolean allAttributes, DirectorySchema schema) {
+            this.base = base;
+            this.baseLength = base.getRDNs().length;
+            this.depth = depth;
+            this.allAttributes = allAttributes;
+            this.schema = schema;
+        }
+
+        @Override
+        public void searchEntryReturned(SearchResultEntry result) {
+            if (error != null) {
+                return;
+            }
+            try {
+                Entry entry = result;
+                if (allAttributes) {
+                    entry = result.duplicate();
+                    DirectoryDiffService.removeOperationalAttributes(entry, schema);
+                }
+                byte[] hash = entryHash(entry);
+
+                RDN[] rdns = result.getParsedDN().getRDNs();
+                int level = rdns.length - baseLength;
+                int nodeLevel = Math.min(level, depth);
+                Node node = node(new DN(Arrays.copyOfRange(rdns, level - nodeLevel, rdns.length)), nodeLevel);
+                addHash(node.hash, hash);
+                node.entries++;
+                if (level == nodeLevel) {
+                    node.entryHash = hash;
+                }
+            } catch (LDAPException e) {
+                error = e;
+            }
+        }
+
+        @Override
+        public void searchReferenceReturned(SearchResultReference reference) {
+        }
+
+        private Node node(DN dn, int level) throws LDAPException {
+            Node node = nodes.get(dn);
+            if (node == null) {
+                if (nodes.size() >= digestConfig.getMaxNodes()) {
+                    throw new RequestValidationException(ResultCode.ADMIN_LIMIT_EXCEEDED,
+                        "Digest has more than " + digestConfig.getMaxNodes() + " subtrees; request a smaller depth");
+                }
+                node = new Node(dn, level);
+                nodes.put(dn, node);
+            }
+            return node;
+        }
+
+        /**
+         * Rolls the nodes up into their parents one level at a time, deepest first, creating
+         * parents that the filter did not return. Returns the base node.
+         */
+        private DigestNode build() throws LDAPException {
+            for (int level = depth; level > 0; level--) {
+                List<Node> children = new ArrayList<>();
+                for (Node node : nodes.values()) {
+                    if (node.level == level) {
+                        children.add(node);
+                    }
+                }
+                for (Node child : children) {
+                    Node parent = node(child.dn.getParent(), level - 1);
+                    addHash(parent.hash, child.hash);
+                    parent.entries += child.entries;
+                    if (parent.children == null) {
+                        parent.children = new ArrayList<>();
+                    }
+                    parent.children.add(child);
+                }
+            }
+
+            Node root = nodes.get(base);
+            if (root == null) {
+                root = new Node(base, 0);
+            }
+            if (depth > 0 && root.children == null) {
+                root.children = new ArrayList<>();
+            }
+            return root.toDigestNode();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.ldapwebtool.service;
+
+import com.unboundid.ldif.LDIFAddChangeRecord;
+import com.unboundid.ldif.LDIFChangeRecord;
+import com.unboundid.ldif.LDIFModifyChangeRecord;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.ChangeType;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.util.StaticUtils;
+import org.springframework.context.ApplicationEvent;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Published after a change made through this service has succeeded, so that anything
+ * caching directory data can drop what the change made stale.
+ *
+ * Changes made to the directory by other clients are not seen; caches still have to
+ * revalidate or expire what they hold.
+ */
+public class DirectoryChangeEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String uri;
+    private final String dn;
+    private final ChangeType changeType;
+    private final Set<String> attributes;
+
+    public DirectoryChangeEvent(Object source, String uri, String dn, ChangeType changeType) {
+        this(source, uri, dn, changeType, null);
+    }
+
+    /**
+     * @param attributes names of the attributes the change wrote, or null if not known
+     */
+    public DirectoryChangeEvent(Object source, String uri, String dn, ChangeType changeType,
+                                Collection<String> attributes) {
+        super(source);
+        this.uri = uri;
+        this.dn = dn;
+        this.changeType = changeType;
+        if (attributes == null) {
+            this.attributes = null;
+        } else {
+            this.attributes = new HashSet<>();
+            for (String attribute : attributes) {
+                this.attributes.add(StaticUtils.toLowerCase(Attribute.getBaseName(attribute)));
+            }
+        }
+    }
+
+    public DirectoryChangeEvent(Object source, String uri, LDIFChangeRecord changeRecord) {
+        this(source, uri, changeRecord.getDN(), changeRecord.getChangeType(), attributeNames(changeRecord));
+    }
+
+    private static Collection<String> attributeNames(LDIFChangeRecord changeRecord) {
+        Set<String> names = new HashSet<>();
+        if (changeRecord instanceof LDIFModifyChangeRecord) {
+            for (Modification modification : ((LDIFModifyChangeRecord) changeRecord).getModifications()) {
+                names.add(modification.getAttributeName());
+            }
+        } else if (changeRecord instanceof LDIFAddChangeRecord) {
+            for (Attribute attribute : ((LDIFAddChangeRecord) changeRecord).getAttributes()) {
+                names.add(attribute.getName());
+            }
+        } else {
+            return null;
+        }
+        return names;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public String getDn() {
+        return dn;
+    }
+
+    public ChangeType getChangeType() {
+        return changeType;
+    }
+
+    /**
+     * Whether the change may have written the attribute (options aside). True for every
+     * attribute when the written attributes are not known, e.g. for deletes and renames.
+     */
+    public boolean mayHaveChanged(String attribute) {
+        return attributes == null || attributes.contains(StaticUtils.toLowerCase(Attribute.getBaseName(attribute)));
+    }
+
+    /**
+     * Whether entries below the DN may have changed too, i.e. the entry was renamed or moved.
+     */
+    public boolean affectsSubtree() {
+        return changeType == ChangeType.MODIFY_DN;
+    }
+}
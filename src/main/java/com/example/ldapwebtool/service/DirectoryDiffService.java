@@ -0,0 +1,450 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapDiffConfig;
+import com.example.ldapwebtool.model.DiffResult;
+import com.example.ldapwebtool.model.SearchRequest;
+import com.example.ldapwebtool.util.ExternalSorter;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.RDN;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchResultListener;
+import com.unboundid.ldap.sdk.SearchResultReference;
+import com.unboundid.ldap.sdk.schema.AttributeTypeDefinition;
+import com.unboundid.ldap.sdk.schema.Schema;
+import com.unboundid.ldif.LDIFAddChangeRecord;
+import com.unboundid.ldif.LDIFChangeRecord;
+import com.unboundid.ldif.LDIFDeleteChangeRecord;
+import com.unboundid.ldif.LDIFException;
+import com.unboundid.ldif.LDIFModifyChangeRecord;
+import com.unboundid.ldif.LDIFReader;
+import com.unboundid.util.StaticUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compares a desired-state LDIF with the live entries under a base DN and produces the
+ * change records that would make the directory match it.
+ *
+ * Both sides are sorted with an {@link ExternalSorter} on a hierarchical DN key (RDNs from
+ * the root down, normalized), then merged in one pass: an entry only in the desired state
+ * becomes an add, one only in the directory a delete, and one on both sides a modify
+ * carrying just the values that differ. Parents sort before their children, so adds come
+ * out parent first; deletes are sorted again in reverse and written last, children first.
+ *
+ * Desired entries outside the base or scope are ignored. The filter selects the live
+ * entries: a desired entry that no longer matches it is still compared with its live
+ * counterpart, so changing a filtered attribute yields a modify rather than a delete, and
+ * is only skipped, not added, when there is none. When attribute names are given only
+ * those attributes are compared; otherwise all user attributes are, and an attribute
+ * missing from a desired entry is deleted from the live one. Values are compared with the
+ * schema's matching rules, or byte for byte when the server publishes no schema.
+ */
+@Service
+public class DirectoryDiffService {
+
+    private static final Set<String> OPERATIONAL_ATTRIBUTES = Set.of(
+        "createtimestamp", "creatorsname", "modifytimestamp", "modifiersname", "entrydn", "entryuuid",
+        "entrycsn", "subschemasubentry", "structuralobjectclass", "hassubordinates", "numsubordinates",
+        "pwdchangedtime", "ds-entry-unique-id", "nsuniqueid", "objectguid", "whencreated", "whenchanged",
+        "usnchanged", "usncreated", "contextcsn");
+
+    private final LdapConnectionManager connectionManager;
+    private final BackendRouter backendRouter;
+    private final SchemaCache schemaCache;
+    private final SearchPlanCache searchPlanCache;
+    private final LdapDiffConfig diffConfig;
+    private final ImportJobService importJobService;
+    private final MemoryBudget memoryBudget;
+
+    @Autowired
+    public DirectoryDiffService(LdapConnectionManager connectionManager, BackendRouter backendRouter,
+                                SchemaCache schemaCache, SearchPlanCache searchPlanCache,
+                                LdapDiffConfig diffConfig, ImportJobService importJobService,
+                                MemoryBudget memoryBudget) {
+        this.connectionManager = connectionManager;
+        this.backendRouter = backendRouter;
+        this.schemaCache = schemaCache;
+        this.searchPlanCache = searchPlanCache;
+        this.diffConfig = diffConfig;
+        this.importJobService = importJobService;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Reads and sorts the desired state and the live entries. The live entries are read
+     * from the primary, since the changes are meant to be applied there.
+     *
+     * @param desiredLdif LDIF content records describing the desired state
+     * @param request target, base, filter and scope of the comparison
+     * @param attributes attributes to compare, or null/empty for all user attributes
+     * @param includeDeletes whether live entries missing from the desired state are deleted
+     * @throws RequestValidationException if the filter or the LDIF is malformed
+     */
+    public Diff prepare(InputStream desiredLdif, SearchRequest request, List<String> attributes, boolean includeDeletes,
+                        String username, String password) throws Exception {
+        SearchPlan plan = searchPlanCache.getPlan(request.getFilter(), request.getScope(), null);
+        String uri = backendRouter.resolveWriteUri(request.getUri(), request.getBackend());
+        DirectorySchema schema = connectionManager.withConnection(uri, username, password,
+            connection -> schemaCache.get(uri, connection));
+        if (schema != null && schemaCache.isValidationEnabled() && !plan.isValidatedAgainst(schema)) {
+            schema.validateFilter(plan.getFilter());
+            plan.markValidated(schema);
+        }
+
+        Path directory = Paths.get(diffConfig.getTempDirectory());
+        Files.createDirectories(directory);
+        String[] compared = attributes != null && !attributes.isEmpty() ? attributes.toArray(new String[0]) : null;
+        Diff diff = new Diff(uri, request.getBackend(), schema, compared, includeDeletes, directory);
+        try {
+            DN base = new DN(request.getBase(), schema != null ? schema.getSchema() : null);
+            readDesired(diff, desiredLdif, base, plan);
+            readLive(diff, username, password, request.getBase(), plan);
+            return diff;
+        } catch (Exception e) {
+            diff.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the change records of a diff to a temporary file and submits them as an import job.
+     */
+    public DiffResult apply(Diff diff, String username, String password) throws Exception {
+        Path changes = Files.createTempFile(Paths.get(diffConfig.getTempDirectory()), "diff-", ".ldif");
+        try {
+            try (OutputStream out = Files.newOutputStream(changes)) {
+                diff.writeTo(out);
+            }
+
+            DiffResult result = new DiffResult();
+            result.setAdds(diff.getAdds());
+            result.setModifies(diff.getModifies());
+            result.setDeletes(diff.getDeletes());
+            result.setUnchanged(diff.getUnchanged());
+            if (diff.getAdds() + diff.getModifies() + diff.getDeletes() > 0) {
+                try (InputStream in = Files.newInputStream(changes)) {
+                    result.setImportJob(importJobService.create(in, diff.uri, diff.backend, true, username, password));
+                }
+            }
+            return result;
+        } finally {
+            Files.deleteIfExists(changes);
+        }
+    }
+
+    private void readDesired(Diff diff, InputStream desiredLdif, DN base, SearchPlan plan) throws Exception {
+        Schema schema = diff.schema();
+        try (LDIFReader reader = new LDIFReader(desiredLdif)) {
+            reader.setSchema(schema);
+            Entry entry;
+            while ((entry = reader.readEntry()) != null) {
+                if (!new DN(entry.getDN(), schema).matchesBaseAndScope(base, plan.getScope())) {
+                    continue;
+                }
+                boolean matchesFilter = plan.getFilter().matchesEntry(entry, schema);
+                if (diff.compared == null) {
+                    removeOperationalAttributes(entry, diff.directorySchema);
+                }
+                diff.desired.add(sortKey(entry.getDN(), schema), encodeDesired(entry, matchesFilter));
+            }
+        } catch (LDIFException e) {
+            throw new RequestValidationException(ResultCode.DECODING_ERROR, "Invalid LDIF: " + e.getMessage());
+        }
+    }
+
+    private void readLive(Diff diff, String username, String password, String base, SearchPlan plan) throws Exception {
+        connectionManager.withConnection(diff.uri, username, password, connection -> {
+            LiveEntryCollector collector = new LiveEntryCollector(diff);
+            String[] requested = diff.compared != null ? diff.compared : new String[] {"*"};
+            // A partial result would turn missing entries into adds, so any error fails the diff
+            connection.search(new com.unboundid.ldap.sdk.SearchRequest(
+                collector, base, plan.getScope(), plan.getFilter(), requested));
+            if (collector.error != null) {
+                throw collector.error;
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Removes operational attributes, which are maintained by the server and not part of the
+     * desired state. Some servers return them for "*"; without a schema, the common ones are
+     * recognized by name.
+     */
+    static void removeOperationalAttributes(Entry entry, DirectorySchema schema) {
+        for (Attribute attribute : new ArrayList<>(entry.getAttributes())) {
+            AttributeTypeDefinition type = schema != null ? schema.getAttributeType(attribute.getBaseName()) : null;
+            boolean operational = type != null
+                ? type.isOperational()
+                : OPERATIONAL_ATTRIBUTES.contains(StaticUtils.toLowerCase(attribute.getBaseName()));
+            if (operational) {
+                entry.removeAttribute(attribute.getName());
+            }
+        }
+    }
+
+    /**
+     * Sort key placing every entry after its parent: the normalized RDNs from the root down.
+     */
+    static String sortKey(String dn, Schema schema) throws LDAPException {
+        RDN[] rdns = new DN(dn, schema).getRDNs();
+        StringBuilder key = new StringBuilder();
+        for (int i = rdns.length - 1; i >= 0; i--) {
+            key.append(rdns[i].toNormalizedString());
+            if (i > 0) {
+                key.append(',');
+            }
+        }
+        return key.toString();
+    }
+
+    private static byte[] encode(Entry entry) {
+        return String.join("\n", entry.toLDIF(0)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Entry decode(byte[] payload, Schema schema) throws LDIFException {
+        return decode(payload, 0, schema);
+    }
+
+    private static Entry decode(byte[] payload, int offset, Schema schema) throws LDIFException {
+        return LDIFReader.decodeEntry(true, schema,
+            new String(payload, offset, payload.length - offset, StandardCharsets.UTF_8).split("\n"));
+    }
+
+    /**
+     * Encodes a desired entry, prefixed with whether it matches the filter.
+     */
+    private static byte[] encodeDesired(Entry entry, boolean matchesFilter) {
+        byte[] ldif = encode(entry);
+        byte[] payload = new byte[ldif.length + 1];
+        payload[0] = (byte) (matchesFilter ? 1 : 0);
+        System.arraycopy(ldif, 0, payload, 1, ldif.length);
+        return payload;
+    }
+
+    private static boolean matchesFilter(ExternalSorter.Record desiredRecord) {
+        return desiredRecord.getPayload()[0] == 1;
+    }
+
+    private static Entry decodeDesired(ExternalSorter.Record desiredRecord, Schema schema) throws LDIFException {
+        return decode(desiredRecord.getPayload(), 1, schema);
+    }
+
+    /**
+     * A prepared diff: both sides sorted and ready to be merged. Holds temporary files until closed.
+     */
+    public final class Diff implements Closeable {
+
+        private final String uri;
+        private final String backend;
+        private final DirectorySchema directorySchema;
+        private final String[] compared;
+        private final boolean includeDeletes;
+        private final Path directory;
+        private final MemoryBudget.Lease lease;
+        private final ExternalSorter desired;
+        private final ExternalSorter live;
+
+        private long adds;
+        private long modifies;
+        private long deletes;
+        private long unchanged;
+
+        private Diff(String uri, String backend, DirectorySchema directorySchema, String[] compared,
+                     boolean includeDeletes, Path directory) {
+            this.uri = uri;
+            this.backend = backend;
+            this.directorySchema = directorySchema;
+            this.compared = compared;
+            this.includeDeletes = includeDeletes;
+            this.directory = directory;
+            // Sort buffers shrink, spilling sooner, when the memory budget is tight
+            this.lease = memoryBudget.open();
+            try {
+                this.desired = new ExternalSorter(directory, lease.reserveSortBuffer(diffConfig.getSortMemoryBytes()),
+                    Comparator.naturalOrder());
+                this.live = new ExternalSorter(directory, lease.reserveSortBuffer(diffConfig.getSortMemoryBytes()),
+                    Comparator.naturalOrder());
+            } catch (RuntimeException e) {
+                lease.close();
+                throw e;
+            }
+        }
+
+        private Schema schema() {
+            return directorySchema != null ? directorySchema.getSchema() : null;
+        }
+
+        public long getAdds() {
+            return adds;
+        }
+
+        public long getModifies() {
+            return modifies;
+        }
+
+        public long getDeletes() {
+            return deletes;
+        }
+
+        public long getUnchanged() {
+            return unchanged;
+        }
+
+        /**
+         * Merges both sides and writes the change records as LDIF, followed by a comment
+         * with the counts. Can be called once.
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 65536);
+            Schema schema = schema();
+            long deletionMemory = lease.reserveSortBuffer(diffConfig.getSortMemoryBytes());
+            try (ExternalSorter deletions = new ExternalSorter(directory, deletionMemory, Comparator.reverseOrder())) {
+                Iterator<ExternalSorter.Record> desiredRecords = desired.sorted();
+                Iterator<ExternalSorter.Record> liveRecords = live.sorted();
+                ExternalSorter.Record desiredRecord = nextDistinct(desiredRecords, null);
+                ExternalSorter.Record liveRecord = nextDistinct(liveRecords, null);
+
+                while (desiredRecord != null || liveRecord != null) {
+                    int comparison = desiredRecord == null ? 1
+                        : liveRecord == null ? -1
+                        : desiredRecord.getKey().compareTo(liveRecord.getKey());
+
+                    if (comparison < 0) {
+                        // Outside the filter the entry may well exist; it is just not among the live entries read
+                        if (matchesFilter(desiredRecord)) {
+                            write(writer, new LDIFAddChangeRecord(decodeDesired(desiredRecord, schema)));
+                            adds++;
+                        }
+                        desiredRecord = nextDistinct(desiredRecords, desiredRecord);
+                    } else if (comparison > 0) {
+                        if (includeDeletes) {
+                            deletions.add(liveRecord.getKey(), liveRecord.getPayload());
+                        }
+                        liveRecord = nextDistinct(liveRecords, liveRecord);
+                    } else {
+                        Entry desiredEntry = decodeDesired(desiredRecord, schema);
+                        Entry liveEntry = decode(liveRecord.getPayload(), schema);
+                        // Decoded with the schema, attributes carry its matching rules; without one only bytes are reliable
+                        boolean byteForByte = schema == null;
+                        List<Modification> modifications = compared != null
+                            ? Entry.diff(liveEntry, desiredEntry, true, byteForByte, compared)
+                            : Entry.diff(liveEntry, desiredEntry, true, byteForByte);
+                        if (modifications.isEmpty()) {
+                            unchanged++;
+                        } else {
+                            write(writer, new LDIFModifyChangeRecord(liveEntry.getDN(), modifications.toArray(new Modification[0])));
+                            modifies++;
+                        }
+                        desiredRecord = nextDistinct(desiredRecords, desiredRecord);
+                        liveRecord = nextDistinct(liveRecords, liveRecord);
+                    }
+                }
+
+                Iterator<ExternalSorter.Record> deleteRecords = deletions.sorted();
+                while (deleteRecords.hasNext()) {
+                    write(writer, new LDIFDeleteChangeRecord(decode(deleteRecords.next().getPayload(), schema).getDN()));
+                    deletes++;
+                }
+
+                writer.write("# adds: " + adds + ", modifies: " + modifies + ", deletes: " + deletes
+                    + ", unchanged: " + unchanged + "\n");
+                writer.flush();
+            } catch (LDIFException e) {
+                throw new IOException("Unable to decode sorted entry: " + e.getMessage(), e);
+            } finally {
+                close();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                desired.close();
+                live.close();
+            } finally {
+                lease.close();
+            }
+        }
+
+        private void write(Writer writer, LDIFChangeRecord record) throws IOException {
+            for (String line : record.toLDIF(0)) {
+                writer.write(line);
+                writer.write('\n');
+            }
+            writer.write('\n');
+        }
+
+        /**
+         * Returns the next record whose key differs from the previous one; later duplicates
+         * of a DN in the desired state are ignored.
+         */
+        private ExternalSorter.Record nextDistinct(Iterator<ExternalSorter.Record> records, ExternalSorter.Record previous) {
+            while (records.hasNext()) {
+                ExternalSorter.Record record = records.next();
+                if (previous == null || !record.getKey().equals(previous.getKey())) {
+                    return record;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Feeds live search results into the sorter as they arrive.
+     */
+    private static final class LiveEntryCollector implements SearchResultListener {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Diff diff;
+        private Exception error;
+
+        private LiveEntryCollector(Diff diff) {
+            this.diff = diff;
+        }
+
+        @Override
+        public void searchEntryReturned(SearchResultEntry entry) {
+            if (error != null) {
+                return;
+            }
+            try {
+                Entry live = entry;
+                if (diff.compared == null) {
+                    live = entry.duplicate();
+                    removeOperationalAttributes(live, diff.directorySchema);
+                }
+                diff.live.add(sortKey(entry.getDN(), diff.schema()), encode(live));
+            } catch (IOException | LDAPException e) {
+                error = e;
+            }
+        }
+
+        @Override
+        public void searchReferenceReturned(SearchResultReference reference) {
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.ldapwebtool.service;
+
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.RootDSE;
+import com.unboundid.ldap.sdk.schema.AttributeTypeDefinition;
+import com.unboundid.ldap.sdk.schema.Schema;
+import com.unboundid.ldif.LDIFAddChangeRecord;
+import com.unboundid.ldif.LDIFChangeRecord;
+import com.unboundid.ldif.LDIFModifyChangeRecord;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A backend's schema and root DSE, with the checks and attribute decisions built on them.
+ * Instances are immutable and shared by all requests to the same backend.
+ */
+public final class DirectorySchema {
+
+    /** Syntaxes whose values are arbitrary bytes rather than text. */
+    private static final Set<String> BINARY_SYNTAX_OIDS = Set.of(
+        "1.3.6.1.4.1.1466.115.121.1.5",   // Binary
+        "1.3.6.1.4.1.1466.115.121.1.8",   // Certificate
+        "1.3.6.1.4.1.1466.115.121.1.9",   // Certificate List
+        "1.3.6.1.4.1.1466.115.121.1.10",  // Certificate Pair
+        "1.3.6.1.4.1.1466.115.121.1.28",  // JPEG
+        "1.3.6.1.4.1.1466.115.121.1.40",  // Octet String
+        "1.3.6.1.4.1.1466.115.121.1.49",  // Supported Algorithm
+        "1.2.840.113556.1.4.907"          // Active Directory security descriptor
+    );
+
+    private final Schema schema;
+    private final RootDSE rootDSE;
+    private final String modifyTimestamp;
+
+    public DirectorySchema(Schema schema, RootDSE rootDSE, String modifyTimestamp) {
+        this.schema = schema;
+        this.rootDSE = rootDSE;
+        this.modifyTimestamp = modifyTimestamp;
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    public RootDSE getRootDSE() {
+        return rootDSE;
+    }
+
+    /**
+     * The subschema entry's modifyTimestamp when the schema was read, or null if the server does not publish it.
+     */
+    public String getModifyTimestamp() {
+        return modifyTimestamp;
+    }
+
+    /**
+     * Returns the definition of an attribute type, ignoring any attribute options, or null if it is not defined.
+     */
+    public AttributeTypeDefinition getAttributeType(String attributeName) {
+        return schema.getAttributeType(Attribute.getBaseName(attributeName).toLowerCase(Locale.ROOT));
+    }
+
+    public boolean isSingleValued(String attributeName) {
+        AttributeTypeDefinition type = getAttributeType(attributeName);
+        return type != null && type.isSingleValued();
+    }
+
+    /**
+     * Whether values of the attribute are binary and must be base64 encoded. Attributes
+     * requested with the ";binary" option are always binary.
+     */
+    public boolean isBinary(String attributeName) {
+        if (attributeName.toLowerCase(Locale.ROOT).contains(";binary")) {
+            return true;
+        }
+        AttributeTypeDefinition type = getAttributeType(attributeName);
+        if (type == null) {
+            return false;
+        }
+        String syntax = type.getBaseSyntaxOID(schema);
+        return syntax != null && BINARY_SYNTAX_OIDS.contains(syntax);
+    }
+
+    /**
+     * Rejects filters that name attribute types the backend does not define.
+     */
+    public void validateFilter(Filter filter) throws RequestValidationException {
+        switch (filter.getFilterType()) {
+            case Filter.FILTER_TYPE_AND:
+            case Filter.FILTER_TYPE_OR:
+                for (Filter component : filter.getComponents()) {
+                    validateFilter(component);
+                }
+                break;
+            case Filter.FILTER_TYPE_NOT:
+                validateFilter(filter.getNOTComponent());
+                break;
+            default:
+                String attributeName = filter.getAttributeName();
+                if (attributeName != null) {
+                    requireAttributeType(attributeName, "filter");
+                }
+        }
+    }
+
+    /**
+     * Rejects attribute names, such as sort keys, that the backend does not define.
+     */
+    public void validateAttributeNames(List<String> attributeNames, String context) throws RequestValidationException {
+        for (String attributeName : attributeNames) {
+            requireAttributeType(attributeName, context);
+        }
+    }
+
+    /**
+     * Rejects modifications that the backend would refuse: an invalid DN, unknown attribute
+     * types, attributes that cannot be modified by users, and several values for a
+     * single-valued attribute.
+     */
+    public void validateModifications(String dn, List<Modification> modifications) throws RequestValidationException {
+        requireValidDn(dn);
+        for (Modification modification : modifications) {
+            AttributeTypeDefinition type = requireAttributeType(modification.getAttributeName(), "modification");
+            if (type.isNoUserModification()) {
+                throw new RequestValidationException(ResultCode.CONSTRAINT_VIOLATION,
+                    "Attribute " + modification.getAttributeName() + " cannot be modified by users");
+            }
+            boolean setsValues = modification.getModificationType() == ModificationType.ADD
+                || modification.getModificationType() == ModificationType.REPLACE;
+            if (setsValues && type.isSingleValued() && modification.getValues().length > 1) {
+                throw new RequestValidationException(ResultCode.CONSTRAINT_VIOLATION,
+                    "Attribute " + modification.getAttributeName() + " is single-valued");
+            }
+        }
+    }
+
+    /**
+     * Rejects entries to be added that use unknown attribute types or give several values
+     * to a single-valued attribute.
+     */
+    public void validateEntry(Entry entry) throws RequestValidationException {
+        requireValidDn(entry.getDN());
+        for (Attribute attribute : entry.getAttributes()) {
+            AttributeTypeDefinition type = requireAttributeType(attribute.getName(), "entry");
+            if (type.isSingleValued() && attribute.size() > 1) {
+                throw new RequestValidationException(ResultCode.CONSTRAINT_VIOLATION,
+                    "Attribute " + attribute.getName() + " is single-valued");
+            }
+        }
+    }
+
+    /**
+     * Applies {@link #validateModifications} or {@link #validateEntry} to an LDIF change record.
+     * Delete and modify DN records are not checked.
+     */
+    public void validateChangeRecord(LDIFChangeRecord changeRecord) throws RequestValidationException {
+        if (changeRecord instanceof LDIFModifyChangeRecord) {
+            validateModifications(changeRecord.getDN(),
+                Arrays.asList(((LDIFModifyChangeRecord) changeRecord).getModifications()));
+        } else if (changeRecord instanceof LDIFAddChangeRecord) {
+            validateEntry(((LDIFAddChangeRecord) changeRecord).getEntryToAdd());
+        }
+    }
+
+    private AttributeTypeDefinition requireAttributeType(String attributeName, String context)
+            throws RequestValidationException {
+        AttributeTypeDefinition type = getAttributeType(attributeName);
+        if (type == null) {
+            throw new RequestValidationException(ResultCode.UNDEFINED_ATTRIBUTE_TYPE,
+                "Unknown attribute type in " + context + ": " + attributeName);
+        }
+        return type;
+    }
+
+    private static void requireValidDn(String dn) throws RequestValidationException {
+        if (dn == null || !DN.isValidDN(dn)) {
+            throw new RequestValidationException(ResultCode.INVALID_DN_SYNTAX, "Invalid DN: " + dn);
+        }
+    }
+}
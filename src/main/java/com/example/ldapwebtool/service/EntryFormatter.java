@@ -0,0 +1,110 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.model.SearchResponse;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts directory entries to the JSON and LDIF forms returned by the API.
+ * Shared by plain searches and exports so both produce identical output.
+ */
+public final class EntryFormatter {
+
+    private EntryFormatter() {}
+
+    /**
+     * Converts an entry to its JSON form.
+     *
+     * @param schema the backend schema, or null if unknown
+     */
+    public static SearchResponse.LdapEntry toLdapEntry(Entry entry, DirectorySchema schema) {
+        Map<String, Object> attributes = new HashMap<>();
+        for (Attribute attr : entry.getAttributes()) {
+            attributes.put(attr.getName(), toJsonValue(attr, schema));
+        }
+        return new SearchResponse.LdapEntry(entry.getDN(), attributes);
+    }
+
+    /**
+     * Appends an entry as an LDIF record followed by a blank line.
+     *
+     * @param schema the backend schema, or null if unknown
+     */
+    public static void appendLdif(StringBuilder ldifBuilder, Entry entry, DirectorySchema schema) {
+        ldifBuilder.append("dn: ").append(entry.getDN()).append("\n");
+
+        for (Attribute attr : entry.getAttributes()) {
+            boolean binary = schema != null && schema.isBinary(attr.getName());
+            for (byte[] value : attr.getValueByteArrays()) {
+                appendLdifValue(ldifBuilder, attr.getName(), value, binary);
+            }
+        }
+        ldifBuilder.append("\n");
+    }
+
+    /**
+     * Converts an attribute to a JSON value. With a known schema, binary values are base64
+     * encoded, single-valued attributes become scalars and all others arrays. Without one,
+     * a single value becomes a scalar and several values an array.
+     */
+    public static Object toJsonValue(Attribute attr, DirectorySchema schema) {
+        if (schema == null) {
+            String[] values = attr.getValues();
+            return values.length == 1 ? values[0] : Arrays.asList(values);
+        }
+
+        List<String> values;
+        if (schema.isBinary(attr.getName())) {
+            values = new ArrayList<>(attr.size());
+            for (byte[] value : attr.getValueByteArrays()) {
+                values.add(Base64.getEncoder().encodeToString(value));
+            }
+        } else {
+            // A view of the values array rather than a second copy; huge groups hold many values
+            values = Arrays.asList(attr.getValues());
+        }
+
+        if (schema.isSingleValued(attr.getName()) && values.size() == 1) {
+            return values.get(0);
+        }
+        return values;
+    }
+
+    /**
+     * Appends one attribute value as an LDIF line, base64 encoding it if it is binary or
+     * cannot be written as a plain LDIF value.
+     */
+    private static void appendLdifValue(StringBuilder ldifBuilder, String name, byte[] value, boolean binary) {
+        String text = new String(value, StandardCharsets.UTF_8);
+        if (binary || !isSafeLdifValue(text)) {
+            ldifBuilder.append(name).append(":: ").append(Base64.getEncoder().encodeToString(value)).append("\n");
+        } else {
+            ldifBuilder.append(name).append(": ").append(text).append("\n");
+        }
+    }
+
+    private static boolean isSafeLdifValue(String value) {
+        if (value.isEmpty()) {
+            return true;
+        }
+        char first = value.charAt(0);
+        if (first == ' ' || first == ':' || first == '<' || value.charAt(value.length() - 1) == ' ') {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\0' || c == '\n' || c == '\r' || c == '\uFFFD') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,354 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapBackendConfig;
+import com.example.ldapwebtool.config.LdapEntryCacheConfig;
+import com.example.ldapwebtool.config.LdapSearchConfig;
+import com.example.ldapwebtool.model.AttributeValuesResponse;
+import com.example.ldapwebtool.model.SearchResponse;
+import com.example.ldapwebtool.util.BoundedCache;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-entry lookups by DN, backed by a bounded cache of formatted entries.
+ *
+ * Entries are cached per DN, and under each DN per backend URI and bind DN, since access
+ * controls may show different callers different attributes. A cached entry is revalidated
+ * with an LDAP compare on the change stamp it was read with, which costs the directory far
+ * less than reading the entry again; only when the stamp no longer matches is the entry
+ * re-read. Entries that have no change stamp are re-read instead. Entries served without
+ * revalidation are only served to a caller whose password passed a bind within the credential
+ * TTL, since nothing else would check it.
+ *
+ * Changes made through this service ({@link DirectoryChangeEvent}) remove the affected DNs
+ * under every URI and caller. A lookup that was reading the entry while it changed does not
+ * store what it read.
+ *
+ * Metrics: ldap.entry.cache.requests (tagged result=fresh|stale|revalidated|miss) and
+ * ldap.entry.cache.size.
+ *
+ * The values of a single attribute can also be read a page at a time, which is not cached.
+ */
+@Service
+public class EntryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntryService.class);
+
+    private final LdapConnectionManager connectionManager;
+    private final BackendRouter backendRouter;
+    private final SchemaCache schemaCache;
+    private final LdapEntryCacheConfig cacheConfig;
+    private final LdapSearchConfig searchConfig;
+    private final BoundedCache<String, Map<String, CachedEntry>> cache;
+    private final VerifiedCredentials credentials;
+    // Per URI: whether the server returns attribute values in ranges; absent until known
+    private final Map<String, Boolean> rangedUris = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Counter freshHits;
+    private final Counter staleHits;
+    private final Counter revalidatedHits;
+    private final Counter misses;
+
+    // Background revalidation is best effort: when the queue is full the entry is simply revalidated later
+    private final ThreadPoolExecutor revalidator = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(1000), runnable -> {
+            Thread thread = new Thread(runnable, "ldap-entry-revalidator");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+
+    @Autowired
+    public EntryService(LdapConnectionManager connectionManager, BackendRouter backendRouter, SchemaCache schemaCache,
+                        LdapEntryCacheConfig cacheConfig, LdapSearchConfig searchConfig, MeterRegistry meterRegistry) {
+        this.connectionManager = connectionManager;
+        this.backendRouter = backendRouter;
+        this.schemaCache = schemaCache;
+        this.cacheConfig = cacheConfig;
+        this.searchConfig = searchConfig;
+        this.cache = new BoundedCache<>(cacheConfig.getMaxEntries());
+        this.credentials = new VerifiedCredentials(connectionManager, cacheConfig.getCredentialTtlMillis());
+
+        this.freshHits = requests(meterRegistry, "fresh");
+        this.staleHits = requests(meterRegistry, "stale");
+        this.revalidatedHits = requests(meterRegistry, "revalidated");
+        this.misses = requests(meterRegistry, "miss");
+        Gauge.builder("ldap.entry.cache.size", cache, BoundedCache::size)
+            .description("DNs held in the entry cache").register(meterRegistry);
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("ldap.entry.cache.requests").tag("result", result)
+            .description("Entry lookups by how the cache answered them").register(meterRegistry);
+    }
+
+    /**
+     * Returns the entry with the given DN and all its user attributes, or null if there is none.
+     *
+     * @throws RequestValidationException if the DN is malformed
+     */
+    public SearchResponse.LdapEntry getEntry(String uri, String backend, String dn,
+                                             String username, String password) throws Exception {
+        String key;
+        try {
+            key = new DN(dn).toNormalizedString();
+        } catch (LDAPException e) {
+            throw new RequestValidationException(ResultCode.INVALID_DN_SYNTAX, "Invalid DN: " + dn);
+        }
+        String targetUri = backendRouter.resolveReadUri(uri, backend, username, password);
+        String view = targetUri + '\0' + BackendRouter.normalizeCaller(username);
+
+        boolean cacheable = isCacheable(backend);
+        Map<String, CachedEntry> views = cacheable ? cache.get(key) : null;
+        CachedEntry cached = views != null ? views.get(view) : null;
+        if (cached == null) {
+            misses.increment();
+            long generation = invalidations.get();
+            return connectionManager.withConnection(targetUri, username, password,
+                connection -> load(connection, targetUri, key, view, dn, generation, cacheable));
+        }
+
+        long age = System.currentTimeMillis() - cached.validatedAt;
+        if (age < cacheConfig.getRevalidateAfterMillis() + cacheConfig.getStaleWhileRevalidateMillis()) {
+            credentials.verify(targetUri, username, password);
+        }
+        if (age < cacheConfig.getRevalidateAfterMillis()) {
+            freshHits.increment();
+            return cached.entry;
+        }
+        if (age < cacheConfig.getRevalidateAfterMillis() + cacheConfig.getStaleWhileRevalidateMillis()) {
+            staleHits.increment();
+            if (cached.revalidating.compareAndSet(false, true)) {
+                revalidator.execute(() -> {
+                    try {
+                        revalidate(cached, targetUri, key, view, dn, username, password);
+                    } catch (Exception e) {
+                        logger.warn("Background revalidation of {} failed: {}", dn, e.getMessage());
+                    } finally {
+                        cached.revalidating.set(false);
+                    }
+                });
+            }
+            return cached.entry;
+        }
+        return revalidate(cached, targetUri, key, view, dn, username, password);
+    }
+
+    /**
+     * Entries are cached when the cache is enabled and the named backend, if any, does not opt out.
+     */
+    private boolean isCacheable(String backend) {
+        if (!cacheConfig.isEnabled()) {
+            return false;
+        }
+        LdapBackendConfig.Backend tuning = backendRouter.findBackend(backend);
+        return tuning == null || tuning.getEntryCacheEnabled() == null || tuning.getEntryCacheEnabled();
+    }
+
+    /**
+     * Compares the cached change stamp with the directory's, re-reading the entry if it has
+     * changed or cannot be compared.
+     */
+    private SearchResponse.LdapEntry revalidate(CachedEntry cached, String uri, String key, String view, String dn,
+                                                String username, String password) throws Exception {
+        long generation = invalidations.get();
+        return connectionManager.withConnection(uri, username, password, connection -> {
+            if (cached.stampAttribute != null) {
+                try {
+                    if (connection.compare(dn, cached.stampAttribute, cached.stampValue).compareMatched()) {
+                        cached.validatedAt = System.currentTimeMillis();
+                        revalidatedHits.increment();
+                        return cached.entry;
+                    }
+                } catch (LDAPException e) {
+                    if (e.getResultCode() == ResultCode.NO_SUCH_OBJECT) {
+                        removeView(key, view);
+                        return null;
+                    }
+                    // E.g. the stamp attribute cannot be compared here; fall back to reading the entry
+                }
+            }
+            misses.increment();
+            return load(connection, uri, key, view, dn, generation, true);
+        });
+    }
+
+    /**
+     * Reads the entry with its change stamp and, if cacheable, caches it unless a change made
+     * through this service was seen since the generation was taken.
+     */
+    private SearchResponse.LdapEntry load(LDAPConnection connection, String uri, String key, String view, String dn,
+                                          long generation, boolean cacheable) throws LDAPException {
+        String[] attributes = new String[ResultETag.STAMP_ATTRIBUTES.length + 1];
+        attributes[0] = "*";
+        System.arraycopy(ResultETag.STAMP_ATTRIBUTES, 0, attributes, 1, ResultETag.STAMP_ATTRIBUTES.length);
+        Entry entry = connection.getEntry(dn, attributes);
+        if (entry == null) {
+            removeView(key, view);
+            return null;
+        }
+        entry = RangedAttributes.complete(connection, entry);
+
+        String stampAttribute = null;
+        for (String attribute : ResultETag.STAMP_ATTRIBUTES) {
+            if (entry.hasAttribute(attribute)) {
+                stampAttribute = attribute;
+                break;
+            }
+        }
+        CachedEntry cached = new CachedEntry(
+            EntryFormatter.toLdapEntry(LdapService.withoutStamps(entry), schemaCache.get(uri, connection)),
+            stampAttribute, stampAttribute != null ? entry.getAttributeValue(stampAttribute) : null);
+
+        if (cacheable && invalidations.get() == generation) {
+            cache.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(view, cached);
+            // An invalidation may have run between the check and the put
+            if (invalidations.get() != generation) {
+                removeView(key, view);
+            }
+        }
+        return cached.entry;
+    }
+
+    private void removeView(String key, String view) {
+        Map<String, CachedEntry> views = cache.get(key);
+        if (views != null) {
+            views.remove(view);
+        }
+    }
+
+    /**
+     * Returns up to limit values of one attribute of an entry, starting at offset, or null if
+     * there is no such entry. On servers that return values in ranges (Active Directory) only
+     * the page is read, and the server may return fewer values than asked for; elsewhere the
+     * attribute is read whole and the page cut from it.
+     *
+     * @param limit page size, or 0 for the backend's default or else the configured one
+     * @throws RequestValidationException if the DN, attribute name, offset or limit is invalid
+     */
+    public AttributeValuesResponse getValues(String uri, String backend, String dn, String attribute, long offset,
+                                             int limit, String username, String password) throws Exception {
+        try {
+            new DN(dn);
+        } catch (LDAPException e) {
+            throw new RequestValidationException(ResultCode.INVALID_DN_SYNTAX, "Invalid DN: " + dn);
+        }
+        if (attribute.isBlank() || attribute.indexOf(';') >= 0) {
+            throw new RequestValidationException(ResultCode.PARAM_ERROR, "attribute must be an attribute name without options");
+        }
+        LdapBackendConfig.Backend tuning = backendRouter.findBackend(backend);
+        int pageSize = limit > 0 ? limit
+            : tuning != null && tuning.getValuesPageSize() != null ? tuning.getValuesPageSize()
+            : searchConfig.getValuesPageSize();
+        if (offset < 0 || pageSize > searchConfig.getMaxValuesPageSize()) {
+            throw new RequestValidationException(ResultCode.PARAM_ERROR,
+                "offset must not be negative and limit at most " + searchConfig.getMaxValuesPageSize());
+        }
+        String targetUri = backendRouter.resolveReadUri(uri, backend, username, password);
+
+        return connectionManager.withConnection(targetUri, username, password, connection -> {
+            DirectorySchema schema = schemaCache.get(targetUri, connection);
+            boolean binary = schema != null && schema.isBinary(attribute);
+
+            if (!Boolean.FALSE.equals(rangedUris.get(targetUri))) {
+                Attribute page = RangedAttributes.fetch(connection, dn, attribute, offset, offset + pageSize - 1);
+                if (page != null) {
+                    rangedUris.put(targetUri, Boolean.TRUE);
+                    RangedAttributes.Range range = RangedAttributes.Range.parse(RangedAttributes.rangeOption(page));
+                    Long next = range != null && range.high >= 0 ? range.high + 1 : null;
+                    return new AttributeValuesResponse(dn, attribute, offset, values(page, binary, 0, page.size()), next);
+                }
+            }
+
+            Entry entry = connection.getEntry(dn, attribute);
+            if (entry == null) {
+                return null;
+            }
+            Attribute all = entry.getAttribute(attribute);
+            int size = all != null ? all.size() : 0;
+            if (size > 0) {
+                // Values came back whole although a range was asked for first
+                rangedUris.putIfAbsent(targetUri, Boolean.FALSE);
+            }
+            int from = (int) Math.min(offset, size);
+            int to = (int) Math.min(size, offset + pageSize);
+            return new AttributeValuesResponse(dn, attribute, offset,
+                all != null ? values(all, binary, from, to) : List.of(), to < size ? (long) to : null);
+        });
+    }
+
+    private static List<String> values(Attribute attribute, boolean binary, int from, int to) {
+        List<String> values = new ArrayList<>(to - from);
+        byte[][] bytes = attribute.getValueByteArrays();
+        for (int i = from; i < to; i++) {
+            values.add(binary ? Base64.getEncoder().encodeToString(bytes[i])
+                              : new String(bytes[i], StandardCharsets.UTF_8));
+        }
+        return values;
+    }
+
+    /**
+     * Drops cached copies of a changed entry, and of the entries below it if it was renamed.
+     */
+    @EventListener
+    public void onDirectoryChange(DirectoryChangeEvent event) {
+        invalidations.incrementAndGet();
+        String key;
+        try {
+            key = new DN(event.getDn()).toNormalizedString();
+        } catch (LDAPException e) {
+            return;
+        }
+        cache.remove(key);
+        if (event.affectsSubtree()) {
+            String suffix = "," + key;
+            cache.removeIf((dn, views) -> dn.endsWith(suffix));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        revalidator.shutdownNow();
+    }
+
+    /**
+     * A formatted entry with the change stamp it was read with.
+     */
+    private static final class CachedEntry {
+        private final SearchResponse.LdapEntry entry;
+        private final String stampAttribute;
+        private final String stampValue;
+        private final AtomicBoolean revalidating = new AtomicBoolean();
+        private volatile long validatedAt = System.currentTimeMillis();
+
+        private CachedEntry(SearchResponse.LdapEntry entry, String stampAttribute, String stampValue) {
+            this.entry = entry;
+            this.stampAttribute = stampAttribute;
+            this.stampValue = stampValue;
+        }
+    }
+}
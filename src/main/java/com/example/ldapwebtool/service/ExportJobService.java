@@ -0,0 +1,316 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapExportConfig;
+import com.example.ldapwebtool.model.ExportJobStatus;
+import com.example.ldapwebtool.model.ExportRequest;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Runs exports in the background into gzip compressed spool files.
+ *
+ * A job is validated and checked against the backend when it is created, then runs on its
+ * own thread while the client polls its status. The spool file is written under a temporary
+ * name and renamed when complete, so a file with the final name is always whole. Finished
+ * jobs and their files are removed after the job TTL; jobs exist only in memory, so spool
+ * files left behind by an earlier process are removed once they are older than the TTL.
+ *
+ * Jobs are visible only to the bind DN that created them.
+ */
+@Service
+public class ExportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportJobService.class);
+
+    public static final String STATE_RUNNING = "running";
+    public static final String STATE_COMPLETED = "completed";
+    public static final String STATE_FAILED = "failed";
+    public static final String STATE_CANCELLED = "cancelled";
+
+    private static final String PARTIAL_SUFFIX = ".part";
+
+    private final PartitionedExporter exporter;
+    private final LdapExportConfig exportConfig;
+    private final Path spoolDirectory;
+    private final Semaphore runningJobs;
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "ldap-export-job");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public ExportJobService(PartitionedExporter exporter, LdapExportConfig exportConfig) {
+        this.exporter = exporter;
+        this.exportConfig = exportConfig;
+        this.spoolDirectory = Paths.get(exportConfig.getJobSpoolDirectory());
+        this.runningJobs = new Semaphore(Math.max(1, exportConfig.getMaxConcurrentJobs()));
+    }
+
+    /**
+     * Validates an export request and starts it as a background job.
+     *
+     * @throws BackendUnavailableException if the maximum number of jobs is already running
+     */
+    public ExportJobStatus create(ExportRequest request, String username, String password) throws Exception {
+        PartitionedExporter.Export export = exporter.prepare(request, username, password);
+        if (!runningJobs.tryAcquire()) {
+            throw new BackendUnavailableException(
+                "Too many export jobs running (limit " + exportConfig.getMaxConcurrentJobs() + ")", 60);
+        }
+
+        try {
+            Files.createDirectories(spoolDirectory);
+            String id = UUID.randomUUID().toString();
+            String format = export.isNdjson() ? "ndjson" : "ldif";
+            ExportJob job = new ExportJob(id, BackendRouter.normalizeCaller(username), request.getBase(), format,
+                spoolDirectory.resolve(id + "." + format + ".gz"), export);
+            jobs.put(id, job);
+            executor.execute(() -> run(job));
+            logger.info("Started export job {} for {}", id, request.getBase());
+            return job.toStatus();
+        } catch (IOException | RuntimeException e) {
+            runningJobs.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the status of a job, or null if it does not exist or belongs to someone else.
+     */
+    public ExportJobStatus getStatus(String id, String username) {
+        ExportJob job = find(id, username);
+        return job != null ? job.toStatus() : null;
+    }
+
+    /**
+     * Returns the spool file of a completed job, or null if the job does not exist, belongs to
+     * someone else or has not completed.
+     */
+    public Path getSpoolFile(String id, String username) {
+        ExportJob job = find(id, username);
+        return job != null && STATE_COMPLETED.equals(job.state) ? job.file : null;
+    }
+
+    /**
+     * Cancels a job if it is running and removes it with its spool file.
+     *
+     * @return false if the job does not exist or belongs to someone else
+     */
+    public boolean delete(String id, String username) {
+        ExportJob job = find(id, username);
+        if (job == null || !jobs.remove(id, job)) {
+            return false;
+        }
+        job.cancel();
+        deleteQuietly(job.file);
+        logger.info("Deleted export job {}", id);
+        return true;
+    }
+
+    /**
+     * Removes finished jobs older than the TTL, and spool files no job refers to.
+     */
+    @Scheduled(fixedDelayString = "${ldap.export.job-cleanup-interval-millis:60000}")
+    public void removeExpired() {
+        Instant now = Instant.now();
+        for (ExportJob job : jobs.values()) {
+            Instant expiresAt = job.expiresAt();
+            if (expiresAt != null && expiresAt.isBefore(now) && jobs.remove(job.id, job)) {
+                deleteQuietly(job.file);
+                logger.debug("Export job {} expired", job.id);
+            }
+        }
+
+        if (!Files.isDirectory(spoolDirectory)) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - exportConfig.getJobTtlMillis();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spoolDirectory, "*.{gz,part}")) {
+            for (Path file : files) {
+                String id = file.getFileName().toString();
+                id = id.substring(0, Math.max(0, id.indexOf('.')));
+                if (!jobs.containsKey(id) && Files.getLastModifiedTime(file).toMillis() < cutoff) {
+                    deleteQuietly(file);
+                    logger.debug("Removed orphaned spool file {}", file);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to clean up spool directory {}: {}", spoolDirectory, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ExportJob job : jobs.values()) {
+            job.cancel();
+        }
+        executor.shutdownNow();
+    }
+
+    private ExportJob find(String id, String username) {
+        ExportJob job = id != null ? jobs.get(id) : null;
+        if (job == null || !job.owner.equals(BackendRouter.normalizeCaller(username))) {
+            return null;
+        }
+        return job;
+    }
+
+    private void run(ExportJob job) {
+        Path partial = job.partialFile();
+        try {
+            try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(partial), 65536), 65536)) {
+                job.export.writeTo(out);
+            }
+            Files.move(partial, job.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            job.finish(STATE_COMPLETED, null);
+            logger.info("Export job {} completed: {} entries, {} bytes", job.id, job.entries, job.bytes);
+        } catch (Exception e) {
+            deleteQuietly(partial);
+            if (job.cancelled) {
+                job.finish(STATE_CANCELLED, null);
+            } else {
+                job.finish(STATE_FAILED, e.getMessage());
+                logger.warn("Export job {} failed after {} entries: {}", job.id, job.entries, e.getMessage());
+            }
+        } finally {
+            runningJobs.release();
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Unable to delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    private final class ExportJob {
+        private final String id;
+        private final String owner;
+        private final String base;
+        private final String format;
+        private final Path file;
+        private final Instant createdAt = Instant.now();
+        private final long startNanos = System.nanoTime();
+
+        /** Holds the caller's credentials; released when the job finishes. */
+        private volatile PartitionedExporter.Export export;
+        private volatile String state = STATE_RUNNING;
+        private volatile boolean cancelled;
+        private volatile String error;
+        private volatile Instant finishedAt;
+        private volatile long elapsedNanos;
+        private volatile long entries;
+        private volatile long bytes;
+
+        private ExportJob(String id, String owner, String base, String format, Path file, PartitionedExporter.Export export) {
+            this.id = id;
+            this.owner = owner;
+            this.base = base;
+            this.format = format;
+            this.file = file;
+            this.export = export;
+        }
+
+        private Path partialFile() {
+            return file.resolveSibling(file.getFileName() + PARTIAL_SUFFIX);
+        }
+
+        private void cancel() {
+            cancelled = true;
+            PartitionedExporter.Export running = export;
+            if (running != null) {
+                running.cancel();
+            }
+        }
+
+        private void finish(String finalState, String message) {
+            PartitionedExporter.Export finished = export;
+            entries = finished.getEntryCount();
+            bytes = finished.getByteCount();
+            elapsedNanos = System.nanoTime() - startNanos;
+            error = message;
+            finishedAt = Instant.now();
+            export = null;
+            state = finalState;
+        }
+
+        private Instant expiresAt() {
+            Instant finished = finishedAt;
+            return finished != null ? finished.plusMillis(exportConfig.getJobTtlMillis()) : null;
+        }
+
+        private ExportJobStatus toStatus() {
+            ExportJobStatus status = new ExportJobStatus();
+            status.setId(id);
+            status.setFormat(format);
+            status.setBase(base);
+            status.setCreatedAt(createdAt);
+
+            String currentState = state;
+            PartitionedExporter.Export running = export;
+            long elapsed;
+            if (running != null && STATE_RUNNING.equals(currentState)) {
+                status.setEntries(running.getEntryCount());
+                status.setBytes(running.getByteCount());
+                status.setSpoolBytes(sizeOf(partialFile()));
+                elapsed = System.nanoTime() - startNanos;
+            } else {
+                status.setEntries(entries);
+                status.setBytes(bytes);
+                status.setSpoolBytes(STATE_COMPLETED.equals(currentState) ? sizeOf(file) : 0);
+                elapsed = elapsedNanos;
+            }
+            status.setState(currentState);
+            double seconds = elapsed / (double) TimeUnit.SECONDS.toNanos(1);
+            status.setEntriesPerSecond(seconds > 0 ? Math.round(status.getEntries() / seconds * 10) / 10.0 : 0);
+            status.setError(error);
+            status.setFinishedAt(finishedAt);
+            status.setExpiresAt(expiresAt());
+            if (STATE_COMPLETED.equals(currentState)) {
+                status.setDownloadUrl("/api/exports/" + id + "/download");
+            }
+            return status;
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * File name offered to clients downloading a job's spool file.
+     */
+    public static String downloadFileName(Path file) {
+        return "export-" + file.getFileName();
+    }
+}
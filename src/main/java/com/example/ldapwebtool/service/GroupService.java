@@ -0,0 +1,587 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapGroupConfig;
+import com.example.ldapwebtool.model.GroupExpansionResponse;
+import com.example.ldapwebtool.util.BoundedCache;
+import com.unboundid.ldap.sdk.ChangeType;
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.LDAPSearchException;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.RootDSE;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchScope;
+import com.unboundid.util.StaticUtils;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Expands nested group membership on the server side.
+ *
+ * On Active Directory a single search with the matching-rule-in-chain filter does the
+ * expansion. Elsewhere the group graph is walked breadth first: each level's lookups (a
+ * member's groups, or a group's members) are spread over a few pooled connections and run
+ * at the same time. Each group is expanded once, so cycles and diamonds in the nesting end
+ * the walk rather than repeating it. A member's groups are read from memberOf when the
+ * server's schema defines it, and otherwise found by searching for groups that list it.
+ *
+ * The edges looked up are memoized per backend URI and bind DN for the cache TTL. Changes
+ * made through this service ({@link DirectoryChangeEvent}) that add, delete or rename
+ * entries, or that modify member attributes or object classes, clear the cache; changes
+ * made by other clients are seen once the edges expire. An expansion answered entirely
+ * from memory still checks the caller's password with a bind.
+ *
+ * Depth is the number of levels of nesting that reached a group or member: 1 for direct
+ * memberships, 3 for a member of G3 in G2 in G1, in both directions.
+ */
+@Service
+public class GroupService {
+
+    public static final String IN_CHAIN = "in-chain";
+    public static final String MEMBER_OF = "member-of";
+    public static final String LOOKUP = "lookup";
+
+    /** LDAP_MATCHING_RULE_IN_CHAIN */
+    static final String IN_CHAIN_RULE = "1.2.840.113556.1.4.1941";
+
+    /** supportedCapabilities of Active Directory and AD LDS, which support the in-chain rule */
+    private static final Set<String> IN_CHAIN_CAPABILITIES = Set.of("1.2.840.113556.1.4.800", "1.2.840.113556.1.4.1851");
+
+    private static final String PARENTS = "parents";
+    private static final String MEMBERS = "members";
+    private static final String GROUPS = "groups";
+
+    private final LdapConnectionManager connectionManager;
+    private final BackendRouter backendRouter;
+    private final SchemaCache schemaCache;
+    private final LdapGroupConfig groupConfig;
+    private final BoundedCache<String, Edges> cache;
+    private final VerifiedCredentials credentials;
+    /** Strategy per endpoint key, valid while the schema it was chosen with is cached */
+    private final Map<String, Strategy> strategies = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    // When every thread is busy the request thread runs the share itself
+    private final ThreadPoolExecutor executor;
+
+    @Autowired
+    public GroupService(LdapConnectionManager connectionManager, BackendRouter backendRouter,
+                        SchemaCache schemaCache, LdapGroupConfig groupConfig) {
+        this.connectionManager = connectionManager;
+        this.backendRouter = backendRouter;
+        this.schemaCache = schemaCache;
+        this.groupConfig = groupConfig;
+        this.cache = new BoundedCache<>(groupConfig.getCacheSize());
+        this.credentials = new VerifiedCredentials(connectionManager, groupConfig.getCredentialTtlMillis());
+
+        int threads = Math.max(1, groupConfig.getMaxThreads());
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "ldap-group-lookup");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns every group under base that the member belongs to, directly or through nesting.
+     *
+     * @throws RequestValidationException if a DN is malformed, or the nesting is deeper or
+     *         reaches more groups than configured
+     */
+    public GroupExpansionResponse effectiveGroups(String uri, String backend, String memberDn, String base,
+                                                  String username, String password) throws Exception {
+        DN member = parseDn(memberDn, "member");
+        DN baseDN = parseDn(base, "base");
+        Target target = target(uri, backend, username, password);
+        String strategy = strategy(target);
+
+        if (strategy.equals(IN_CHAIN)) {
+            List<String> groups = target.withConnection(connection -> {
+                List<String> dns = new ArrayList<>();
+                for (SearchResultEntry entry : search(connection, base, inChain(memberDn), groupConfig.getMaxGroups(), "1.1")) {
+                    dns.add(entry.getDN());
+                }
+                return dns;
+            });
+            return new GroupExpansionResponse(memberDn, strategy, null, groups, null);
+        }
+
+        boolean memberOf = strategy.equals(MEMBER_OF);
+        Set<String> visited = new HashSet<>();
+        visited.add(member.toNormalizedString());
+        List<String> groups = new ArrayList<>();
+        List<String> frontier = List.of(memberDn);
+        int depth = 0;
+        while (!frontier.isEmpty()) {
+            List<List<String>> parents = lookup(target, PARENTS, baseDN.toNormalizedString(), frontier,
+                (connection, dn) -> memberOf ? readMemberOf(connection, dn, baseDN) : searchGroupsListing(connection, dn, base));
+            List<String> next = new ArrayList<>();
+            for (List<String> dns : parents) {
+                for (String dn : dns) {
+                    if (visited.add(normalize(dn))) {
+                        groups.add(dn);
+                        next.add(dn);
+                    }
+                }
+            }
+            if (!next.isEmpty()) {
+                checkLimits(++depth, groups.size());
+            }
+            frontier = next;
+        }
+        authenticate(target);
+        return new GroupExpansionResponse(memberDn, strategy, depth, groups, null);
+    }
+
+    /**
+     * Returns the members of a group: with transitive, the members of nested groups too,
+     * split into the nested groups (under base) and the other members; otherwise its direct
+     * members as listed.
+     *
+     * @throws RequestValidationException if a DN is malformed, base is missing for a
+     *         transitive expansion, or the expansion exceeds the configured limits
+     */
+    public GroupExpansionResponse members(String uri, String backend, String groupDn, String base, boolean transitive,
+                                          String username, String password) throws Exception {
+        DN group = parseDn(groupDn, "group");
+        Target target = target(uri, backend, username, password);
+        if (!transitive) {
+            List<String> members = lookup(target, MEMBERS, "", List.of(groupDn), this::readMembers).get(0);
+            authenticate(target);
+            return new GroupExpansionResponse(groupDn, null, 1, null, members);
+        }
+        if (base == null || base.isBlank()) {
+            throw new RequestValidationException(ResultCode.PARAM_ERROR, "base is required for transitive expansion");
+        }
+        parseDn(base, "base");
+        String strategy = strategy(target);
+
+        List<String> groups = new ArrayList<>();
+        List<String> members = new ArrayList<>();
+        if (strategy.equals(IN_CHAIN)) {
+            Set<String> groupClasses = lowerCase(groupConfig.getObjectClasses());
+            target.withConnection(connection -> {
+                Filter filter = Filter.createExtensibleMatchFilter("memberOf", IN_CHAIN_RULE, false, groupDn);
+                int limit = groupConfig.getMaxGroups() + groupConfig.getMaxMembers();
+                for (SearchResultEntry entry : search(connection, base, filter, limit, "objectClass")) {
+                    (isGroup(entry, groupClasses) ? groups : members).add(entry.getDN());
+                }
+                return null;
+            });
+            return new GroupExpansionResponse(groupDn, strategy, null, groups, members);
+        }
+
+        // Which member DNs are groups is decided by one search for all groups under base
+        Set<String> groupDns = new HashSet<>(lookup(target, GROUPS, "", List.of(base),
+            this::searchGroups).get(0));
+        Set<String> visited = new HashSet<>();
+        visited.add(group.toNormalizedString());
+        List<String> frontier = List.of(groupDn);
+        int depth = 0;
+        while (!frontier.isEmpty()) {
+            List<List<String>> levelMembers = lookup(target, MEMBERS, "", frontier, this::readMembers);
+            List<String> next = new ArrayList<>();
+            int reached = groups.size() + members.size();
+            for (List<String> dns : levelMembers) {
+                for (String dn : dns) {
+                    String normalized = normalize(dn);
+                    if (!visited.add(normalized)) {
+                        continue;
+                    }
+                    if (groupDns.contains(normalized)) {
+                        groups.add(dn);
+                        next.add(dn);
+                    } else if (members.size() < groupConfig.getMaxMembers()) {
+                        members.add(dn);
+                    } else {
+                        throw new RequestValidationException(ResultCode.ADMIN_LIMIT_EXCEEDED,
+                            "Group has more than " + groupConfig.getMaxMembers() + " members");
+                    }
+                }
+            }
+            if (groups.size() + members.size() > reached) {
+                checkLimits(++depth, groups.size());
+            }
+            frontier = next;
+        }
+        authenticate(target);
+        return new GroupExpansionResponse(groupDn, LOOKUP, depth, groups, members);
+    }
+
+    private void checkLimits(int depth, int groups) throws RequestValidationException {
+        if (depth > groupConfig.getMaxDepth()) {
+            throw new RequestValidationException(ResultCode.ADMIN_LIMIT_EXCEEDED,
+                "Groups are nested more than " + groupConfig.getMaxDepth() + " levels deep");
+        }
+        if (groups > groupConfig.getMaxGroups()) {
+            throw new RequestValidationException(ResultCode.ADMIN_LIMIT_EXCEEDED,
+                "Expansion reaches more than " + groupConfig.getMaxGroups() + " groups");
+        }
+    }
+
+    private Target target(String uri, String backend, String username, String password) throws Exception {
+        String targetUri = backendRouter.resolveReadUri(uri, backend, username, password);
+        return new Target(targetUri, targetUri + '\0' + BackendRouter.normalizeCaller(username), username, password);
+    }
+
+    /**
+     * Checks the caller's password if the expansion was answered without binding with it,
+     * from cached edges and a cached strategy.
+     */
+    private void authenticate(Target target) throws LDAPException {
+        if (!target.bound) {
+            credentials.verify(target.uri, target.username, target.password);
+        }
+    }
+
+    /**
+     * Chooses how to expand nesting on a backend, once per URI: in-chain on Active Directory,
+     * member-of if the schema defines memberOf, lookup otherwise. The choice is made again
+     * once the schema cache has reloaded or dropped the schema it was based on.
+     */
+    private String strategy(Target target) throws Exception {
+        String key = LdapEndpoint.parse(target.uri).getKey();
+        Strategy cached = strategies.get(key);
+        if (cached != null && cached.schema == schemaCache.getCached(target.uri)) {
+            return cached.name;
+        }
+        Strategy strategy = target.withConnection(connection -> {
+            DirectorySchema schema = schemaCache.get(target.uri, connection);
+            if (groupConfig.isUseInChain()) {
+                RootDSE rootDSE = connection.getRootDSE();
+                String[] capabilities = rootDSE != null ? rootDSE.getAttributeValues("supportedCapabilities") : null;
+                if (capabilities != null) {
+                    for (String capability : capabilities) {
+                        if (IN_CHAIN_CAPABILITIES.contains(capability)) {
+                            return new Strategy(IN_CHAIN, schema);
+                        }
+                    }
+                }
+            }
+            if (groupConfig.isUseMemberOf() && schema != null && schema.getAttributeType("memberOf") != null) {
+                return new Strategy(MEMBER_OF, schema);
+            }
+            return new Strategy(LOOKUP, schema);
+        });
+        strategies.put(key, strategy);
+        return strategy.name;
+    }
+
+    /**
+     * Forgets the strategies of backends whose connection pool has been closed.
+     */
+    @Scheduled(fixedDelayString = "${ldap.pool.idle-check-interval-millis:60000}")
+    public void forgetClosedBackends() {
+        Set<String> active = new HashSet<>();
+        for (LdapEndpoint endpoint : connectionManager.getActiveEndpoints()) {
+            active.add(endpoint.getKey());
+        }
+        strategies.keySet().retainAll(active);
+    }
+
+    /**
+     * Runs one lookup per DN, answering from the cache where possible and spreading the
+     * rest over up to {@code parallelism} connections. Results are in the order of the DNs.
+     */
+    private List<List<String>> lookup(Target target, String kind, String scope, List<String> dns, Lookup lookup) throws Exception {
+        List<List<String>> results = new ArrayList<>(Collections.nCopies(dns.size(), null));
+        List<Integer> pending = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < dns.size(); i++) {
+            Edges edges = groupConfig.getCacheTtlMillis() > 0 ? cache.get(key(target, kind, scope, dns.get(i))) : null;
+            if (edges != null && edges.expiresAt > now) {
+                results.set(i, edges.dns);
+            } else {
+                pending.add(i);
+            }
+        }
+        if (pending.isEmpty()) {
+            return results;
+        }
+
+        long generation = invalidations.get();
+        int shares = Math.max(1, Math.min(groupConfig.getParallelism(), pending.size()));
+        int shareSize = (pending.size() + shares - 1) / shares;
+        List<Future<?>> futures = new ArrayList<>();
+        for (int start = shareSize; start < pending.size(); start += shareSize) {
+            List<Integer> share = pending.subList(start, Math.min(pending.size(), start + shareSize));
+            futures.add(executor.submit(() -> runShare(target, dns, share, results, lookup)));
+        }
+        Exception failure = null;
+        try {
+            runShare(target, dns, pending.subList(0, Math.min(pending.size(), shareSize)), results, lookup);
+        } catch (Exception e) {
+            failure = e;
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+
+        if (groupConfig.getCacheTtlMillis() > 0 && invalidations.get() == generation) {
+            long expiresAt = System.currentTimeMillis() + groupConfig.getCacheTtlMillis();
+            for (int i : pending) {
+                cache.put(key(target, kind, scope, dns.get(i)), new Edges(results.get(i), expiresAt));
+            }
+            // An invalidation may have run between the check and the puts
+            if (invalidations.get() != generation) {
+                cache.clear();
+            }
+        }
+        return results;
+    }
+
+    private Void runShare(Target target, List<String> dns, List<Integer> share, List<List<String>> results,
+                          Lookup lookup) throws Exception {
+        return target.withConnection(connection -> {
+            for (int i : share) {
+                results.set(i, lookup.apply(connection, dns.get(i)));
+            }
+            return null;
+        });
+    }
+
+    private static String key(Target target, String kind, String scope, String dn) {
+        return target.view + '\0' + kind + '\0' + scope + '\0' + normalize(dn);
+    }
+
+    /**
+     * Direct members of a group as listed in its member attributes; empty if there is no
+     * such entry.
+     */
+    private List<String> readMembers(LDAPConnection connection, String groupDn) throws LDAPException {
+        Entry entry = connection.getEntry(groupDn, groupConfig.getMemberAttributes().toArray(new String[0]));
+        List<String> members = new ArrayList<>();
+        if (entry != null) {
+            entry = RangedAttributes.complete(connection, entry);
+            for (String attribute : groupConfig.getMemberAttributes()) {
+                String[] values = entry.getAttributeValues(attribute);
+                if (values != null) {
+                    Collections.addAll(members, values);
+                }
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Groups under base that the entry belongs to directly, according to its memberOf.
+     */
+    private List<String> readMemberOf(LDAPConnection connection, String dn, DN base) throws LDAPException {
+        Entry entry = connection.getEntry(dn, "memberOf");
+        String[] values = entry != null ? entry.getAttributeValues("memberOf") : null;
+        List<String> groups = new ArrayList<>();
+        if (values != null) {
+            for (String value : values) {
+                try {
+                    if (new DN(value).isDescendantOf(base, true)) {
+                        groups.add(value);
+                    }
+                } catch (LDAPException e) {
+                    // Not a DN; cannot be a group under base
+                }
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Groups under base that list the entry in one of their member attributes.
+     */
+    private List<String> searchGroupsListing(LDAPConnection connection, String dn, String base) throws LDAPException {
+        List<Filter> memberFilters = new ArrayList<>();
+        for (String attribute : groupConfig.getMemberAttributes()) {
+            memberFilters.add(Filter.createEqualityFilter(attribute, dn));
+        }
+        Filter filter = Filter.createANDFilter(groupFilter(), Filter.createORFilter(memberFilters));
+        List<String> groups = new ArrayList<>();
+        for (SearchResultEntry entry : search(connection, base, filter, groupConfig.getMaxGroups(), "1.1")) {
+            groups.add(entry.getDN());
+        }
+        return groups;
+    }
+
+    /**
+     * Normalized DNs of all groups under base.
+     */
+    private List<String> searchGroups(LDAPConnection connection, String base) throws LDAPException {
+        List<String> groups = new ArrayList<>();
+        for (SearchResultEntry entry : search(connection, base, groupFilter(), groupConfig.getMaxGroups(), "1.1")) {
+            groups.add(normalize(entry.getDN()));
+        }
+        return groups;
+    }
+
+    private Filter inChain(String memberDn) {
+        List<Filter> memberFilters = new ArrayList<>();
+        for (String attribute : groupConfig.getMemberAttributes()) {
+            memberFilters.add(Filter.createExtensibleMatchFilter(attribute, IN_CHAIN_RULE, false, memberDn));
+        }
+        return Filter.createANDFilter(groupFilter(), Filter.createORFilter(memberFilters));
+    }
+
+    private Filter groupFilter() {
+        List<Filter> classFilters = new ArrayList<>();
+        for (String objectClass : groupConfig.getObjectClasses()) {
+            classFilters.add(Filter.createEqualityFilter("objectClass", objectClass));
+        }
+        return Filter.createORFilter(classFilters);
+    }
+
+    private static List<SearchResultEntry> search(LDAPConnection connection, String base, Filter filter, int limit,
+                                                  String... attributes) throws LDAPException {
+        com.unboundid.ldap.sdk.SearchRequest request =
+            new com.unboundid.ldap.sdk.SearchRequest(base, SearchScope.SUB, filter, attributes);
+        request.setSizeLimit(limit);
+        try {
+            SearchResult result = connection.search(request);
+            return result.getSearchEntries();
+        } catch (LDAPSearchException e) {
+            if (e.getResultCode() == ResultCode.SIZE_LIMIT_EXCEEDED) {
+                throw new RequestValidationException(ResultCode.ADMIN_LIMIT_EXCEEDED,
+                    "Expansion reaches more than " + limit + " entries");
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isGroup(Entry entry, Set<String> groupClasses) {
+        String[] objectClasses = entry.getObjectClassValues();
+        if (objectClasses != null) {
+            for (String objectClass : objectClasses) {
+                if (groupClasses.contains(StaticUtils.toLowerCase(objectClass))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> lowerCase(List<String> names) {
+        Set<String> lowerCased = new HashSet<>();
+        for (String name : names) {
+            lowerCased.add(StaticUtils.toLowerCase(name));
+        }
+        return lowerCased;
+    }
+
+    private static DN parseDn(String dn, String name) throws RequestValidationException {
+        try {
+            return new DN(dn);
+        } catch (LDAPException e) {
+            throw new RequestValidationException(ResultCode.INVALID_DN_SYNTAX, "Invalid " + name + " DN: " + dn);
+        }
+    }
+
+    private static String normalize(String dn) {
+        try {
+            return new DN(dn).toNormalizedString();
+        } catch (LDAPException e) {
+            return StaticUtils.toLowerCase(dn);
+        }
+    }
+
+    /**
+     * Clears the cache when a change may have altered the group graph: any add, delete or
+     * rename, and modifies of member attributes, object classes or memberOf.
+     */
+    @EventListener
+    public void onDirectoryChange(DirectoryChangeEvent event) {
+        if (event.getChangeType() == ChangeType.MODIFY) {
+            boolean membership = event.mayHaveChanged("objectClass") || event.mayHaveChanged("memberOf");
+            for (String attribute : groupConfig.getMemberAttributes()) {
+                membership |= event.mayHaveChanged(attribute);
+            }
+            if (!membership) {
+                return;
+            }
+        }
+        invalidations.incrementAndGet();
+        cache.clear();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface Lookup {
+        List<String> apply(LDAPConnection connection, String dn) throws LDAPException;
+    }
+
+    private final class Target {
+        private final String uri;
+        private final String view;
+        private final String username;
+        private final String password;
+        /** Whether a connection was bound with the caller's password for this expansion */
+        private volatile boolean bound;
+
+        private Target(String uri, String view, String username, String password) {
+            this.uri = uri;
+            this.view = view;
+            this.username = username;
+            this.password = password;
+        }
+
+        private <T> T withConnection(LdapConnectionManager.LdapCallback<T> callback) throws Exception {
+            T result = connectionManager.withConnection(uri, username, password, callback);
+            bound = true;
+            return result;
+        }
+    }
+
+    private static final class Strategy {
+        private final String name;
+        private final DirectorySchema schema;
+
+        private Strategy(String name, DirectorySchema schema) {
+            this.name = name;
+            this.schema = schema;
+        }
+    }
+
+    /**
+     * DNs one lookup returned, and until when they are reused.
+     */
+    private static final class Edges {
+        private final List<String> dns;
+        private final long expiresAt;
+
+        private Edges(List<String> dns, long expiresAt) {
+            this.dns = dns;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
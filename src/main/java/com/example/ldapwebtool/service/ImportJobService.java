@@ -0,0 +1,594 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapImportConfig;
+import com.example.ldapwebtool.model.ImportJobStatus;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.LDAPResult;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldif.LDIFChangeRecord;
+import com.unboundid.ldif.LDIFException;
+import com.unboundid.ldif.LDIFReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies uploaded LDIF files in the background, with checkpoints that allow a job to be
+ * resumed where it stopped.
+ *
+ * The upload is spooled to disk and read record by record. Records are applied in batches,
+ * each on a connection checked out from the pool, and progress (the byte offset and index
+ * of the next record) is written to a checkpoint file at a fixed interval and whenever the
+ * job stops. Records the directory rejects are written to a failure report and skipped,
+ * unless the job was created with continueOnError=false, in which case the job stops at
+ * the failing record. If the backend becomes unreachable the job stops as failed; resuming
+ * it continues with the record that was being applied.
+ *
+ * Checkpoints are reloaded at startup, so jobs interrupted by a restart can be resumed. The
+ * caller's password is never written to disk: resuming requires the owner to authenticate
+ * again. After an abrupt stop, records applied after the last checkpoint are applied again
+ * on resume, and typically show up in the failure report (e.g. as entryAlreadyExists).
+ */
+@Service
+public class ImportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportJobService.class);
+
+    public static final String STATE_RUNNING = "running";
+    public static final String STATE_COMPLETED = "completed";
+    public static final String STATE_FAILED = "failed";
+    public static final String STATE_INTERRUPTED = "interrupted";
+    public static final String STATE_CANCELLED = "cancelled";
+
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint.json";
+
+    private final LdapConnectionManager connectionManager;
+    private final BackendRouter backendRouter;
+    private final SchemaCache schemaCache;
+    private final LdapImportConfig importConfig;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Path spoolDirectory;
+    private final Semaphore runningJobs;
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "ldap-import-job");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public ImportJobService(LdapConnectionManager connectionManager, BackendRouter backendRouter,
+                            SchemaCache schemaCache, LdapImportConfig importConfig, ObjectMapper objectMapper,
+                            ApplicationEventPublisher eventPublisher) {
+        this.connectionManager = connectionManager;
+        this.backendRouter = backendRouter;
+        this.schemaCache = schemaCache;
+        this.importConfig = importConfig;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.spoolDirectory = Paths.get(importConfig.getSpoolDirectory());
+        this.runningJobs = new Semaphore(Math.max(1, importConfig.getMaxConcurrentJobs()));
+    }
+
+    /**
+     * Reloads the jobs found in the spool directory. Jobs that were running when the
+     * previous process stopped become interrupted.
+     */
+    @PostConstruct
+    public void recover() {
+        if (!Files.isDirectory(spoolDirectory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spoolDirectory, "*" + CHECKPOINT_SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    Checkpoint checkpoint = objectMapper.readValue(file.toFile(), Checkpoint.class);
+                    ImportJob job = new ImportJob(checkpoint);
+                    if (STATE_RUNNING.equals(job.state)) {
+                        job.state = STATE_INTERRUPTED;
+                        job.finishedAt = Instant.now();
+                        saveCheckpoint(job);
+                    }
+                    jobs.put(job.id, job);
+                    logger.info("Recovered import job {} ({}, {} of {} bytes)", job.id, job.state, job.offset, job.totalBytes);
+                } catch (IOException e) {
+                    logger.warn("Unable to read import checkpoint {}: {}", file, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to scan import spool directory {}: {}", spoolDirectory, e.getMessage());
+        }
+    }
+
+    /**
+     * Spools an LDIF upload to disk and starts applying it.
+     *
+     * @throws BackendUnavailableException if the maximum number of jobs is already running
+     */
+    public ImportJobStatus create(InputStream ldif, String uri, String backend, boolean continueOnError,
+                                  String username, String password) throws Exception {
+        String targetUri = backendRouter.resolveWriteUri(uri, backend);
+        acquireSlot();
+
+        String id = UUID.randomUUID().toString();
+        Path file = spoolDirectory.resolve(id + ".ldif");
+        ImportJob job = null;
+        try {
+            Files.createDirectories(spoolDirectory);
+            long size = Files.copy(ldif, file);
+
+            job = new ImportJob(id, BackendRouter.normalizeCaller(username), targetUri, backend, continueOnError, size);
+            saveCheckpoint(job);
+            jobs.put(id, job);
+            start(job, username, password);
+            logger.info("Started import job {} ({} bytes)", id, size);
+            return job.toStatus();
+        } catch (Exception e) {
+            runningJobs.release();
+            if (job != null) {
+                jobs.remove(id);
+                deleteFiles(job);
+            } else {
+                deleteQuietly(file);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Resumes a failed, interrupted or cancelled job from its checkpoint.
+     *
+     * @return the job status, or null if the job does not exist or belongs to someone else
+     * @throws IllegalStateException if the job is running or has completed
+     */
+    public ImportJobStatus resume(String id, String username, String password) {
+        ImportJob job = find(id, username);
+        if (job == null) {
+            return null;
+        }
+        synchronized (job) {
+            if (STATE_RUNNING.equals(job.state) || STATE_COMPLETED.equals(job.state)) {
+                throw new IllegalStateException("Import job " + id + " is " + job.state);
+            }
+            acquireSlot();
+            job.error = null;
+            try {
+                start(job, username, password);
+            } catch (RuntimeException e) {
+                job.state = STATE_FAILED;
+                runningJobs.release();
+                throw e;
+            }
+        }
+        logger.info("Resumed import job {} at record {} (byte {})", id, job.records, job.offset);
+        return job.toStatus();
+    }
+
+    /**
+     * Returns the status of a job, or null if it does not exist or belongs to someone else.
+     */
+    public ImportJobStatus getStatus(String id, String username) {
+        ImportJob job = find(id, username);
+        return job != null ? job.toStatus() : null;
+    }
+
+    /**
+     * Returns the failure report of a job (one JSON object per failed record), or null if the
+     * job does not exist, belongs to someone else or has no failures.
+     */
+    public Path getFailureReport(String id, String username) {
+        ImportJob job = find(id, username);
+        return job != null && Files.exists(failuresFile(job)) ? failuresFile(job) : null;
+    }
+
+    /**
+     * Stops a job if it is running and removes it with its files.
+     *
+     * @return false if the job does not exist or belongs to someone else
+     */
+    public boolean delete(String id, String username) {
+        ImportJob job = find(id, username);
+        if (job == null || !jobs.remove(id, job)) {
+            return false;
+        }
+        job.cancelRequested = true;
+        deleteFiles(job);
+        logger.info("Deleted import job {}", id);
+        return true;
+    }
+
+    /**
+     * Removes jobs that have not run for longer than the TTL, with their files.
+     */
+    @Scheduled(fixedDelayString = "${ldap.import.job-cleanup-interval-millis:60000}")
+    public void removeExpired() {
+        Instant now = Instant.now();
+        for (ImportJob job : jobs.values()) {
+            Instant expiresAt = job.expiresAt();
+            if (expiresAt != null && expiresAt.isBefore(now) && jobs.remove(job.id, job)) {
+                deleteFiles(job);
+                logger.debug("Import job {} expired", job.id);
+            }
+        }
+    }
+
+    /**
+     * Stops running jobs at their next record and records their position, so that they
+     * can be resumed after a restart.
+     */
+    @PreDestroy
+    public void shutdown() {
+        for (ImportJob job : jobs.values()) {
+            job.shutdownRequested = true;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void acquireSlot() {
+        if (!runningJobs.tryAcquire()) {
+            throw new BackendUnavailableException(
+                "Too many import jobs running (limit " + importConfig.getMaxConcurrentJobs() + ")", 60);
+        }
+    }
+
+    private void start(ImportJob job, String username, String password) {
+        job.state = STATE_RUNNING;
+        job.cancelRequested = false;
+        job.runStartNanos = System.nanoTime();
+        job.runStartOffset = job.offset;
+        job.runStartRecords = job.records;
+        job.finishedAt = null;
+        executor.execute(() -> run(job, username, password));
+    }
+
+    private ImportJob find(String id, String username) {
+        ImportJob job = id != null ? jobs.get(id) : null;
+        if (job == null || !job.owner.equals(BackendRouter.normalizeCaller(username))) {
+            return null;
+        }
+        return job;
+    }
+
+    private void run(ImportJob job, String username, String password) {
+        String finalState;
+        try (LdifRecordReader reader = new LdifRecordReader(ldifFile(job), job.offset);
+             BufferedWriter failures = Files.newBufferedWriter(failuresFile(job), StandardCharsets.UTF_8,
+                 StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            long lastCheckpoint = System.nanoTime();
+            while (true) {
+                if (job.cancelRequested || job.shutdownRequested) {
+                    finalState = job.cancelRequested ? STATE_CANCELLED : STATE_INTERRUPTED;
+                    break;
+                }
+                boolean done = connectionManager.withConnection(job.uri, username, password,
+                    connection -> applyBatch(job, reader, failures, connection, username));
+                if (done) {
+                    finalState = STATE_COMPLETED;
+                    break;
+                }
+                if (System.nanoTime() - lastCheckpoint >= TimeUnit.MILLISECONDS.toNanos(importConfig.getCheckpointIntervalMillis())) {
+                    failures.flush();
+                    saveCheckpoint(job);
+                    lastCheckpoint = System.nanoTime();
+                }
+            }
+        } catch (Exception e) {
+            finalState = STATE_FAILED;
+            if (job.error == null) {
+                job.error = e.getMessage();
+            }
+            logger.warn("Import job {} stopped at record {}: {}", job.id, job.records, job.error);
+        }
+
+        synchronized (job) {
+            job.state = finalState;
+            job.runNanos = System.nanoTime() - job.runStartNanos;
+            job.finishedAt = Instant.now();
+            // A deleted job's files are gone; do not recreate its checkpoint
+            if (jobs.get(job.id) == job) {
+                saveCheckpoint(job);
+            }
+            runningJobs.release();
+        }
+        logger.info("Import job {} {}: {} records applied, {} failed", job.id, finalState, job.applied, job.failed);
+    }
+
+    /**
+     * Applies up to one batch of records on a connection.
+     *
+     * @return true if the end of the file has been reached
+     */
+    private boolean applyBatch(ImportJob job, LdifRecordReader reader, BufferedWriter failures,
+                               LDAPConnection connection, String username) throws LDAPException, IOException {
+        DirectorySchema schema = schemaCache.isValidationEnabled() ? schemaCache.get(job.uri, connection) : null;
+        boolean anyApplied = false;
+        try {
+            for (int i = 0; i < importConfig.getBatchSize(); i++) {
+                if (job.cancelRequested || job.shutdownRequested) {
+                    return false;
+                }
+                String[] lines = reader.next();
+                if (lines == null) {
+                    return true;
+                }
+
+                String failure = null;
+                String dn = null;
+                ResultCode resultCode = null;
+                LDIFChangeRecord changeRecord = null;
+                try {
+                    changeRecord = LDIFReader.decodeChangeRecord(true, lines);
+                    dn = changeRecord.getDN();
+                    if (schema != null) {
+                        schema.validateChangeRecord(changeRecord);
+                    }
+                    LDAPResult result = changeRecord.processChange(connection);
+                    resultCode = result.getResultCode();
+                    if (resultCode != ResultCode.SUCCESS) {
+                        failure = result.getDiagnosticMessage();
+                    }
+                } catch (LDIFException e) {
+                    resultCode = ResultCode.DECODING_ERROR;
+                    failure = e.getMessage();
+                } catch (LDAPException e) {
+                    if (stopsJob(e.getResultCode())) {
+                        // Nothing is recorded for this record, so resuming applies it again
+                        throw e;
+                    }
+                    resultCode = e.getResultCode();
+                    failure = e.getMessage();
+                }
+
+                if (failure != null && !job.continueOnError) {
+                    job.error = "Record " + job.records + " (" + dn + ") failed: " + resultCode + ": " + failure;
+                    throw new LDAPException(resultCode, job.error);
+                }
+                if (failure != null) {
+                    writeFailure(failures, job, dn, lines, resultCode, failure);
+                    job.failed++;
+                } else {
+                    job.applied++;
+                    anyApplied = true;
+                    eventPublisher.publishEvent(new DirectoryChangeEvent(this, job.uri, changeRecord));
+                }
+                job.records++;
+                job.offset = reader.getOffset();
+            }
+            return false;
+        } finally {
+            if (anyApplied) {
+                backendRouter.recordWrite(job.backend, username, connection);
+            }
+        }
+    }
+
+    /**
+     * Result codes that mean the backend, rather than the record, is the problem.
+     */
+    private static boolean stopsJob(ResultCode resultCode) {
+        return !resultCode.isConnectionUsable()
+            || resultCode == ResultCode.BUSY
+            || resultCode == ResultCode.UNAVAILABLE;
+    }
+
+    private void writeFailure(BufferedWriter failures, ImportJob job, String dn, String[] lines,
+                              ResultCode resultCode, String message) throws IOException {
+        Map<String, Object> failure = new LinkedHashMap<>();
+        failure.put("record", job.records);
+        failure.put("offset", job.offset);
+        failure.put("dn", dn != null ? dn : (lines.length > 0 ? lines[0] : null));
+        failure.put("resultCode", resultCode.getName());
+        failure.put("message", message);
+        failures.write(objectMapper.writeValueAsString(failure));
+        failures.newLine();
+        failures.flush();
+    }
+
+    private void saveCheckpoint(ImportJob job) {
+        Path file = checkpointFile(job);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            objectMapper.writeValue(temporary.toFile(), job.toCheckpoint());
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Unable to write checkpoint of import job {}: {}", job.id, e.getMessage());
+        }
+    }
+
+    private void deleteFiles(ImportJob job) {
+        deleteQuietly(ldifFile(job));
+        deleteQuietly(checkpointFile(job));
+        deleteQuietly(failuresFile(job));
+    }
+
+    private Path ldifFile(ImportJob job) {
+        return spoolDirectory.resolve(job.id + ".ldif");
+    }
+
+    private Path checkpointFile(ImportJob job) {
+        return spoolDirectory.resolve(job.id + CHECKPOINT_SUFFIX);
+    }
+
+    private Path failuresFile(ImportJob job) {
+        return spoolDirectory.resolve(job.id + ".failures.ndjson");
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Unable to delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * What is written to a job's checkpoint file. Credentials are deliberately absent.
+     */
+    @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+    private static final class Checkpoint {
+        private String id;
+        private String owner;
+        private String uri;
+        private String backend;
+        private boolean continueOnError;
+        private long totalBytes;
+        private long offset;
+        private long records;
+        private long applied;
+        private long failed;
+        private String state;
+        private String error;
+        private long createdAt;
+        private Long finishedAt;
+    }
+
+    private final class ImportJob {
+        private final String id;
+        private final String owner;
+        private final String uri;
+        private final String backend;
+        private final boolean continueOnError;
+        private final long totalBytes;
+        private final Instant createdAt;
+
+        // Progress is written only by the job's own thread
+        private volatile long offset;
+        private volatile long records;
+        private volatile long applied;
+        private volatile long failed;
+        private volatile String state;
+        private volatile String error;
+        private volatile Instant finishedAt;
+        private volatile boolean cancelRequested;
+        private volatile boolean shutdownRequested;
+
+        private volatile long runStartNanos;
+        private volatile long runStartOffset;
+        private volatile long runStartRecords;
+        private volatile long runNanos;
+
+        private ImportJob(String id, String owner, String uri, String backend, boolean continueOnError, long totalBytes) {
+            this.id = id;
+            this.owner = owner;
+            this.uri = uri;
+            this.backend = backend;
+            this.continueOnError = continueOnError;
+            this.totalBytes = totalBytes;
+            this.createdAt = Instant.now();
+            this.state = STATE_RUNNING;
+        }
+
+        private ImportJob(Checkpoint checkpoint) {
+            this.id = checkpoint.id;
+            this.owner = checkpoint.owner;
+            this.uri = checkpoint.uri;
+            this.backend = checkpoint.backend;
+            this.continueOnError = checkpoint.continueOnError;
+            this.totalBytes = checkpoint.totalBytes;
+            this.createdAt = Instant.ofEpochMilli(checkpoint.createdAt);
+            this.offset = checkpoint.offset;
+            this.records = checkpoint.records;
+            this.applied = checkpoint.applied;
+            this.failed = checkpoint.failed;
+            this.state = checkpoint.state;
+            this.error = checkpoint.error;
+            this.finishedAt = checkpoint.finishedAt != null ? Instant.ofEpochMilli(checkpoint.finishedAt) : null;
+        }
+
+        private Checkpoint toCheckpoint() {
+            Checkpoint checkpoint = new Checkpoint();
+            checkpoint.id = id;
+            checkpoint.owner = owner;
+            checkpoint.uri = uri;
+            checkpoint.backend = backend;
+            checkpoint.continueOnError = continueOnError;
+            checkpoint.totalBytes = totalBytes;
+            checkpoint.offset = offset;
+            checkpoint.records = records;
+            checkpoint.applied = applied;
+            checkpoint.failed = failed;
+            checkpoint.state = state;
+            checkpoint.error = error;
+            checkpoint.createdAt = createdAt.toEpochMilli();
+            checkpoint.finishedAt = finishedAt != null ? finishedAt.toEpochMilli() : null;
+            return checkpoint;
+        }
+
+        private Instant expiresAt() {
+            Instant finished = finishedAt;
+            return finished != null && !STATE_RUNNING.equals(state)
+                ? finished.plusMillis(importConfig.getJobTtlMillis())
+                : null;
+        }
+
+        private ImportJobStatus toStatus() {
+            ImportJobStatus status = new ImportJobStatus();
+            status.setId(id);
+            status.setBackend(backend);
+            status.setTotalBytes(totalBytes);
+            status.setCreatedAt(createdAt);
+
+            String currentState = state;
+            long currentOffset = offset;
+            long currentRecords = records;
+            status.setState(currentState);
+            status.setProcessedBytes(currentOffset);
+            status.setRecords(currentRecords);
+            status.setApplied(applied);
+            status.setFailed(failed);
+            status.setError(error);
+            status.setFinishedAt(finishedAt);
+            status.setExpiresAt(expiresAt());
+
+            boolean running = STATE_RUNNING.equals(currentState);
+            long elapsedNanos = running ? System.nanoTime() - runStartNanos : runNanos;
+            double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+            if (seconds > 0 && runStartNanos != 0) {
+                double bytesPerSecond = (currentOffset - runStartOffset) / seconds;
+                status.setRecordsPerSecond(Math.round((currentRecords - runStartRecords) / seconds * 10) / 10.0);
+                status.setBytesPerSecond(Math.round(bytesPerSecond * 10) / 10.0);
+                if (running && bytesPerSecond > 0) {
+                    status.setEtaSeconds((long) Math.ceil((totalBytes - currentOffset) / bytesPerSecond));
+                }
+            }
+            if (failed > 0) {
+                status.setFailuresUrl("/api/imports/" + id + "/failures");
+            }
+            return status;
+        }
+    }
+}
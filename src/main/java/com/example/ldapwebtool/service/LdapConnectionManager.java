@@ -0,0 +1,707 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapAdmissionConfig;
+import com.example.ldapwebtool.config.LdapBackendConfig;
+import com.example.ldapwebtool.config.LdapPoolConfig;
+import com.example.ldapwebtool.config.LdapSslConfig;
+import com.unboundid.ldap.sdk.*;
+import com.unboundid.util.ssl.HostNameSSLSocketVerifier;
+import com.unboundid.util.ssl.SSLUtil;
+import com.unboundid.util.ssl.TrustAllTrustManager;
+import com.unboundid.util.ssl.TrustStoreTrustManager;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.net.SocketFactory;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Owns the LDAP connection pools used by the service layer.
+ *
+ * One pool is kept per distinct endpoint (scheme plus host list). Multi-host endpoints are
+ * backed by an UnboundID {@link ServerSet}; hosts that fail the health check are blacklisted
+ * by the server set and re-checked in the background until they recover. Connections are
+ * bound with the caller's credentials on every checkout, so a pooled connection never
+ * carries one caller's identity into another caller's request.
+ *
+ * Each named backend, and each endpoint outside the backends, also has its own
+ * {@link Bulkhead} and {@link CircuitBreaker}: requests beyond the concurrency limit queue
+ * briefly and are then rejected, and a backend that keeps failing to connect or time out is
+ * short-circuited until a probe request succeeds. A backend's primary, replicas and replica
+ * subsets share them, so the limits hold for the backend as a whole. Their state is
+ * published as ldap.backend.* metrics tagged with the backend name or the endpoint.
+ *
+ * Endpoints whose hosts all belong to a named backend (its primary, its replicas, or any
+ * set of them) take their pool sizes, timeouts, admission limits and TLS settings from the
+ * backend's profile in {@link LdapBackendConfig}, falling back to the global settings. A
+ * backend's TLS context is created once and shared by all of its endpoints, and its pools
+ * are kept open when idle. When arbitrary URIs are not allowed, endpoints outside the
+ * configured backends are refused before a pool is created.
+ */
+@Service
+public class LdapConnectionManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(LdapConnectionManager.class);
+
+    private final LdapSslConfig sslConfig;
+    private final LdapPoolConfig poolConfig;
+    private final LdapAdmissionConfig admissionConfig;
+    private final LdapBackendConfig backendConfig;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, ManagedPool> pools = new ConcurrentHashMap<>();
+
+    /** Profiles of the named backends by host, built on first use; backends are fixed at startup. */
+    private volatile BackendIndex backendIndex;
+
+    /** Admission controls of the named backends, shared by all their pools. */
+    private final Map<String, Admission> backendAdmissions = new ConcurrentHashMap<>();
+
+    /** SSL socket factories by backend name; the one for the global settings is under "". */
+    private final Map<String, SSLSocketFactory> sslSocketFactories = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LdapConnectionManager(LdapSslConfig sslConfig, LdapPoolConfig poolConfig, LdapAdmissionConfig admissionConfig,
+                                 LdapBackendConfig backendConfig, MeterRegistry meterRegistry) {
+        this.sslConfig = sslConfig;
+        this.poolConfig = poolConfig;
+        this.admissionConfig = admissionConfig;
+        this.backendConfig = backendConfig;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Callback executed with a pooled connection that is already bound as the caller.
+     */
+    @FunctionalInterface
+    public interface LdapCallback<T> {
+        T doWithConnection(LDAPConnection connection) throws Exception;
+    }
+
+    /**
+     * Checks out a connection for the given URI, binds it with the caller's credentials,
+     * runs the callback and returns the connection to its pool.
+     *
+     * If the callback fails with an LDAP error that leaves the connection unusable, the
+     * connection is discarded instead of being returned to the pool.
+     *
+     * @throws BackendUnavailableException if the endpoint is saturated or its circuit is open
+     */
+    public <T> T withConnection(String uri, String username, String password, LdapCallback<T> callback) throws Exception {
+        ManagedPool managedPool = getPool(LdapEndpoint.parse(uri));
+        try {
+            return withConnection(managedPool, username, password, callback);
+        } finally {
+            managedPool.release();
+        }
+    }
+
+    private <T> T withConnection(ManagedPool managedPool, String username, String password,
+                                 LdapCallback<T> callback) throws Exception {
+        Admission admission = managedPool.admission;
+        CircuitBreaker circuitBreaker = admission.circuitBreaker;
+
+        boolean probe = circuitBreaker.beforeRequest();
+        try {
+            admission.bulkhead.acquire();
+        } catch (BackendUnavailableException e) {
+            if (probe) {
+                circuitBreaker.abandonProbe();
+            }
+            throw e;
+        }
+
+        try {
+            LDAPConnectionPool pool = managedPool.pool;
+            LDAPConnection connection;
+            try {
+                connection = pool.getConnection();
+            } catch (LDAPException e) {
+                recordOutcome(circuitBreaker, e);
+                throw e;
+            }
+
+            try {
+                bind(connection, username, password);
+                T result = callback.doWithConnection(connection);
+                pool.releaseConnection(connection);
+                circuitBreaker.onSuccess();
+                return result;
+            } catch (LDAPException e) {
+                pool.releaseConnectionAfterException(connection, e);
+                recordOutcome(circuitBreaker, e);
+                throw e;
+            } catch (BackendUnavailableException e) {
+                // Refused locally (e.g. for lack of memory) with any search already abandoned; the connection is fine
+                pool.releaseConnection(connection);
+                circuitBreaker.onSuccess();
+                throw e;
+            } catch (Exception | Error e) {
+                // The connection may still have an operation in progress; do not hand it to another caller
+                pool.releaseDefunctConnection(connection);
+                circuitBreaker.onSuccess();
+                throw e;
+            }
+        } finally {
+            admission.bulkhead.release();
+        }
+    }
+
+    /**
+     * Only failures to reach the backend or to get an answer in time count against the circuit breaker.
+     */
+    private static void recordOutcome(CircuitBreaker circuitBreaker, LDAPException e) {
+        ResultCode resultCode = e.getResultCode();
+        if (resultCode == ResultCode.CONNECT_ERROR || resultCode == ResultCode.SERVER_DOWN
+                || resultCode == ResultCode.TIMEOUT || resultCode == ResultCode.UNAVAILABLE) {
+            circuitBreaker.onFailure();
+        } else {
+            circuitBreaker.onSuccess();
+        }
+    }
+
+    /**
+     * Returns the endpoints that currently have an open pool.
+     */
+    public List<LdapEndpoint> getActiveEndpoints() {
+        List<LdapEndpoint> endpoints = new ArrayList<>();
+        for (ManagedPool managedPool : pools.values()) {
+            endpoints.add(managedPool.endpoint);
+        }
+        return endpoints;
+    }
+
+    /**
+     * Whether the server set for an endpoint has taken a host out of rotation.
+     */
+    public boolean isBlacklisted(LdapEndpoint endpoint, LdapEndpoint.Host host) {
+        ManagedPool managedPool = pools.get(endpoint.getKey());
+        if (managedPool == null) {
+            return false;
+        }
+
+        ServerSetBlacklistManager blacklist = null;
+        ServerSet serverSet = managedPool.pool.getServerSet();
+        if (serverSet instanceof RoundRobinServerSet) {
+            blacklist = ((RoundRobinServerSet) serverSet).getBlacklistManager();
+        } else if (serverSet instanceof FewestConnectionsServerSet) {
+            blacklist = ((FewestConnectionsServerSet) serverSet).getBlacklistManager();
+        }
+        return blacklist != null && blacklist.isBlacklisted(host.getAddress(), host.getPort());
+    }
+
+    /**
+     * Opens a fresh, unpooled connection to a single host and reads its root DSE.
+     * Used by the health monitor to measure each host independently of the pool.
+     *
+     * @return the time taken in nanoseconds
+     */
+    public long probe(LdapEndpoint endpoint, LdapEndpoint.Host host) throws Exception {
+        Profile profile = profileOf(endpoint);
+        long start = System.nanoTime();
+        try (LDAPConnection connection = new LDAPConnection(
+                getSocketFactory(endpoint, profile), createConnectionOptions(profile), host.getAddress(), host.getPort())) {
+            connection.getRootDSE();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Opens an unpooled connection for the given URI, picking the host as the pool would,
+     * and binds it with the caller's credentials. Meant for operations that hold their
+     * connection for as long as they run, such as persistent searches, and so must neither
+     * occupy a pooled connection nor count against the bulkhead. The caller closes it.
+     */
+    public LDAPConnection openConnection(String uri, String username, String password) throws LDAPException {
+        LdapEndpoint endpoint = LdapEndpoint.parse(uri);
+        Profile profile = profileOf(endpoint);
+        checkAllowed(endpoint, profile);
+        LDAPConnection connection = createServerSet(endpoint, profile).getConnection();
+        try {
+            bind(connection, username, password);
+            return connection;
+        } catch (LDAPException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the pool for a URI ahead of the first request and connects once to each of its
+     * hosts, so that live traffic does not pay for TCP connects and TLS handshakes. TLS
+     * sessions are cached by the backend's SSL socket factory and resumed by later connections.
+     *
+     * @return the number of hosts that could be reached
+     */
+    public int warmUp(String uri) throws LDAPException {
+        LdapEndpoint endpoint = LdapEndpoint.parse(uri);
+        getPool(endpoint).release();
+
+        int reachable = 0;
+        for (LdapEndpoint.Host host : endpoint.getHosts()) {
+            try {
+                probe(endpoint, host);
+                reachable++;
+            } catch (Exception e) {
+                logger.warn("Warm-up could not reach {} for {}: {}", host, endpoint.getKey(), e.getMessage());
+            }
+        }
+        return reachable;
+    }
+
+    /**
+     * Closes pools that have not been used within the configured idle timeout and that no
+     * request is using. Pools of named backends stay open.
+     */
+    @Scheduled(fixedDelayString = "${ldap.pool.idle-check-interval-millis:60000}")
+    public void closeIdlePools() {
+        long cutoff = System.currentTimeMillis() - poolConfig.getIdlePoolTimeoutMillis();
+        pools.entrySet().removeIf(entry -> {
+            ManagedPool managedPool = entry.getValue();
+            if (managedPool.profile.backendName == null && managedPool.lastUsed < cutoff && managedPool.retire()) {
+                logger.debug("Closing idle LDAP connection pool for {}", entry.getKey());
+                managedPool.close();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pools.values().forEach(ManagedPool::close);
+        pools.clear();
+        backendAdmissions.values().forEach(Admission::close);
+        backendAdmissions.clear();
+    }
+
+    /**
+     * Returns the pool for an endpoint, creating it if needed, marked as in use. The caller
+     * must {@link ManagedPool#release} it when done.
+     */
+    private ManagedPool getPool(LdapEndpoint endpoint) throws LDAPException {
+        while (true) {
+            ManagedPool managedPool = pools.get(endpoint.getKey());
+            if (managedPool == null) {
+                synchronized (pools) {
+                    managedPool = pools.get(endpoint.getKey());
+                    if (managedPool == null) {
+                        Profile profile = profileOf(endpoint);
+                        checkAllowed(endpoint, profile);
+                        managedPool = new ManagedPool(endpoint, profile, createPool(endpoint, profile));
+                        pools.put(endpoint.getKey(), managedPool);
+                    }
+                }
+            }
+            if (managedPool.retain()) {
+                return managedPool;
+            }
+            // Retired as idle since it was looked up; drop it and create a new one
+            pools.remove(endpoint.getKey(), managedPool);
+        }
+    }
+
+    /**
+     * Returns the settings for an endpoint: those of the named backend all its hosts belong
+     * to, if any, over the global ones. Any set of a backend's hosts qualifies, such as the
+     * replicas that have caught up with a write.
+     */
+    private Profile profileOf(LdapEndpoint endpoint) {
+        BackendIndex index = backendIndex;
+        if (index == null) {
+            synchronized (this) {
+                if (backendIndex == null) {
+                    backendIndex = new BackendIndex();
+                }
+                index = backendIndex;
+            }
+        }
+        return index.lookup(endpoint);
+    }
+
+    private void checkAllowed(LdapEndpoint endpoint, Profile profile) throws RequestValidationException {
+        if (profile.backendName == null && !backendConfig.isAllowArbitraryUris()) {
+            throw new RequestValidationException(ResultCode.UNWILLING_TO_PERFORM,
+                "URI " + endpoint.getKey() + " is not a configured backend; pass a backend name instead");
+        }
+    }
+
+    private LDAPConnectionPool createPool(LdapEndpoint endpoint, Profile profile) throws LDAPException {
+        ServerSet serverSet = createServerSet(endpoint, profile);
+
+        LDAPConnectionPool pool = new LDAPConnectionPool(
+            serverSet,
+            null, // connections are bound per checkout with the caller's credentials
+            profile.initialConnections,
+            profile.maxConnections,
+            1,
+            null,
+            false // a host being down at pool creation is handled by the server set
+        );
+        pool.setConnectionPoolName(endpoint.getKey());
+        pool.setCreateIfNecessary(true);
+        pool.setMinimumAvailableConnectionGoal(profile.initialConnections);
+        pool.setMaxConnectionAgeMillis(poolConfig.getMaxConnectionAgeMillis());
+        pool.setHealthCheckIntervalMillis(poolConfig.getHealthCheckIntervalMillis());
+        pool.setHealthCheck(new GetEntryLDAPConnectionPoolHealthCheck(
+            "",                                    // root DSE
+            profile.connectTimeoutMillis,          // max response time
+            true,                                  // on create
+            false,                                 // after authentication
+            false,                                 // on checkout
+            false,                                 // on release
+            true,                                  // background checks
+            true                                   // after an exception
+        ));
+
+        logger.debug("Created LDAP connection pool for {} using {} server selection{}", endpoint.getKey(),
+            poolConfig.getServerSelection(), profile.backendName != null ? " for backend " + profile.backendName : "");
+        return pool;
+    }
+
+    private ServerSet createServerSet(LdapEndpoint endpoint, Profile profile) throws LDAPException {
+        SocketFactory socketFactory = getSocketFactory(endpoint, profile);
+        LDAPConnectionOptions options = createConnectionOptions(profile);
+        String[] addresses = endpoint.getAddresses();
+        int[] ports = endpoint.getPorts();
+
+        if (addresses.length == 1) {
+            return new SingleServerSet(addresses[0], ports[0], socketFactory, options);
+        }
+
+        long blacklistInterval = poolConfig.getHealthCheckIntervalMillis();
+        String selection = poolConfig.getServerSelection() != null
+            ? poolConfig.getServerSelection().toLowerCase(Locale.ROOT)
+            : "round-robin";
+
+        switch (selection) {
+            case "fewest-connections":
+                return new FewestConnectionsServerSet(addresses, ports, socketFactory, options, null, null, blacklistInterval);
+            case "fastest-connect":
+                return new FastestConnectServerSet(addresses, ports, socketFactory, options);
+            case "round-robin":
+                return new RoundRobinServerSet(addresses, ports, socketFactory, options, null, null, blacklistInterval);
+            default:
+                throw new IllegalArgumentException("Unknown server selection strategy: " + poolConfig.getServerSelection());
+        }
+    }
+
+    private static LDAPConnectionOptions createConnectionOptions(Profile profile) {
+        LDAPConnectionOptions options = new LDAPConnectionOptions();
+        options.setConnectTimeoutMillis(profile.connectTimeoutMillis);
+        options.setResponseTimeoutMillis(profile.responseTimeoutMillis);
+        if (!profile.ssl.isHostnameVerification()) {
+            options.setSSLSocketVerifier(new HostNameSSLSocketVerifier(false));
+        }
+        return options;
+    }
+
+    private SocketFactory getSocketFactory(LdapEndpoint endpoint, Profile profile) throws LDAPException {
+        if (!endpoint.isSecure()) {
+            return SocketFactory.getDefault();
+        }
+
+        SSLSocketFactory factory = sslSocketFactories.get(profile.sslKey);
+        if (factory == null) {
+            synchronized (sslSocketFactories) {
+                factory = sslSocketFactories.get(profile.sslKey);
+                if (factory == null) {
+                    try {
+                        factory = createSSLSocketFactory(profile.ssl);
+                    } catch (Exception e) {
+                        throw new LDAPException(ResultCode.LOCAL_ERROR, "Unable to create SSL socket factory: " + e.getMessage(), e);
+                    }
+                    sslSocketFactories.put(profile.sslKey, factory);
+                }
+            }
+        }
+        return factory;
+    }
+
+    private static void bind(LDAPConnection connection, String username, String password) throws LDAPException {
+        if (StringUtils.hasText(username)) {
+            connection.bind(username, password);
+        } else {
+            connection.bind(new SimpleBindRequest());
+        }
+    }
+
+    /**
+     * Creates an SSL socket factory based on the given trust settings.
+     */
+    private SSLSocketFactory createSSLSocketFactory(LdapSslConfig sslConfig) throws Exception {
+        SSLUtil sslUtil;
+
+        if (sslConfig.isTrustAll()) {
+            // Use trust-all for development/testing
+            sslUtil = new SSLUtil(new TrustAllTrustManager());
+        } else {
+            // Use proper certificate validation with truststore
+            TrustManager trustManager = createTrustManager(sslConfig);
+            sslUtil = new SSLUtil(trustManager);
+        }
+
+        return sslUtil.createSSLSocketFactory();
+    }
+
+    /**
+     * Creates a trust manager based on the given truststore settings.
+     */
+    private TrustManager createTrustManager(LdapSslConfig sslConfig) throws Exception {
+        if (StringUtils.hasText(sslConfig.getTruststorePath())) {
+            // Use custom truststore
+            File truststoreFile;
+            String path = sslConfig.getTruststorePath();
+
+            if (path.startsWith("classpath:")) {
+                // Handle classpath resources
+                String resourcePath = path.substring("classpath:".length());
+                String classpathFile = getClass().getClassLoader().getResource(resourcePath).getFile();
+                truststoreFile = new File(classpathFile);
+            } else if (path.startsWith("file:")) {
+                // Handle file:// URLs
+                truststoreFile = new File(path.substring("file:".length()));
+            } else {
+                // Handle direct file paths
+                truststoreFile = new File(path);
+            }
+
+            return new TrustStoreTrustManager(
+                truststoreFile,
+                sslConfig.getTruststorePassword() != null ? sslConfig.getTruststorePassword().toCharArray() : null,
+                sslConfig.getTruststoreType(),
+                true // examine validity dates
+            );
+        } else {
+            // Use JVM default truststore
+            return new TrustStoreTrustManager(
+                System.getProperty("javax.net.ssl.trustStore"),
+                System.getProperty("javax.net.ssl.trustStorePassword") != null ?
+                    System.getProperty("javax.net.ssl.trustStorePassword").toCharArray() : null,
+                System.getProperty("javax.net.ssl.trustStoreType", "JKS"),
+                true // examine validity dates
+            );
+        }
+    }
+
+    /**
+     * Effective settings for an endpoint: the overrides of the named backend it belongs to
+     * over the global configuration.
+     */
+    private final class Profile {
+        private final String backendName;
+        private final String sslKey;
+        private final LdapSslConfig ssl;
+        private final int initialConnections;
+        private final int maxConnections;
+        private final int connectTimeoutMillis;
+        private final long responseTimeoutMillis;
+        private final int maxConcurrentRequests;
+        private final int maxQueuedRequests;
+        private final long maxQueueWaitMillis;
+
+        /**
+         * @param backendName the backend the endpoint belongs to, or null for none
+         */
+        private Profile(String backendName, LdapBackendConfig.Backend backend) {
+            this.backendName = backendName;
+            LdapBackendConfig.Pool pool = backend != null && backend.getPool() != null
+                ? backend.getPool() : new LdapBackendConfig.Pool();
+            LdapBackendConfig.Admission admission = backend != null && backend.getAdmission() != null
+                ? backend.getAdmission() : new LdapBackendConfig.Admission();
+            this.initialConnections = valueOr(pool.getInitialConnections(), poolConfig.getInitialConnections());
+            this.maxConnections = valueOr(pool.getMaxConnections(), poolConfig.getMaxConnections());
+            this.connectTimeoutMillis = valueOr(pool.getConnectTimeoutMillis(), poolConfig.getConnectTimeoutMillis());
+            this.responseTimeoutMillis = valueOr(pool.getResponseTimeoutMillis(), poolConfig.getResponseTimeoutMillis());
+            this.maxConcurrentRequests = valueOr(admission.getMaxConcurrentRequests(), admissionConfig.getMaxConcurrentRequests());
+            this.maxQueuedRequests = valueOr(admission.getMaxQueuedRequests(), admissionConfig.getMaxQueuedRequests());
+            this.maxQueueWaitMillis = valueOr(admission.getMaxQueueWaitMillis(), admissionConfig.getMaxQueueWaitMillis());
+
+            LdapBackendConfig.Ssl overrides = backend != null ? backend.getSsl() : null;
+            if (overrides == null || !overrides.isCustomized()) {
+                this.sslKey = "";
+                this.ssl = sslConfig;
+            } else {
+                this.sslKey = backendName;
+                this.ssl = new LdapSslConfig();
+                ssl.setTrustAll(valueOr(overrides.getTrustAll(), sslConfig.isTrustAll()));
+                ssl.setTruststorePath(valueOr(overrides.getTruststorePath(), sslConfig.getTruststorePath()));
+                ssl.setTruststorePassword(valueOr(overrides.getTruststorePassword(), sslConfig.getTruststorePassword()));
+                ssl.setTruststoreType(valueOr(overrides.getTruststoreType(), sslConfig.getTruststoreType()));
+                ssl.setHostnameVerification(valueOr(overrides.getHostnameVerification(), sslConfig.isHostnameVerification()));
+            }
+        }
+    }
+
+    /**
+     * The profile of each named backend, reachable from each of its hosts.
+     */
+    private final class BackendIndex {
+        private final Profile defaults = new Profile(null, null);
+        private final Map<String, Profile> byHost = new HashMap<>();
+
+        private BackendIndex() {
+            for (Map.Entry<String, LdapBackendConfig.Backend> entry : backendConfig.getBackends().entrySet()) {
+                LdapBackendConfig.Backend backend = entry.getValue();
+                Profile profile = new Profile(entry.getKey(), backend);
+                List<String> uris = new ArrayList<>();
+                if (StringUtils.hasText(backend.getPrimary())) {
+                    uris.add(backend.getPrimary());
+                }
+                if (backend.getReplicas() != null) {
+                    uris.addAll(backend.getReplicas());
+                }
+                for (String uri : uris) {
+                    LdapEndpoint endpoint;
+                    try {
+                        endpoint = LdapEndpoint.parse(uri);
+                    } catch (IllegalArgumentException e) {
+                        logger.warn("Ignoring malformed URI {} of backend {}", uri, entry.getKey());
+                        continue;
+                    }
+                    for (LdapEndpoint.Host host : endpoint.getHosts()) {
+                        Profile existing = byHost.putIfAbsent(hostKey(endpoint, host), profile);
+                        if (existing != null && existing != profile) {
+                            logger.warn("Host {} belongs to backends {} and {}; using the settings of {}",
+                                host, existing.backendName, entry.getKey(), existing.backendName);
+                        }
+                    }
+                }
+            }
+        }
+
+        private Profile lookup(LdapEndpoint endpoint) {
+            Profile match = null;
+            for (LdapEndpoint.Host host : endpoint.getHosts()) {
+                Profile profile = byHost.get(hostKey(endpoint, host));
+                if (profile == null || (match != null && match != profile)) {
+                    return defaults;
+                }
+                match = profile;
+            }
+            return match != null ? match : defaults;
+        }
+
+        private String hostKey(LdapEndpoint endpoint, LdapEndpoint.Host host) {
+            return (endpoint.isSecure() ? "ldaps://" : "ldap://") + host;
+        }
+    }
+
+    private static <T> T valueOr(T value, T fallback) {
+        return value != null ? value : fallback;
+    }
+
+    /**
+     * The bulkhead and circuit breaker shared by all pools of a named backend, or owned by the
+     * pool of a URI outside the backends, with their meters.
+     */
+    private final class Admission {
+        private final Bulkhead bulkhead;
+        private final CircuitBreaker circuitBreaker;
+        private final List<Meter> meters = new ArrayList<>();
+
+        private Admission(String name, Profile profile) {
+            this.bulkhead = new Bulkhead(name,
+                profile.maxConcurrentRequests,
+                profile.maxQueuedRequests,
+                profile.maxQueueWaitMillis);
+            this.circuitBreaker = new CircuitBreaker(name,
+                admissionConfig.getCircuitBreakerFailureThreshold(),
+                admissionConfig.getCircuitBreakerOpenMillis());
+
+            Tags tags = Tags.of("backend", name);
+            meters.add(Gauge.builder("ldap.backend.inflight", bulkhead, Bulkhead::getInFlight)
+                .tags(tags).description("Requests currently running against the backend").register(meterRegistry));
+            meters.add(Gauge.builder("ldap.backend.queued", bulkhead, Bulkhead::getQueued)
+                .tags(tags).description("Requests waiting for a slot on the backend").register(meterRegistry));
+            meters.add(FunctionCounter.builder("ldap.backend.rejected", bulkhead, Bulkhead::getRejected)
+                .tags(tags).description("Requests rejected because the backend was saturated").register(meterRegistry));
+            meters.add(Gauge.builder("ldap.backend.circuit.state", circuitBreaker, c -> c.getState().ordinal())
+                .tags(tags).description("Circuit breaker state: 0 closed, 1 open, 2 half-open").register(meterRegistry));
+        }
+
+        private void close() {
+            meters.forEach(meterRegistry::remove);
+        }
+    }
+
+    /**
+     * A pool together with the endpoint it serves, its settings, its admission controls and
+     * when it was last used.
+     */
+    private final class ManagedPool {
+        private final LdapEndpoint endpoint;
+        private final Profile profile;
+        private final LDAPConnectionPool pool;
+        private final Admission admission;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        /** Requests using the pool, or -1 once it has been retired. */
+        private final AtomicInteger users = new AtomicInteger();
+
+        private ManagedPool(LdapEndpoint endpoint, Profile profile, LDAPConnectionPool pool) {
+            this.endpoint = endpoint;
+            this.profile = profile;
+            this.pool = pool;
+            this.admission = profile.backendName != null
+                ? backendAdmissions.computeIfAbsent(profile.backendName, name -> new Admission(name, profile))
+                : new Admission(endpoint.getKey(), profile);
+        }
+
+        /**
+         * Marks the pool as in use, unless it has been retired. Returns whether it was.
+         */
+        private boolean retain() {
+            while (true) {
+                int current = users.get();
+                if (current < 0) {
+                    return false;
+                }
+                if (users.compareAndSet(current, current + 1)) {
+                    lastUsed = System.currentTimeMillis();
+                    return true;
+                }
+            }
+        }
+
+        private void release() {
+            lastUsed = System.currentTimeMillis();
+            users.decrementAndGet();
+        }
+
+        /**
+         * Retires the pool if no request is using it, so that it is never handed out again.
+         * Returns whether it was.
+         */
+        private boolean retire() {
+            return users.compareAndSet(0, -1);
+        }
+
+        private void close() {
+            if (profile.backendName == null) {
+                admission.close();
+            }
+            pool.close();
+            pool.getServerSet().shutDown();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.util.BoundedCache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A parsed LDAP URI naming one or more directory servers.
+ *
+ * Accepted forms:
+ * - ldap://host:389
+ * - ldap://h1,h2,h3:389 (hosts without a port use the port given on the last host)
+ * - ldaps://h1:636,h2:1636
+ * - ldap://h1:389 ldap://h2:389 (space-separated URIs, all with the same scheme)
+ *
+ * Anything after the host list (a DN path, attributes, etc.) is ignored, as before.
+ * Parsed endpoints are immutable and memoized per URI string, since every operation
+ * resolves its URI and clients reuse a handful of them.
+ */
+public final class LdapEndpoint {
+
+    private static final BoundedCache<String, LdapEndpoint> PARSED = new BoundedCache<>(1024);
+
+    private final boolean secure;
+    private final List<Host> hosts;
+    private final String key;
+
+    private LdapEndpoint(boolean secure, List<Host> hosts) {
+        this.secure = secure;
+        this.hosts = Collections.unmodifiableList(hosts);
+
+        StringBuilder builder = new StringBuilder(secure ? "ldaps://" : "ldap://");
+        for (int i = 0; i < hosts.size(); i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(hosts.get(i));
+        }
+        this.key = builder.toString();
+    }
+
+    /**
+     * Parses an LDAP URI that may list several hosts.
+     *
+     * @throws IllegalArgumentException if the URI is empty, uses an unsupported scheme or names no host
+     */
+    public static LdapEndpoint parse(String uri) {
+        if (uri == null || uri.trim().isEmpty()) {
+            throw new IllegalArgumentException("LDAP URI is required");
+        }
+        return PARSED.computeIfAbsent(uri, LdapEndpoint::parseUncached);
+    }
+
+    private static LdapEndpoint parseUncached(String uri) {
+
+        Boolean secure = null;
+        List<String> hostSpecs = new ArrayList<>();
+
+        for (String part : uri.trim().split("\\s+")) {
+            int schemeEnd = part.indexOf("://");
+            if (schemeEnd < 0) {
+                throw new IllegalArgumentException("Invalid LDAP URI (missing scheme): " + uri);
+            }
+
+            String scheme = part.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+            boolean partSecure;
+            if ("ldaps".equals(scheme)) {
+                partSecure = true;
+            } else if ("ldap".equals(scheme)) {
+                partSecure = false;
+            } else {
+                throw new IllegalArgumentException("Unsupported LDAP URI scheme: " + scheme);
+            }
+
+            if (secure != null && secure != partSecure) {
+                throw new IllegalArgumentException("All hosts in an LDAP URI must use the same scheme: " + uri);
+            }
+            secure = partSecure;
+
+            String authority = part.substring(schemeEnd + 3);
+            int pathStart = authority.indexOf('/');
+            if (pathStart >= 0) {
+                authority = authority.substring(0, pathStart);
+            }
+            int queryStart = authority.indexOf('?');
+            if (queryStart >= 0) {
+                authority = authority.substring(0, queryStart);
+            }
+
+            for (String hostSpec : authority.split(",")) {
+                if (!hostSpec.trim().isEmpty()) {
+                    hostSpecs.add(hostSpec.trim());
+                }
+            }
+        }
+
+        if (hostSpecs.isEmpty()) {
+            throw new IllegalArgumentException("LDAP URI does not name a host: " + uri);
+        }
+
+        int defaultPort = secure ? 636 : 389;
+        int inheritedPort = -1;
+        for (int i = hostSpecs.size() - 1; i >= 0; i--) {
+            int port = parsePort(hostSpecs.get(i), uri);
+            if (port > 0) {
+                inheritedPort = port;
+                break;
+            }
+        }
+        if (inheritedPort <= 0) {
+            inheritedPort = defaultPort;
+        }
+
+        List<Host> hosts = new ArrayList<>();
+        for (String hostSpec : hostSpecs) {
+            String address = parseAddress(hostSpec, uri);
+            int port = parsePort(hostSpec, uri);
+            Host host = new Host(address, port > 0 ? port : inheritedPort);
+            if (!hosts.contains(host)) {
+                hosts.add(host);
+            }
+        }
+
+        return new LdapEndpoint(secure, hosts);
+    }
+
+    private static String parseAddress(String hostSpec, String uri) {
+        String address;
+        if (hostSpec.startsWith("[")) {
+            int end = hostSpec.indexOf(']');
+            if (end < 0) {
+                throw new IllegalArgumentException("Invalid IPv6 address in LDAP URI: " + uri);
+            }
+            address = hostSpec.substring(1, end);
+        } else {
+            int colon = hostSpec.indexOf(':');
+            address = colon >= 0 ? hostSpec.substring(0, colon) : hostSpec;
+        }
+
+        if (address.isEmpty()) {
+            throw new IllegalArgumentException("LDAP URI contains an empty host: " + uri);
+        }
+        return address.toLowerCase(Locale.ROOT);
+    }
+
+    private static int parsePort(String hostSpec, String uri) {
+        int searchFrom = hostSpec.startsWith("[") ? hostSpec.indexOf(']') : 0;
+        int colon = hostSpec.indexOf(':', Math.max(searchFrom, 0));
+        if (colon < 0 || colon == hostSpec.length() - 1) {
+            return -1;
+        }
+
+        try {
+            int port = Integer.parseInt(hostSpec.substring(colon + 1));
+            if (port < 1 || port > 65535) {
+                throw new IllegalArgumentException("Invalid port in LDAP URI: " + uri);
+            }
+            return port;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid port in LDAP URI: " + uri);
+        }
+    }
+
+    public boolean isSecure() {
+        return secure;
+    }
+
+    public List<Host> getHosts() {
+        return hosts;
+    }
+
+    public String[] getAddresses() {
+        return hosts.stream().map(Host::getAddress).toArray(String[]::new);
+    }
+
+    public int[] getPorts() {
+        return hosts.stream().mapToInt(Host::getPort).toArray();
+    }
+
+    /**
+     * Normalized form of the endpoint, e.g. "ldap://h1:389,h2:389". Two URIs that name the
+     * same scheme and hosts in the same order produce the same key.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof LdapEndpoint && key.equals(((LdapEndpoint) o).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+
+    /**
+     * A single host and port.
+     */
+    public static final class Host {
+        private final String address;
+        private final int port;
+
+        public Host(String address, int port) {
+            this.address = address;
+            this.port = port;
+        }
+
+        public String getAddress() { return address; }
+        public int getPort() { return port; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Host)) {
+                return false;
+            }
+            Host other = (Host) o;
+            return port == other.port && address.equals(other.address);
+        }
+
+        @Override
+        public int hashCode() {
+            return address.hashCode() * 31 + port;
+        }
+
+        @Override
+        public String toString() {
+            return (address.indexOf(':') >= 0 ? "[" + address + "]" : address) + ":" + port;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.ldapwebtool.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically probes every host of every active endpoint and publishes per-host metrics:
+ *
+ * - ldap.host.up: 1 if the last probe succeeded, 0 otherwise
+ * - ldap.host.blacklisted: 1 while the server set has the host out of rotation
+ * - ldap.host.response.time: latency of the last successful probe (connect + root DSE read)
+ * - ldap.host.checks: probe count, tagged by outcome
+ *
+ * Taking hosts out of rotation is done by the server set itself; this monitor only observes.
+ */
+@Component
+public class LdapHostHealthMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(LdapHostHealthMonitor.class);
+
+    private final LdapConnectionManager connectionManager;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, HostStatus> statuses = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LdapHostHealthMonitor(LdapConnectionManager connectionManager, MeterRegistry meterRegistry) {
+        this.connectionManager = connectionManager;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Scheduled(fixedDelayString = "${ldap.pool.health-check-interval-millis:30000}")
+    public void checkHosts() {
+        Set<String> seen = new HashSet<>();
+
+        for (LdapEndpoint endpoint : connectionManager.getActiveEndpoints()) {
+            for (LdapEndpoint.Host host : endpoint.getHosts()) {
+                String statusKey = endpoint.getKey() + "|" + host;
+                seen.add(statusKey);
+
+                HostStatus status = statuses.computeIfAbsent(statusKey, key -> new HostStatus(endpoint, host));
+                try {
+                    long elapsed = connectionManager.probe(endpoint, host);
+                    status.recordSuccess(elapsed);
+                } catch (Exception e) {
+                    if (status.up) {
+                        logger.warn("LDAP host {} of {} failed its health check: {}", host, endpoint, e.getMessage());
+                    }
+                    status.recordFailure(e);
+                }
+            }
+        }
+
+        // Drop metrics for hosts whose pools have been closed
+        statuses.entrySet().removeIf(entry -> {
+            if (!seen.contains(entry.getKey())) {
+                entry.getValue().unregister();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Returns a snapshot of the last known state of every monitored host.
+     */
+    public Collection<HostStatus> getHostStatuses() {
+        return Collections.unmodifiableCollection(new ArrayList<>(statuses.values()));
+    }
+
+    /**
+     * Last known state of one host within one endpoint.
+     */
+    public final class HostStatus {
+        private final LdapEndpoint endpoint;
+        private final LdapEndpoint.Host host;
+        private final Counter successes;
+        private final Counter failures;
+        private final List<Meter> meters = new ArrayList<>();
+
+        private volatile boolean up = true;
+        private volatile long lastResponseTimeNanos;
+        private volatile long lastCheckedMillis;
+        private volatile int consecutiveFailures;
+        private volatile String lastError;
+
+        private HostStatus(LdapEndpoint endpoint, LdapEndpoint.Host host) {
+            this.endpoint = endpoint;
+            this.host = host;
+
+            Tags tags = Tags.of("endpoint", endpoint.getKey(), "host", host.toString());
+            meters.add(Gauge.builder("ldap.host.up", this, s -> s.up ? 1 : 0)
+                .tags(tags).description("Whether the last health check of the host succeeded").register(meterRegistry));
+            meters.add(Gauge.builder("ldap.host.blacklisted", this, s -> connectionManager.isBlacklisted(s.endpoint, s.host) ? 1 : 0)
+                .tags(tags).description("Whether the host is currently out of rotation").register(meterRegistry));
+            meters.add(Gauge.builder("ldap.host.response.time", this, s -> s.lastResponseTimeNanos / 1_000_000.0)
+                .tags(tags).baseUnit("milliseconds").description("Latency of the last successful health check").register(meterRegistry));
+            successes = Counter.builder("ldap.host.checks").tags(tags).tag("outcome", "success").register(meterRegistry);
+            failures = Counter.builder("ldap.host.checks").tags(tags).tag("outcome", "failure").register(meterRegistry);
+            meters.add(successes);
+            meters.add(failures);
+        }
+
+        private void recordSuccess(long elapsedNanos) {
+            if (!up) {
+                logger.info("LDAP host {} of {} is healthy again", host, endpoint);
+            }
+            up = true;
+            consecutiveFailures = 0;
+            lastError = null;
+            lastResponseTimeNanos = elapsedNanos;
+            lastCheckedMillis = System.currentTimeMillis();
+            successes.increment();
+        }
+
+        private void recordFailure(Exception e) {
+            up = false;
+            consecutiveFailures++;
+            lastError = e.getMessage();
+            lastCheckedMillis = System.currentTimeMillis();
+            failures.increment();
+        }
+
+        private void unregister() {
+            meters.forEach(meterRegistry::remove);
+        }
+
+        public LdapEndpoint getEndpoint() { return endpoint; }
+        public LdapEndpoint.Host getHost() { return host; }
+        public boolean isUp() { return up; }
+        public boolean isBlacklisted() { return connectionManager.isBlacklisted(endpoint, host); }
+        public long getLastResponseTimeMillis() { return TimeUnit.NANOSECONDS.toMillis(lastResponseTimeNanos); }
+        public long getLastCheckedMillis() { return lastCheckedMillis; }
+        public int getConsecutiveFailures() { return consecutiveFailures; }
+        public String getLastError() { return lastError; }
+    }
+}
@@ -1,291 +1,673 @@
 package com.example.ldapwebtool.service;
 
-import com.example.ldapwebtool.config.LdapSslConfig;
 import com.example.ldapwebtool.model.ModifyRequest;
 import com.example.ldapwebtool.model.ModifyResponse;
 import com.example.ldapwebtool.model.SearchRequest;
 import com.example.ldapwebtool.model.SearchResponse;
+import com.unboundid.asn1.ASN1OctetString;
 import com.unboundid.ldap.sdk.*;
-import com.unboundid.util.ssl.SSLUtil;
-import com.unboundid.util.ssl.TrustAllTrustManager;
-import com.unboundid.util.ssl.TrustStoreTrustManager;
-import com.unboundid.util.ssl.HostNameSSLSocketVerifier;
-import com.unboundid.ldif.LDIFReader;
+import com.unboundid.ldap.sdk.controls.PostReadRequestControl;
+import com.unboundid.ldap.sdk.controls.PostReadResponseControl;
+import com.unboundid.ldap.sdk.controls.PreReadRequestControl;
+import com.unboundid.ldap.sdk.controls.PreReadResponseControl;
+import com.unboundid.ldap.sdk.controls.SortKey;
+import com.unboundid.ldap.sdk.controls.VirtualListViewRequestControl;
+import com.unboundid.ldap.sdk.controls.VirtualListViewResponseControl;
+import com.unboundid.ldif.LDIFAddChangeRecord;
 import com.unboundid.ldif.LDIFChangeRecord;
+import com.unboundid.ldif.LDIFDeleteChangeRecord;
+import com.unboundid.ldif.LDIFException;
+import com.unboundid.ldif.LDIFModifyChangeRecord;
+import com.unboundid.ldif.LDIFModifyDNChangeRecord;
+import com.unboundid.ldif.LDIFReader;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
-import javax.net.ssl.SSLSocketFactory;
-import javax.net.ssl.TrustManager;
 import java.io.ByteArrayInputStream;
-import java.io.File;
-import java.net.URI;
 import java.util.*;
 
 @Service
 public class LdapService {
     
-    private final LdapSslConfig sslConfig;
+    private final LdapConnectionManager connectionManager;
+    private final BackendRouter backendRouter;
+    private final SchemaCache schemaCache;
+    private final SearchPlanCache searchPlanCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LocalReplicaService localReplicaService;
+    private final MemoryBudget memoryBudget;
     
     @Autowired
-    public LdapService(LdapSslConfig sslConfig) {
-        this.sslConfig = sslConfig;
+    public LdapService(LdapConnectionManager connectionManager, BackendRouter backendRouter,
+                       SchemaCache schemaCache, SearchPlanCache searchPlanCache,
+                       ApplicationEventPublisher eventPublisher, LocalReplicaService localReplicaService,
+                       MemoryBudget memoryBudget) {
+        this.connectionManager = connectionManager;
+        this.backendRouter = backendRouter;
+        this.schemaCache = schemaCache;
+        this.searchPlanCache = searchPlanCache;
+        this.eventPublisher = eventPublisher;
+        this.localReplicaService = localReplicaService;
+        this.memoryBudget = memoryBudget;
+    }
+    
+    public SearchResponse search(SearchRequest request, String username, String password) throws Exception {
+        return search(request, username, password, null);
     }
     
     /**
-     * Creates an LDAP connection with SSL support if the URI scheme is ldaps://
-     * Uses configuration settings to determine SSL trust behavior.
+     * Searches and, if etag is given, computes the result's entity tag while reading the
+     * entries. No tag is computed for virtual list view windows. The entries and their
+     * formatted form are held against the memory budget; a search that does not fit is
+     * abandoned with {@link BackendUnavailableException}.
      */
-    private LDAPConnection createConnection(String uri) throws Exception {
-        URI ldapUri = new URI(uri);
-        String scheme = ldapUri.getScheme().toLowerCase();
-        String host = ldapUri.getHost();
-        int port = ldapUri.getPort();
+    public SearchResponse search(SearchRequest request, String username, String password, ResultETag etag) throws Exception {
+        return search(request, username, password, etag, OperationHandle.unbounded());
+    }
+    
+    /**
+     * Searches under the handle's deadline; the search is abandoned if it passes or the handle
+     * is cancelled.
+     */
+    public SearchResponse search(SearchRequest request, String username, String password, ResultETag etag,
+                                 OperationHandle handle) throws Exception {
+        try (MemoryBudget.Lease lease = memoryBudget.open()) {
+            return search(request, username, password, etag, handle, lease);
+        }
+    }
+    
+    /**
+     * Searches under the handle's deadline, reserving the entries and the response built from
+     * them on the caller's lease. The caller closes it once done with the response, which for
+     * a controller is after the response has been written out.
+     */
+    public SearchResponse search(SearchRequest request, String username, String password, ResultETag etag,
+                                 OperationHandle handle, MemoryBudget.Lease lease) throws Exception {
+        SearchPlan plan = searchPlanCache.getPlan(request.getFilter(), request.getScope(), request.getSortKeys());
+        com.unboundid.ldap.sdk.SearchRequest searchRequest = buildSearchRequest(request, plan);
+        String uri = backendRouter.resolveReadUri(request.getUri(), request.getBackend(), username, password);
+        boolean tagged = requestStamps(searchRequest, request, etag);
+        
+        handle.check();
+        LocalResult local = searchLocalReplica(request, plan, searchRequest, username, password);
+        if (local != null) {
+            List<SearchResponse.LdapEntry> entries = new ArrayList<>();
+            for (SearchResultEntry entry : local.result.getSearchEntries()) {
+                if (tagged) {
+                    etag.add(entry);
+                }
+                // Held twice over: the replica's copy and the formatted entry
+                lease.reserve(2 * MemoryBudget.estimateSize(entry));
+                entries.add(EntryFormatter.toLdapEntry(withoutStamps(entry), local.schema));
+            }
+            if (tagged) {
+                etag.complete();
+            }
+            return new SearchResponse(entries);
+        }
+        
+        // Reject bad requests before connecting when the schema is already known
+        DirectorySchema cachedSchema = schemaCache.getCached(uri);
+        validateSearch(cachedSchema, plan);
         
-        if ("ldaps".equals(scheme)) {
-            // Use SSL for ldaps:// URIs
-            if (port <= 0) {
-                port = 636; // Default LDAPS port
+        // Pooled connection bound as the caller; multi-host URIs are load balanced
+        return connectionManager.withConnection(uri, username, password, connection -> {
+            DirectorySchema schema = cachedSchema;
+            if (schema == null) {
+                schema = schemaCache.get(uri, connection);
+                validateSearch(schema, plan);
             }
             
-            SSLSocketFactory sslSocketFactory = createSSLSocketFactory();
+            // Perform search
+            SearchResult searchResult = lease.search(connection, searchRequest, handle);
             
-            if (sslConfig.isHostnameVerification()) {
-                // Use default hostname verification
-                return new LDAPConnection(sslSocketFactory, host, port);
-            } else {
-                // Create connection options with disabled hostname verification
-                LDAPConnectionOptions options = new LDAPConnectionOptions();
-                options.setSSLSocketVerifier(new HostNameSSLSocketVerifier(false));
-                
-                // Create connection with options
-                LDAPConnection connection = new LDAPConnection(sslSocketFactory, host, port);
-                connection.setConnectionOptions(options);
-                return connection;
+            // Convert to response
+            List<SearchResponse.LdapEntry> entries = new ArrayList<>();
+            for (SearchResultEntry searchEntry : searchResult.getSearchEntries()) {
+                Entry entry = RangedAttributes.complete(connection, searchEntry);
+                if (tagged) {
+                    etag.add(entry);
+                }
+                lease.reserve(MemoryBudget.estimateSize(entry));
+                entries.add(EntryFormatter.toLdapEntry(tagged ? withoutStamps(entry) : entry, schema));
             }
-        } else {
-            // Use plain connection for ldap:// URIs
-            if (port <= 0) {
-                port = 389; // Default LDAP port
+            if (tagged) {
+                etag.complete();
             }
-            return new LDAPConnection(host, port);
-        }
+            
+            SearchResponse response = new SearchResponse(entries);
+            applyVirtualListViewResponse(searchResult, response);
+            return response;
+        });
+    }
+    
+    public String searchToLdif(SearchRequest request, String username, String password) throws Exception {
+        return searchToLdif(request, username, password, null);
     }
     
     /**
-     * Creates an SSL socket factory based on the configured trust settings.
+     * LDIF counterpart of {@link #search(SearchRequest, String, String, ResultETag)}.
      */
-    private SSLSocketFactory createSSLSocketFactory() throws Exception {
-        SSLUtil sslUtil;
-        
-        if (sslConfig.isTrustAll()) {
-            // Use trust-all for development/testing
-            sslUtil = new SSLUtil(new TrustAllTrustManager());
-        } else {
-            // Use proper certificate validation with truststore
-            TrustManager trustManager = createTrustManager();
-            sslUtil = new SSLUtil(trustManager);
+    public String searchToLdif(SearchRequest request, String username, String password, ResultETag etag) throws Exception {
+        return searchToLdif(request, username, password, etag, OperationHandle.unbounded());
+    }
+    
+    public String searchToLdif(SearchRequest request, String username, String password, ResultETag etag,
+                               OperationHandle handle) throws Exception {
+        try (MemoryBudget.Lease lease = memoryBudget.open()) {
+            return searchToLdif(request, username, password, etag, handle, lease);
         }
-        
-        return sslUtil.createSSLSocketFactory();
     }
     
     /**
-     * Creates a trust manager based on the configured truststore settings.
+     * LDIF counterpart of {@link #search(SearchRequest, String, String, ResultETag, OperationHandle, MemoryBudget.Lease)}.
      */
-    private TrustManager createTrustManager() throws Exception {
-        if (StringUtils.hasText(sslConfig.getTruststorePath())) {
-            // Use custom truststore
-            File truststoreFile;
-            String path = sslConfig.getTruststorePath();
+    public String searchToLdif(SearchRequest request, String username, String password, ResultETag etag,
+                               OperationHandle handle, MemoryBudget.Lease lease) throws Exception {
+        SearchPlan plan = searchPlanCache.getPlan(request.getFilter(), request.getScope(), request.getSortKeys());
+        com.unboundid.ldap.sdk.SearchRequest searchRequest = buildSearchRequest(request, plan);
+        String uri = backendRouter.resolveReadUri(request.getUri(), request.getBackend(), username, password);
+        boolean tagged = requestStamps(searchRequest, request, etag);
+        
+        handle.check();
+        LocalResult local = searchLocalReplica(request, plan, searchRequest, username, password);
+        if (local != null) {
+            StringBuilder ldifBuilder = new StringBuilder();
+            for (SearchResultEntry entry : local.result.getSearchEntries()) {
+                if (tagged) {
+                    etag.add(entry);
+                }
+                lease.reserve(MemoryBudget.estimateSize(entry));
+                appendLdif(ldifBuilder, withoutStamps(entry), local.schema, lease);
+            }
+            if (tagged) {
+                etag.complete();
+            }
+            return ldifBuilder.toString();
+        }
+        
+        DirectorySchema cachedSchema = schemaCache.getCached(uri);
+        validateSearch(cachedSchema, plan);
+        
+        return connectionManager.withConnection(uri, username, password, connection -> {
+            DirectorySchema schema = cachedSchema;
+            if (schema == null) {
+                schema = schemaCache.get(uri, connection);
+                validateSearch(schema, plan);
+            }
             
-            if (path.startsWith("classpath:")) {
-                // Handle classpath resources
-                String resourcePath = path.substring("classpath:".length());
-                String classpathFile = getClass().getClassLoader().getResource(resourcePath).getFile();
-                truststoreFile = new File(classpathFile);
-            } else if (path.startsWith("file:")) {
-                // Handle file:// URLs
-                truststoreFile = new File(path.substring("file:".length()));
-            } else {
-                // Handle direct file paths
-                truststoreFile = new File(path);
+            SearchResult searchResult = lease.search(connection, searchRequest, handle);
+            
+            StringBuilder ldifBuilder = new StringBuilder();
+            for (SearchResultEntry searchEntry : searchResult.getSearchEntries()) {
+                Entry entry = RangedAttributes.complete(connection, searchEntry);
+                if (tagged) {
+                    etag.add(entry);
+                }
+                appendLdif(ldifBuilder, tagged ? withoutStamps(entry) : entry, schema, lease);
+            }
+            if (tagged) {
+                etag.complete();
             }
             
-            return new TrustStoreTrustManager(
-                truststoreFile,
-                sslConfig.getTruststorePassword() != null ? sslConfig.getTruststorePassword().toCharArray() : null,
-                sslConfig.getTruststoreType(),
-                true // examine validity dates
-            );
-        } else {
-            // Use JVM default truststore
-            return new TrustStoreTrustManager(
-                System.getProperty("javax.net.ssl.trustStore"),
-                System.getProperty("javax.net.ssl.trustStorePassword") != null ? 
-                    System.getProperty("javax.net.ssl.trustStorePassword").toCharArray() : null,
-                System.getProperty("javax.net.ssl.trustStoreType", "JKS"),
-                true // examine validity dates
-            );
-        }
+            return ldifBuilder.toString();
+        });
     }
     
-    public SearchResponse search(SearchRequest request, String username, String password) throws Exception {
-        // Create connection with SSL support if needed
-        LDAPConnection connection = createConnection(request.getUri());
+    /**
+     * Computes the entity tag a search would currently return, reading only the DNs and
+     * change stamps of the entries. Returns null if that is not enough, because the search
+     * uses a virtual list view or an entry has no entryCSN or modifyTimestamp; the caller
+     * then has to run the full search.
+     *
+     * @param representation {@link ResultETag#JSON} or {@link ResultETag#LDIF}
+     */
+    public String currentETag(SearchRequest request, String representation, String username, String password) throws Exception {
+        return currentETag(request, representation, username, password, OperationHandle.unbounded());
+    }
+    
+    /**
+     * As {@link #currentETag(SearchRequest, String, String, String)}, limited to the time left
+     * on the handle.
+     */
+    public String currentETag(SearchRequest request, String representation, String username, String password,
+                              OperationHandle handle) throws Exception {
+        if (request.getVlv() != null) {
+            return null;
+        }
+        SearchPlan plan = searchPlanCache.getPlan(request.getFilter(), request.getScope(), request.getSortKeys());
+        com.unboundid.ldap.sdk.SearchRequest searchRequest = buildSearchRequest(request, plan);
+        searchRequest.setAttributes(ResultETag.STAMP_ATTRIBUTES);
+        String uri = backendRouter.resolveReadUri(request.getUri(), request.getBackend(), username, password);
         
-        try {
-            // Authenticate
-            connection.bind(username, password);
-            
-            // Perform search
-            SearchScope scope = parseScope(request.getScope());
-            SearchResult searchResult = connection.search(
-                request.getBase(),
-                scope,
-                request.getFilter()
-            );
-            
-            // Convert to response
-            List<SearchResponse.LdapEntry> entries = new ArrayList<>();
-            for (SearchResultEntry entry : searchResult.getSearchEntries()) {
-                Map<String, Object> attributes = new HashMap<>();
+        DirectorySchema cachedSchema = schemaCache.getCached(uri);
+        validateSearch(cachedSchema, plan);
+        
+        try (MemoryBudget.Lease lease = memoryBudget.open()) {
+            return connectionManager.withConnection(uri, username, password, connection -> {
+                if (cachedSchema == null) {
+                    validateSearch(schemaCache.get(uri, connection), plan);
+                }
                 
-                for (Attribute attr : entry.getAttributes()) {
-                    String[] values = attr.getValues();
-                    if (values.length == 1) {
-                        attributes.put(attr.getName(), values[0]);
-                    } else {
-                        attributes.put(attr.getName(), Arrays.asList(values));
+                ResultETag etag = new ResultETag(representation, username);
+                // Awaited through the handle, so that it is abandoned on timeout or disconnect
+                SearchResult searchResult;
+                try {
+                    searchResult = lease.search(connection, searchRequest, handle);
+                } catch (LDAPSearchException e) {
+                    throw handle.translate(e);
+                }
+                for (SearchResultEntry entry : searchResult.getSearchEntries()) {
+                    if (!etag.addStamp(entry)) {
+                        return null;
                     }
                 }
-                
-                entries.add(new SearchResponse.LdapEntry(entry.getDN(), attributes));
+                etag.complete();
+                return etag.getValue();
+            });
+        }
+    }
+    
+    public ModifyResponse modify(ModifyRequest request, String username, String password) throws Exception {
+        List<Modification> modifications = new ArrayList<>();
+        
+        for (ModifyRequest.Modification mod : request.getModifications()) {
+            ModificationType modType = parseModificationType(mod.getOperation());
+            
+            if (mod.getValues() != null && !mod.getValues().isEmpty()) {
+                modifications.add(new Modification(modType, mod.getAttribute(), 
+                    mod.getValues().toArray(new String[0])));
+            } else {
+                modifications.add(new Modification(modType, mod.getAttribute()));
+            }
+        }
+        
+        String uri = backendRouter.resolveWriteUri(request.getUri(), request.getBackend());
+        
+        DirectorySchema cachedSchema = schemaCache.getCached(uri);
+        validateModifications(cachedSchema, request.getDn(), modifications);
+        validateReadAttributes(cachedSchema, request.getPreRead(), request.getPostRead());
+        
+        com.unboundid.ldap.sdk.ModifyRequest modifyRequest =
+            new com.unboundid.ldap.sdk.ModifyRequest(request.getDn(), modifications);
+        addReadControls(modifyRequest, ChangeType.MODIFY, request.getPreRead(), request.getPostRead());
+        
+        return connectionManager.withConnection(uri, username, password, connection -> {
+            DirectorySchema schema = cachedSchema;
+            if (schema == null) {
+                schema = schemaCache.get(uri, connection);
+                validateModifications(schema, request.getDn(), modifications);
+                validateReadAttributes(schema, request.getPreRead(), request.getPostRead());
             }
             
-            return new SearchResponse(entries);
+            LDAPResult result = connection.modify(modifyRequest);
             
-        } finally {
-            connection.close();
+            if (result.getResultCode() == ResultCode.SUCCESS) {
+                backendRouter.recordWrite(request.getBackend(), username, connection);
+                List<String> changed = new ArrayList<>();
+                for (Modification modification : modifications) {
+                    changed.add(modification.getAttributeName());
+                }
+                eventPublisher.publishEvent(new DirectoryChangeEvent(this, uri, request.getDn(), ChangeType.MODIFY, changed));
+                ModifyResponse response = new ModifyResponse(true, "Modification successful", request.getDn());
+                response.setBefore(readEntry(result, false, schema));
+                response.setAfter(readEntry(result, true, schema));
+                return response;
+            } else {
+                return new ModifyResponse(false, result.getDiagnosticMessage(), request.getDn());
+            }
+        });
+    }
+    
+    public ModifyResponse modifyFromLdif(String ldifContent, String uri, String backend, String username, String password) throws Exception {
+        return modifyFromLdif(ldifContent, uri, backend, null, null, username, password);
+    }
+    
+    /**
+     * Applies the change records in order. With preRead or postRead, each record carries the
+     * matching read entry controls and the response lists the entry states they returned.
+     * The LDIF is held against the memory budget while it is applied.
+     */
+    public ModifyResponse modifyFromLdif(String ldifContent, String uri, String backend, List<String> preRead,
+                                         List<String> postRead, String username, String password) throws Exception {
+        try (MemoryBudget.Lease lease = memoryBudget.open()) {
+            // The body and the records parsed from it
+            lease.reserve(ldifContent != null ? 4L * ldifContent.length() : 0);
+            return applyLdif(ldifContent, uri, backend, preRead, postRead, username, password);
         }
     }
     
-    public String searchToLdif(SearchRequest request, String username, String password) throws Exception {
-        // Create connection with SSL support if needed
-        LDAPConnection connection = createConnection(request.getUri());
+    private ModifyResponse applyLdif(String ldifContent, String uri, String backend, List<String> preRead,
+                                     List<String> postRead, String username, String password) throws Exception {
+        String targetUri = backendRouter.resolveWriteUri(uri, backend);
+        
+        // Parse everything up front so that malformed LDIF is rejected before any change is applied
+        List<LDIFChangeRecord> changeRecords = readChangeRecords(ldifContent);
+        DirectorySchema cachedSchema = schemaCache.getCached(targetUri);
+        validateChangeRecords(cachedSchema, changeRecords);
+        validateReadAttributes(cachedSchema, preRead, postRead);
+        boolean reads = preRead != null || postRead != null;
         
-        try {
-            connection.bind(username, password);
+        return connectionManager.withConnection(targetUri, username, password, connection -> {
+            DirectorySchema schema = cachedSchema;
+            if (schema == null) {
+                schema = schemaCache.get(targetUri, connection);
+                validateChangeRecords(schema, changeRecords);
+                validateReadAttributes(schema, preRead, postRead);
+            }
             
-            SearchScope scope = parseScope(request.getScope());
-            SearchResult searchResult = connection.search(
-                request.getBase(),
-                scope,
-                request.getFilter()
-            );
+            String lastDn = null;
+            boolean allSuccessful = true;
+            boolean anySuccessful = false;
+            StringBuilder messages = new StringBuilder();
+            List<ModifyResponse.ChangeState> changes = reads ? new ArrayList<>() : null;
             
-            StringBuilder ldifBuilder = new StringBuilder();
-            for (SearchResultEntry entry : searchResult.getSearchEntries()) {
-                ldifBuilder.append("dn: ").append(entry.getDN()).append("\n");
+            for (LDIFChangeRecord changeRecord : changeRecords) {
+                lastDn = changeRecord.getDN();
                 
-                for (Attribute attr : entry.getAttributes()) {
-                    for (String value : attr.getValues()) {
-                        ldifBuilder.append(attr.getName()).append(": ").append(value).append("\n");
+                try {
+                    LDAPResult result = reads
+                        ? processWithReads(connection, changeRecord, preRead, postRead)
+                        : changeRecord.processChange(connection);
+                    if (result.getResultCode() != ResultCode.SUCCESS) {
+                        allSuccessful = false;
+                        messages.append("Failed to modify ").append(lastDn)
+                                .append(": ").append(result.getDiagnosticMessage()).append("; ");
+                    } else {
+                        anySuccessful = true;
+                        eventPublisher.publishEvent(new DirectoryChangeEvent(this, targetUri, changeRecord));
+                        if (reads) {
+                            changes.add(new ModifyResponse.ChangeState(lastDn, changeRecord.getChangeType().getName(),
+                                readEntry(result, false, schema), readEntry(result, true, schema)));
+                        }
                     }
+                } catch (Exception e) {
+                    allSuccessful = false;
+                    messages.append("Error modifying ").append(lastDn)
+                            .append(": ").append(e.getMessage()).append("; ");
                 }
-                ldifBuilder.append("\n");
             }
             
-            return ldifBuilder.toString();
+            if (anySuccessful) {
+                backendRouter.recordWrite(backend, username, connection);
+            }
             
-        } finally {
-            connection.close();
+            String message = allSuccessful ? "All modifications successful" : messages.toString();
+            ModifyResponse response = new ModifyResponse(allSuccessful, message, lastDn);
+            response.setChanges(changes);
+            return response;
+        });
+    }
+    
+    /**
+     * Applies one change record with the read entry controls that apply to its change type.
+     */
+    private static LDAPResult processWithReads(LDAPConnection connection, LDIFChangeRecord changeRecord,
+                                               List<String> preRead, List<String> postRead) throws LDAPException {
+        switch (changeRecord.getChangeType()) {
+            case ADD: {
+                AddRequest request = ((LDIFAddChangeRecord) changeRecord).toAddRequest();
+                addReadControls(request, ChangeType.ADD, preRead, postRead);
+                return connection.add(request);
+            }
+            case DELETE: {
+                DeleteRequest request = ((LDIFDeleteChangeRecord) changeRecord).toDeleteRequest();
+                addReadControls(request, ChangeType.DELETE, preRead, postRead);
+                return connection.delete(request);
+            }
+            case MODIFY_DN: {
+                ModifyDNRequest request = ((LDIFModifyDNChangeRecord) changeRecord).toModifyDNRequest();
+                addReadControls(request, ChangeType.MODIFY_DN, preRead, postRead);
+                return connection.modifyDN(request);
+            }
+            default: {
+                com.unboundid.ldap.sdk.ModifyRequest request = ((LDIFModifyChangeRecord) changeRecord).toModifyRequest();
+                addReadControls(request, ChangeType.MODIFY, preRead, postRead);
+                return connection.modify(request);
+            }
         }
     }
     
-    public ModifyResponse modify(ModifyRequest request, String username, String password) throws Exception {
-        // Create connection with SSL support if needed
-        LDAPConnection connection = createConnection(request.getUri());
+    /**
+     * Attaches the RFC 4527 read entry controls asked for: pre-read for everything but adds,
+     * post-read for everything but deletes. The controls are not critical, so a server that
+     * does not support them still applies the change and the response has no entry state.
+     */
+    private static void addReadControls(UpdatableLDAPRequest request, ChangeType changeType,
+                                        List<String> preRead, List<String> postRead) {
+        if (preRead != null && changeType != ChangeType.ADD) {
+            request.addControl(new PreReadRequestControl(false, preRead.toArray(new String[0])));
+        }
+        if (postRead != null && changeType != ChangeType.DELETE) {
+            request.addControl(new PostReadRequestControl(false, postRead.toArray(new String[0])));
+        }
+    }
+    
+    /**
+     * Returns the entry state carried by a pre-read (or, with post, post-read) response
+     * control, or null if the result has none.
+     */
+    private static SearchResponse.LdapEntry readEntry(LDAPResult result, boolean post, DirectorySchema schema)
+            throws LDAPException {
+        Entry entry;
+        if (post) {
+            PostReadResponseControl control = PostReadResponseControl.get(result);
+            entry = control != null ? control.getEntry() : null;
+        } else {
+            PreReadResponseControl control = PreReadResponseControl.get(result);
+            entry = control != null ? control.getEntry() : null;
+        }
+        return entry != null ? EntryFormatter.toLdapEntry(entry, schema) : null;
+    }
+    
+    /**
+     * Builds the SDK search request, attaching server-side sort and virtual list view
+     * controls when the request asks for them.
+     *
+     * @throws RequestValidationException if the virtual list view has no sort keys or its
+     *         context ID is not base64
+     */
+    private com.unboundid.ldap.sdk.SearchRequest buildSearchRequest(SearchRequest request, SearchPlan plan)
+            throws RequestValidationException {
+        com.unboundid.ldap.sdk.SearchRequest searchRequest = new com.unboundid.ldap.sdk.SearchRequest(
+            request.getBase(),
+            plan.getScope(),
+            plan.getFilter()
+        );
         
-        try {
-            connection.bind(username, password);
-            
-            List<Modification> modifications = new ArrayList<>();
+        if (plan.getSortControl() != null) {
+            searchRequest.addControl(plan.getSortControl());
+        }
+        
+        SearchRequest.VirtualListView vlv = request.getVlv();
+        if (vlv != null) {
+            if (plan.getSortControl() == null) {
+                throw new RequestValidationException(ResultCode.PARAM_ERROR,
+                    "Virtual list view requires at least one sort key");
+            }
             
-            for (ModifyRequest.Modification mod : request.getModifications()) {
-                ModificationType modType = parseModificationType(mod.getOperation());
-                
-                if (mod.getValues() != null && !mod.getValues().isEmpty()) {
-                    modifications.add(new Modification(modType, mod.getAttribute(), 
-                        mod.getValues().toArray(new String[0])));
-                } else {
-                    modifications.add(new Modification(modType, mod.getAttribute()));
+            ASN1OctetString contextId = null;
+            if (StringUtils.hasText(vlv.getContextId())) {
+                try {
+                    contextId = new ASN1OctetString(Base64.getDecoder().decode(vlv.getContextId()));
+                } catch (IllegalArgumentException e) {
+                    throw new RequestValidationException(ResultCode.PARAM_ERROR,
+                        "Invalid virtual list view contextId: " + e.getMessage());
                 }
             }
             
-            LDAPResult result = connection.modify(request.getDn(), modifications);
-            
-            if (result.getResultCode() == ResultCode.SUCCESS) {
-                return new ModifyResponse(true, "Modification successful", request.getDn());
+            if (vlv.getAssertionValue() != null) {
+                searchRequest.addControl(new VirtualListViewRequestControl(
+                    vlv.getAssertionValue(), vlv.getBeforeCount(), vlv.getAfterCount(), contextId, true));
             } else {
-                return new ModifyResponse(false, result.getDiagnosticMessage(), request.getDn());
+                int offset = vlv.getOffset() != null ? vlv.getOffset() : 1;
+                searchRequest.addControl(new VirtualListViewRequestControl(
+                    offset, vlv.getBeforeCount(), vlv.getAfterCount(), vlv.getContentCount(), contextId, true));
             }
-            
-        } finally {
-            connection.close();
         }
+        
+        return searchRequest;
+    }
+    
+    /**
+     * Asks for the change stamps along with the user attributes when a tag is to be computed.
+     * Returns whether it is.
+     */
+    private static boolean requestStamps(com.unboundid.ldap.sdk.SearchRequest searchRequest, SearchRequest request,
+                                         ResultETag etag) {
+        if (etag == null || request.getVlv() != null) {
+            return false;
+        }
+        List<String> attributes = new ArrayList<>();
+        attributes.add("*");
+        attributes.addAll(Arrays.asList(ResultETag.STAMP_ATTRIBUTES));
+        searchRequest.setAttributes(attributes);
+        return true;
+    }
+    
+    /**
+     * Appends the entry and reserves the characters added.
+     */
+    private static void appendLdif(StringBuilder ldifBuilder, Entry entry, DirectorySchema schema, MemoryBudget.Lease lease) {
+        int length = ldifBuilder.length();
+        EntryFormatter.appendLdif(ldifBuilder, entry, schema);
+        lease.reserve(2L * (ldifBuilder.length() - length));
+    }
+    
+    /**
+     * Answers a search from the local replica holding its base, if there is one that is
+     * current and serves the caller. Returns null if the directory has to be asked.
+     * Virtual list view searches always go to the directory. Replica entries hold the change
+     * stamps, which are only used for the tag.
+     */
+    private LocalResult searchLocalReplica(SearchRequest request, SearchPlan plan,
+                                           com.unboundid.ldap.sdk.SearchRequest searchRequest,
+                                           String username, String password) throws LDAPException {
+        if (request.getVlv() != null) {
+            return null;
+        }
+        LocalReplicaService.LocalReplica replica =
+            localReplicaService.find(request.getUri(), request.getBackend(), request.getBase());
+        if (replica == null) {
+            return null;
+        }
+        DirectorySchema schema = schemaCache.getCached(replica.getTargetUri());
+        validateSearch(schema, plan);
+        SearchResult result = replica.search(searchRequest, schema, username, password);
+        return result != null ? new LocalResult(result, schema) : null;
     }
     
-    public ModifyResponse modifyFromLdif(String ldifContent, String uri, String username, String password) throws Exception {
-        // Create connection with SSL support if needed
-        LDAPConnection connection = createConnection(uri);
+    private static final class LocalResult {
+        private final SearchResult result;
+        private final DirectorySchema schema;
         
-        try {
-            connection.bind(username, password);
-            
-            try (LDIFReader ldifReader = new LDIFReader(new ByteArrayInputStream(ldifContent.getBytes()))) {
-                String lastDn = null;
-                boolean allSuccessful = true;
-                StringBuilder messages = new StringBuilder();
-                
-                LDIFChangeRecord changeRecord;
-                while ((changeRecord = ldifReader.readChangeRecord()) != null) {
-                    lastDn = changeRecord.getDN();
-                    
-                    try {
-                        LDAPResult result = changeRecord.processChange(connection);
-                        if (result.getResultCode() != ResultCode.SUCCESS) {
-                            allSuccessful = false;
-                            messages.append("Failed to modify ").append(lastDn)
-                                    .append(": ").append(result.getDiagnosticMessage()).append("; ");
-                        }
-                    } catch (Exception e) {
-                        allSuccessful = false;
-                        messages.append("Error modifying ").append(lastDn)
-                                .append(": ").append(e.getMessage()).append("; ");
+        private LocalResult(SearchResult result, DirectorySchema schema) {
+            this.result = result;
+            this.schema = schema;
+        }
+    }
+    
+    /**
+     * Returns the entry without the change stamps, which were only requested for the tag.
+     */
+    static Entry withoutStamps(Entry entry) {
+        if (!ResultETag.hasStamp(entry)) {
+            return entry;
+        }
+        Entry copy = entry.duplicate();
+        for (String attribute : ResultETag.STAMP_ATTRIBUTES) {
+            copy.removeAttribute(attribute);
+        }
+        return copy;
+    }
+    
+    /**
+     * Copies the target position, content count and context ID from a VLV response control, if present.
+     */
+    private void applyVirtualListViewResponse(SearchResult searchResult, SearchResponse response) throws LDAPException {
+        VirtualListViewResponseControl vlvResponse = VirtualListViewResponseControl.get(searchResult);
+        if (vlvResponse == null) {
+            return;
+        }
+        
+        if (vlvResponse.getResultCode() != ResultCode.SUCCESS) {
+            throw new LDAPException(vlvResponse.getResultCode(), "Virtual list view request failed");
+        }
+        
+        response.setTargetPosition(vlvResponse.getTargetPosition());
+        response.setContentCount(vlvResponse.getContentCount());
+        if (vlvResponse.getContextID() != null) {
+            response.setContextId(Base64.getEncoder().encodeToString(vlvResponse.getContextID().getValue()));
+        }
+    }
+    
+    /**
+     * Checks the filter and sort keys of a search against the backend schema, if known.
+     * A plan that has already passed against the same schema is not checked again.
+     */
+    private void validateSearch(DirectorySchema schema, SearchPlan plan) throws LDAPException {
+        if (schema == null || !schemaCache.isValidationEnabled() || plan.isValidatedAgainst(schema)) {
+            return;
+        }
+        
+        schema.validateFilter(plan.getFilter());
+        List<String> sortAttributes = new ArrayList<>();
+        for (SortKey key : plan.getSortKeys()) {
+            sortAttributes.add(key.getAttributeName());
+        }
+        schema.validateAttributeNames(sortAttributes, "sort key");
+        plan.markValidated(schema);
+    }
+    
+    private void validateModifications(DirectorySchema schema, String dn, List<Modification> modifications) throws LDAPException {
+        if (schema != null && schemaCache.isValidationEnabled()) {
+            schema.validateModifications(dn, modifications);
+        }
+    }
+    
+    private void validateReadAttributes(DirectorySchema schema, List<String> preRead, List<String> postRead)
+            throws LDAPException {
+        if (schema == null || !schemaCache.isValidationEnabled()) {
+            return;
+        }
+        
+        List<String> attributes = new ArrayList<>();
+        for (List<String> read : Arrays.asList(preRead, postRead)) {
+            if (read != null) {
+                for (String attribute : read) {
+                    // Special selectors rather than attribute types
+                    if (!attribute.equals("*") && !attribute.equals("+") && !attribute.equals("1.1")) {
+                        attributes.add(attribute);
                     }
                 }
-                
-                String message = allSuccessful ? "All modifications successful" : messages.toString();
-                return new ModifyResponse(allSuccessful, message, lastDn);
             }
-            
-        } finally {
-            connection.close();
         }
+        schema.validateAttributeNames(attributes, "read attributes");
     }
     
-    private SearchScope parseScope(String scope) {
-        switch (scope.toLowerCase()) {
-            case "base":
-                return SearchScope.BASE;
-            case "one":
-                return SearchScope.ONE;
-            case "sub":
-            default:
-                return SearchScope.SUB;
+    private void validateChangeRecords(DirectorySchema schema, List<LDIFChangeRecord> changeRecords) throws LDAPException {
+        if (schema == null || !schemaCache.isValidationEnabled()) {
+            return;
+        }
+        
+        for (LDIFChangeRecord changeRecord : changeRecords) {
+            schema.validateChangeRecord(changeRecord);
+        }
+    }
+    
+    private static List<LDIFChangeRecord> readChangeRecords(String ldifContent) throws Exception {
+        List<LDIFChangeRecord> changeRecords = new ArrayList<>();
+        try (LDIFReader ldifReader = new LDIFReader(new ByteArrayInputStream(ldifContent.getBytes()))) {
+            LDIFChangeRecord changeRecord;
+            while ((changeRecord = ldifReader.readChangeRecord()) != null) {
+                changeRecords.add(changeRecord);
+            }
+        } catch (LDIFException e) {
+            throw new RequestValidationException(ResultCode.DECODING_ERROR, "Invalid LDIF: " + e.getMessage());
         }
+        return changeRecords;
     }
     
     private ModificationType parseModificationType(String operation) {
@@ -0,0 +1,140 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapWarmupConfig;
+import com.example.ldapwebtool.model.SearchRequest;
+import com.example.ldapwebtool.model.SearchResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Warms up connection pools for configured backends before the application reports ready.
+ *
+ * Spring Boot switches the readiness state to ACCEPTING_TRAFFIC only after all application
+ * runners have completed, so /actuator/health/readiness stays down while this runs and a
+ * load balancer holds traffic back. Each URI is warmed in parallel: its pool is opened at
+ * its minimum size, every host is connected once to prime TLS sessions, and optionally a
+ * number of synthetic searches are run and serialized to warm up the JIT.
+ *
+ * A backend that cannot be reached is logged and skipped; it does not stop startup.
+ */
+@Component
+public class LdapWarmupRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(LdapWarmupRunner.class);
+
+    private final LdapWarmupConfig warmupConfig;
+    private final LdapConnectionManager connectionManager;
+    private final BackendRouter backendRouter;
+    private final LdapService ldapService;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public LdapWarmupRunner(LdapWarmupConfig warmupConfig, LdapConnectionManager connectionManager,
+                            BackendRouter backendRouter, LdapService ldapService, ObjectMapper objectMapper) {
+        this.warmupConfig = warmupConfig;
+        this.connectionManager = connectionManager;
+        this.backendRouter = backendRouter;
+        this.ldapService = ldapService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        warmUp();
+    }
+
+    /**
+     * Warms up every configured URI, waiting at most the configured timeout.
+     *
+     * @return the number of URIs that were warmed up successfully
+     */
+    public int warmUp() {
+        if (!warmupConfig.isEnabled()) {
+            return 0;
+        }
+
+        Set<String> uris = new LinkedHashSet<>(backendRouter.getConfiguredUris());
+        uris.addAll(warmupConfig.getUris());
+        if (uris.isEmpty()) {
+            return 0;
+        }
+
+        logger.info("Warming up {} LDAP backend(s)", uris.size());
+        long start = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(uris.size(), 8), runnable -> {
+            Thread thread = new Thread(runnable, "ldap-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+            for (String uri : uris) {
+                futures.add(CompletableFuture.supplyAsync(() -> warmUp(uri), executor));
+            }
+
+            try {
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                    .get(warmupConfig.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                logger.warn("LDAP warm-up did not finish within {} ms; continuing startup", warmupConfig.getTimeoutMillis());
+            } catch (Exception e) {
+                logger.warn("LDAP warm-up failed: {}", e.getMessage());
+            }
+
+            int warmed = 0;
+            for (CompletableFuture<Boolean> future : futures) {
+                if (Boolean.TRUE.equals(future.getNow(false))) {
+                    warmed++;
+                }
+            }
+            logger.info("Warmed up {} of {} LDAP backend(s) in {} ms", warmed, uris.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return warmed;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean warmUp(String uri) {
+        try {
+            int reachable = connectionManager.warmUp(uri);
+            if (reachable == 0) {
+                return false;
+            }
+
+            SearchRequest request = new SearchRequest();
+            request.setUri(uri);
+            request.setBase(warmupConfig.getSearchBase());
+            request.setFilter(warmupConfig.getSearchFilter());
+            request.setScope(warmupConfig.getSearchScope());
+
+            for (int i = 0; i < warmupConfig.getSyntheticRequests() && !Thread.currentThread().isInterrupted(); i++) {
+                SearchResponse response = ldapService.search(request, warmupConfig.getBindDn(), warmupConfig.getBindPassword());
+                objectMapper.writeValueAsBytes(response);
+                ldapService.searchToLdif(request, warmupConfig.getBindDn(), warmupConfig.getBindPassword());
+            }
+
+            logger.debug("Warmed up {} ({} host(s) reachable)", uri, reachable);
+            return true;
+        } catch (Exception e) {
+            logger.warn("Warm-up of {} failed: {}", uri, e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.ldapwebtool.service;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits an LDIF file into records while tracking the byte offset of each record, so that
+ * reading can later be resumed from a checkpoint. Records are returned as raw lines for
+ * {@code LDIFReader.decodeChangeRecord}; comments and the version line are dropped.
+ */
+final class LdifRecordReader implements Closeable {
+
+    private final InputStream in;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+    private long offset;
+
+    /**
+     * Opens a file for reading from the given byte offset, which must be the start of a
+     * record or of the blank lines before one.
+     */
+    LdifRecordReader(Path file, long offset) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        channel.position(offset);
+        this.in = new BufferedInputStream(Channels.newInputStream(channel), 65536);
+        this.offset = offset;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return the record's lines, or null at the end of the file
+     */
+    String[] next() throws IOException {
+        List<String> lines = new ArrayList<>();
+        boolean inComment = false;
+        String current;
+        while ((current = readLine()) != null) {
+            if (current.isEmpty()) {
+                if (lines.isEmpty()) {
+                    continue;
+                }
+                break;
+            }
+            if (current.startsWith("#") || (inComment && current.startsWith(" "))) {
+                inComment = true;
+                continue;
+            }
+            inComment = false;
+            if (lines.isEmpty() && current.regionMatches(true, 0, "version:", 0, 8)) {
+                continue;
+            }
+            lines.add(current);
+        }
+        return lines.isEmpty() ? null : lines.toArray(new String[0]);
+    }
+
+    /**
+     * Byte offset just past the last record returned.
+     */
+    long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String readLine() throws IOException {
+        line.reset();
+        int b;
+        boolean any = false;
+        while ((b = in.read()) >= 0) {
+            any = true;
+            offset++;
+            if (b == '\n') {
+                break;
+            }
+            line.write(b);
+        }
+        if (!any) {
+            return null;
+        }
+        String text = line.toString(StandardCharsets.UTF_8);
+        return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+    }
+}
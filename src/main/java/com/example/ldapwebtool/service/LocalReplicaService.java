@@ -0,0 +1,920 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapLocalReplicaConfig;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.sdk.AsyncRequestID;
+import com.unboundid.ldap.sdk.AsyncSearchResultListener;
+import com.unboundid.ldap.sdk.ChangeType;
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.IntermediateResponse;
+import com.unboundid.ldap.sdk.IntermediateResponseListener;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.RootDSE;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchResultListener;
+import com.unboundid.ldap.sdk.SearchResultReference;
+import com.unboundid.ldap.sdk.SearchScope;
+import com.unboundid.ldap.matchingrules.CaseIgnoreStringMatchingRule;
+import com.unboundid.ldap.matchingrules.MatchingRule;
+import com.unboundid.ldap.sdk.controls.ContentSyncInfoIntermediateResponse;
+import com.unboundid.ldap.sdk.controls.ContentSyncInfoType;
+import com.unboundid.ldap.sdk.controls.ContentSyncRequestControl;
+import com.unboundid.ldap.sdk.controls.ContentSyncRequestMode;
+import com.unboundid.ldap.sdk.controls.ContentSyncState;
+import com.unboundid.ldap.sdk.controls.ContentSyncStateControl;
+import com.unboundid.ldap.sdk.controls.EntryChangeNotificationControl;
+import com.unboundid.ldap.sdk.controls.PersistentSearchChangeType;
+import com.unboundid.ldap.sdk.controls.PersistentSearchRequestControl;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Local replicas: configured subtrees loaded into an in-memory directory and kept current
+ * by following their changes with a persistent search or RFC 4533 content synchronization,
+ * so that searches within them are answered without asking the directory.
+ *
+ * With persistent search the change search is started first and the subtree then read with
+ * an ordinary search on a second connection; changes arriving meanwhile are applied once the
+ * entries are loaded.
+ * With content synchronization the refresh phase of the one search is the load. A change
+ * that cannot be applied, or the loss of the change search, discards the replica and loads
+ * it again, in the meantime searches go to the directory.
+ *
+ * A replica only answers while it is known to be current: confirmed within the configured
+ * staleness bound, and with every write made through this service below its base applied,
+ * from its change notification or, failing that, from reading the entry again. A change
+ * arriving, or the change search's connection still open while the directory answers,
+ * confirms it. Persistent search does not report entries moved out of the subtree by other
+ * clients, so replicas following it are swept on a longer interval of their own, reading
+ * the DNs of the subtree and dropping the entries no longer there.
+ *
+ * The store has no schema and compares every value as a case-insensitive string, so
+ * searches with ordering or substring assertions on attributes the directory matches
+ * otherwise (integers, timestamps, case-exact strings) go to the directory. Replicas hold
+ * what their own bind DN may read, so they only answer callers matching their caller
+ * pattern, once the caller's password has been checked with a bind.
+ */
+@Service
+public class LocalReplicaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalReplicaService.class);
+
+    /** The change stamps are kept for entity tags; untagged searches do not return them. */
+    private static final String[] ATTRIBUTES = {"*", "entryCSN", "modifyTimestamp"};
+    private static final String[] NO_ATTRIBUTES = {"1.1"};
+
+    private final LdapConnectionManager connectionManager;
+    private final SchemaCache schemaCache;
+    private final MeterRegistry meterRegistry;
+    private final List<LocalReplica> replicas = new ArrayList<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "ldap-local-replica");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean stopped;
+
+    @Autowired
+    public LocalReplicaService(LdapLocalReplicaConfig replicaConfig, LdapConnectionManager connectionManager,
+                               BackendRouter backendRouter, SchemaCache schemaCache, MeterRegistry meterRegistry) {
+        this.connectionManager = connectionManager;
+        this.schemaCache = schemaCache;
+        this.meterRegistry = meterRegistry;
+        for (Map.Entry<String, LdapLocalReplicaConfig.Subtree> entry : replicaConfig.getLocalReplicas().entrySet()) {
+            LdapLocalReplicaConfig.Subtree subtree = entry.getValue();
+            if (subtree.getBase() == null || (subtree.getUri() == null && subtree.getBackend() == null)) {
+                throw new IllegalArgumentException("Local replica " + entry.getKey() + " needs a base and a uri or backend");
+            }
+            try {
+                replicas.add(new LocalReplica(entry.getKey(), subtree,
+                    backendRouter.resolveWriteUri(subtree.getUri(), subtree.getBackend())));
+            } catch (RequestValidationException e) {
+                throw new IllegalArgumentException("Local replica " + entry.getKey() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Starts loading every replica in the background.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        for (LocalReplica replica : replicas) {
+            replica.reload(0);
+        }
+    }
+
+    /**
+     * Returns the replica holding the base DN for a search naming this URI or backend, or
+     * null if there is none.
+     */
+    public LocalReplica find(String uri, String backend, String base) {
+        if (replicas.isEmpty()) {
+            return null;
+        }
+        DN baseDN;
+        try {
+            baseDN = new DN(base);
+        } catch (LDAPException e) {
+            return null;
+        }
+        for (LocalReplica replica : replicas) {
+            if (replica.serves(uri, backend) && baseDN.isDescendantOf(replica.baseDN, true)) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A write made through this service keeps replicas holding the changed DN from answering
+     * until the change has been applied; renaming an entry above a replica's base reloads it.
+     */
+    @EventListener
+    public void onDirectoryChange(DirectoryChangeEvent event) {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        String endpointKey = LdapEndpoint.parse(event.getUri()).getKey();
+        DN dn;
+        try {
+            dn = new DN(event.getDn());
+        } catch (LDAPException e) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (LocalReplica replica : replicas) {
+            if (!replica.endpointKey.equals(endpointKey)) {
+                continue;
+            }
+            if (dn.isDescendantOf(replica.baseDN, true)) {
+                replica.awaitedWrites.put(dn.toNormalizedString(), now);
+            } else if (event.affectsSubtree() && replica.baseDN.isDescendantOf(dn, false)) {
+                replica.reload(0);
+            }
+        }
+    }
+
+    /**
+     * Checks replicas not confirmed current for half their staleness bound or waiting for a
+     * write, and starts due full reloads.
+     */
+    @Scheduled(fixedDelay = 250)
+    public void checkReplicas() {
+        long now = System.currentTimeMillis();
+        for (LocalReplica replica : replicas) {
+            replica.check(now);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        for (LocalReplica replica : replicas) {
+            replica.close();
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * One replicated subtree.
+     */
+    public final class LocalReplica {
+
+        private final String name;
+        private final LdapLocalReplicaConfig.Subtree subtree;
+        private final String targetUri;
+        private final String endpointKey;
+        private final DN baseDN;
+        private final Pattern callerPattern;
+        private final String bindCaller;
+        private final VerifiedCredentials credentials;
+        private final AtomicBoolean checking = new AtomicBoolean();
+        private final Counter localSearches;
+        private final Counter fallbackSearches;
+
+        /** The store answering searches; null while loading. */
+        private volatile InMemoryDirectoryServer store;
+        private volatile long confirmedAt;
+        private volatile long loadedAt;
+        /** When the entries were last read in full or swept. */
+        private volatile long sweptAt;
+        /** Writes made through this service below the base and not yet applied: normalized DN to time seen. */
+        private final Map<String, Long> awaitedWrites = new ConcurrentHashMap<>();
+
+        // Guarded by this
+        private long generation;
+        private boolean reloading;
+        private boolean contentSync;
+        /** When the change search of the current generation was started. */
+        private long followingSince;
+        private InMemoryDirectoryServer loading;
+        private List<Change> pending;
+        private LDAPConnection connection;
+        private AsyncRequestID requestId;
+        /** Normalized DNs changes were applied to while a check runs; null otherwise. */
+        private Set<String> touched;
+
+        private LocalReplica(String name, LdapLocalReplicaConfig.Subtree subtree, String targetUri) {
+            this.name = name;
+            this.subtree = subtree;
+            this.targetUri = targetUri;
+            this.endpointKey = LdapEndpoint.parse(targetUri).getKey();
+            try {
+                this.baseDN = new DN(subtree.getBase());
+            } catch (LDAPException e) {
+                throw new IllegalArgumentException("Invalid base DN for local replica " + name + ": " + subtree.getBase());
+            }
+            this.callerPattern = subtree.getCallerPattern() != null ? Pattern.compile(subtree.getCallerPattern()) : null;
+            this.bindCaller = BackendRouter.normalizeCaller(subtree.getBindDn());
+            this.credentials = new VerifiedCredentials(connectionManager, subtree.getCredentialTtlMillis());
+
+            this.localSearches = Counter.builder("ldap.local.replica.searches").tag("replica", name).tag("result", "local")
+                .description("Searches within local replicas").register(meterRegistry);
+            this.fallbackSearches = Counter.builder("ldap.local.replica.searches").tag("replica", name).tag("result", "fallback")
+                .description("Searches within local replicas").register(meterRegistry);
+            Gauge.builder("ldap.local.replica.entries", this, replica -> {
+                InMemoryDirectoryServer current = replica.store;
+                return current != null ? current.countEntries() : 0;
+            }).tag("replica", name).description("Entries held by the local replica").register(meterRegistry);
+            Gauge.builder("ldap.local.replica.staleness", this,
+                replica -> replica.store != null ? System.currentTimeMillis() - replica.confirmedAt : Double.NaN)
+                .tag("replica", name).baseUnit("milliseconds")
+                .description("Time since the local replica was last confirmed current").register(meterRegistry);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getTargetUri() {
+            return targetUri;
+        }
+
+        private boolean serves(String uri, String backend) {
+            if (backend != null) {
+                return backend.equals(subtree.getBackend());
+            }
+            return uri != null && subtree.getBackend() == null && LdapEndpoint.parse(uri).getKey().equals(endpointKey);
+        }
+
+        /**
+         * Whether the replica is loaded, was confirmed current within its staleness bound,
+         * and has applied every write made through this service below its base.
+         */
+        public boolean isCurrent() {
+            return store != null && awaitedWrites.isEmpty()
+                && System.currentTimeMillis() - confirmedAt <= subtree.getMaxStalenessMillis();
+        }
+
+        /**
+         * Runs the search against the replica. Returns null, for the caller to ask the
+         * directory instead, if the replica is not current, does not serve the caller, or
+         * would evaluate the filter differently from the directory.
+         *
+         * @param schema the backend's schema, or null if not known
+         * @throws LDAPException if the caller's credentials are rejected, or the search fails
+         */
+        public SearchResult search(com.unboundid.ldap.sdk.SearchRequest request, DirectorySchema schema,
+                                   String username, String password) throws LDAPException {
+            InMemoryDirectoryServer current = store;
+            if (current == null || !isCurrent() || !allows(username) || !evaluatesLikeDirectory(request.getFilter(), schema)) {
+                fallbackSearches.increment();
+                return null;
+            }
+            credentials.verify(targetUri, username, password);
+            SearchResult result = current.search(request);
+            localSearches.increment();
+            return result;
+        }
+
+        private boolean allows(String username) {
+            String caller = BackendRouter.normalizeCaller(username);
+            return callerPattern != null ? callerPattern.matcher(caller).matches() : caller.equals(bindCaller);
+        }
+
+        private void check(long now) {
+            if (stopped) {
+                return;
+            }
+            if (store != null && subtree.getReloadIntervalMillis() > 0 && now - loadedAt > subtree.getReloadIntervalMillis()) {
+                logger.debug("Reloading local replica {} after {} ms", name, now - loadedAt);
+                reload(0);
+                return;
+            }
+            boolean sweepDue = subtree.getSweepIntervalMillis() > 0 && now - sweptAt >= subtree.getSweepIntervalMillis();
+            if (store == null
+                    || (awaitedWrites.isEmpty() && !sweepDue && now - confirmedAt < subtree.getMaxStalenessMillis() / 2)
+                    || !checking.compareAndSet(false, true)) {
+                return;
+            }
+            executor.execute(() -> {
+                try {
+                    confirm(sweepDue);
+                } finally {
+                    checking.set(false);
+                }
+            });
+        }
+
+        /**
+         * Confirms the replica current as of the start of the check. Entries awaited after
+         * writes are read again and applied. With content sync, reading the root DSE over the
+         * change search's connection shows the search alive. With persistent search, whose
+         * connection is busy with the search on some servers, the connection being open and
+         * the directory answering a root DSE read on a pooled connection stand for that; a
+         * due sweep also reads the DNs of the subtree there and drops the entries no longer
+         * in it. Entries changed while the check runs are left as the change made them.
+         */
+        private void confirm(boolean sweepDue) {
+            long generationChecked;
+            LDAPConnection changeConnection;
+            InMemoryDirectoryServer current;
+            boolean persistentSearch;
+            Set<String> changed = new HashSet<>();
+            synchronized (this) {
+                if (connection == null || store == null) {
+                    return;
+                }
+                generationChecked = generation;
+                changeConnection = connection;
+                current = store;
+                persistentSearch = !contentSync;
+                touched = changed;
+            }
+            boolean sweep = sweepDue && persistentSearch;
+            long requestedAt = System.currentTimeMillis();
+            Map<String, Long> writes = new HashMap<>(awaitedWrites);
+            Map<String, Entry> reread = new HashMap<>();
+            Set<String> held = new HashSet<>();
+            DnCollector present = new DnCollector();
+            try {
+                if (sweep) {
+                    for (SearchResultEntry entry : current.search(subtree.getBase(), SearchScope.SUB,
+                            Filter.createPresenceFilter("objectClass"), NO_ATTRIBUTES).getSearchEntries()) {
+                        held.add(normalize(entry.getDN()));
+                    }
+                }
+                if (persistentSearch || !writes.isEmpty()) {
+                    connectionManager.withConnection(targetUri, subtree.getBindDn(), subtree.getBindPassword(), reader -> {
+                        for (String dn : writes.keySet()) {
+                            reread.put(dn, reader.getEntry(dn, ATTRIBUTES));
+                        }
+                        if (sweep) {
+                            com.unboundid.ldap.sdk.SearchRequest request = new com.unboundid.ldap.sdk.SearchRequest(
+                                present, subtree.getBase(), SearchScope.SUB, Filter.createPresenceFilter("objectClass"),
+                                NO_ATTRIBUTES);
+                            request.setSizeLimit(subtree.getMaxEntries() + 1);
+                            reader.search(request);
+                        } else if (persistentSearch) {
+                            reader.getRootDSE();
+                        }
+                        return null;
+                    });
+                }
+            } catch (Exception e) {
+                // Left unconfirmed, so searches go to the directory until a later check succeeds
+                logger.warn("Local replica {} could not be confirmed: {}", name, e.getMessage());
+                synchronized (this) {
+                    if (touched == changed) {
+                        touched = null;
+                    }
+                }
+                return;
+            }
+            try {
+                if (persistentSearch) {
+                    if (!changeConnection.isConnected()) {
+                        throw new LDAPException(ResultCode.SERVER_DOWN, "The change search's connection is closed");
+                    }
+                } else {
+                    changeConnection.getRootDSE();
+                }
+            } catch (LDAPException e) {
+                synchronized (this) {
+                    if (touched == changed) {
+                        touched = null;
+                    }
+                }
+                logger.warn("Local replica {} lost its change search: {}", name, e.getMessage());
+                reload(generationChecked, subtree.getReloadDelayMillis());
+                return;
+            }
+
+            synchronized (this) {
+                if (touched == changed) {
+                    touched = null;
+                }
+                if (generation != generationChecked || store != current) {
+                    return;
+                }
+                for (Map.Entry<String, Entry> entry : reread.entrySet()) {
+                    if (!changed.contains(entry.getKey()) && !repair(current, entry.getKey(), entry.getValue())) {
+                        logger.info("Local replica {} could not apply {} as read again; reloading", name, entry.getKey());
+                        reload(0);
+                        return;
+                    }
+                }
+                writes.forEach(awaitedWrites::remove);
+                if (sweep) {
+                    for (String dn : held) {
+                        if (!present.dns.contains(dn) && !changed.contains(dn) && !repair(current, dn, null)) {
+                            reload(0);
+                            return;
+                        }
+                    }
+                }
+                if (sweepDue) {
+                    sweptAt = requestedAt;
+                }
+                confirmedAt = Math.max(confirmedAt, requestedAt);
+            }
+        }
+
+        /**
+         * Brings one entry in line with how it was read again: gone if it was not found.
+         */
+        private boolean repair(InMemoryDirectoryServer target, String dn, Entry entry) {
+            if (entry == null) {
+                try {
+                    if (target.getEntry(dn) != null) {
+                        target.deleteSubtree(dn);
+                    }
+                    return true;
+                } catch (LDAPException e) {
+                    logger.debug("Local replica {} failed to drop {}: {}", name, dn, e.getMessage());
+                    return false;
+                }
+            }
+            return apply(target, new Change(ChangeType.MODIFY, entry, null, false));
+        }
+
+        private synchronized void reload(long delayMillis) {
+            reload(generation, delayMillis);
+        }
+
+        /**
+         * Discards the replica and loads it again after the delay, unless a reload of a later
+         * generation is already under way.
+         */
+        private synchronized void reload(long ofGeneration, long delayMillis) {
+            if (ofGeneration != generation || (reloading && delayMillis > 0) || stopped) {
+                return;
+            }
+            long next = ++generation;
+            reloading = true;
+            store = null;
+            loading = null;
+            pending = null;
+            closeConnection();
+            executor.execute(() -> load(next, delayMillis));
+        }
+
+        private void load(long loadGeneration, long delayMillis) {
+            try {
+                if (delayMillis > 0) {
+                    Thread.sleep(delayMillis);
+                }
+                start(loadGeneration);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.warn("Unable to load local replica {} from {}: {}", name, targetUri, e.getMessage());
+                synchronized (this) {
+                    if (loadGeneration == generation) {
+                        reloading = false;
+                    }
+                }
+                reload(loadGeneration, Math.max(1, subtree.getReloadDelayMillis()));
+            }
+        }
+
+        private void start(long loadGeneration) throws LDAPException {
+            LDAPConnection opened = connectionManager.openConnection(targetUri, subtree.getBindDn(), subtree.getBindPassword());
+            boolean started = false;
+            try {
+                opened.setConnectionName("local replica " + name);
+                DirectorySchema schema = schemaCache.get(targetUri, opened);
+                RootDSE rootDSE = schema != null && schema.getRootDSE() != null ? schema.getRootDSE() : opened.getRootDSE();
+                String mechanism = ChangeStreamService.chooseMechanism(subtree.getMechanism(), rootDSE);
+                boolean contentSync = ChangeStreamService.CONTENT_SYNC.equals(mechanism);
+
+                InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig(baseDN);
+                config.setSchema(null);
+                config.setGenerateOperationalAttributes(false);
+                config.setEnforceAttributeSyntaxCompliance(false);
+                config.setEnforceSingleStructuralObjectClass(false);
+                InMemoryDirectoryServer target = new InMemoryDirectoryServer(config);
+
+                ChangeListener listener = new ChangeListener(loadGeneration, contentSync);
+                com.unboundid.ldap.sdk.SearchRequest request = new com.unboundid.ldap.sdk.SearchRequest(
+                    listener, subtree.getBase(), SearchScope.SUB, Filter.createPresenceFilter("objectClass"), ATTRIBUTES);
+                // The search runs until abandoned
+                request.setResponseTimeoutMillis(0);
+                if (contentSync) {
+                    request.addControl(new ContentSyncRequestControl(true, ContentSyncRequestMode.REFRESH_AND_PERSIST, null, false));
+                    request.setIntermediateResponseListener(listener);
+                } else {
+                    request.addControl(new PersistentSearchRequestControl(PersistentSearchChangeType.allChangeTypes(), true, true));
+                }
+
+                synchronized (this) {
+                    if (loadGeneration != generation) {
+                        return;
+                    }
+                    loading = target;
+                    pending = new ArrayList<>();
+                    this.contentSync = contentSync;
+                    followingSince = System.currentTimeMillis();
+                    connection = opened;
+                    requestId = opened.asyncSearch(request);
+                    started = true;
+                }
+                logger.info("Loading local replica {} of {} from {} using {}", name, subtree.getBase(), targetUri, mechanism);
+
+                if (!contentSync) {
+                    // Read on a connection of its own, leaving the change search's free for checks.
+                    // Changes made while this runs are queued and applied afterwards.
+                    com.unboundid.ldap.sdk.SearchRequest read = new com.unboundid.ldap.sdk.SearchRequest(
+                        subtree.getBase(), SearchScope.SUB, Filter.createPresenceFilter("objectClass"), ATTRIBUTES);
+                    read.setSizeLimit(subtree.getMaxEntries() + 1);
+                    read.setResponseTimeoutMillis(0);
+                    List<SearchResultEntry> entries;
+                    try (LDAPConnection loader = connectionManager.openConnection(
+                            targetUri, subtree.getBindDn(), subtree.getBindPassword())) {
+                        entries = loader.search(read).getSearchEntries();
+                    }
+                    finishLoad(loadGeneration, entries);
+                }
+            } finally {
+                if (!started) {
+                    opened.close();
+                }
+            }
+        }
+
+        /**
+         * Adds the loaded entries, parents first, then applies the changes queued meanwhile
+         * and makes the store answer searches.
+         */
+        private void finishLoad(long loadGeneration, List<? extends Entry> entries) throws LDAPException {
+            if (entries.size() > subtree.getMaxEntries()) {
+                throw new LDAPException(ResultCode.SIZE_LIMIT_EXCEEDED,
+                    "The subtree has more than " + subtree.getMaxEntries() + " entries");
+            }
+            InMemoryDirectoryServer target;
+            synchronized (this) {
+                if (loadGeneration != generation) {
+                    return;
+                }
+                target = loading;
+            }
+
+            List<Loaded> ordered = new ArrayList<>(entries.size());
+            for (Entry entry : entries) {
+                ordered.add(new Loaded(entry));
+            }
+            ordered.sort(Comparator.comparingInt(loaded -> loaded.depth));
+            for (Loaded loaded : ordered) {
+                try {
+                    target.add(new Entry(loaded.entry.getDN(), loaded.entry.getAttributes()));
+                } catch (LDAPException e) {
+                    // e.g. an entry below one the bind DN may not read
+                    logger.debug("Local replica {} skips {}: {}", name, loaded.entry.getDN(), e.getMessage());
+                }
+            }
+
+            synchronized (this) {
+                if (loadGeneration != generation) {
+                    return;
+                }
+                for (Change change : pending) {
+                    if (!apply(target, change)) {
+                        reloading = false;
+                        reload(0);
+                        return;
+                    }
+                    applied(change);
+                }
+                // Writes seen before the change search started are in what was read
+                awaitedWrites.values().removeIf(seenAt -> seenAt < followingSince);
+                pending = null;
+                loading = null;
+                reloading = false;
+                store = target;
+                loadedAt = System.currentTimeMillis();
+                confirmedAt = loadedAt;
+                sweptAt = loadedAt;
+            }
+            logger.info("Loaded local replica {} with {} entries", name, target.countEntries());
+        }
+
+        private void onChange(long changeGeneration, Change change) {
+            synchronized (this) {
+                if (changeGeneration != generation) {
+                    return;
+                }
+                if (loading != null) {
+                    pending.add(change);
+                    return;
+                }
+                InMemoryDirectoryServer current = store;
+                if (current == null) {
+                    return;
+                }
+                if (apply(current, change)) {
+                    applied(change);
+                    confirmedAt = System.currentTimeMillis();
+                    return;
+                }
+            }
+            logger.info("Local replica {} could not apply a {} of {}; reloading", name, change.changeType, change.entry.getDN());
+            reload(changeGeneration, 0);
+        }
+
+        /**
+         * Records a change as applied: writes awaiting it are done, and a running check
+         * leaves its entries alone. Called with the lock held.
+         */
+        private void applied(Change change) {
+            String dn = normalize(change.entry.getDN());
+            awaitedWrites.remove(dn);
+            if (touched != null) {
+                touched.add(dn);
+            }
+            if (change.previousDn != null) {
+                String previous = normalize(change.previousDn);
+                awaitedWrites.remove(previous);
+                if (touched != null) {
+                    touched.add(previous);
+                }
+            }
+        }
+
+        /**
+         * Applies a change to the store. Returns false if the store cannot be brought in line
+         * with it and has to be reloaded.
+         */
+        private boolean apply(InMemoryDirectoryServer target, Change change) {
+            String dn = change.entry.getDN();
+            try {
+                if (change.changeType == ChangeType.DELETE) {
+                    if (target.getEntry(dn) != null) {
+                        target.deleteSubtree(dn);
+                    }
+                    return true;
+                }
+                if (change.changeType == ChangeType.MODIFY_DN) {
+                    if (change.previousDn == null) {
+                        return false;
+                    }
+                    if (target.getEntry(change.previousDn) != null) {
+                        DN newDN = new DN(dn);
+                        target.modifyDN(change.previousDn, newDN.getRDNString(), true, newDN.getParentString());
+                    }
+                }
+                Entry current = target.getEntry(dn);
+                Entry updated = new Entry(dn, change.entry.getAttributes());
+                if (current == null) {
+                    // Content sync reports renames as modifies of the new DN
+                    if (change.mustExist) {
+                        return false;
+                    }
+                    target.add(updated);
+                } else {
+                    List<Modification> modifications = Entry.diff(current, updated, true);
+                    if (!modifications.isEmpty()) {
+                        target.modify(dn, modifications);
+                    }
+                }
+                return true;
+            } catch (LDAPException e) {
+                logger.debug("Local replica {} failed to apply change to {}: {}", name, dn, e.getMessage());
+                return false;
+            }
+        }
+
+        private synchronized void closeConnection() {
+            if (connection == null) {
+                return;
+            }
+            try {
+                connection.abandon(requestId);
+            } catch (LDAPException e) {
+                logger.debug("Unable to abandon change search of local replica {}: {}", name, e.getMessage());
+            }
+            connection.close();
+            connection = null;
+        }
+
+        private synchronized void close() {
+            generation++;
+            store = null;
+            loading = null;
+            pending = null;
+            closeConnection();
+        }
+
+        /**
+         * Receives the changes of one load generation.
+         */
+        private final class ChangeListener implements AsyncSearchResultListener, IntermediateResponseListener {
+
+            private static final long serialVersionUID = 1L;
+
+            private final long listenerGeneration;
+            private final boolean contentSync;
+            /** Content sync only: entries of the refresh phase, which are the load. */
+            private List<SearchResultEntry> refreshEntries = new ArrayList<>();
+
+            private ChangeListener(long listenerGeneration, boolean contentSync) {
+                this.listenerGeneration = listenerGeneration;
+                this.contentSync = contentSync;
+            }
+
+            @Override
+            public void searchEntryReturned(SearchResultEntry entry) {
+                try {
+                    if (contentSync) {
+                        ContentSyncStateControl control = ContentSyncStateControl.get(entry);
+                        if (refreshEntries != null) {
+                            if (control == null || control.getState() != ContentSyncState.DELETE) {
+                                refreshEntries.add(entry);
+                            }
+                        } else if (control != null && control.getState() != ContentSyncState.PRESENT) {
+                            ChangeType changeType = ChangeType.forName(ChangeStreamService.name(control.getState()));
+                            onChange(listenerGeneration,
+                                new Change(changeType, entry, null, control.getState() == ContentSyncState.MODIFY));
+                        }
+                    } else {
+                        EntryChangeNotificationControl control = EntryChangeNotificationControl.get(entry);
+                        ChangeType changeType = control != null
+                            ? ChangeType.forName(ChangeStreamService.name(control.getChangeType()))
+                            : ChangeType.MODIFY;
+                        onChange(listenerGeneration,
+                            new Change(changeType, entry, control != null ? control.getPreviousDN() : null, false));
+                    }
+                } catch (LDAPException e) {
+                    logger.info("Local replica {} got an undecodable change of {}; reloading", name, entry.getDN());
+                    reload(listenerGeneration, 0);
+                }
+            }
+
+            @Override
+            public void intermediateResponseReturned(IntermediateResponse response) {
+                if (!contentSync || refreshEntries == null
+                        || !ContentSyncInfoIntermediateResponse.SYNC_INFO_OID.equals(response.getOID())) {
+                    return;
+                }
+                try {
+                    ContentSyncInfoIntermediateResponse info = ContentSyncInfoIntermediateResponse.decode(response);
+                    if ((info.getType() == ContentSyncInfoType.REFRESH_DELETE || info.getType() == ContentSyncInfoType.REFRESH_PRESENT)
+                            && info.refreshDone()) {
+                        List<SearchResultEntry> loaded = refreshEntries;
+                        refreshEntries = null;
+                        // Not on this thread: it is the connection's reader
+                        executor.execute(() -> {
+                            try {
+                                finishLoad(listenerGeneration, loaded);
+                            } catch (LDAPException e) {
+                                logger.error("Local replica {} not loaded: {}", name, e.getMessage());
+                            }
+                        });
+                    }
+                } catch (LDAPException e) {
+                    logger.debug("Ignoring undecodable sync info message for local replica {}: {}", name, e.getMessage());
+                }
+            }
+
+            @Override
+            public void searchReferenceReturned(SearchResultReference reference) {
+                // Referrals are not followed
+            }
+
+            @Override
+            public void searchResultReceived(AsyncRequestID id, SearchResult result) {
+                logger.warn("Change search of local replica {} ended: {} {}", name, result.getResultCode(),
+                    result.getDiagnosticMessage() != null ? result.getDiagnosticMessage() : "");
+                executor.execute(() -> reload(listenerGeneration, subtree.getReloadDelayMillis()));
+            }
+        }
+    }
+
+    /**
+     * Whether the store, which compares every value as a case-insensitive string, evaluates
+     * the filter's ordering and substring assertions as the directory does: only where the
+     * schema is known and gives the attribute case-insensitive string matching for them.
+     */
+    static boolean evaluatesLikeDirectory(Filter filter, DirectorySchema schema) {
+        switch (filter.getFilterType()) {
+            case Filter.FILTER_TYPE_AND:
+            case Filter.FILTER_TYPE_OR:
+                for (Filter component : filter.getComponents()) {
+                    if (!evaluatesLikeDirectory(component, schema)) {
+                        return false;
+                    }
+                }
+                return true;
+            case Filter.FILTER_TYPE_NOT:
+                return evaluatesLikeDirectory(filter.getNOTComponent(), schema);
+            case Filter.FILTER_TYPE_GREATER_OR_EQUAL:
+            case Filter.FILTER_TYPE_LESS_OR_EQUAL:
+                return schema != null && MatchingRule.selectOrderingMatchingRule(
+                    filter.getAttributeName(), schema.getSchema()) instanceof CaseIgnoreStringMatchingRule;
+            case Filter.FILTER_TYPE_SUBSTRING:
+                return schema != null && MatchingRule.selectSubstringMatchingRule(
+                    filter.getAttributeName(), schema.getSchema()) instanceof CaseIgnoreStringMatchingRule;
+            default:
+                return true;
+        }
+    }
+
+    private static String normalize(String dn) {
+        try {
+            return new DN(dn).toNormalizedString();
+        } catch (LDAPException e) {
+            return dn;
+        }
+    }
+
+    /**
+     * Collects the normalized DNs a search returns, without keeping the entries.
+     */
+    private static final class DnCollector implements SearchResultListener {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Set<String> dns = new HashSet<>();
+
+        @Override
+        public void searchEntryReturned(SearchResultEntry entry) {
+            dns.add(normalize(entry.getDN()));
+        }
+
+        @Override
+        public void searchReferenceReturned(SearchResultReference reference) {
+            // Referrals are not followed
+        }
+    }
+
+    private static final class Change {
+        private final ChangeType changeType;
+        private final Entry entry;
+        private final String previousDn;
+        /** Whether the entry must already be held, as for content sync modifies. */
+        private final boolean mustExist;
+
+        private Change(ChangeType changeType, Entry entry, String previousDn, boolean mustExist) {
+            this.changeType = changeType;
+            this.entry = entry;
+            this.previousDn = previousDn;
+            this.mustExist = mustExist;
+        }
+    }
+
+    private static final class Loaded {
+        private final Entry entry;
+        private final int depth;
+
+        private Loaded(Entry entry) {
+            this.entry = entry;
+            int rdns;
+            try {
+                rdns = entry.getParsedDN().getRDNs().length;
+            } catch (LDAPException e) {
+                rdns = Integer.MAX_VALUE;
+            }
+            this.depth = rdns;
+        }
+    }
+}
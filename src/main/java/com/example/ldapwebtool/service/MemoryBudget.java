@@ -0,0 +1,280 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapMemoryConfig;
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.ldap.sdk.AsyncRequestID;
+import com.unboundid.ldap.sdk.AsyncSearchResultListener;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.LDAPResult;
+import com.unboundid.ldap.sdk.LDAPSearchException;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchRequest;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchResultReference;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Heap budget shared by all requests. A request opens a {@link Lease}, reserves an estimate
+ * of what it holds (entries read, formatted output, request bodies) as it goes, and returns
+ * it all when the lease is closed. Reservations that would exceed the budget fail, so a few
+ * large requests cannot take the heap from everyone else.
+ *
+ * Estimates are rough: they count value bytes, two bytes per character of strings, and a
+ * fixed overhead per entry, attribute and value.
+ */
+@Service
+public class MemoryBudget {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryBudget.class);
+
+    private static final int ENTRY_OVERHEAD = 128;
+    private static final int ATTRIBUTE_OVERHEAD = 64;
+    private static final int VALUE_OVERHEAD = 32;
+
+    private final LdapMemoryConfig memoryConfig;
+    private final AtomicLong reservedBytes = new AtomicLong();
+    private final Counter rejected;
+    private final Counter shrunk;
+
+    @Autowired
+    public MemoryBudget(LdapMemoryConfig memoryConfig, MeterRegistry meterRegistry) {
+        this.memoryConfig = memoryConfig;
+
+        Gauge.builder("ldap.memory.reserved", reservedBytes, AtomicLong::get)
+            .baseUnit("bytes").description("Memory reserved by requests in progress").register(meterRegistry);
+        Gauge.builder("ldap.memory.budget", this, MemoryBudget::getBudgetBytes)
+            .baseUnit("bytes").description("Memory all requests together may reserve").register(meterRegistry);
+        this.rejected = Counter.builder("ldap.memory.pressure").tag("action", "rejected")
+            .description("Requests rejected or shrunk for lack of memory").register(meterRegistry);
+        this.shrunk = Counter.builder("ldap.memory.pressure").tag("action", "shrunk")
+            .description("Requests rejected or shrunk for lack of memory").register(meterRegistry);
+    }
+
+    public Lease open() {
+        return new Lease();
+    }
+
+    public long getBudgetBytes() {
+        return memoryConfig.getBudgetBytes() > 0 ? memoryConfig.getBudgetBytes() : Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    public long getReservedBytes() {
+        return reservedBytes.get();
+    }
+
+    private boolean take(long bytes) {
+        long budgetBytes = getBudgetBytes();
+        while (true) {
+            long current = reservedBytes.get();
+            if (current + bytes > budgetBytes) {
+                return false;
+            }
+            if (reservedBytes.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Estimates the heap held by an entry.
+     */
+    public static long estimateSize(Entry entry) {
+        long size = ENTRY_OVERHEAD + 2L * entry.getDN().length();
+        for (Attribute attribute : entry.getAttributes()) {
+            size += ATTRIBUTE_OVERHEAD + 2L * attribute.getName().length();
+            for (ASN1OctetString value : attribute.getRawValues()) {
+                size += VALUE_OVERHEAD + value.getValueLength();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Memory reserved by one request. Not meant to be shared between requests; close it when
+     * the request is done.
+     */
+    public final class Lease implements AutoCloseable {
+
+        private long heldBytes;
+        private boolean closed;
+
+        private Lease() {
+        }
+
+        /**
+         * Reserves the bytes, or throws {@link BackendUnavailableException} if the budget
+         * cannot hold them.
+         */
+        public void reserve(long bytes) {
+            if (!tryReserve(bytes)) {
+                throw exhausted();
+            }
+        }
+
+        /**
+         * Reserves the bytes if the budget can hold them. Returns whether it could.
+         */
+        public synchronized boolean tryReserve(long bytes) {
+            if (closed) {
+                return false;
+            }
+            if (bytes <= 0 || !memoryConfig.isEnabled()) {
+                return true;
+            }
+            if (!take(bytes)) {
+                return false;
+            }
+            heldBytes += bytes;
+            return true;
+        }
+
+        /**
+         * Reserves as much of the wanted bytes as the budget has left, but at least the
+         * minimum. Returns the bytes reserved, or throws {@link BackendUnavailableException}
+         * if not even the minimum is left.
+         */
+        public synchronized long reserveUpTo(long wanted, long minimum) {
+            long bytes = wanted;
+            while (!tryReserve(bytes)) {
+                if (bytes <= minimum) {
+                    throw exhausted();
+                }
+                bytes = Math.max(minimum, bytes / 2);
+            }
+            if (bytes < wanted) {
+                shrunk.increment();
+                logger.debug("Memory budget tight; granted {} of {} bytes", bytes, wanted);
+            }
+            return bytes;
+        }
+
+        /**
+         * Reserves a sort buffer of the wanted size, or as much as is left, down to the
+         * configured minimum; a smaller buffer only means spilling to disk sooner.
+         */
+        public long reserveSortBuffer(long wanted) {
+            return reserveUpTo(wanted, Math.min(wanted, memoryConfig.getMinSortMemoryBytes()));
+        }
+
+        /**
+         * Runs the search, reserving memory for each entry as it arrives. If the budget
+         * cannot hold another entry the search is abandoned and {@link BackendUnavailableException}
+         * thrown; otherwise behaves as {@link LDAPConnection#search(SearchRequest)}. The search
+         * is also abandoned when the handle's deadline passes or it is cancelled.
+         */
+        public SearchResult search(LDAPConnection connection, SearchRequest request, OperationHandle handle)
+                throws LDAPException, InterruptedException {
+            BudgetedListener listener = new BudgetedListener(this);
+            SearchRequest budgeted = new SearchRequest(listener, request.getControls(), request.getBaseDN(),
+                request.getScope(), request.getDereferencePolicy(), request.getSizeLimit(),
+                request.getTimeLimitSeconds(), request.typesOnly(), request.getFilter(), request.getAttributes());
+            budgeted.setResponseTimeoutMillis(request.getResponseTimeoutMillis(connection));
+            budgeted.setFollowReferrals(request.followReferrals(connection));
+            handle.limit(budgeted);
+
+            AsyncRequestID requestId = connection.asyncSearch(budgeted);
+            listener.started(requestId);
+            // Cancelling does not wake a blocked get(); await waits in slices, so an over-budget search ends promptly
+            LDAPResult result = handle.await(requestId);
+            if (listener.exceeded) {
+                throw exhausted();
+            }
+            if (!(result instanceof SearchResult)) {
+                throw new LDAPException(result);
+            }
+            SearchResult searchResult = (SearchResult) result;
+            SearchResult complete = new SearchResult(searchResult.getMessageID(), searchResult.getResultCode(),
+                searchResult.getDiagnosticMessage(), searchResult.getMatchedDN(), searchResult.getReferralURLs(),
+                listener.entries, listener.references, searchResult.getEntryCount(), searchResult.getReferenceCount(),
+                searchResult.getResponseControls());
+            if (complete.getResultCode() != ResultCode.SUCCESS) {
+                throw new LDAPSearchException(complete);
+            }
+            return complete;
+        }
+
+        public synchronized long getHeldBytes() {
+            return heldBytes;
+        }
+
+        private BackendUnavailableException exhausted() {
+            rejected.increment();
+            return new BackendUnavailableException("Not enough memory for the request; try again later",
+                memoryConfig.getRetryAfterSeconds());
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                reservedBytes.addAndGet(-heldBytes);
+                heldBytes = 0;
+            }
+        }
+    }
+
+    /**
+     * Keeps the entries of a search while the lease can hold them, and cancels the search
+     * once it cannot.
+     */
+    private static final class BudgetedListener implements AsyncSearchResultListener {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Lease lease;
+        private final List<SearchResultEntry> entries = new ArrayList<>();
+        private final List<SearchResultReference> references = new ArrayList<>();
+        private AsyncRequestID requestId;
+        private volatile boolean exceeded;
+
+        private BudgetedListener(Lease lease) {
+            this.lease = lease;
+        }
+
+        private synchronized void started(AsyncRequestID requestId) {
+            this.requestId = requestId;
+            if (exceeded) {
+                requestId.cancel(false);
+            }
+        }
+
+        @Override
+        public synchronized void searchEntryReturned(SearchResultEntry entry) {
+            if (exceeded) {
+                return;
+            }
+            if (lease.tryReserve(estimateSize(entry))) {
+                entries.add(entry);
+                return;
+            }
+            exceeded = true;
+            entries.clear();
+            if (requestId != null) {
+                requestId.cancel(false);
+            }
+        }
+
+        @Override
+        public synchronized void searchReferenceReturned(SearchResultReference reference) {
+            references.add(reference);
+        }
+
+        @Override
+        public void searchResultReceived(AsyncRequestID requestId, SearchResult result) {
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.ldapwebtool.service;
+
+import com.unboundid.ldap.sdk.AsyncRequestID;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.LDAPResult;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchRequest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Deadline and cancellation of one request's directory operations. Asynchronous operations
+ * awaited through it are abandoned as soon as the deadline passes or {@link #cancel} is
+ * called (e.g. because the HTTP client disconnected), so the server stops working on them
+ * and their connection can go back to the pool.
+ */
+public final class OperationHandle {
+
+    private static final long POLL_MILLIS = 50;
+
+    private final long timeoutMillis;
+    private final long deadlineNanos;
+    private volatile String cancelReason;
+    // Only added to by the thread awaiting an operation, one at a time
+    private volatile long directoryNanos;
+    private AsyncRequestID current;
+
+    private OperationHandle(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.deadlineNanos = timeoutMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : 0;
+    }
+
+    /**
+     * A handle that is abandoned after the timeout; zero or less means no deadline.
+     */
+    public static OperationHandle withTimeout(long timeoutMillis) {
+        return new OperationHandle(timeoutMillis);
+    }
+
+    /**
+     * A handle without deadline, for callers that do not support cancellation.
+     */
+    public static OperationHandle unbounded() {
+        return new OperationHandle(0);
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Abandons the operation in progress, if any, and fails those started later.
+     */
+    public void cancel(String reason) {
+        AsyncRequestID inProgress;
+        synchronized (this) {
+            if (cancelReason != null) {
+                return;
+            }
+            cancelReason = reason;
+            inProgress = current;
+        }
+        if (inProgress != null) {
+            inProgress.cancel(false);
+        }
+    }
+
+    /**
+     * Time spent waiting for directory operations awaited through this handle.
+     */
+    public long getDirectoryNanos() {
+        return directoryNanos;
+    }
+
+    public boolean isCancelled() {
+        return cancelReason != null;
+    }
+
+    /**
+     * Throws if the handle was cancelled or its deadline has passed.
+     */
+    public void check() throws LDAPException {
+        if (cancelReason != null) {
+            throw new LDAPException(ResultCode.CANCELED, "Operation cancelled: " + cancelReason);
+        }
+        if (deadlineNanos != 0 && remainingMillis() <= 0) {
+            throw new OperationTimeoutException(timeoutMillis);
+        }
+    }
+
+    /**
+     * Limits the search to the time left: the client stops waiting for the response then,
+     * and the server is asked to stop searching too.
+     */
+    public void limit(SearchRequest request) throws LDAPException {
+        check();
+        if (deadlineNanos != 0) {
+            long remaining = Math.max(1, remainingMillis());
+            request.setResponseTimeoutMillis(remaining);
+            int seconds = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(remaining + 999));
+            if (request.getTimeLimitSeconds() <= 0 || request.getTimeLimitSeconds() > seconds) {
+                request.setTimeLimitSeconds(seconds);
+            }
+        }
+    }
+
+    /**
+     * Waits for an asynchronous operation started under this handle. It is abandoned if the
+     * deadline passes or the handle is cancelled meanwhile.
+     *
+     * @throws OperationTimeoutException if the deadline passed
+     * @throws LDAPException with {@link ResultCode#CANCELED} if the handle was cancelled
+     */
+    public LDAPResult await(AsyncRequestID requestId) throws LDAPException, InterruptedException {
+        synchronized (this) {
+            current = requestId;
+        }
+        long start = System.nanoTime();
+        try {
+            if (cancelReason != null) {
+                requestId.cancel(false);
+            }
+            LDAPResult result = null;
+            while (result == null) {
+                long wait = POLL_MILLIS;
+                if (deadlineNanos != 0) {
+                    long remaining = remainingMillis();
+                    if (remaining <= 0) {
+                        requestId.cancel(false);
+                        throw new OperationTimeoutException(timeoutMillis);
+                    }
+                    wait = Math.min(wait, remaining);
+                }
+                try {
+                    result = requestId.get(wait, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // Cancelling does not wake a waiting get, so look again shortly
+                } catch (InterruptedException e) {
+                    // Spring interrupts the request thread on disconnect before the error callback cancels us
+                    requestId.cancel(false);
+                    throw e;
+                }
+            }
+            if (cancelReason != null) {
+                throw new LDAPException(ResultCode.CANCELED, "Operation cancelled: " + cancelReason);
+            }
+            if (isDeadlineResult(result.getResultCode())) {
+                // The SDK's response timeout usually fires first and does not abandon the operation itself
+                requestId.cancel(false);
+                throw new OperationTimeoutException(timeoutMillis);
+            }
+            return result;
+        } finally {
+            directoryNanos += System.nanoTime() - start;
+            synchronized (this) {
+                current = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the exception to report for a failed operation: an {@link OperationTimeoutException}
+     * if it failed because the time left on this handle ran out, otherwise the exception itself.
+     */
+    public LDAPException translate(LDAPException e) {
+        return isDeadlineResult(e.getResultCode()) ? new OperationTimeoutException(timeoutMillis) : e;
+    }
+
+    private boolean isDeadlineResult(ResultCode resultCode) {
+        return deadlineNanos != 0 && (resultCode == ResultCode.TIME_LIMIT_EXCEEDED || resultCode == ResultCode.TIMEOUT);
+    }
+
+    private long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.ldapwebtool.service;
+
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+
+/**
+ * Thrown when a directory operation is abandoned because the request's timeout passed.
+ * Controllers answer it with 504.
+ *
+ * It is an {@link LDAPException} so that the connection the operation ran on goes back to
+ * the pool instead of being discarded.
+ */
+public class OperationTimeoutException extends LDAPException {
+
+    private static final long serialVersionUID = 1L;
+
+    public OperationTimeoutException(long timeoutMillis) {
+        super(ResultCode.TIME_LIMIT_EXCEEDED, "Operation did not complete within " + timeoutMillis + " ms");
+    }
+}
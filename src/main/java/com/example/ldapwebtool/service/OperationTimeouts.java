@@ -0,0 +1,94 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapTimeoutConfig;
+import com.unboundid.ldap.sdk.ResultCode;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out the {@link OperationHandle} of each search or export, with the timeout of its
+ * endpoint or the one the request asks for, and runs requests that can be cancelled off the
+ * servlet thread, so that a client disconnect can be noticed while they wait for the directory.
+ *
+ * That executor is bounded like the servlet container's own thread pool: requests beyond its
+ * threads and queue are refused with a TaskRejectedException, which controllers answer with
+ * 503, instead of piling up threads.
+ */
+@Service
+public class OperationTimeouts {
+
+    public static final String SEARCH = "search";
+    public static final String SEARCH_LDIF = "search-ldif";
+    public static final String EXPORT = "export";
+
+    /**
+     * Added to an operation's timeout for the servlet container's own async timeout, so that
+     * the operation normally reports its timeout itself.
+     */
+    public static final long ASYNC_GRACE_MILLIS = 1000;
+
+    /**
+     * Retry-After given to requests refused because every thread is busy.
+     */
+    public static final long RETRY_AFTER_SECONDS = 1;
+
+    private final LdapTimeoutConfig timeoutConfig;
+    private final ThreadPoolExecutor executorService;
+    private final AsyncTaskExecutor executor;
+
+    @Autowired
+    public OperationTimeouts(LdapTimeoutConfig timeoutConfig) {
+        this.timeoutConfig = timeoutConfig;
+        int threads = Math.max(1, timeoutConfig.getMaxConcurrentRequests());
+        this.executorService = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            timeoutConfig.getMaxQueuedRequests() > 0
+                ? new ArrayBlockingQueue<>(timeoutConfig.getMaxQueuedRequests())
+                : new SynchronousQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "ldap-request");
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        executorService.allowCoreThreadTimeOut(true);
+        this.executor = new TaskExecutorAdapter(executorService);
+    }
+
+    /**
+     * Returns the handle for one operation on the endpoint.
+     *
+     * @param requestedMillis timeout asked for by the request, or null for the endpoint's
+     * @throws RequestValidationException if the requested timeout is not positive or above the maximum
+     */
+    public OperationHandle open(String endpoint, Long requestedMillis) throws RequestValidationException {
+        if (requestedMillis != null) {
+            if (requestedMillis <= 0 || (timeoutConfig.getMaxMillis() > 0 && requestedMillis > timeoutConfig.getMaxMillis())) {
+                throw new RequestValidationException(ResultCode.PARAM_ERROR,
+                    "timeoutMillis must be between 1 and " + timeoutConfig.getMaxMillis());
+            }
+            return OperationHandle.withTimeout(requestedMillis);
+        }
+        Long configured = timeoutConfig.getEndpoints().get(endpoint);
+        return OperationHandle.withTimeout(configured != null ? configured : timeoutConfig.getDefaultMillis());
+    }
+
+    /**
+     * Executor for request handlers running off the servlet thread.
+     */
+    public AsyncTaskExecutor getExecutor() {
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+}
@@ -0,0 +1,484 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapExportConfig;
+import com.example.ldapwebtool.config.LdapPoolConfig;
+import com.example.ldapwebtool.model.ExportRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unboundid.ldap.sdk.AsyncRequestID;
+import com.unboundid.ldap.sdk.AsyncSearchResultListener;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.LDAPResult;
+import com.unboundid.ldap.sdk.LDAPSearchException;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchResultReference;
+import com.unboundid.ldap.sdk.SearchScope;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Exports a subtree by splitting it into partitions that are searched in parallel.
+ *
+ * The base entry's children are enumerated with a one-level search and each child subtree
+ * becomes a partition. Up to the export's parallelism, partitions are taken from its queue
+ * and searched as tasks on one executor shared by all exports, whose size caps how many
+ * backend connections exports hold in total. When the queue holds fewer partitions than the
+ * parallelism, the next subtree partition taken is split one level further instead of being
+ * searched whole, which spreads uneven trees across all workers. Serialized entries from
+ * every partition are merged through one bounded buffer into the response.
+ *
+ * A partition refused by the backend's admission control is put back and retried after the
+ * backend's Retry-After, rather than failing an export that may have run for hours.
+ *
+ * In ordered mode the entry at the top of a split partition is written before its children
+ * are queued, so every entry follows its parent, as with a single subtree search.
+ */
+@Service
+public class PartitionedExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionedExporter.class);
+
+    private static final long POLL_MILLIS = 100;
+
+    private final LdapConnectionManager connectionManager;
+    private final BackendRouter backendRouter;
+    private final SchemaCache schemaCache;
+    private final SearchPlanCache searchPlanCache;
+    private final LdapExportConfig exportConfig;
+    private final LdapPoolConfig poolConfig;
+    private final ObjectMapper objectMapper;
+    // Queued tasks are bounded by the exports' parallelism, so the queue needs no limit of its own
+    private final ThreadPoolExecutor searchExecutor;
+
+    @Autowired
+    public PartitionedExporter(LdapConnectionManager connectionManager, BackendRouter backendRouter,
+                               SchemaCache schemaCache, SearchPlanCache searchPlanCache,
+                               LdapExportConfig exportConfig, LdapPoolConfig poolConfig, ObjectMapper objectMapper) {
+        this.connectionManager = connectionManager;
+        this.backendRouter = backendRouter;
+        this.schemaCache = schemaCache;
+        this.searchPlanCache = searchPlanCache;
+        this.exportConfig = exportConfig;
+        this.poolConfig = poolConfig;
+        this.objectMapper = objectMapper;
+
+        int threads = Math.max(1, exportConfig.getMaxConcurrentSearches());
+        this.searchExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "ldap-export");
+                thread.setDaemon(true);
+                return thread;
+            });
+        searchExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        searchExecutor.shutdownNow();
+    }
+
+    /**
+     * Validates an export request and connects to the backend once, so that bad requests and
+     * unavailable backends are reported before any output is written.
+     */
+    public Export prepare(ExportRequest request, String username, String password) throws Exception {
+        if ((request.getSortKeys() != null && !request.getSortKeys().isEmpty()) || request.getVlv() != null) {
+            throw new RequestValidationException(ResultCode.PARAM_ERROR,
+                "Sorting and virtual list view are not supported for exports");
+        }
+        String format = request.getFormat().toLowerCase(Locale.ROOT);
+        if (!"ldif".equals(format) && !"ndjson".equals(format)) {
+            throw new RequestValidationException(ResultCode.PARAM_ERROR, "Unsupported export format: " + request.getFormat());
+        }
+
+        SearchPlan plan = searchPlanCache.getPlan(request.getFilter(), request.getScope(), null);
+        String uri = backendRouter.resolveReadUri(request.getUri(), request.getBackend(), username, password);
+
+        DirectorySchema schema = connectionManager.withConnection(uri, username, password,
+            connection -> schemaCache.get(uri, connection));
+        if (schema != null && schemaCache.isValidationEnabled() && !plan.isValidatedAgainst(schema)) {
+            schema.validateFilter(plan.getFilter());
+            plan.markValidated(schema);
+        }
+
+        int parallelism = request.getParallelism() != null ? request.getParallelism() : exportConfig.getParallelism();
+        parallelism = Math.max(1, Math.min(parallelism, exportConfig.getMaxParallelism()));
+
+        return new Export(uri, username, password, request.getBase(), plan, schema,
+            "ndjson".equals(format), request.isOrdered(), parallelism);
+    }
+
+    /**
+     * A prepared export. {@link #writeTo(OutputStream)} runs it; it can only be run once.
+     */
+    public final class Export {
+
+        private final String uri;
+        private final String username;
+        private final String password;
+        private final String baseDn;
+        private final SearchPlan plan;
+        private final DirectorySchema schema;
+        private final boolean ndjson;
+        private final boolean ordered;
+        private final int parallelism;
+
+        private final BlockingQueue<byte[]> output;
+        private final LinkedBlockingDeque<Partition> partitions = new LinkedBlockingDeque<>();
+        private final AtomicInteger pendingPartitions = new AtomicInteger();
+        private final AtomicInteger runningTasks = new AtomicInteger();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final AtomicLong entryCount = new AtomicLong();
+        private final AtomicLong byteCount = new AtomicLong();
+        private final AtomicInteger partitionCount = new AtomicInteger();
+
+        private Export(String uri, String username, String password, String baseDn, SearchPlan plan,
+                       DirectorySchema schema, boolean ndjson, boolean ordered, int parallelism) {
+            this.uri = uri;
+            this.username = username;
+            this.password = password;
+            this.baseDn = baseDn;
+            this.plan = plan;
+            this.schema = schema;
+            this.ndjson = ndjson;
+            this.ordered = ordered;
+            this.parallelism = parallelism;
+            this.output = new ArrayBlockingQueue<>(Math.max(1, exportConfig.getBufferEntries()));
+        }
+
+        public String getContentType() {
+            return ndjson ? "application/x-ndjson" : "application/ldif";
+        }
+
+        public boolean isNdjson() {
+            return ndjson;
+        }
+
+        public long getEntryCount() {
+            return entryCount.get();
+        }
+
+        public long getByteCount() {
+            return byteCount.get();
+        }
+
+        /**
+         * Stops the export; searches in progress are abandoned.
+         */
+        public void cancel() {
+            cancelled.set(true);
+        }
+
+        /**
+         * Runs the export, writing every entry to the stream. Returns when all partitions
+         * are done; throws if a search fails or the stream cannot be written.
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            writeTo(out, OperationHandle.unbounded());
+        }
+
+        /**
+         * Runs the export as {@link #writeTo(OutputStream)}, stopping it with an exception
+         * once the handle's deadline passes or it is cancelled.
+         */
+        public void writeTo(OutputStream out, OperationHandle handle) throws IOException {
+            long start = System.nanoTime();
+            pendingPartitions.set(1);
+            partitions.add(new Partition(baseDn, plan.getScope(), 0));
+            schedule();
+
+            try {
+                while (true) {
+                    try {
+                        handle.check();
+                    } catch (LDAPException e) {
+                        throw new IOException("Export stopped: " + e.getMessage(), e);
+                    }
+                    byte[] chunk = output.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (chunk != null) {
+                        out.write(chunk);
+                        byteCount.addAndGet(chunk.length);
+                        continue;
+                    }
+                    Throwable error = failure.get();
+                    if (error != null) {
+                        throw new IOException("Export failed: " + error.getMessage(), error);
+                    }
+                    if (pendingPartitions.get() == 0 && output.isEmpty()) {
+                        break;
+                    }
+                }
+                out.flush();
+                logger.debug("Exported {} entries from {} in {} partitions with {} workers in {} ms",
+                    entryCount.get(), uri, partitionCount.get(), parallelism,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Export interrupted");
+            } finally {
+                // Normal completion leaves nothing running; on failure searches in progress see this and abandon
+                cancelled.set(true);
+            }
+        }
+
+        /**
+         * Starts tasks for queued partitions while fewer than the export's parallelism are running.
+         */
+        private void schedule() {
+            while (!cancelled.get() && !partitions.isEmpty()) {
+                int running = runningTasks.get();
+                if (running >= parallelism) {
+                    return;
+                }
+                if (runningTasks.compareAndSet(running, running + 1)) {
+                    try {
+                        searchExecutor.execute(this::runPartition);
+                    } catch (RejectedExecutionException e) {
+                        runningTasks.decrementAndGet();
+                        failure.compareAndSet(null, e);
+                        cancelled.set(true);
+                    }
+                }
+            }
+        }
+
+        private void runPartition() {
+            try {
+                Partition partition = partitions.pollFirst();
+                if (partition == null || cancelled.get()) {
+                    return;
+                }
+
+                boolean done = true;
+                try {
+                    connectionManager.withConnection(uri, username, password, connection -> {
+                        process(partition, connection);
+                        return null;
+                    });
+                } catch (BackendUnavailableException e) {
+                    done = false;
+                    partitions.addFirst(partition);
+                    awaitRetry(e.getRetryAfterSeconds());
+                } catch (Throwable t) {
+                    if (!cancelled.get()) {
+                        failure.compareAndSet(null, t);
+                    }
+                    cancelled.set(true);
+                } finally {
+                    if (done) {
+                        pendingPartitions.decrementAndGet();
+                    }
+                }
+            } finally {
+                runningTasks.decrementAndGet();
+                schedule();
+            }
+        }
+
+        /**
+         * Waits out a busy backend's Retry-After, returning early if the export is cancelled.
+         */
+        private void awaitRetry(long retryAfterSeconds) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.max(1, retryAfterSeconds));
+            try {
+                while (!cancelled.get() && System.nanoTime() < deadline) {
+                    Thread.sleep(POLL_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void process(Partition partition, LDAPConnection connection) throws LDAPException {
+            if (partition.scope == SearchScope.SUB
+                    && partition.depth < exportConfig.getMaxSplitDepth()
+                    && partitions.size() < parallelism) {
+                List<String> children = listChildren(connection, partition.dn);
+                if (children != null) {
+                    List<Partition> split = new ArrayList<>();
+                    if (ordered) {
+                        search(connection, partition.dn, SearchScope.BASE);
+                    } else {
+                        split.add(new Partition(partition.dn, SearchScope.BASE, partition.depth));
+                    }
+                    for (String child : children) {
+                        split.add(new Partition(child, SearchScope.SUB, partition.depth + 1));
+                    }
+
+                    pendingPartitions.addAndGet(split.size());
+                    for (int i = split.size() - 1; i >= 0; i--) {
+                        partitions.addFirst(split.get(i));
+                    }
+                    return;
+                }
+            }
+
+            partitionCount.incrementAndGet();
+            search(connection, partition.dn, partition.scope);
+        }
+
+        /**
+         * Lists the DNs of an entry's children, or returns null if there are too many to split on.
+         */
+        private List<String> listChildren(LDAPConnection connection, String dn) throws LDAPException {
+            com.unboundid.ldap.sdk.SearchRequest request = new com.unboundid.ldap.sdk.SearchRequest(
+                dn, SearchScope.ONE, Filter.createPresenceFilter("objectClass"), "1.1");
+            request.setSizeLimit(exportConfig.getSplitFanoutLimit() + 1);
+
+            try {
+                SearchResult result = connection.search(request);
+                if (result.getEntryCount() > exportConfig.getSplitFanoutLimit()) {
+                    return null;
+                }
+                List<String> children = new ArrayList<>();
+                for (SearchResultEntry entry : result.getSearchEntries()) {
+                    children.add(entry.getDN());
+                }
+                return children;
+            } catch (LDAPSearchException e) {
+                if (e.getResultCode() == ResultCode.SIZE_LIMIT_EXCEEDED) {
+                    return null;
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Runs one search, streaming its entries into the output buffer. The search is
+         * abandoned if the export is cancelled or the server stops sending for longer than
+         * the response timeout.
+         */
+        private void search(LDAPConnection connection, String dn, SearchScope scope) throws LDAPException {
+            PartitionListener listener = new PartitionListener();
+            com.unboundid.ldap.sdk.SearchRequest request = new com.unboundid.ldap.sdk.SearchRequest(
+                listener, dn, scope, plan.getFilter());
+            // The overall duration is unbounded; inactivity is checked below instead
+            request.setResponseTimeoutMillis(0);
+
+            AsyncRequestID requestId = connection.asyncSearch(request);
+            while (true) {
+                try {
+                    LDAPResult result = requestId.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (result.getResultCode() == ResultCode.NO_SUCH_OBJECT && !dn.equals(baseDn)) {
+                        return; // removed since its parent was enumerated
+                    }
+                    if (result.getResultCode() != ResultCode.SUCCESS) {
+                        throw new LDAPException(result);
+                    }
+                    return;
+                } catch (TimeoutException e) {
+                    if (cancelled.get()) {
+                        connection.abandon(requestId);
+                        throw new CancellationException("Export cancelled");
+                    }
+                    long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - listener.lastActivity);
+                    if (poolConfig.getResponseTimeoutMillis() > 0 && idleMillis > poolConfig.getResponseTimeoutMillis()) {
+                        connection.abandon(requestId);
+                        throw new LDAPException(ResultCode.TIMEOUT, "No response from server for " + idleMillis + " ms");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    connection.abandon(requestId);
+                    throw new CancellationException("Export interrupted");
+                }
+            }
+        }
+
+        private byte[] serialize(SearchResultEntry entry) throws IOException {
+            if (ndjson) {
+                byte[] json = objectMapper.writeValueAsBytes(EntryFormatter.toLdapEntry(entry, schema));
+                byte[] line = new byte[json.length + 1];
+                System.arraycopy(json, 0, line, 0, json.length);
+                line[json.length] = '\n';
+                return line;
+            }
+            StringBuilder ldif = new StringBuilder();
+            EntryFormatter.appendLdif(ldif, entry, schema);
+            return ldif.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Receives entries on the connection's reader thread. Blocking here when the output
+         * buffer is full slows the server down rather than buffering without limit.
+         */
+        private final class PartitionListener implements AsyncSearchResultListener {
+
+            private static final long serialVersionUID = 1L;
+
+            private volatile long lastActivity = System.nanoTime();
+
+            @Override
+            public void searchEntryReturned(SearchResultEntry entry) {
+                lastActivity = System.nanoTime();
+                if (cancelled.get()) {
+                    return;
+                }
+                try {
+                    byte[] chunk = serialize(entry);
+                    while (!cancelled.get()) {
+                        lastActivity = System.nanoTime();
+                        if (output.offer(chunk, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                            entryCount.incrementAndGet();
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                    cancelled.set(true);
+                }
+            }
+
+            @Override
+            public void searchReferenceReturned(SearchResultReference reference) {
+                lastActivity = System.nanoTime();
+            }
+
+            @Override
+            public void searchResultReceived(AsyncRequestID requestID, SearchResult searchResult) {
+                lastActivity = System.nanoTime();
+            }
+        }
+    }
+
+    private static final class Partition {
+        private final String dn;
+        private final SearchScope scope;
+        private final int depth;
+
+        private Partition(String dn, SearchScope scope, int depth) {
+            this.dn = dn;
+            this.scope = scope;
+            this.depth = depth;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.ldapwebtool.service;
+
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.util.StaticUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ranged attribute retrieval, as done by Active Directory for attributes with more values
+ * than its MaxValRange (1500 by default): such attributes come back as e.g.
+ * {@code member;range=0-1499} holding the first values only, and the rest must be asked
+ * for as {@code member;range=1500-*} and so on, until a range ending in {@code *} arrives.
+ *
+ * Servers that do not range values never return a range option, so for them
+ * {@link #complete} costs a scan of the attribute names and nothing more.
+ */
+public final class RangedAttributes {
+
+    private static final String RANGE_OPTION = "range=";
+
+    private RangedAttributes() {}
+
+    /**
+     * Returns the entry with every ranged attribute replaced by the attribute with all its
+     * values, fetching the remaining ranges over the connection. Returns the entry itself if
+     * nothing was ranged.
+     *
+     * Must not be called from a search result listener of the same connection, as it sends
+     * further requests over it.
+     */
+    public static Entry complete(LDAPConnection connection, Entry entry) throws LDAPException {
+        List<Attribute> ranged = null;
+        for (Attribute attribute : entry.getAttributes()) {
+            if (rangeOption(attribute) != null) {
+                if (ranged == null) {
+                    ranged = new ArrayList<>();
+                }
+                ranged.add(attribute);
+            }
+        }
+        if (ranged == null) {
+            return entry;
+        }
+
+        Entry completed = entry.duplicate();
+        for (Attribute attribute : ranged) {
+            String name = attribute.getBaseName();
+            List<byte[]> values = new ArrayList<>();
+            Collections.addAll(values, attribute.getValueByteArrays());
+            Range range = Range.parse(rangeOption(attribute));
+            while (range != null && range.high >= 0) {
+                Attribute next = fetch(connection, entry.getDN(), name, range.high + 1, -1);
+                if (next == null) {
+                    break;
+                }
+                Collections.addAll(values, next.getValueByteArrays());
+                Range nextRange = Range.parse(rangeOption(next));
+                // Stop rather than loop if the server does not move forward
+                range = nextRange != null && nextRange.low > range.high ? nextRange : null;
+            }
+            completed.removeAttribute(attribute.getName());
+            completed.setAttribute(new Attribute(name, values.toArray(new byte[0][])));
+        }
+        return completed;
+    }
+
+    /**
+     * Reads values low to high (inclusive; -1 for the last) of an attribute as a range.
+     * Returns the attribute as returned, with its range option if the server ranged it, or
+     * null if the entry or the requested range has no values.
+     */
+    static Attribute fetch(LDAPConnection connection, String dn, String name, long low, long high) throws LDAPException {
+        String description = name + ";" + RANGE_OPTION + low + "-" + (high < 0 ? "*" : Long.toString(high));
+        Entry entry = connection.getEntry(dn, description);
+        if (entry == null) {
+            return null;
+        }
+        for (Attribute attribute : entry.getAttributes()) {
+            if (attribute.getBaseName().equalsIgnoreCase(name) && rangeOption(attribute) != null) {
+                return attribute;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the range option of the attribute (without "range="), or null if it has none.
+     */
+    static String rangeOption(Attribute attribute) {
+        if (!attribute.hasOptions()) {
+            return null;
+        }
+        for (String option : attribute.getOptions()) {
+            if (StaticUtils.toLowerCase(option).startsWith(RANGE_OPTION)) {
+                return option.substring(RANGE_OPTION.length());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A returned range: low-high, high -1 for "*" (the last values).
+     */
+    static final class Range {
+        final long low;
+        final long high;
+
+        private Range(long low, long high) {
+            this.low = low;
+            this.high = high;
+        }
+
+        /**
+         * Parses "low-high" or "low-*"; returns null if the option is malformed.
+         */
+        static Range parse(String option) {
+            if (option == null) {
+                return null;
+            }
+            int dash = option.indexOf('-');
+            if (dash <= 0) {
+                return null;
+            }
+            try {
+                long low = Long.parseLong(option.substring(0, dash));
+                String end = option.substring(dash + 1);
+                return new Range(low, end.equals("*") ? -1 : Long.parseLong(end));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
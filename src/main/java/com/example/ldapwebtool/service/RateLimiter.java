@@ -0,0 +1,158 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.RateLimitConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Enforces request and entry-volume limits per bind DN and request limits per client IP.
+ *
+ * Request budgets are checked before a request runs. Entry budgets are charged after a
+ * search has returned, since the number of entries is only known then; a DN that has
+ * overdrawn its entry budget is refused until the debt has been paid off.
+ *
+ * The bind DN is not verified before a request runs, so a DN's buckets are kept per password
+ * digest: a caller naming someone else's DN with the wrong password draws on buckets of its
+ * own, not on the real owner's, and is held back by its IP's budget.
+ */
+@Service
+public class RateLimiter {
+
+    private final RateLimitConfig config;
+    private final TokenBucketTable requestBuckets = new TokenBucketTable();
+    private final TokenBucketTable entryBuckets = new TokenBucketTable();
+    private final List<CompiledRule> rules = new ArrayList<>();
+
+    private final Counter dnRejections;
+    private final Counter ipRejections;
+
+    @Autowired
+    public RateLimiter(RateLimitConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        for (RateLimitConfig.Rule rule : config.getRules()) {
+            rules.add(new CompiledRule(Pattern.compile(rule.getDnPattern()), rule));
+        }
+
+        this.dnRejections = Counter.builder("ldap.ratelimit.rejected").tag("scope", "dn")
+            .description("Requests rejected by the per-DN rate limit").register(meterRegistry);
+        this.ipRejections = Counter.builder("ldap.ratelimit.rejected").tag("scope", "ip")
+            .description("Requests rejected by the per-IP rate limit").register(meterRegistry);
+        Gauge.builder("ldap.ratelimit.buckets", this, r -> r.requestBuckets.size() + r.entryBuckets.size())
+            .description("Token buckets currently held in memory").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Takes one request token for the client IP and, if known, the bind DN.
+     *
+     * @param bindDn the caller's bind DN, or null if the request is not authenticated
+     * @param password the password given with the bind DN
+     * @param clientIp the client's address
+     * @return 0 if the request may proceed, otherwise the number of seconds to wait
+     */
+    public long tryAcquire(String bindDn, String password, String clientIp) {
+        if (config.getIpRequestsPerSecond() > 0 && clientIp != null) {
+            long wait = requestBuckets.bucket("ip:" + clientIp, config.getIpRequestsPerSecond(), config.getIpRequestBurst())
+                .tryAcquire(1);
+            if (wait > 0) {
+                ipRejections.increment();
+                return toSeconds(wait);
+            }
+        }
+
+        if (bindDn == null) {
+            return 0;
+        }
+
+        RateLimitConfig.Limits limits = limitsFor(bindDn);
+        String key = callerKey(bindDn, password);
+
+        if (limits.getEntriesPerSecond() > 0) {
+            long debt = entryBuckets.bucket(key, limits.getEntriesPerSecond(), limits.getEntryBurst()).debtNanos();
+            if (debt > 0) {
+                dnRejections.increment();
+                return toSeconds(debt);
+            }
+        }
+
+        if (limits.getRequestsPerSecond() > 0) {
+            long wait = requestBuckets.bucket(key, limits.getRequestsPerSecond(), limits.getRequestBurst()).tryAcquire(1);
+            if (wait > 0) {
+                dnRejections.increment();
+                return toSeconds(wait);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Charges the entries returned to a bind DN against its entry budget.
+     */
+    public void chargeEntries(String bindDn, String password, long entries) {
+        if (bindDn == null || entries <= 0) {
+            return;
+        }
+
+        RateLimitConfig.Limits limits = limitsFor(bindDn);
+        if (limits.getEntriesPerSecond() > 0) {
+            String key = callerKey(bindDn, password);
+            entryBuckets.bucket(key, limits.getEntriesPerSecond(), limits.getEntryBurst()).charge(entries);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ldap.rate-limit.idle-eviction-millis:300000}")
+    public void evictIdleBuckets() {
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleEvictionMillis());
+        requestBuckets.evictIdle(idleNanos);
+        entryBuckets.evictIdle(idleNanos);
+    }
+
+    private RateLimitConfig.Limits limitsFor(String bindDn) {
+        for (CompiledRule rule : rules) {
+            if (rule.pattern.matcher(bindDn).matches()) {
+                return rule.limits;
+            }
+        }
+        return config.getDefaults();
+    }
+
+    private static String callerKey(String bindDn, String password) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+                (password != null ? password : "").getBytes(StandardCharsets.UTF_8));
+            return "dn:" + BackendRouter.normalizeCaller(bindDn) + '\0' + Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long toSeconds(long nanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(nanos + 999_999_999L));
+    }
+
+    private static final class CompiledRule {
+        private final Pattern pattern;
+        private final RateLimitConfig.Limits limits;
+
+        private CompiledRule(Pattern pattern, RateLimitConfig.Limits limits) {
+            this.pattern = pattern;
+            this.limits = limits;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.ldapwebtool.service;
+
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+
+/**
+ * Thrown when a request is rejected locally, before it is sent to the directory, because
+ * it does not match the backend's schema. Controllers answer it with 400.
+ *
+ * It is an {@link LDAPException} so that a connection checked out when it is raised goes
+ * back to the pool instead of being discarded.
+ */
+public class RequestValidationException extends LDAPException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RequestValidationException(ResultCode resultCode, String message) {
+        super(resultCode, message);
+    }
+}
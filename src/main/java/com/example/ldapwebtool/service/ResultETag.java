@@ -0,0 +1,128 @@
+package com.example.ldapwebtool.service;
+
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Strong entity tag of a search result, computed incrementally as the entries are read.
+ *
+ * Each entry contributes its normalized DN and its change stamp: entryCSN if the server
+ * returned one, otherwise modifyTimestamp, otherwise a hash of the entry's content. Two
+ * results with the same entries in the same order, none of which changed, get the same tag.
+ * The representation (JSON or LDIF) is part of the tag, as the bodies differ, and so is the
+ * normalized bind DN: access controls may show other callers other attributes of the same
+ * entries, so their bodies are not byte for byte the same.
+ *
+ * Not thread-safe; one instance per search.
+ */
+public final class ResultETag {
+
+    public static final String JSON = "json";
+    public static final String LDIF = "ldif";
+
+    /** Attributes requested in addition to the user attributes to compute the tag. */
+    static final String[] STAMP_ATTRIBUTES = {"entryCSN", "modifyTimestamp"};
+
+    private final MessageDigest digest;
+    private String value;
+
+    public ResultETag(String representation, String caller) {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        digest.update(representation.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(BackendRouter.normalizeCaller(caller).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Adds an entry, hashing its content if it has no change stamp.
+     */
+    void add(Entry entry) throws LDAPException {
+        if (!addStamp(entry)) {
+            digest.update(DigestService.entryHash(entry));
+            digest.update((byte) 0);
+        }
+    }
+
+    /**
+     * Adds an entry by its change stamp only. Returns false, adding nothing, if the entry
+     * has no change stamp.
+     */
+    boolean addStamp(Entry entry) throws LDAPException {
+        String stamp = changeStamp(entry);
+        if (stamp == null) {
+            return false;
+        }
+        digest.update(new DN(entry.getDN()).toNormalizedString().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(stamp.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        return true;
+    }
+
+    /**
+     * Returns true if the entry has a change stamp attribute.
+     */
+    static boolean hasStamp(Entry entry) {
+        return changeStamp(entry) != null;
+    }
+
+    private static String changeStamp(Entry entry) {
+        for (String attribute : STAMP_ATTRIBUTES) {
+            String stamp = entry.getAttributeValue(attribute);
+            if (stamp != null) {
+                return attribute + "=" + stamp;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finishes the tag once all entries have been added.
+     */
+    void complete() {
+        byte[] hash = digest.digest();
+        value = "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash) + "\"";
+    }
+
+    /**
+     * Returns the quoted tag, or null if the search did not produce one (e.g. a virtual
+     * list view window, whose body depends on more than the entries).
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Checks an If-None-Match header against a tag, using weak comparison as RFC 9110
+     * requires for If-None-Match. Returns false if either is null.
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapSchemaConfig;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.RootDSE;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.schema.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the schema and root DSE of each backend.
+ *
+ * A schema is read the first time a backend is used, on the connection that serves that
+ * request, and reused by every later request without further round trips. A background
+ * task re-reads the subschema entry's modifyTimestamp and reloads the schema when it has
+ * changed. Entries are dropped when the backend's connection pool is closed.
+ *
+ * Servers that do not publish a schema, or do not let the caller read it, are remembered
+ * as such so that requests to them are not slowed down by repeated attempts.
+ */
+@Service
+public class SchemaCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaCache.class);
+
+    private static final DirectorySchema NO_SCHEMA = new DirectorySchema(null, null, null);
+
+    private final LdapSchemaConfig schemaConfig;
+    private final LdapConnectionManager connectionManager;
+
+    /** Schema per endpoint key. Backends without a readable schema map to {@link #NO_SCHEMA}. */
+    private final Map<String, DirectorySchema> schemas = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SchemaCache(LdapSchemaConfig schemaConfig, LdapConnectionManager connectionManager) {
+        this.schemaConfig = schemaConfig;
+        this.connectionManager = connectionManager;
+    }
+
+    public boolean isValidationEnabled() {
+        return schemaConfig.isEnabled() && schemaConfig.isValidateRequests();
+    }
+
+    /**
+     * Returns the cached schema for a URI without contacting the server.
+     *
+     * @return the schema, or null if it has not been read or the server does not publish one
+     */
+    public DirectorySchema getCached(String uri) {
+        if (!schemaConfig.isEnabled()) {
+            return null;
+        }
+        DirectorySchema schema = schemas.get(LdapEndpoint.parse(uri).getKey());
+        return schema == NO_SCHEMA ? null : schema;
+    }
+
+    /**
+     * Returns the schema for a URI, reading it on the given connection if it is not cached yet.
+     *
+     * @return the schema, or null if the server does not publish one
+     */
+    public DirectorySchema get(String uri, LDAPConnection connection) {
+        if (!schemaConfig.isEnabled()) {
+            return null;
+        }
+        String key = LdapEndpoint.parse(uri).getKey();
+        DirectorySchema schema = schemas.get(key);
+        if (schema == null) {
+            // Concurrent first requests may both read the schema; the first one stored wins
+            DirectorySchema loaded = read(key, connection);
+            schema = schemas.putIfAbsent(key, loaded);
+            if (schema == null) {
+                schema = loaded;
+            }
+        }
+        return schema == NO_SCHEMA ? null : schema;
+    }
+
+    /**
+     * Reloads schemas whose subschema entry has changed, and forgets those of closed pools.
+     */
+    @Scheduled(fixedDelayString = "${ldap.schema.refresh-interval-millis:300000}")
+    public void refresh() {
+        Set<String> active = new HashSet<>();
+        for (LdapEndpoint endpoint : connectionManager.getActiveEndpoints()) {
+            active.add(endpoint.getKey());
+        }
+        schemas.keySet().retainAll(active);
+
+        for (Map.Entry<String, DirectorySchema> entry : schemas.entrySet()) {
+            DirectorySchema cached = entry.getValue();
+            if (cached == NO_SCHEMA || cached.getModifyTimestamp() == null) {
+                continue;
+            }
+
+            try {
+                // Schemas are normally readable anonymously; if not, the cached copy is kept
+                connectionManager.withConnection(entry.getKey(), "", "", connection -> {
+                    String subschemaDn = cached.getRootDSE().getSubschemaSubentryDN();
+                    SearchResultEntry subschema = connection.getEntry(subschemaDn, "modifyTimestamp");
+                    String modifyTimestamp = subschema != null ? subschema.getAttributeValue("modifyTimestamp") : null;
+                    if (!Objects.equals(modifyTimestamp, cached.getModifyTimestamp())) {
+                        logger.info("Schema of {} has changed; reloading", entry.getKey());
+                        schemas.put(entry.getKey(), read(entry.getKey(), connection));
+                    }
+                    return null;
+                });
+            } catch (Exception e) {
+                logger.debug("Unable to check schema of {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private static DirectorySchema read(String endpointKey, LDAPConnection connection) {
+        try {
+            RootDSE rootDSE = connection.getRootDSE();
+            String subschemaDn = rootDSE != null ? rootDSE.getSubschemaSubentryDN() : null;
+            if (subschemaDn == null) {
+                logger.debug("{} does not publish a schema", endpointKey);
+                return NO_SCHEMA;
+            }
+
+            SearchResultEntry subschema = connection.getEntry(subschemaDn,
+                "attributeTypes", "objectClasses", "ldapSyntaxes", "matchingRules", "modifyTimestamp");
+            if (subschema == null) {
+                logger.debug("Schema of {} is not readable", endpointKey);
+                return NO_SCHEMA;
+            }
+
+            Schema schema = new Schema(subschema);
+            if (schema.getAttributeTypes().isEmpty()) {
+                // A server that does not check its schema may publish an empty one
+                logger.debug("{} publishes an empty schema", endpointKey);
+                return NO_SCHEMA;
+            }
+
+            logger.debug("Loaded schema of {} from {}", endpointKey, subschemaDn);
+            return new DirectorySchema(schema, rootDSE, subschema.getAttributeValue("modifyTimestamp"));
+        } catch (LDAPException e) {
+            logger.debug("Unable to read schema of {}: {}", endpointKey, e.getMessage());
+            return NO_SCHEMA;
+        }
+    }
+}
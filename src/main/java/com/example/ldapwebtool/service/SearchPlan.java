@@ -0,0 +1,248 @@
+package com.example.ldapwebtool.service;
+
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchScope;
+import com.unboundid.ldap.sdk.controls.ServerSideSortRequestControl;
+import com.unboundid.ldap.sdk.controls.SortKey;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * The parsed, request-independent part of a search: scope, filter, sort keys and the
+ * server-side sort control built from them.
+ *
+ * Plans are immutable apart from remembering which schemas they have been validated
+ * against. Each plan has a shape key built from a value-free template of its filter, e.g.
+ * "sub|(&(objectclass=?)(uid=?))", which groups searches that differ only in their assertion
+ * values and letter case. Validation only looks at attribute names, so {@link SearchPlanCache}
+ * lets plans of the same shape share that record.
+ */
+public final class SearchPlan {
+
+    private final SearchScope scope;
+    private final Filter filter;
+    private final String filterTemplate;
+    private final List<SortKey> sortKeys;
+    private final ServerSideSortRequestControl sortControl;
+    private final String shapeKey;
+
+    /** Schemas this plan's shape was validated against; weak, so replaced schemas drop out. */
+    private final Set<DirectorySchema> validatedAgainst;
+
+    private SearchPlan(SearchScope scope, Filter filter, List<SortKey> sortKeys) {
+        this.scope = scope;
+        this.filter = filter;
+        this.filterTemplate = toTemplate(filter);
+        this.sortKeys = Collections.unmodifiableList(sortKeys);
+        this.sortControl = sortKeys.isEmpty() ? null
+            : new ServerSideSortRequestControl(true, sortKeys.toArray(new SortKey[0]));
+
+        StringBuilder key = new StringBuilder(scope.getName().toLowerCase(Locale.ROOT)).append('|').append(filterTemplate);
+        for (SortKey sortKey : sortKeys) {
+            key.append('|').append(sortKey.reverseOrder() ? "-" : "").append(sortKey.getAttributeName().toLowerCase(Locale.ROOT));
+        }
+        this.shapeKey = key.toString();
+        this.validatedAgainst = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    }
+
+    private SearchPlan(SearchPlan plan, Set<DirectorySchema> validatedAgainst) {
+        this.scope = plan.scope;
+        this.filter = plan.filter;
+        this.filterTemplate = plan.filterTemplate;
+        this.sortKeys = plan.sortKeys;
+        this.sortControl = plan.sortControl;
+        this.shapeKey = plan.shapeKey;
+        this.validatedAgainst = validatedAgainst;
+    }
+
+    /**
+     * Parses the filter, scope and sort keys of a search.
+     *
+     * @throws RequestValidationException if the filter or a sort key cannot be parsed
+     */
+    public static SearchPlan compile(String filter, String scope, List<String> sortKeys) throws RequestValidationException {
+        Filter parsed;
+        try {
+            parsed = Filter.create(filter);
+        } catch (LDAPException e) {
+            throw new RequestValidationException(ResultCode.FILTER_ERROR, "Invalid filter: " + e.getMessage());
+        }
+        return new SearchPlan(parseScope(scope), parsed, parseSortKeys(sortKeys));
+    }
+
+    public SearchScope getScope() {
+        return scope;
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * The filter with every assertion value replaced by "?", e.g. "(uid=?)".
+     */
+    public String getFilterTemplate() {
+        return filterTemplate;
+    }
+
+    public List<SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    /**
+     * The critical server-side sort control for the sort keys, or null if there are none.
+     */
+    public ServerSideSortRequestControl getSortControl() {
+        return sortControl;
+    }
+
+    /**
+     * Normalized key identifying the shape of this search, suitable for grouping in caches and metrics.
+     */
+    public String getShapeKey() {
+        return shapeKey;
+    }
+
+    public boolean isValidatedAgainst(DirectorySchema schema) {
+        return validatedAgainst.contains(schema);
+    }
+
+    public void markValidated(DirectorySchema schema) {
+        validatedAgainst.add(schema);
+    }
+
+    /**
+     * Returns this plan sharing the validation record of another plan of the same shape.
+     */
+    SearchPlan withValidationOf(SearchPlan shape) {
+        if (shape == this) {
+            return this;
+        }
+        if (!shape.shapeKey.equals(shapeKey)) {
+            throw new IllegalArgumentException("Plans differ in shape: " + shapeKey + ", " + shape.shapeKey);
+        }
+        return new SearchPlan(this, shape.validatedAgainst);
+    }
+
+    /**
+     * Renders a filter with its structure and attribute names but without its values.
+     */
+    static String toTemplate(Filter filter) {
+        StringBuilder builder = new StringBuilder();
+        appendTemplate(filter, builder);
+        return builder.toString();
+    }
+
+    private static void appendTemplate(Filter filter, StringBuilder builder) {
+        String attribute = filter.getAttributeName() != null ? filter.getAttributeName().toLowerCase(Locale.ROOT) : "";
+        builder.append('(');
+        switch (filter.getFilterType()) {
+            case Filter.FILTER_TYPE_AND:
+            case Filter.FILTER_TYPE_OR:
+                builder.append(filter.getFilterType() == Filter.FILTER_TYPE_AND ? '&' : '|');
+                for (Filter component : filter.getComponents()) {
+                    appendTemplate(component, builder);
+                }
+                break;
+            case Filter.FILTER_TYPE_NOT:
+                builder.append('!');
+                appendTemplate(filter.getNOTComponent(), builder);
+                break;
+            case Filter.FILTER_TYPE_PRESENCE:
+                builder.append(attribute).append("=*");
+                break;
+            case Filter.FILTER_TYPE_SUBSTRING:
+                builder.append(attribute).append('=');
+                if (filter.getSubInitialString() != null) {
+                    builder.append('?');
+                }
+                builder.append('*');
+                for (int i = 0; i < filter.getSubAnyStrings().length; i++) {
+                    builder.append("?*");
+                }
+                if (filter.getSubFinalString() != null) {
+                    builder.append('?');
+                }
+                break;
+            case Filter.FILTER_TYPE_GREATER_OR_EQUAL:
+                builder.append(attribute).append(">=?");
+                break;
+            case Filter.FILTER_TYPE_LESS_OR_EQUAL:
+                builder.append(attribute).append("<=?");
+                break;
+            case Filter.FILTER_TYPE_APPROXIMATE_MATCH:
+                builder.append(attribute).append("~=?");
+                break;
+            case Filter.FILTER_TYPE_EXTENSIBLE_MATCH:
+                builder.append(attribute);
+                if (filter.getDNAttributes()) {
+                    builder.append(":dn");
+                }
+                if (filter.getMatchingRuleID() != null) {
+                    builder.append(':').append(filter.getMatchingRuleID());
+                }
+                builder.append(":=?");
+                break;
+            case Filter.FILTER_TYPE_EQUALITY:
+            default:
+                builder.append(attribute).append("=?");
+                break;
+        }
+        builder.append(')');
+    }
+
+    private static SearchScope parseScope(String scope) {
+        switch (scope.toLowerCase()) {
+            case "base":
+                return SearchScope.BASE;
+            case "one":
+                return SearchScope.ONE;
+            case "sub":
+            default:
+                return SearchScope.SUB;
+        }
+    }
+
+    /**
+     * Parses sort keys of the form "attr", "-attr" (descending) or "attr:matchingRuleOID".
+     */
+    private static List<SortKey> parseSortKeys(List<String> sortKeys) throws RequestValidationException {
+        List<SortKey> keys = new ArrayList<>();
+        if (sortKeys == null) {
+            return keys;
+        }
+
+        for (String sortKey : sortKeys) {
+            if (!StringUtils.hasText(sortKey)) {
+                throw new RequestValidationException(ResultCode.PARAM_ERROR, "Sort keys must not be empty");
+            }
+
+            String key = sortKey.trim();
+            boolean reverseOrder = key.startsWith("-");
+            if (reverseOrder) {
+                key = key.substring(1);
+            }
+
+            String matchingRuleId = null;
+            int colonIndex = key.indexOf(':');
+            if (colonIndex >= 0) {
+                matchingRuleId = key.substring(colonIndex + 1);
+                key = key.substring(0, colonIndex);
+            }
+
+            if (key.isEmpty()) {
+                throw new RequestValidationException(ResultCode.PARAM_ERROR, "Invalid sort key: " + sortKey);
+            }
+            keys.add(new SortKey(key, matchingRuleId, reverseOrder));
+        }
+        return keys;
+    }
+}
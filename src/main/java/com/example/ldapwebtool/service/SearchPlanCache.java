@@ -0,0 +1,71 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapSearchConfig;
+import com.example.ldapwebtool.util.BoundedCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Bounded cache of compiled {@link SearchPlan}s in two levels. Plans are cached by the raw
+ * filter, scope and sort keys of a request, so a repeated search skips parsing and reuses its
+ * filter and sort control. Behind that, plans of the same value-free shape share one
+ * validation record, kept per shape key, so that searches differing only in their assertion
+ * values (every "(uid=?)" lookup) pass schema validation once per backend schema even when
+ * each misses the first level.
+ *
+ * Metrics: ldap.search.plan.cache.requests (tagged result=hit|miss), ldap.search.plan.cache.size
+ * and ldap.search.plan.cache.shapes.
+ */
+@Service
+public class SearchPlanCache {
+
+    private final BoundedCache<String, SearchPlan> plans;
+    private final BoundedCache<String, SearchPlan> shapes;
+
+    @Autowired
+    public SearchPlanCache(LdapSearchConfig searchConfig, MeterRegistry meterRegistry) {
+        this.plans = new BoundedCache<>(searchConfig.getPlanCacheSize());
+        this.shapes = new BoundedCache<>(searchConfig.getPlanCacheSize());
+
+        FunctionCounter.builder("ldap.search.plan.cache.requests", plans, BoundedCache::getHits)
+            .tag("result", "hit").description("Search plan cache lookups").register(meterRegistry);
+        FunctionCounter.builder("ldap.search.plan.cache.requests", plans, BoundedCache::getMisses)
+            .tag("result", "miss").description("Search plan cache lookups").register(meterRegistry);
+        Gauge.builder("ldap.search.plan.cache.size", plans, BoundedCache::size)
+            .description("Compiled search plans held in memory").register(meterRegistry);
+        Gauge.builder("ldap.search.plan.cache.shapes", shapes, BoundedCache::size)
+            .description("Search shapes whose validation is remembered").register(meterRegistry);
+    }
+
+    /**
+     * Returns the plan for a filter, scope and sort keys, compiling it on first use and
+     * sharing the validation record of earlier plans of the same shape.
+     *
+     * @throws RequestValidationException if the filter cannot be parsed
+     */
+    public SearchPlan getPlan(String filter, String scope, List<String> sortKeys) throws RequestValidationException {
+        String key = rawKey(filter, scope, sortKeys);
+        SearchPlan plan = plans.get(key);
+        if (plan == null) {
+            SearchPlan compiled = SearchPlan.compile(filter, scope, sortKeys);
+            plan = compiled.withValidationOf(shapes.computeIfAbsent(compiled.getShapeKey(), shapeKey -> compiled));
+            plans.put(key, plan);
+        }
+        return plan;
+    }
+
+    private static String rawKey(String filter, String scope, List<String> sortKeys) {
+        StringBuilder key = new StringBuilder(scope).append('\0').append(filter);
+        if (sortKeys != null) {
+            for (String sortKey : sortKeys) {
+                key.append('\0').append(sortKey);
+            }
+        }
+        return key.toString();
+    }
+}
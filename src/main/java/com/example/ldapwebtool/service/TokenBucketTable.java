@@ -0,0 +1,110 @@
+package com.example.ldapwebtool.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A concurrent table of token buckets keyed by string.
+ *
+ * Each bucket is a GCRA (generic cell rate algorithm) limiter whose whole state is one
+ * "theoretical arrival time" held in an {@link AtomicLong}, so taking tokens is a single
+ * CAS with no locks. Lookups go through {@link ConcurrentHashMap}, which does not lock on
+ * reads, and buckets that have refilled completely and stayed unused are evicted by
+ * {@link #evictIdle(long)}.
+ */
+public final class TokenBucketTable {
+
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final LongSupplier nanoClock;
+
+    public TokenBucketTable() {
+        this(System::nanoTime);
+    }
+
+    public TokenBucketTable(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Returns the bucket for a key, creating it with the given rate and burst if absent.
+     * The rate and burst of an existing bucket are kept until it is evicted.
+     */
+    public Bucket bucket(String key, double ratePerSecond, int burst) {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new Bucket(ratePerSecond, burst));
+        }
+        return bucket;
+    }
+
+    /**
+     * Removes buckets that have been full for at least the given time.
+     *
+     * @return the number of buckets removed
+     */
+    public int evictIdle(long idleNanos) {
+        long cutoff = nanoClock.getAsLong() - idleNanos;
+        int before = buckets.size();
+        buckets.values().removeIf(bucket -> bucket.theoreticalArrival.get() - cutoff < 0);
+        return before - buckets.size();
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    /**
+     * One rate limiter. Tokens refill continuously at the configured rate up to the burst size.
+     */
+    public final class Bucket {
+        private final long emissionIntervalNanos;
+        private final long toleranceNanos;
+        private final AtomicLong theoreticalArrival;
+
+        private Bucket(double ratePerSecond, int burst) {
+            this.emissionIntervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+            this.toleranceNanos = emissionIntervalNanos * Math.max(1, burst);
+            this.theoreticalArrival = new AtomicLong(nanoClock.getAsLong() - toleranceNanos);
+        }
+
+        /**
+         * Takes tokens if enough are available.
+         *
+         * @return 0 if the tokens were taken, otherwise the time in nanoseconds until they would be
+         */
+        public long tryAcquire(long tokens) {
+            long increment = emissionIntervalNanos * tokens;
+            while (true) {
+                long now = nanoClock.getAsLong();
+                long current = theoreticalArrival.get();
+                long next = Math.max(current, now) + increment;
+                long excess = next - now - toleranceNanos;
+                if (excess > 0) {
+                    return excess;
+                }
+                if (theoreticalArrival.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        /**
+         * Takes tokens unconditionally, going into debt if necessary. Used to account for
+         * work whose size is only known after it has been done.
+         */
+        public void charge(long tokens) {
+            long increment = emissionIntervalNanos * tokens;
+            long now = nanoClock.getAsLong();
+            theoreticalArrival.getAndUpdate(current -> Math.max(current, now) + increment);
+        }
+
+        /**
+         * @return 0 if the bucket is not in debt, otherwise the time in nanoseconds until it is paid off
+         */
+        public long debtNanos() {
+            long excess = theoreticalArrival.get() - nanoClock.getAsLong() - toleranceNanos;
+            return Math.max(0, excess);
+        }
+    }
+}
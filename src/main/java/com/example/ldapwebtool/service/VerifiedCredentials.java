@@ -0,0 +1,76 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.util.BoundedCache;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Checks callers' passwords for answers served from memory, such as cached entries, group
+ * expansions or local replicas, which would otherwise reach no directory that could reject them.
+ *
+ * A password is checked with a bind against the backend URI, and trusted for the TTL after
+ * that: only a SHA-256 digest of it is kept, per URI and normalized caller, and a different
+ * password or a failed bind leads to a new bind.
+ */
+final class VerifiedCredentials {
+
+    private static final int MAX_CALLERS = 10000;
+
+    private final LdapConnectionManager connectionManager;
+    private final long ttlMillis;
+    private final BoundedCache<String, Verified> verified = new BoundedCache<>(MAX_CALLERS);
+
+    VerifiedCredentials(LdapConnectionManager connectionManager, long ttlMillis) {
+        this.connectionManager = connectionManager;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns if the password passed a bind within the TTL, otherwise binds with it.
+     *
+     * @throws LDAPException if the bind fails, e.g. with INVALID_CREDENTIALS
+     */
+    void verify(String uri, String username, String password) throws LDAPException {
+        String key = uri + '\0' + BackendRouter.normalizeCaller(username);
+        byte[] digest = digest(password);
+        long now = System.currentTimeMillis();
+        Verified known = verified.get(key);
+        if (known != null && known.expiresAt > now && MessageDigest.isEqual(known.digest, digest)) {
+            return;
+        }
+        try {
+            connectionManager.withConnection(uri, username, password, connection -> null);
+        } catch (LDAPException | RuntimeException e) {
+            verified.remove(key);
+            throw e;
+        } catch (Exception e) {
+            throw new LDAPException(ResultCode.LOCAL_ERROR, e.getMessage(), e);
+        }
+        if (ttlMillis > 0) {
+            verified.put(key, new Verified(digest, now + ttlMillis));
+        }
+    }
+
+    private static byte[] digest(String password) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(
+                (password != null ? password : "").getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Verified {
+        private final byte[] digest;
+        private final long expiresAt;
+
+        private Verified(byte[] digest, long expiresAt) {
+            this.digest = digest;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
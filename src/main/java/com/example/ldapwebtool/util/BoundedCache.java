@@ -0,0 +1,115 @@
+package com.example.ldapwebtool.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * A thread-safe cache holding at most a fixed number of entries, evicting the least
+ * recently used entry when full. Hits and misses are counted for metrics.
+ *
+ * Values are computed outside the lock, so two threads missing on the same key may both
+ * compute it; the first value stored is kept and returned to both.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class BoundedCache<K, V> {
+
+    private final int maxSize;
+    private final LinkedHashMap<K, V> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public BoundedCache(int maxSize) {
+        this.maxSize = Math.max(1, maxSize);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > BoundedCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached value, or null if there is none.
+     */
+    public V get(K key) {
+        V value;
+        synchronized (entries) {
+            value = entries.get(key);
+        }
+        (value != null ? hits : misses).incrementAndGet();
+        return value;
+    }
+
+    /**
+     * Returns the cached value, computing and storing it if absent. A null result is not cached.
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+
+        V computed = mappingFunction.apply(key);
+        if (computed == null) {
+            return null;
+        }
+        synchronized (entries) {
+            V existing = entries.putIfAbsent(key, computed);
+            return existing != null ? existing : computed;
+        }
+    }
+
+    public void put(K key, V value) {
+        synchronized (entries) {
+            entries.put(key, value);
+        }
+    }
+
+    public V remove(K key) {
+        synchronized (entries) {
+            return entries.remove(key);
+        }
+    }
+
+    /**
+     * Removes every entry matching the predicate.
+     *
+     * @return the number of entries removed
+     */
+    public int removeIf(BiPredicate<? super K, ? super V> predicate) {
+        synchronized (entries) {
+            int before = entries.size();
+            entries.entrySet().removeIf(entry -> predicate.test(entry.getKey(), entry.getValue()));
+            return before - entries.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.ldapwebtool.util;
+
+import java.util.Locale;
+
+/**
+ * A single byte range requested with an HTTP Range header (RFC 9110, section 14).
+ *
+ * Only one range per request is supported. Headers asking for several ranges, or that
+ * cannot be parsed, are ignored and the whole resource is served, as the RFC allows.
+ */
+public final class ByteRange {
+
+    private static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+    private final long start;
+    private final long end;
+
+    private ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Parses a Range header for a resource of the given length.
+     *
+     * @param header the Range header value, may be null
+     * @param length length of the resource in bytes
+     * @return the range to serve, an unsatisfiable range (see {@link #isSatisfiable()}),
+     *         or null if the whole resource should be served
+     */
+    public static ByteRange parse(String header, long length) {
+        if (header == null) {
+            return null;
+        }
+        String value = header.trim();
+        if (!value.toLowerCase(Locale.ROOT).startsWith("bytes=")) {
+            return null;
+        }
+        String spec = value.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (spec.indexOf(',') >= 0 || dash < 0) {
+            return null;
+        }
+
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // Suffix range: the last n bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || length == 0) {
+                    return UNSATISFIABLE;
+                }
+                return new ByteRange(Math.max(0, length - suffix), length - 1);
+            }
+
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+            if (start < 0 || end < start) {
+                return null;
+            }
+            if (start >= length) {
+                return UNSATISFIABLE;
+            }
+            return new ByteRange(start, Math.min(end, length - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public boolean isSatisfiable() {
+        return this != UNSATISFIABLE;
+    }
+
+    /** First byte of the range. */
+    public long getStart() {
+        return start;
+    }
+
+    /** Last byte of the range, inclusive. */
+    public long getEnd() {
+        return end;
+    }
+
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    /**
+     * Content-Range header value for this range of a resource of the given length.
+     */
+    public String toContentRange(long length) {
+        return isSatisfiable() ? "bytes " + start + "-" + end + "/" + length : "bytes */" + length;
+    }
+}
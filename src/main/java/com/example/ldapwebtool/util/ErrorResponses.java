@@ -0,0 +1,81 @@
+package com.example.ldapwebtool.util;
+
+import com.example.ldapwebtool.model.ErrorResponse;
+import com.example.ldapwebtool.service.BackendUnavailableException;
+import com.example.ldapwebtool.service.OperationTimeoutException;
+import com.example.ldapwebtool.service.RequestValidationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Utility class for turning exceptions raised by the service layer into error responses.
+ * This keeps the status code and header mapping identical across controllers.
+ */
+public class ErrorResponses {
+
+    private ErrorResponses() {}
+
+    /**
+     * Builds the error response for a failed operation.
+     *
+     * A {@link BackendUnavailableException} becomes 503 with a Retry-After header, a
+     * {@link RequestValidationException} becomes 400, an {@link OperationTimeoutException}
+     * becomes 504, and anything else becomes 500 with the given error type and message prefix.
+     *
+     * @param error error type reported for unexpected failures, e.g. SEARCH_ERROR
+     * @param messagePrefix text placed before the exception message
+     * @param e the exception that was raised
+     * @return response entity with a JSON ErrorResponse body
+     */
+    public static ResponseEntity<ErrorResponse> fromException(String error, String messagePrefix, Exception e) {
+        if (e instanceof BackendUnavailableException) {
+            BackendUnavailableException unavailable = (BackendUnavailableException) e;
+            ErrorResponse body = new ErrorResponse(
+                "BACKEND_UNAVAILABLE",
+                unavailable.getMessage(),
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                e.getClass().getSimpleName()
+            );
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(unavailable.getRetryAfterSeconds()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+        }
+
+        if (e instanceof RequestValidationException) {
+            ErrorResponse body = new ErrorResponse(
+                "VALIDATION_ERROR",
+                messagePrefix + e.getMessage(),
+                HttpStatus.BAD_REQUEST.value(),
+                e.getClass().getSimpleName()
+            );
+            return ResponseEntity.badRequest()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+        }
+
+        if (e instanceof OperationTimeoutException) {
+            ErrorResponse body = new ErrorResponse(
+                "OPERATION_TIMEOUT",
+                messagePrefix + e.getMessage(),
+                HttpStatus.GATEWAY_TIMEOUT.value(),
+                e.getClass().getSimpleName()
+            );
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+        }
+
+        ErrorResponse body = new ErrorResponse(
+            error,
+            messagePrefix + e.getMessage(),
+            HttpStatus.INTERNAL_SERVER_ERROR.value(),
+            e.getClass().getSimpleName()
+        );
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(body);
+    }
+}
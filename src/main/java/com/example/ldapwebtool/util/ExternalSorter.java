@@ -0,0 +1,194 @@
+package com.example.ldapwebtool.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts keyed records with bounded memory, using an external merge sort.
+ *
+ * Records are buffered until their estimated size reaches the memory budget; the buffer is
+ * then sorted and written to a run file in the given directory. {@link #sorted()} merges the
+ * runs in a single pass. Records with equal keys are returned in no particular order.
+ *
+ * Not thread-safe. {@link #close()} deletes the run files.
+ */
+public class ExternalSorter implements Closeable {
+
+    /** Rough per-record overhead of the in-memory buffer, in bytes. */
+    private static final int RECORD_OVERHEAD = 64;
+
+    private final Path directory;
+    private final long memoryBudgetBytes;
+    private final Comparator<Record> order;
+    private final List<Record> buffer = new ArrayList<>();
+    private final List<Path> runs = new ArrayList<>();
+    private final List<Closeable> openReaders = new ArrayList<>();
+    private long bufferedBytes;
+    private long recordCount;
+
+    public ExternalSorter(Path directory, long memoryBudgetBytes, Comparator<String> keyOrder) {
+        this.directory = directory;
+        this.memoryBudgetBytes = Math.max(1, memoryBudgetBytes);
+        this.order = Comparator.comparing(Record::getKey, keyOrder);
+    }
+
+    public void add(String key, byte[] payload) throws IOException {
+        buffer.add(new Record(key, payload));
+        bufferedBytes += 2L * key.length() + payload.length + RECORD_OVERHEAD;
+        recordCount++;
+        if (bufferedBytes >= memoryBudgetBytes) {
+            spill();
+        }
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * Returns all records added so far in key order. Reading the iterator may throw
+     * {@link UncheckedIOException} if a run file cannot be read.
+     */
+    public Iterator<Record> sorted() throws IOException {
+        if (runs.isEmpty()) {
+            buffer.sort(order);
+            return buffer.iterator();
+        }
+        spill();
+
+        PriorityQueue<RunReader> heads = new PriorityQueue<>((a, b) -> order.compare(a.current, b.current));
+        for (Path run : runs) {
+            RunReader reader = new RunReader(run);
+            openReaders.add(reader);
+            if (reader.advance()) {
+                heads.add(reader);
+            }
+        }
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public Record next() {
+                RunReader reader = heads.poll();
+                if (reader == null) {
+                    throw new NoSuchElementException();
+                }
+                Record record = reader.current;
+                try {
+                    if (reader.advance()) {
+                        heads.add(reader);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return record;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Closeable reader : openReaders) {
+            reader.close();
+        }
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        openReaders.clear();
+        runs.clear();
+        buffer.clear();
+    }
+
+    private void spill() throws IOException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        buffer.sort(order);
+        Path run = Files.createTempFile(directory, "sort-", ".run");
+        runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 65536))) {
+            for (Record record : buffer) {
+                byte[] key = record.key.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeInt(record.payload.length);
+                out.write(record.payload);
+            }
+        }
+        buffer.clear();
+        bufferedBytes = 0;
+    }
+
+    /**
+     * A sort key with its opaque payload.
+     */
+    public static final class Record {
+        private final String key;
+        private final byte[] payload;
+
+        public Record(String key, byte[] payload) {
+            this.key = key;
+            this.payload = payload;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+
+    private static final class RunReader implements Closeable {
+        private final DataInputStream in;
+        private Record current;
+
+        private RunReader(Path run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 65536));
+        }
+
+        private boolean advance() throws IOException {
+            int keyLength;
+            try {
+                keyLength = in.readInt();
+            } catch (EOFException e) {
+                current = null;
+                in.close();
+                return false;
+            }
+            byte[] key = in.readNBytes(keyLength);
+            byte[] payload = in.readNBytes(in.readInt());
+            current = new Record(new String(key, StandardCharsets.UTF_8), payload);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
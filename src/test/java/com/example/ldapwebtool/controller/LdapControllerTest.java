@@ -1,22 +1,45 @@
 package com.example.ldapwebtool.controller;
 
+import com.example.ldapwebtool.config.AccessLogFilter;
+import com.example.ldapwebtool.config.RateLimitFilter;
 import com.example.ldapwebtool.model.SearchRequest;
 import com.example.ldapwebtool.model.SearchResponse;
+import com.example.ldapwebtool.service.BackendRouter;
 import com.example.ldapwebtool.service.LdapService;
+import com.example.ldapwebtool.service.MemoryBudget;
+import com.example.ldapwebtool.service.OperationHandle;
+import com.example.ldapwebtool.service.OperationTimeoutException;
+import com.example.ldapwebtool.service.RequestValidationException;
+import com.example.ldapwebtool.service.ResultETag;
+import com.example.ldapwebtool.service.SearchPlan;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
+import java.io.IOException;
 import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -37,6 +60,9 @@ public class LdapControllerTest {
     @Autowired
     private WebApplicationContext context;
 
+    @Autowired
+    private BackendRouter backendRouter;
+
     @Test
     public void testContextLoads() {
         // Simple test to verify the application context loads correctly
@@ -55,19 +81,215 @@ public class LdapControllerTest {
         SearchResponse response = new SearchResponse();
         response.setCount(1);
         
-        when(ldapService.search(any(SearchRequest.class), anyString(), anyString()))
+        when(ldapService.search(any(SearchRequest.class), anyString(), anyString(), any(), any(OperationHandle.class), any(MemoryBudget.Lease.class)))
             .thenReturn(response);
 
         String basicAuth = Base64.getEncoder().encodeToString("testuser:testpass".getBytes());
 
         // Act & Assert
-        mockMvc.perform(post("/api/search")
+        MvcResult result = mockMvc.perform(post("/api/search")
                 .header("Authorization", "Basic " + basicAuth)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void testSearchDescribesRequestOnDispatch() throws Exception {
+        mockMvc = MockMvcBuilders
+                .webAppContextSetup(context)
+                .apply(springSecurity())
+                .build();
+
+        // Arrange
+        SearchRequest request = new SearchRequest("ldap://localhost:389", "ou=users,dc=test,dc=com", "(objectClass=person)", "sub");
+        SearchResponse response = new SearchResponse();
+        response.setCount(3);
+        when(ldapService.search(any(SearchRequest.class), anyString(), anyString(), any(), any(OperationHandle.class), any(MemoryBudget.Lease.class)))
+            .thenReturn(response);
+
+        String basicAuth = Base64.getEncoder().encodeToString("testuser:testpass".getBytes());
+
+        // Act
+        MvcResult result = mockMvc.perform(post("/api/search")
+                .header("Authorization", "Basic " + basicAuth)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult dispatched = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // Assert - what the worker recorded reaches the request in the dispatch
+        assertEquals(3, dispatched.getRequest().getAttribute(RateLimitFilter.ENTRY_COUNT_ATTRIBUTE));
+        assertEquals("ldap://localhost:389", dispatched.getRequest().getAttribute(AccessLogFilter.BACKEND_ATTRIBUTE));
+        assertEquals("(objectclass=person)", dispatched.getRequest().getAttribute(AccessLogFilter.FILTER_ATTRIBUTE));
+    }
+
+    @Test
+    public void testEmptySortKeyReturns400() throws Exception {
+        mockMvc = MockMvcBuilders
+                .webAppContextSetup(context)
+                .apply(springSecurity())
+                .build();
+
+        // Arrange - the search compiles its plan as the service does
+        SearchRequest request = new SearchRequest("ldap://localhost:389", "ou=users,dc=test,dc=com", "(objectClass=person)", "sub");
+        request.setSortKeys(List.of(""));
+        when(ldapService.search(any(SearchRequest.class), anyString(), anyString(), any(), any(OperationHandle.class), any(MemoryBudget.Lease.class)))
+            .thenAnswer(invocation -> {
+                SearchRequest searched = invocation.getArgument(0);
+                SearchPlan.compile(searched.getFilter(), searched.getScope(), searched.getSortKeys());
+                return new SearchResponse();
+            });
+
+        String basicAuth = Base64.getEncoder().encodeToString("testuser:testpass".getBytes());
+
+        // Act & Assert
+        MvcResult result = mockMvc.perform(post("/api/search")
+                .header("Authorization", "Basic " + basicAuth)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("VALIDATION_ERROR"));
+    }
+
+    @Test
+    public void testVirtualListViewWithoutSortKeysReturns400() throws Exception {
+        mockMvc = MockMvcBuilders
+                .webAppContextSetup(context)
+                .apply(springSecurity())
+                .build();
+
+        // Arrange
+        SearchRequest request = new SearchRequest("ldap://localhost:389", "ou=users,dc=test,dc=com", "(objectClass=person)", "sub");
+        request.setVlv(new SearchRequest.VirtualListView(1, 0, 10));
+        when(ldapService.search(any(SearchRequest.class), anyString(), anyString(), any(), any(OperationHandle.class), any(MemoryBudget.Lease.class)))
+            .thenThrow(new RequestValidationException(ResultCode.PARAM_ERROR, "Virtual list view requires at least one sort key"));
+
+        String basicAuth = Base64.getEncoder().encodeToString("testuser:testpass".getBytes());
+
+        // Act & Assert
+        MvcResult result = mockMvc.perform(post("/api/search")
+                .header("Authorization", "Basic " + basicAuth)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("VALIDATION_ERROR"));
+    }
+
+    @Test
+    public void testMalformedUriReturns400() throws Exception {
+        mockMvc = MockMvcBuilders
+                .webAppContextSetup(context)
+                .apply(springSecurity())
+                .build();
+
+        // Arrange - the search resolves its URI as the service does
+        when(ldapService.search(any(SearchRequest.class), anyString(), anyString(), any(), any(OperationHandle.class), any(MemoryBudget.Lease.class)))
+            .thenAnswer(invocation -> {
+                SearchRequest searched = invocation.getArgument(0);
+                backendRouter.resolveReadUri(searched.getUri(), searched.getBackend(), invocation.getArgument(1), invocation.getArgument(2));
+                return new SearchResponse();
+            });
+
+        String basicAuth = Base64.getEncoder().encodeToString("testuser:testpass".getBytes());
+
+        // Act & Assert
+        MvcResult result = mockMvc.perform(get("/api/search")
+                .param("uri", "ldap://a:99999")
+                .param("base", "dc=test,dc=com")
+                .param("filter", "(objectClass=*)")
+                .header("Authorization", "Basic " + basicAuth))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("VALIDATION_ERROR"));
+    }
+
+    @Test
+    public void testSearchTimeoutReturns504() throws Exception {
+        mockMvc = MockMvcBuilders
+                .webAppContextSetup(context)
+                .apply(springSecurity())
+                .build();
+
+        // Arrange
+        SearchRequest request = new SearchRequest("ldap://localhost:389", "ou=users,dc=test,dc=com", "(objectClass=person)", "sub");
+        when(ldapService.search(any(SearchRequest.class), anyString(), anyString(), any(), any(OperationHandle.class), any(MemoryBudget.Lease.class)))
+            .thenThrow(new OperationTimeoutException(50));
+
+        String basicAuth = Base64.getEncoder().encodeToString("testuser:testpass".getBytes());
+
+        // Act & Assert
+        MvcResult result = mockMvc.perform(post("/api/search")
+                .param("timeoutMillis", "50")
+                .header("Authorization", "Basic " + basicAuth)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isGatewayTimeout())
+                .andExpect(jsonPath("$.error").value("OPERATION_TIMEOUT"));
+    }
+
+    @Test
+    public void testClientDisconnectCancelsSearch() throws Exception {
+        mockMvc = MockMvcBuilders
+                .webAppContextSetup(context)
+                .apply(springSecurity())
+                .build();
+
+        // Arrange: the search waits until its handle is cancelled
+        SearchRequest request = new SearchRequest("ldap://localhost:389", "ou=users,dc=test,dc=com", "(objectClass=person)", "sub");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        when(ldapService.search(any(SearchRequest.class), anyString(), anyString(), any(), any(OperationHandle.class), any(MemoryBudget.Lease.class)))
+            .thenAnswer(invocation -> {
+                OperationHandle handle = invocation.getArgument(4);
+                started.countDown();
+                long deadline = System.currentTimeMillis() + 5000;
+                while (!handle.isCancelled() && System.currentTimeMillis() < deadline) {
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        // The task is interrupted before the error callback runs; keep waiting for it
+                    }
+                }
+                if (handle.isCancelled()) {
+                    cancelled.countDown();
+                }
+                throw new LDAPException(ResultCode.CANCELED, "Operation cancelled");
+            });
+
+        String basicAuth = Base64.getEncoder().encodeToString("testuser:testpass".getBytes());
+
+        MvcResult result = mockMvc.perform(post("/api/search")
+                .header("Authorization", "Basic " + basicAuth)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Act: the container reports the broken connection
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onError(new AsyncEvent(asyncContext, new IOException("Broken pipe")));
+        }
+
+        // Assert
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS), "search should be cancelled on disconnect");
+    }
+
     @Test
     public void testUnauthorizedRequestReturns401() throws Exception {
         mockMvc = MockMvcBuilders
@@ -82,4 +304,32 @@ public class LdapControllerTest {
                 .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isUnauthorized());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSearchWithCurrentETagReturns304() throws Exception {
+        mockMvc = MockMvcBuilders
+                .webAppContextSetup(context)
+                .apply(springSecurity())
+                .build();
+
+        // Arrange
+        SearchRequest request = new SearchRequest("ldap://localhost:389", "ou=users,dc=test,dc=com", "(objectClass=person)", "sub");
+        when(ldapService.currentETag(any(SearchRequest.class), eq(ResultETag.JSON), anyString(), anyString(),
+                any(OperationHandle.class)))
+            .thenReturn("\"abc\"");
+
+        String basicAuth = Base64.getEncoder().encodeToString("testuser:testpass".getBytes());
+
+        // Act & Assert - the full search is never run
+        MvcResult result = mockMvc.perform(post("/api/search")
+                .header("Authorization", "Basic " + basicAuth)
+                .header("If-None-Match", "\"abc\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"abc\""));
+        verify(ldapService, never()).search(any(SearchRequest.class), anyString(), anyString(), any(), any(OperationHandle.class), any(MemoryBudget.Lease.class));
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapAccessLogConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.example.ldapwebtool.service.TestDirectory.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccessLogTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private LdapAccessLogConfig accessLogConfig;
+    private SimpleMeterRegistry meterRegistry;
+    private AccessLog accessLog;
+
+    @BeforeEach
+    public void setUp() {
+        accessLogConfig = new LdapAccessLogConfig();
+        accessLogConfig.setDirectory(directory.toString());
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        accessLog.shutdown();
+    }
+
+    private void publish(String caller, int status) {
+        AccessLog.Record record = accessLog.claim();
+        assertNotNull(record);
+        record.setTimestampMillis(1700000000000L);
+        record.setCaller(caller);
+        record.setMethod("POST");
+        record.setPath("/api/search");
+        record.setFilter("(uid=alpha)");
+        record.setStatus(status);
+        record.setEntries(1);
+        record.setTotalMillis(12);
+        record.publish();
+    }
+
+    private List<JsonNode> read(String fileName) throws IOException {
+        return Files.readAllLines(directory.resolve(fileName)).stream()
+            .map(line -> {
+                try {
+                    return objectMapper.readTree(line);
+                } catch (IOException e) {
+                    throw new AssertionError("Not JSON: " + line, e);
+                }
+            })
+            .toList();
+    }
+
+    @Test
+    public void testRecordsAreWrittenAsJsonLinesAndRotated() throws Exception {
+        // Arrange - every flush rotates, and one rotated file is kept
+        accessLogConfig.setMaxFileBytes(1);
+        accessLogConfig.setMaxFiles(1);
+        accessLog = new AccessLog(accessLogConfig, objectMapper, meterRegistry);
+        accessLog.start();
+
+        // Act
+        publish("cn=first", 200);
+        await(() -> Files.exists(directory.resolve("access.1.jsonl")));
+        publish("cn=second", 504);
+        await(() -> written() == 2 && !Files.exists(directory.resolve("access.jsonl")));
+
+        // Assert - the older file was dropped
+        List<JsonNode> records = read("access.1.jsonl");
+        assertEquals(1, records.size());
+        JsonNode record = records.get(0);
+        assertEquals("cn=second", record.get("caller").asText());
+        assertEquals("2023-11-14T22:13:20Z", record.get("time").asText());
+        assertEquals("(uid=alpha)", record.get("filter").asText());
+        assertEquals(504, record.get("status").asInt());
+        assertEquals(1, record.get("entries").asLong());
+        assertEquals(12, record.get("totalMillis").asLong());
+        assertFalse(record.has("backend"));
+        assertFalse(record.has("bytes"));
+        assertFalse(Files.exists(directory.resolve("access.2.jsonl")));
+    }
+
+    @Test
+    public void testFullBufferDropsRecordsWithoutBlocking() throws Exception {
+        // Arrange - the writer is not running yet
+        accessLogConfig.setBufferSize(4);
+        accessLog = new AccessLog(accessLogConfig, objectMapper, meterRegistry);
+        for (int i = 0; i < 4; i++) {
+            publish("cn=caller" + i, 200);
+        }
+
+        // Act
+        AccessLog.Record overflow = accessLog.claim();
+        accessLog.start();
+        await(() -> written() == 4);
+        accessLog.shutdown();
+
+        // Assert
+        assertNull(overflow);
+        assertEquals(1.0, meterRegistry.get("ldap.access.log.records").tag("outcome", "dropped").counter().count());
+        List<JsonNode> records = read("access.jsonl");
+        assertEquals(4, records.size());
+        assertEquals("cn=caller3", records.get(3).get("caller").asText());
+        assertEquals(0, accessLog.getBacklog());
+    }
+
+    private double written() {
+        return meterRegistry.get("ldap.access.log.records").tag("outcome", "written").counter().count();
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapBackendConfig;
+import com.example.ldapwebtool.config.LdapChangeStreamConfig;
+import com.example.ldapwebtool.config.LdapSchemaConfig;
+import com.example.ldapwebtool.config.LdapSearchConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import com.unboundid.ldap.sdk.ResultCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.ldapwebtool.service.TestDirectory.BIND_DN;
+import static com.example.ldapwebtool.service.TestDirectory.BIND_PASSWORD;
+import static com.example.ldapwebtool.service.TestDirectory.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChangeStreamServiceTest {
+
+    private static final String USERS = "ou=users,dc=example,dc=com";
+    private static final String ALPHA = "uid=alpha," + USERS;
+
+    private PersistentSearchEmulator emulator;
+    private TestDirectory directory;
+    private InMemoryDirectoryServer server;
+    private LdapConnectionManager connectionManager;
+    private LdapChangeStreamConfig streamConfig;
+    private ChangeStreamService changeStreamService;
+    private String uri;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        emulator = new PersistentSearchEmulator();
+        InMemoryDirectoryServerConfig config = TestDirectory.schemalessConfig();
+        config.addInMemoryOperationInterceptor(emulator);
+        directory = new TestDirectory(config);
+        server = directory.getServer();
+        emulator.attach(server);
+        server.add("dn: " + USERS, "objectClass: organizationalUnit", "ou: users");
+        server.add("dn: " + ALPHA, "objectClass: inetOrgPerson", "uid: alpha", "cn: Alpha", "sn: Alpha");
+
+        uri = directory.getUri();
+        connectionManager = directory.getConnectionManager();
+        streamConfig = new LdapChangeStreamConfig();
+        // The in-memory server does not list persistent search in its root DSE
+        streamConfig.setMechanism(ChangeStreamService.PERSISTENT_SEARCH);
+        changeStreamService = new ChangeStreamService(connectionManager,
+            new BackendRouter(new LdapBackendConfig(), connectionManager),
+            new SchemaCache(new LdapSchemaConfig(), connectionManager),
+            new SearchPlanCache(new LdapSearchConfig(), new SimpleMeterRegistry()),
+            streamConfig, new ObjectMapper(), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        changeStreamService.shutdown();
+        emulator.setRunning(false);
+        directory.close();
+    }
+
+    private ChangeStreamService.Subscription subscribe(String filter, ChangeStreamService.ChangeSink sink) throws Exception {
+        return changeStreamService.subscribe(uri, null, USERS, "sub", filter, List.of("cn"), null,
+            BIND_DN, BIND_PASSWORD, sink);
+    }
+
+    private void modifyAlpha(String cn) throws LDAPException {
+        // Through a connection, so that the emulator sees the change
+        try (LDAPConnection connection = server.getConnection()) {
+            connection.modify(ALPHA, new Modification(ModificationType.REPLACE, "cn", cn));
+        }
+    }
+
+    @Test
+    public void testIdenticalSubscriptionsShareOneSearch() throws Exception {
+        // Arrange
+        RecordingSink first = new RecordingSink();
+        RecordingSink second = new RecordingSink();
+        RecordingSink other = new RecordingSink();
+        ChangeStreamService.Subscription firstSubscription = subscribe("(objectClass=person)", first);
+        ChangeStreamService.Subscription secondSubscription = subscribe("(objectclass=PERSON)", second);
+        subscribe("(uid=alpha)", other);
+        await(() -> emulator.getSearchCount() == 2);
+
+        // Act
+        modifyAlpha("Renamed");
+
+        // Assert
+        assertEquals(2, changeStreamService.getSubscriptionCount());
+        for (RecordingSink sink : List.of(first, second, other)) {
+            String event = sink.events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event);
+            assertTrue(event.startsWith("change:"));
+            assertTrue(event.contains("\"changeType\":\"modify\""));
+            assertTrue(event.contains("\"cn\":\"Renamed\""));
+        }
+
+        firstSubscription.close();
+        assertEquals(2, changeStreamService.getSubscriptionCount());
+        secondSubscription.close();
+        assertEquals(1, changeStreamService.getSubscriptionCount());
+        assertTrue(first.closed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSlowClientGetsResyncWithoutHoldingUpOthers() throws Exception {
+        // Arrange - the slow client is stuck sending its first event while four more arrive
+        streamConfig.setBufferSize(2);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink slow = new RecordingSink(release);
+        RecordingSink fast = new RecordingSink();
+        subscribe("(objectClass=*)", slow);
+        subscribe("(objectClass=*)", fast);
+        await(() -> emulator.getSearchCount() == 1);
+
+        // Act
+        modifyAlpha("Change 1");
+        assertTrue(slow.sending.await(5, TimeUnit.SECONDS));
+        for (int i = 2; i <= 5; i++) {
+            modifyAlpha("Change " + i);
+        }
+        await(() -> fast.events.size() == 5);
+        release.countDown();
+        await(() -> slow.events.size() == 3);
+
+        // Assert - the events it could not buffer are replaced by a resync
+        assertTrue(fast.events.stream().allMatch(event -> event.startsWith("change:")));
+        List<String> received = List.copyOf(slow.events);
+        assertTrue(received.get(0).contains("Change 1"));
+        assertTrue(received.get(1).startsWith("resync:"));
+        assertTrue(received.get(2).contains("Change 5"));
+    }
+
+    @Test
+    public void testEndedSearchClosesStreamsWithResync() throws Exception {
+        // Arrange
+        RecordingSink sink = new RecordingSink();
+        subscribe("(objectClass=*)", sink);
+        await(() -> emulator.getSearchCount() == 1);
+
+        // Act - the server ends the persistent search
+        emulator.setRunning(false);
+
+        // Assert
+        assertTrue(sink.closed.await(5, TimeUnit.SECONDS));
+        assertTrue(sink.events.poll().startsWith("resync:"));
+        assertEquals(0, changeStreamService.getSubscriptionCount());
+    }
+
+    @Test
+    public void testSubscriptionLimitHoldsForConcurrentFirstSubscribers() throws Exception {
+        // Arrange
+        streamConfig.setMaxSubscriptions(2);
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        List<Future<ChangeStreamService.Subscription>> attempts = new ArrayList<>();
+
+        try {
+            // Act - eight distinct subscriptions race for two slots
+            for (int i = 0; i < 8; i++) {
+                String filter = "(uid=user" + i + ")";
+                attempts.add(clients.submit(() -> {
+                    go.await();
+                    return subscribe(filter, new RecordingSink());
+                }));
+            }
+            go.countDown();
+            int subscribed = 0;
+            int rejected = 0;
+            for (Future<ChangeStreamService.Subscription> attempt : attempts) {
+                try {
+                    attempt.get(10, TimeUnit.SECONDS);
+                    subscribed++;
+                } catch (ExecutionException e) {
+                    assertInstanceOf(BackendUnavailableException.class, e.getCause());
+                    rejected++;
+                }
+            }
+
+            // Assert
+            assertEquals(2, subscribed);
+            assertEquals(6, rejected);
+            assertEquals(2, changeStreamService.getSubscriptionCount());
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testUnknownMechanismIsRejectedAsBadRequest() {
+        // Arrange
+        streamConfig.setMechanism("polling");
+
+        // Act
+        RequestValidationException e = assertThrows(RequestValidationException.class,
+            () -> subscribe("(objectClass=*)", new RecordingSink()));
+
+        // Assert
+        assertEquals(ResultCode.PARAM_ERROR, e.getResultCode());
+        assertEquals(0, changeStreamService.getSubscriptionCount());
+    }
+
+    private static final class RecordingSink implements ChangeStreamService.ChangeSink {
+
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch release;
+
+        private RecordingSink() {
+            this(new CountDownLatch(0));
+        }
+
+        private RecordingSink(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(String event, long id, String data) throws IOException {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            events.add(event + ":" + data);
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.ldapwebtool.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 2, 60000);
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        BackendUnavailableException e = assertThrows(BackendUnavailableException.class, breaker::beforeRequest);
+        assertTrue(e.getRetryAfterSeconds() > 0);
+    }
+
+    @Test
+    public void testSuccessResetsFailureCount() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 2, 60000);
+
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenAllowsSingleProbe() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 10);
+        breaker.onFailure();
+        Thread.sleep(20);
+
+        assertTrue(breaker.beforeRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertThrows(BackendUnavailableException.class, breaker::beforeRequest);
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertFalse(breaker.beforeRequest());
+    }
+
+    @Test
+    public void testFailedProbeReopens() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 10);
+        breaker.onFailure();
+        Thread.sleep(20);
+
+        assertTrue(breaker.beforeRequest());
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapBackendConfig;
+import com.example.ldapwebtool.config.LdapCompareConfig;
+import com.example.ldapwebtool.config.LdapPoolConfig;
+import com.example.ldapwebtool.model.CompareBatchRequest;
+import com.example.ldapwebtool.model.CompareBatchResponse;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.sdk.ChangeType;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import com.unboundid.ldap.sdk.ResultCode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.ldapwebtool.service.TestDirectory.BIND_DN;
+import static com.example.ldapwebtool.service.TestDirectory.BIND_PASSWORD;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompareServiceTest {
+
+    private static final String GROUP_DN = "cn=admins,ou=groups,dc=example,dc=com";
+
+    private TestDirectory directory;
+    private InMemoryDirectoryServer server;
+    private LdapConnectionManager connectionManager;
+    private LdapCompareConfig compareConfig;
+    private CompareService compareService;
+    private String uri;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        LdapPoolConfig poolConfig = new LdapPoolConfig();
+        directory = new TestDirectory(TestDirectory.schemalessConfig(), poolConfig);
+        server = directory.getServer();
+        server.add("dn: ou=groups,dc=example,dc=com", "objectClass: organizationalUnit", "ou: groups");
+        server.add("dn: " + GROUP_DN, "objectClass: groupOfNames", "cn: admins",
+            "member: uid=user0,ou=users,dc=example,dc=com", "member: uid=user2,ou=users,dc=example,dc=com");
+
+        uri = directory.getUri();
+        connectionManager = directory.getConnectionManager();
+        compareConfig = new LdapCompareConfig();
+        compareService = new CompareService(connectionManager, new BackendRouter(new LdapBackendConfig(), connectionManager),
+            compareConfig, poolConfig);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        compareService.shutdown();
+        directory.close();
+    }
+
+    @Test
+    public void testBatchIsAnsweredInOrderAcrossConnections() throws Exception {
+        // Arrange - a small pipeline depth spreads the batch over several connections
+        compareConfig.setPipelineDepth(2);
+        List<CompareBatchRequest.Assertion> assertions = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            assertions.add(new CompareBatchRequest.Assertion(GROUP_DN, "member", "uid=user" + i + ",ou=users,dc=example,dc=com"));
+        }
+        assertions.add(new CompareBatchRequest.Assertion("cn=missing,ou=groups,dc=example,dc=com", "member", "uid=user0"));
+
+        // Act
+        CompareBatchResponse response = compareService.compare(request(assertions, false), BIND_DN, BIND_PASSWORD);
+
+        // Assert
+        assertEquals(List.of(true, false, true, false, false, false), response.getResults().subList(0, 6));
+        assertNull(response.getResults().get(6));
+        assertEquals(1, response.getErrors().size());
+        assertEquals(6, response.getErrors().get(0).getIndex());
+        assertEquals("no such object", response.getErrors().get(0).getResultCode());
+    }
+
+    @Test
+    public void testCachedAnswersAreDroppedOnChange() throws Exception {
+        // Arrange
+        CompareBatchRequest request = request(List.of(
+            new CompareBatchRequest.Assertion(GROUP_DN, "member", "uid=user1,ou=users,dc=example,dc=com")), true);
+        assertEquals(List.of(false), compareService.compare(request, BIND_DN, BIND_PASSWORD).getResults());
+        server.modify(GROUP_DN, new Modification(ModificationType.ADD, "member", "uid=user1,ou=users,dc=example,dc=com"));
+
+        // Act
+        List<Boolean> cached = compareService.compare(request, BIND_DN, BIND_PASSWORD).getResults();
+        compareService.onDirectoryChange(new DirectoryChangeEvent(this, uri, GROUP_DN, ChangeType.MODIFY));
+        List<Boolean> current = compareService.compare(request, BIND_DN, BIND_PASSWORD).getResults();
+
+        // Assert
+        assertEquals(List.of(false), cached);
+        assertEquals(List.of(true), current);
+    }
+
+    @Test
+    public void testCachedAnswersRequireTheRightPassword() throws Exception {
+        // Arrange
+        CompareBatchRequest request = request(List.of(
+            new CompareBatchRequest.Assertion(GROUP_DN, "member", "uid=user0,ou=users,dc=example,dc=com")), true);
+        compareService.compare(request, BIND_DN, BIND_PASSWORD);
+
+        // Act
+        LDAPException rejected = assertThrows(LDAPException.class,
+            () -> compareService.compare(request, BIND_DN, "wrong"));
+        List<Boolean> cached = compareService.compare(request, BIND_DN, BIND_PASSWORD).getResults();
+
+        // Assert
+        assertEquals(ResultCode.INVALID_CREDENTIALS, rejected.getResultCode());
+        assertEquals(List.of(true), cached);
+    }
+
+    @Test
+    public void testOversizedBatchIsRejected() {
+        // Arrange
+        compareConfig.setMaxAssertions(1);
+        CompareBatchRequest request = request(List.of(
+            new CompareBatchRequest.Assertion(GROUP_DN, "cn", "admins"),
+            new CompareBatchRequest.Assertion(GROUP_DN, "cn", "users")), false);
+
+        // Act & Assert
+        assertThrows(RequestValidationException.class, () -> compareService.compare(request, BIND_DN, BIND_PASSWORD));
+    }
+
+    private CompareBatchRequest request(List<CompareBatchRequest.Assertion> assertions, boolean cached) {
+        CompareBatchRequest request = new CompareBatchRequest();
+        request.setUri(uri);
+        request.setCached(cached);
+        request.setAssertions(assertions);
+        return request;
+    }
+}
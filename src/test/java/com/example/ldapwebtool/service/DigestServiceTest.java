@@ -0,0 +1,102 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapBackendConfig;
+import com.example.ldapwebtool.config.LdapDigestConfig;
+import com.example.ldapwebtool.config.LdapSchemaConfig;
+import com.example.ldapwebtool.config.LdapSearchConfig;
+import com.example.ldapwebtool.model.DigestNode;
+import com.example.ldapwebtool.model.DigestResponse;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.example.ldapwebtool.service.TestDirectory.BIND_DN;
+import static com.example.ldapwebtool.service.TestDirectory.BIND_PASSWORD;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DigestServiceTest {
+
+    private TestDirectory directory;
+    private InMemoryDirectoryServer server;
+    private LdapConnectionManager connectionManager;
+    private DigestService digestService;
+    private String uri;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = TestDirectory.schemaless();
+        server = directory.getServer();
+        for (String ou : new String[] {"a", "b"}) {
+            server.add("dn: ou=" + ou + ",dc=example,dc=com", "objectClass: organizationalUnit", "ou: " + ou);
+            for (int i = 0; i < 5; i++) {
+                server.add("dn: uid=user" + i + ",ou=" + ou + ",dc=example,dc=com", "objectClass: inetOrgPerson",
+                    "uid: user" + i, "cn: User " + i, "sn: User");
+            }
+        }
+
+        uri = directory.getUri();
+        connectionManager = directory.getConnectionManager();
+        digestService = new DigestService(connectionManager,
+            new BackendRouter(new LdapBackendConfig(), connectionManager),
+            new SchemaCache(new LdapSchemaConfig(), connectionManager),
+            new SearchPlanCache(new LdapSearchConfig(), new SimpleMeterRegistry()), new LdapDigestConfig());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        directory.close();
+    }
+
+    @Test
+    public void testChangeShowsUpOnlyInAffectedSubtrees() throws Exception {
+        // Arrange
+        DigestResponse before = digest(1);
+
+        // Act: change one entry under ou=b
+        server.modify("uid=user3,ou=b,dc=example,dc=com",
+            new Modification(ModificationType.REPLACE, "cn", "Changed"));
+        DigestResponse after = digest(1);
+
+        // Assert
+        DigestNode rootBefore = before.getRoot();
+        DigestNode rootAfter = after.getRoot();
+        assertEquals(13, rootAfter.getEntries());
+        assertEquals(2, rootAfter.getChildren().size());
+        assertNotEquals(rootBefore.getHash(), rootAfter.getHash());
+        assertEquals(rootBefore.getEntryHash(), rootAfter.getEntryHash());
+        assertEquals("ou=a,dc=example,dc=com", rootAfter.getChildren().get(0).getDn());
+        assertEquals(rootBefore.getChildren().get(0).getHash(), rootAfter.getChildren().get(0).getHash());
+        assertNotEquals(rootBefore.getChildren().get(1).getHash(), rootAfter.getChildren().get(1).getHash());
+        assertEquals(6, rootAfter.getChildren().get(1).getEntries());
+        assertNull(rootAfter.getChildren().get(1).getChildren());
+    }
+
+    @Test
+    public void testSubtreeHashIsSumOfDeeperBreakdown() throws Exception {
+        // Act
+        DigestNode shallow = digest(0).getRoot();
+        DigestNode deep = digest(2).getRoot();
+        DigestResponse selected = digestService.digest(uri, null, "ou=a,dc=example,dc=com", "(objectClass=*)",
+            List.of("cn"), 1, BIND_DN, BIND_PASSWORD);
+
+        // Assert: the hash does not depend on how far the tree is broken down
+        assertEquals(shallow.getHash(), deep.getHash());
+        assertNull(shallow.getChildren());
+        assertEquals(5, deep.getChildren().get(1).getChildren().size());
+        assertEquals(deep.getChildren().get(0).getHash(), digestService.digest(uri, null, "ou=a,dc=example,dc=com",
+            "(objectClass=*)", null, 0, BIND_DN, BIND_PASSWORD).getRoot().getHash());
+        assertEquals(List.of("cn"), selected.getAttributes());
+        assertEquals(6, selected.getRoot().getEntries());
+        assertThrows(RequestValidationException.class, () -> digest(99));
+    }
+
+    private DigestResponse digest(int depth) throws Exception {
+        return digestService.digest(uri, null, "dc=example,dc=com", "(objectClass=*)", null, depth, BIND_DN, BIND_PASSWORD);
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapBackendConfig;
+import com.example.ldapwebtool.config.LdapDiffConfig;
+import com.example.ldapwebtool.config.LdapImportConfig;
+import com.example.ldapwebtool.config.LdapMemoryConfig;
+import com.example.ldapwebtool.config.LdapSchemaConfig;
+import com.example.ldapwebtool.config.LdapSearchConfig;
+import com.example.ldapwebtool.model.DiffResult;
+import com.example.ldapwebtool.model.ImportJobStatus;
+import com.example.ldapwebtool.model.SearchRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.example.ldapwebtool.service.TestDirectory.BIND_DN;
+import static com.example.ldapwebtool.service.TestDirectory.BIND_PASSWORD;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DirectoryDiffServiceTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    private TestDirectory directory;
+    private InMemoryDirectoryServer server;
+    private LdapConnectionManager connectionManager;
+    private ImportJobService importJobService;
+    private DirectoryDiffService diffService;
+    private String uri;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = TestDirectory.schemaless();
+        server = directory.getServer();
+        server.add("dn: ou=users,dc=example,dc=com", "objectClass: organizationalUnit", "ou: users");
+        server.add(person("same", "Same"));
+        server.add(person("changed", "Old"));
+        server.add(person("gone", "Gone"));
+
+        uri = directory.getUri();
+        connectionManager = directory.getConnectionManager();
+        BackendRouter backendRouter = new BackendRouter(new LdapBackendConfig(), connectionManager);
+        SchemaCache schemaCache = new SchemaCache(new LdapSchemaConfig(), connectionManager);
+
+        LdapImportConfig importConfig = new LdapImportConfig();
+        importConfig.setSpoolDirectory(tempDirectory.resolve("imports").toString());
+        importJobService = new ImportJobService(connectionManager, backendRouter, schemaCache, importConfig, new ObjectMapper(),
+            event -> { });
+
+        LdapDiffConfig diffConfig = new LdapDiffConfig();
+        diffConfig.setTempDirectory(tempDirectory.resolve("diff").toString());
+        diffConfig.setSortMemoryBytes(512);
+        diffService = new DirectoryDiffService(connectionManager, backendRouter, schemaCache,
+            new SearchPlanCache(new LdapSearchConfig(), new SimpleMeterRegistry()), diffConfig, importJobService,
+            new MemoryBudget(new LdapMemoryConfig(), new SimpleMeterRegistry()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        importJobService.shutdown();
+        directory.close();
+    }
+
+    @Test
+    public void testProducesMinimalChangeRecordsInHierarchyOrder() throws Exception {
+        // Arrange: one entry unchanged, one changed, one missing, and a new ou with a child listed before it
+        String desired = String.join("\n",
+            personLdif("same", "Same"),
+            personLdif("changed", "New"),
+            "dn: uid=child,ou=groups,dc=example,dc=com\nobjectClass: inetOrgPerson\nuid: child\ncn: child\nsn: child\n",
+            "dn: ou=groups,dc=example,dc=com\nobjectClass: organizationalUnit\nou: groups\n",
+            "dn: uid=elsewhere,dc=other\nobjectClass: inetOrgPerson\nuid: elsewhere\ncn: x\nsn: x\n");
+        SearchRequest target = new SearchRequest(uri, "dc=example,dc=com", "(objectClass=*)", "sub");
+
+        // Act
+        String changes;
+        DirectoryDiffService.Diff diff = diffService.prepare(stream(desired), target, null, true, BIND_DN, BIND_PASSWORD);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        diff.writeTo(out);
+        changes = out.toString(StandardCharsets.UTF_8);
+
+        // Assert: the live domain and ou entries are missing from the desired state too, and are deleted last
+        assertEquals(2, diff.getAdds());
+        assertEquals(1, diff.getModifies());
+        assertEquals(3, diff.getDeletes());
+        assertEquals(1, diff.getUnchanged());
+
+        assertTrue(changes.indexOf("dn: ou=groups,dc=example,dc=com") < changes.indexOf("dn: uid=child,ou=groups"));
+        assertTrue(changes.contains("dn: uid=changed,ou=users,dc=example,dc=com\nchangetype: modify\n"));
+        assertTrue(changes.contains("delete: sn\nsn: Old\n-\nadd: sn\nsn: New\n"));
+        assertFalse(changes.contains("uid=same"));
+        assertFalse(changes.contains("uid=elsewhere"));
+        assertTrue(changes.indexOf("dn: uid=gone,ou=users,dc=example,dc=com\nchangetype: delete")
+            < changes.indexOf("dn: ou=users,dc=example,dc=com\nchangetype: delete"));
+        assertTrue(changes.endsWith("# adds: 2, modifies: 1, deletes: 3, unchanged: 1\n"));
+    }
+
+    @Test
+    public void testAppliesSelectedAttributeChangesAsImportJob() throws Exception {
+        // Arrange: only sn is compared, so the different cn and the missing entries are left alone
+        String desired = personLdif("changed", "New").replace("cn: changed", "cn: Other");
+        SearchRequest target = new SearchRequest(uri, "ou=users,dc=example,dc=com", "(objectClass=inetOrgPerson)", "one");
+
+        // Act
+        DirectoryDiffService.Diff diff = diffService.prepare(stream(desired), target, List.of("sn"), false, BIND_DN, BIND_PASSWORD);
+        DiffResult result = diffService.apply(diff, BIND_DN, BIND_PASSWORD);
+        ImportJobStatus status = awaitStopped(result.getImportJob().getId());
+
+        // Assert
+        assertEquals(0, result.getAdds());
+        assertEquals(1, result.getModifies());
+        assertEquals(0, result.getDeletes());
+        assertEquals(ImportJobService.STATE_COMPLETED, status.getState());
+        assertEquals(1, status.getApplied());
+        assertEquals("New", server.getEntry("uid=changed,ou=users,dc=example,dc=com").getAttributeValue("sn"));
+        assertEquals("changed", server.getEntry("uid=changed,ou=users,dc=example,dc=com").getAttributeValue("cn"));
+        assertNotNull(server.getEntry("uid=gone,ou=users,dc=example,dc=com"));
+    }
+
+    @Test
+    public void testDesiredEntryLeavingTheFilterIsModifiedNotDeleted() throws Exception {
+        // Arrange: the filter selects sn=Old; the desired state moves "changed" out of it
+        server.add(person("stale", "Old"));
+        String desired = String.join("\n",
+            personLdif("changed", "New"),
+            personLdif("same", "Same"),
+            personLdif("elsewhere", "Other"));
+        SearchRequest target = new SearchRequest(uri, "ou=users,dc=example,dc=com", "(sn=Old)", "one");
+
+        // Act
+        DirectoryDiffService.Diff diff = diffService.prepare(stream(desired), target, null, true, BIND_DN, BIND_PASSWORD);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        diff.writeTo(out);
+        String changes = out.toString(StandardCharsets.UTF_8);
+
+        // Assert: only the live entry missing from the desired state is deleted; entries outside the filter are not added
+        assertEquals(0, diff.getAdds());
+        assertEquals(1, diff.getModifies());
+        assertEquals(1, diff.getDeletes());
+        assertTrue(changes.contains("dn: uid=changed,ou=users,dc=example,dc=com\nchangetype: modify\n"));
+        assertTrue(changes.contains("dn: uid=stale,ou=users,dc=example,dc=com\nchangetype: delete"));
+        assertFalse(changes.contains("uid=same"));
+        assertFalse(changes.contains("uid=elsewhere"));
+    }
+
+    @Test
+    public void testValuesAreComparedWithSchemaMatchingRules() throws Exception {
+        // Arrange: a server with a schema, where cn ignores case and the changed sn does not match
+        InMemoryDirectoryServerConfig config = TestDirectory.config();
+        TestDirectory schemaDirectory = new TestDirectory(config);
+        InMemoryDirectoryServer schemaServer = schemaDirectory.getServer();
+        schemaServer.add("dn: ou=users,dc=example,dc=com", "objectClass: top", "objectClass: organizationalUnit", "ou: users");
+        schemaServer.add(person("same", "Same"));
+        schemaServer.add(person("changed", "Old"));
+        // The server fills in the superior object classes, so the desired state lists them too
+        String objectClasses = "objectClass: top\nobjectClass: person\nobjectClass: organizationalPerson\nobjectClass: inetOrgPerson";
+        String desired = String.join("\n",
+            personLdif("same", "Same").replace("cn: same", "cn: SAME").replace("objectClass: inetOrgPerson", objectClasses),
+            personLdif("changed", "New").replace("objectClass: inetOrgPerson", objectClasses));
+        SearchRequest target = new SearchRequest(schemaDirectory.getUri(),
+            "ou=users,dc=example,dc=com", "(objectClass=inetOrgPerson)", "one");
+
+        try {
+            // Act
+            DirectoryDiffService.Diff diff = diffService.prepare(stream(desired), target, null, true, BIND_DN, BIND_PASSWORD);
+            diff.writeTo(new ByteArrayOutputStream());
+
+            // Assert
+            assertEquals(1, diff.getUnchanged());
+            assertEquals(1, diff.getModifies());
+        } finally {
+            schemaDirectory.close();
+        }
+    }
+
+    private static String[] person(String uid, String sn) {
+        return personLdif(uid, sn).split("\n");
+    }
+
+    private static String personLdif(String uid, String sn) {
+        return "dn: uid=" + uid + ",ou=users,dc=example,dc=com\nobjectClass: inetOrgPerson\nuid: " + uid
+            + "\ncn: " + uid + "\nsn: " + sn + "\n";
+    }
+
+    private static ByteArrayInputStream stream(String ldif) {
+        return new ByteArrayInputStream(ldif.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ImportJobStatus awaitStopped(String id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        ImportJobStatus status = importJobService.getStatus(id, BIND_DN);
+        while (ImportJobService.STATE_RUNNING.equals(status.getState()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            status = importJobService.getStatus(id, BIND_DN);
+        }
+        return status;
+    }
+}
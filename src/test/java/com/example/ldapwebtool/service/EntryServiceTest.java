@@ -0,0 +1,159 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapBackendConfig;
+import com.example.ldapwebtool.config.LdapEntryCacheConfig;
+import com.example.ldapwebtool.config.LdapLocalReplicaConfig;
+import com.example.ldapwebtool.config.LdapMemoryConfig;
+import com.example.ldapwebtool.config.LdapSchemaConfig;
+import com.example.ldapwebtool.config.LdapSearchConfig;
+import com.example.ldapwebtool.model.AttributeValuesResponse;
+import com.example.ldapwebtool.model.ModifyRequest;
+import com.example.ldapwebtool.model.SearchResponse;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import com.unboundid.ldap.sdk.ResultCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.example.ldapwebtool.service.TestDirectory.BIND_DN;
+import static com.example.ldapwebtool.service.TestDirectory.BIND_PASSWORD;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EntryServiceTest {
+
+    private static final String USER_DN = "uid=jdoe,ou=users,dc=example,dc=com";
+
+    private TestDirectory directory;
+    private InMemoryDirectoryServer server;
+    private LdapConnectionManager connectionManager;
+    private LdapEntryCacheConfig cacheConfig;
+    private SimpleMeterRegistry meterRegistry;
+    private EntryService entryService;
+    private LdapService ldapService;
+    private String uri;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = TestDirectory.schemaless();
+        server = directory.getServer();
+        server.add("dn: ou=users,dc=example,dc=com", "objectClass: organizationalUnit", "ou: users");
+        server.add("dn: " + USER_DN, "objectClass: inetOrgPerson", "uid: jdoe", "cn: John Doe", "sn: Doe");
+
+        uri = directory.getUri();
+        connectionManager = directory.getConnectionManager();
+        BackendRouter backendRouter = new BackendRouter(new LdapBackendConfig(), connectionManager);
+        SchemaCache schemaCache = new SchemaCache(new LdapSchemaConfig(), connectionManager);
+        cacheConfig = new LdapEntryCacheConfig();
+        meterRegistry = new SimpleMeterRegistry();
+        entryService = new EntryService(connectionManager, backendRouter, schemaCache, cacheConfig,
+            new LdapSearchConfig(), meterRegistry);
+        ldapService = new LdapService(connectionManager, backendRouter, schemaCache,
+            new SearchPlanCache(new LdapSearchConfig(), new SimpleMeterRegistry()),
+            event -> entryService.onDirectoryChange((DirectoryChangeEvent) event),
+            new LocalReplicaService(new LdapLocalReplicaConfig(), connectionManager, backendRouter, schemaCache,
+                new SimpleMeterRegistry()),
+            new MemoryBudget(new LdapMemoryConfig(), new SimpleMeterRegistry()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        entryService.shutdown();
+        directory.close();
+    }
+
+    @Test
+    public void testCachedEntryIsRevalidatedByChangeStamp() throws Exception {
+        // Arrange
+        SearchResponse.LdapEntry first = entryService.getEntry(uri, null, USER_DN, BIND_DN, BIND_PASSWORD);
+
+        // Act
+        SearchResponse.LdapEntry unchanged = entryService.getEntry(uri, null, "UID=jdoe, ou=users,dc=example,dc=com",
+            BIND_DN, BIND_PASSWORD);
+        Thread.sleep(5);
+        server.modify(USER_DN, new Modification(ModificationType.REPLACE, "cn", "Changed Elsewhere"));
+        SearchResponse.LdapEntry changed = entryService.getEntry(uri, null, USER_DN, BIND_DN, BIND_PASSWORD);
+
+        // Assert - the stamp used for revalidation is not part of the entry
+        assertSame(first, unchanged);
+        assertEquals("Changed Elsewhere", changed.getAttributes().get("cn"));
+        assertFalse(first.getAttributes().containsKey("modifyTimestamp"));
+        assertEquals(1.0, meterRegistry.get("ldap.entry.cache.requests").tag("result", "revalidated").counter().count());
+        assertEquals(2.0, meterRegistry.get("ldap.entry.cache.requests").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    public void testModifyThroughServiceInvalidatesFreshEntry() throws Exception {
+        // Arrange - fresh entries are served without contacting the directory
+        cacheConfig.setRevalidateAfterMillis(60000);
+        entryService.getEntry(uri, null, USER_DN, BIND_DN, BIND_PASSWORD);
+        server.modify(USER_DN, new Modification(ModificationType.REPLACE, "sn", "Elsewhere"));
+
+        // Act
+        SearchResponse.LdapEntry stale = entryService.getEntry(uri, null, USER_DN, BIND_DN, BIND_PASSWORD);
+        ldapService.modify(new ModifyRequest(uri, USER_DN,
+            List.of(new ModifyRequest.Modification("replace", "cn", List.of("Changed Here")))), BIND_DN, BIND_PASSWORD);
+        SearchResponse.LdapEntry current = entryService.getEntry(uri, null, USER_DN, BIND_DN, BIND_PASSWORD);
+
+        // Assert
+        assertEquals("Doe", stale.getAttributes().get("sn"));
+        assertEquals("Changed Here", current.getAttributes().get("cn"));
+        assertEquals("Elsewhere", current.getAttributes().get("sn"));
+    }
+
+    @Test
+    public void testFreshEntryIsNotServedWithWrongPassword() throws Exception {
+        // Arrange - fresh and stale entries are served without reading them again
+        cacheConfig.setRevalidateAfterMillis(60000);
+        cacheConfig.setStaleWhileRevalidateMillis(60000);
+        entryService.getEntry(uri, null, USER_DN, BIND_DN, BIND_PASSWORD);
+
+        // Act
+        LDAPException rejected = assertThrows(LDAPException.class,
+            () -> entryService.getEntry(uri, null, USER_DN, BIND_DN, "wrong"));
+        SearchResponse.LdapEntry served = entryService.getEntry(uri, null, USER_DN, BIND_DN, BIND_PASSWORD);
+
+        // Assert
+        assertEquals(ResultCode.INVALID_CREDENTIALS, rejected.getResultCode());
+        assertEquals("Doe", served.getAttributes().get("sn"));
+        assertEquals(1.0, meterRegistry.get("ldap.entry.cache.requests").tag("result", "fresh").counter().count());
+    }
+
+    @Test
+    public void testMissingAndDeletedEntries() throws Exception {
+        assertNull(entryService.getEntry(uri, null, "uid=nobody,ou=users,dc=example,dc=com", BIND_DN, BIND_PASSWORD));
+        assertNotNull(entryService.getEntry(uri, null, USER_DN, BIND_DN, BIND_PASSWORD));
+
+        server.delete(USER_DN);
+
+        assertNull(entryService.getEntry(uri, null, USER_DN, BIND_DN, BIND_PASSWORD));
+        assertThrows(RequestValidationException.class,
+            () -> entryService.getEntry(uri, null, "not a dn", BIND_DN, BIND_PASSWORD));
+    }
+
+    @Test
+    public void testValuesArePagedFromWholeAttribute() throws Exception {
+        // Arrange
+        server.modify(USER_DN, new Modification(ModificationType.ADD, "mail",
+            "a@example.com", "b@example.com", "c@example.com", "d@example.com", "e@example.com"));
+
+        // Act
+        AttributeValuesResponse first = entryService.getValues(uri, null, USER_DN, "mail", 0, 2, BIND_DN, BIND_PASSWORD);
+        AttributeValuesResponse last = entryService.getValues(uri, null, USER_DN, "mail", 4, 2, BIND_DN, BIND_PASSWORD);
+
+        // Assert
+        assertEquals(List.of("a@example.com", "b@example.com"), first.getValues());
+        assertEquals(2L, first.getNext());
+        assertEquals(List.of("e@example.com"), last.getValues());
+        assertNull(last.getNext());
+        assertNull(entryService.getValues(uri, null, "uid=nobody,ou=users,dc=example,dc=com", "mail", 0, 2,
+            BIND_DN, BIND_PASSWORD));
+        assertThrows(RequestValidationException.class,
+            () -> entryService.getValues(uri, null, USER_DN, "mail;range=0-1", 0, 2, BIND_DN, BIND_PASSWORD));
+    }
+}
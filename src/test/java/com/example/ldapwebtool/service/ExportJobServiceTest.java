@@ -0,0 +1,123 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapBackendConfig;
+import com.example.ldapwebtool.config.LdapExportConfig;
+import com.example.ldapwebtool.config.LdapPoolConfig;
+import com.example.ldapwebtool.config.LdapSchemaConfig;
+import com.example.ldapwebtool.config.LdapSearchConfig;
+import com.example.ldapwebtool.model.ExportJobStatus;
+import com.example.ldapwebtool.model.ExportRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldif.LDIFReader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import static com.example.ldapwebtool.service.TestDirectory.BIND_DN;
+import static com.example.ldapwebtool.service.TestDirectory.BIND_PASSWORD;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExportJobServiceTest {
+
+    @TempDir
+    Path spoolDirectory;
+
+    private TestDirectory directory;
+    private InMemoryDirectoryServer server;
+    private LdapConnectionManager connectionManager;
+    private LdapExportConfig exportConfig;
+    private ExportJobService exportJobService;
+    private String uri;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = TestDirectory.schemaless();
+        server = directory.getServer();
+        server.add("dn: ou=users,dc=example,dc=com", "objectClass: organizationalUnit", "ou: users");
+        for (int i = 0; i < 50; i++) {
+            server.add("dn: uid=user" + i + ",ou=users,dc=example,dc=com",
+                "objectClass: inetOrgPerson", "uid: user" + i, "cn: User " + i, "sn: User");
+        }
+
+        uri = directory.getUri();
+        connectionManager = directory.getConnectionManager();
+        exportConfig = new LdapExportConfig();
+        exportConfig.setJobSpoolDirectory(spoolDirectory.toString());
+        exportConfig.setMaxConcurrentJobs(1);
+        PartitionedExporter exporter = new PartitionedExporter(connectionManager,
+            new BackendRouter(new LdapBackendConfig(), connectionManager),
+            new SchemaCache(new LdapSchemaConfig(), connectionManager),
+            new SearchPlanCache(new LdapSearchConfig(), new SimpleMeterRegistry()),
+            exportConfig, new LdapPoolConfig(), new ObjectMapper());
+        exportJobService = new ExportJobService(exporter, exportConfig);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        exportJobService.shutdown();
+        directory.close();
+    }
+
+    @Test
+    public void testJobSpoolsCompressedExport() throws Exception {
+        // Arrange
+        ExportRequest request = new ExportRequest(uri, "dc=example,dc=com", "(objectClass=*)", "sub");
+
+        // Act
+        ExportJobStatus created = exportJobService.create(request, BIND_DN, BIND_PASSWORD);
+        ExportJobStatus status = awaitFinished(created.getId());
+
+        // Assert
+        assertEquals(ExportJobService.STATE_COMPLETED, status.getState());
+        assertEquals(52, status.getEntries());
+        assertTrue(status.getSpoolBytes() > 0);
+        assertEquals("/api/exports/" + created.getId() + "/download", status.getDownloadUrl());
+        assertNotNull(status.getExpiresAt());
+
+        Path file = exportJobService.getSpoolFile(created.getId(), BIND_DN);
+        int entries = 0;
+        try (LDIFReader reader = new LDIFReader(new GZIPInputStream(Files.newInputStream(file)))) {
+            while (reader.readEntry() != null) {
+                entries++;
+            }
+        }
+        assertEquals(52, entries);
+
+        // Jobs are private to the bind DN that created them
+        assertNull(exportJobService.getStatus(created.getId(), "cn=someone else"));
+    }
+
+    @Test
+    public void testExpiredJobIsRemovedWithItsFile() throws Exception {
+        // Arrange
+        ExportRequest request = new ExportRequest(uri, "dc=example,dc=com", "(objectClass=*)", "sub");
+        ExportJobStatus created = exportJobService.create(request, BIND_DN, BIND_PASSWORD);
+        awaitFinished(created.getId());
+        Path file = exportJobService.getSpoolFile(created.getId(), BIND_DN);
+        exportConfig.setJobTtlMillis(-1);
+
+        // Act
+        exportJobService.removeExpired();
+
+        // Assert
+        assertNull(exportJobService.getStatus(created.getId(), BIND_DN));
+        assertFalse(Files.exists(file));
+    }
+
+    private ExportJobStatus awaitFinished(String id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        ExportJobStatus status = exportJobService.getStatus(id, BIND_DN);
+        while (ExportJobService.STATE_RUNNING.equals(status.getState()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            status = exportJobService.getStatus(id, BIND_DN);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapBackendConfig;
+import com.example.ldapwebtool.config.LdapGroupConfig;
+import com.example.ldapwebtool.config.LdapSchemaConfig;
+import com.example.ldapwebtool.model.GroupExpansionResponse;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.sdk.ChangeType;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.example.ldapwebtool.service.TestDirectory.BIND_DN;
+import static com.example.ldapwebtool.service.TestDirectory.BIND_PASSWORD;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GroupServiceTest {
+
+    private static final String GROUPS = "ou=groups,dc=example,dc=com";
+    private static final String G1 = "cn=g1," + GROUPS;
+    private static final String G2 = "cn=g2," + GROUPS;
+    private static final String G3 = "cn=g3," + GROUPS;
+
+    private TestDirectory directory;
+    private InMemoryDirectoryServer server;
+    private LdapConnectionManager connectionManager;
+    private GroupService groupService;
+    private String uri;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = TestDirectory.schemaless();
+        server = directory.getServer();
+        // g1 -> g2 -> g3 -> g1: a cycle, each group with one user of its own
+        server.add("dn: " + GROUPS, "objectClass: organizationalUnit", "ou: groups");
+        server.add("dn: " + G1, "objectClass: groupOfNames", "cn: g1", "member: " + user(1), "member: " + G2);
+        server.add("dn: " + G2, "objectClass: groupOfNames", "cn: g2", "member: " + user(2), "member: " + G3);
+        server.add("dn: " + G3, "objectClass: groupOfNames", "cn: g3", "member: " + user(3), "member: " + G1);
+
+        uri = directory.getUri();
+        connectionManager = directory.getConnectionManager();
+        groupService = groupService(new LdapGroupConfig());
+    }
+
+    private GroupService groupService(LdapGroupConfig groupConfig) {
+        return new GroupService(connectionManager, new BackendRouter(new LdapBackendConfig(), connectionManager),
+            new SchemaCache(new LdapSchemaConfig(), connectionManager), groupConfig);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        groupService.shutdown();
+        directory.close();
+    }
+
+    private static String user(int n) {
+        return "uid=user" + n + ",ou=users,dc=example,dc=com";
+    }
+
+    @Test
+    public void testEffectiveGroupsFollowNestingThroughCycle() throws Exception {
+        // Act
+        GroupExpansionResponse response = groupService.effectiveGroups(uri, null, user(3), GROUPS, BIND_DN, BIND_PASSWORD);
+
+        // Assert
+        assertEquals(GroupService.LOOKUP, response.getStrategy());
+        assertEquals(List.of(G3, G2, G1), response.getGroups());
+        assertEquals(3, response.getDepth());
+        assertNull(response.getMembers());
+    }
+
+    @Test
+    public void testTransitiveMembersSplitGroupsFromMembers() throws Exception {
+        // Act
+        GroupExpansionResponse direct = groupService.members(uri, null, G1, null, false, BIND_DN, BIND_PASSWORD);
+        GroupExpansionResponse transitive = groupService.members(uri, null, G1, GROUPS, true, BIND_DN, BIND_PASSWORD);
+
+        // Assert
+        assertEquals(List.of(user(1), G2), direct.getMembers());
+        assertEquals(1, direct.getDepth());
+        assertEquals(List.of(G2, G3), transitive.getGroups());
+        assertEquals(List.of(user(1), user(2), user(3)), transitive.getMembers());
+        assertEquals(3, transitive.getDepth());
+        assertThrows(RequestValidationException.class,
+            () -> groupService.members(uri, null, G1, null, true, BIND_DN, BIND_PASSWORD));
+    }
+
+    @Test
+    public void testCacheIsClearedOnlyByMembershipChanges() throws Exception {
+        // Arrange
+        groupService.effectiveGroups(uri, null, user(3), GROUPS, BIND_DN, BIND_PASSWORD);
+        server.add("dn: cn=g4," + GROUPS, "objectClass: groupOfNames", "cn: g4", "member: " + user(3));
+
+        // Act
+        groupService.onDirectoryChange(new DirectoryChangeEvent(this, uri, G1, ChangeType.MODIFY, List.of("description")));
+        List<String> cached = groupService.effectiveGroups(uri, null, user(3), GROUPS, BIND_DN, BIND_PASSWORD).getGroups();
+        groupService.onDirectoryChange(new DirectoryChangeEvent(this, uri, G1, ChangeType.MODIFY, List.of("member")));
+        List<String> current = groupService.effectiveGroups(uri, null, user(3), GROUPS, BIND_DN, BIND_PASSWORD).getGroups();
+
+        // Assert
+        assertEquals(3, cached.size());
+        assertEquals(4, current.size());
+        assertTrue(current.contains("cn=g4," + GROUPS));
+    }
+
+    @Test
+    public void testMaxDepthAllowsExactlyThatManyLevels() throws Exception {
+        // Arrange
+        LdapGroupConfig exact = new LdapGroupConfig();
+        exact.setMaxDepth(3);
+        LdapGroupConfig shallow = new LdapGroupConfig();
+        shallow.setMaxDepth(2);
+        GroupService exactService = groupService(exact);
+        GroupService shallowService = groupService(shallow);
+
+        try {
+            // Act
+            GroupExpansionResponse groups = exactService.effectiveGroups(uri, null, user(3), GROUPS, BIND_DN, BIND_PASSWORD);
+            GroupExpansionResponse members = exactService.members(uri, null, G1, GROUPS, true, BIND_DN, BIND_PASSWORD);
+
+            // Assert
+            assertEquals(3, groups.getDepth());
+            assertEquals(3, members.getDepth());
+            assertThrows(RequestValidationException.class,
+                () -> shallowService.effectiveGroups(uri, null, user(3), GROUPS, BIND_DN, BIND_PASSWORD));
+            assertThrows(RequestValidationException.class,
+                () -> shallowService.members(uri, null, G1, GROUPS, true, BIND_DN, BIND_PASSWORD));
+        } finally {
+            exactService.shutdown();
+            shallowService.shutdown();
+        }
+    }
+
+    @Test
+    public void testCachedExpansionRequiresTheRightPassword() throws Exception {
+        // Arrange
+        groupService.effectiveGroups(uri, null, user(3), GROUPS, BIND_DN, BIND_PASSWORD);
+        groupService.members(uri, null, G1, GROUPS, true, BIND_DN, BIND_PASSWORD);
+
+        // Act
+        LDAPException groups = assertThrows(LDAPException.class,
+            () -> groupService.effectiveGroups(uri, null, user(3), GROUPS, BIND_DN, "wrong"));
+        LDAPException members = assertThrows(LDAPException.class,
+            () -> groupService.members(uri, null, G1, GROUPS, true, BIND_DN, "wrong"));
+
+        // Assert
+        assertEquals(ResultCode.INVALID_CREDENTIALS, groups.getResultCode());
+        assertEquals(ResultCode.INVALID_CREDENTIALS, members.getResultCode());
+        assertEquals(3, groupService.effectiveGroups(uri, null, user(3), GROUPS, BIND_DN, BIND_PASSWORD).getGroups().size());
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapBackendConfig;
+import com.example.ldapwebtool.config.LdapImportConfig;
+import com.example.ldapwebtool.config.LdapSchemaConfig;
+import com.example.ldapwebtool.model.ImportJobStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.example.ldapwebtool.service.TestDirectory.BIND_DN;
+import static com.example.ldapwebtool.service.TestDirectory.BIND_PASSWORD;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImportJobServiceTest {
+
+    @TempDir
+    Path spoolDirectory;
+
+    private TestDirectory directory;
+    private InMemoryDirectoryServer server;
+    private LdapConnectionManager connectionManager;
+    private ImportJobService importJobService;
+    private String uri;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = TestDirectory.schemaless();
+        server = directory.getServer();
+        server.add("dn: ou=users,dc=example,dc=com", "objectClass: organizationalUnit", "ou: users");
+
+        uri = directory.getUri();
+        connectionManager = directory.getConnectionManager();
+        importJobService = newService();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        importJobService.shutdown();
+        directory.close();
+    }
+
+    @Test
+    public void testImportReportsFailedRecordsAndContinues() throws Exception {
+        // Arrange: 20 adds, the 6th of which duplicates the 5th
+        StringBuilder ldif = new StringBuilder("version: 1\n\n");
+        for (int i = 0; i < 20; i++) {
+            int uid = i == 5 ? 4 : i;
+            ldif.append("# user ").append(uid).append("\r\n")
+                .append("dn: uid=user").append(uid).append(",ou=users,dc=example,dc=com\r\n")
+                .append("changetype: add\r\n")
+                .append("objectClass: inetOrgPerson\r\n")
+                .append("uid: user").append(uid).append("\r\n")
+                .append("cn: User\r\n  ").append(uid).append("\r\n")
+                .append("sn: User\r\n\r\n");
+        }
+
+        // Act
+        ImportJobStatus created = importJobService.create(stream(ldif.toString()), uri, null, true, BIND_DN, BIND_PASSWORD);
+        ImportJobStatus status = awaitStopped(created.getId());
+
+        // Assert
+        assertEquals(ImportJobService.STATE_COMPLETED, status.getState());
+        assertEquals(20, status.getRecords());
+        assertEquals(19, status.getApplied());
+        assertEquals(1, status.getFailed());
+        assertEquals(status.getTotalBytes(), status.getProcessedBytes());
+        assertEquals("User 7", server.getEntry("uid=user7,ou=users,dc=example,dc=com").getAttributeValue("cn"));
+
+        List<String> failures = Files.readAllLines(importJobService.getFailureReport(created.getId(), BIND_DN));
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0).contains("\"record\":5"));
+        assertTrue(failures.get(0).contains("entry already exists"));
+    }
+
+    @Test
+    public void testStoppedJobResumesFromCheckpointAfterRestart() throws Exception {
+        // Arrange: the third record modifies an entry that does not exist yet
+        String ldif = add("a") + add("b")
+            + "dn: uid=c,ou=users,dc=example,dc=com\nchangetype: modify\nreplace: sn\nsn: Changed\n-\n\n"
+            + add("d");
+        ImportJobStatus created = importJobService.create(stream(ldif), uri, null, false, BIND_DN, BIND_PASSWORD);
+        ImportJobStatus stopped = awaitStopped(created.getId());
+        assertEquals(ImportJobService.STATE_FAILED, stopped.getState());
+        assertEquals(2, stopped.getRecords());
+        assertNotNull(stopped.getError());
+
+        // Act: restart the service, fix the cause and resume
+        importJobService.shutdown();
+        importJobService = newService();
+        server.add("dn: uid=c,ou=users,dc=example,dc=com", "objectClass: inetOrgPerson", "uid: c", "cn: c", "sn: c");
+        assertNull(importJobService.resume(created.getId(), "cn=someone else", "x"));
+        importJobService.resume(created.getId(), BIND_DN, BIND_PASSWORD);
+        ImportJobStatus status = awaitStopped(created.getId());
+
+        // Assert: the records applied before the failure were not applied again
+        assertEquals(ImportJobService.STATE_COMPLETED, status.getState());
+        assertEquals(4, status.getRecords());
+        assertEquals(4, status.getApplied());
+        assertEquals(0, status.getFailed());
+        assertEquals("Changed", server.getEntry("uid=c,ou=users,dc=example,dc=com").getAttributeValue("sn"));
+        assertNotNull(server.getEntry("uid=d,ou=users,dc=example,dc=com"));
+    }
+
+    private ImportJobService newService() {
+        LdapImportConfig importConfig = new LdapImportConfig();
+        importConfig.setSpoolDirectory(spoolDirectory.toString());
+        importConfig.setBatchSize(3);
+        ImportJobService service = new ImportJobService(connectionManager,
+            new BackendRouter(new LdapBackendConfig(), connectionManager),
+            new SchemaCache(new LdapSchemaConfig(), connectionManager), importConfig, new ObjectMapper(), event -> { });
+        service.recover();
+        return service;
+    }
+
+    private static String add(String uid) {
+        return "dn: uid=" + uid + ",ou=users,dc=example,dc=com\nobjectClass: inetOrgPerson\nuid: " + uid
+            + "\ncn: " + uid + "\nsn: " + uid + "\n\n";
+    }
+
+    private static ByteArrayInputStream stream(String ldif) {
+        return new ByteArrayInputStream(ldif.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ImportJobStatus awaitStopped(String id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        ImportJobStatus status = importJobService.getStatus(id, BIND_DN);
+        while (ImportJobService.STATE_RUNNING.equals(status.getState()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            status = importJobService.getStatus(id, BIND_DN);
+        }
+        return status;
+    }
+}
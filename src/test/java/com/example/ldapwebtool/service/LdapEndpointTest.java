@@ -0,0 +1,43 @@
+package com.example.ldapwebtool.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LdapEndpointTest {
+
+    @Test
+    public void testSingleHostWithDefaultPort() {
+        LdapEndpoint endpoint = LdapEndpoint.parse("ldaps://LDAP.example.com");
+
+        assertTrue(endpoint.isSecure());
+        assertEquals("ldaps://ldap.example.com:636", endpoint.getKey());
+    }
+
+    @Test
+    public void testHostsInheritTrailingPort() {
+        LdapEndpoint endpoint = LdapEndpoint.parse("ldap://h1,h2,h3:1389");
+
+        assertEquals(3, endpoint.getHosts().size());
+        assertArrayEquals(new int[] {1389, 1389, 1389}, endpoint.getPorts());
+        assertEquals("ldap://h1:1389,h2:1389,h3:1389", endpoint.getKey());
+    }
+
+    @Test
+    public void testSpaceSeparatedUris() {
+        LdapEndpoint endpoint = LdapEndpoint.parse("ldap://h1:389/dc=example,dc=com ldap://[::1]:1389");
+
+        assertArrayEquals(new String[] {"h1", "::1"}, endpoint.getAddresses());
+        assertEquals("ldap://h1:389,[::1]:1389", endpoint.getKey());
+    }
+
+    @Test
+    public void testMixedSchemesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> LdapEndpoint.parse("ldap://h1:389 ldaps://h2:636"));
+    }
+
+    @Test
+    public void testInvalidPortIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> LdapEndpoint.parse("ldap://h1:99999"));
+    }
+}
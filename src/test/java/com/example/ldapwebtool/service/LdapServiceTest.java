@@ -0,0 +1,524 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapAdmissionConfig;
+import com.example.ldapwebtool.config.LdapBackendConfig;
+import com.example.ldapwebtool.config.LdapLocalReplicaConfig;
+import com.example.ldapwebtool.config.LdapMemoryConfig;
+import com.example.ldapwebtool.config.LdapPoolConfig;
+import com.example.ldapwebtool.config.LdapSchemaConfig;
+import com.example.ldapwebtool.config.LdapSearchConfig;
+import com.example.ldapwebtool.config.LdapSslConfig;
+import com.example.ldapwebtool.config.LdapWarmupConfig;
+import com.example.ldapwebtool.model.ModifyRequest;
+import com.example.ldapwebtool.model.ModifyResponse;
+import com.example.ldapwebtool.model.SearchRequest;
+import com.example.ldapwebtool.model.SearchResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import com.unboundid.ldap.sdk.ResultCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LdapServiceTest {
+
+    private static final String BIND_DN = "cn=Directory Manager";
+    private static final String BIND_PASSWORD = "password";
+    private static final String USERS = "ou=users,dc=example,dc=com";
+
+    private InMemoryDirectoryServer server;
+    private LdapConnectionManager connectionManager;
+    private LdapBackendConfig backendConfig;
+    private LdapMemoryConfig memoryConfig;
+    private MemoryBudget memoryBudget;
+    private SimpleMeterRegistry meterRegistry;
+    private LdapService ldapService;
+    private String uri;
+    private volatile long searchDelayMillis;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig("dc=example,dc=com");
+        config.addAdditionalBindCredentials(BIND_DN, BIND_PASSWORD);
+        config.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig("default", 0));
+        config.setSchema(null);
+        config.addInMemoryOperationInterceptor(new InMemoryOperationInterceptor() {
+            @Override
+            public void processSearchRequest(InMemoryInterceptedSearchRequest request) {
+                if (!request.getRequest().getBaseDN().equalsIgnoreCase(USERS)) {
+                    return;
+                }
+                try {
+                    Thread.sleep(searchDelayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        server = new InMemoryDirectoryServer(config);
+        server.add("dn: dc=example,dc=com", "objectClass: top", "objectClass: domain", "dc: example");
+        server.add("dn: ou=users,dc=example,dc=com", "objectClass: organizationalUnit", "ou: users");
+        for (String sn : new String[] {"Delta", "Alpha", "Echo", "Charlie", "Bravo"}) {
+            server.add("dn: uid=" + sn.toLowerCase() + ",ou=users,dc=example,dc=com",
+                "objectClass: inetOrgPerson", "uid: " + sn.toLowerCase(), "cn: User " + sn, "sn: " + sn);
+        }
+        server.startListening();
+
+        uri = "ldap://localhost:" + server.getListenPort();
+        backendConfig = new LdapBackendConfig();
+        connectionManager = new LdapConnectionManager(
+            new LdapSslConfig(), new LdapPoolConfig(), new LdapAdmissionConfig(), backendConfig, new SimpleMeterRegistry());
+        memoryConfig = new LdapMemoryConfig();
+        meterRegistry = new SimpleMeterRegistry();
+        memoryBudget = new MemoryBudget(memoryConfig, meterRegistry);
+        BackendRouter backendRouter = new BackendRouter(backendConfig, connectionManager);
+        SchemaCache schemaCache = new SchemaCache(new LdapSchemaConfig(), connectionManager);
+        ldapService = new LdapService(connectionManager, backendRouter, schemaCache,
+            new SearchPlanCache(new LdapSearchConfig(), new SimpleMeterRegistry()), event -> { },
+            new LocalReplicaService(new LdapLocalReplicaConfig(), connectionManager, backendRouter, schemaCache,
+                new SimpleMeterRegistry()),
+            memoryBudget);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        connectionManager.shutdown();
+        server.shutDown(true);
+    }
+
+    @Test
+    public void testSearchWithServerSideSort() throws Exception {
+        // Arrange
+        SearchRequest request = new SearchRequest(uri, "ou=users,dc=example,dc=com", "(objectClass=inetOrgPerson)", "one");
+        request.setSortKeys(List.of("-sn"));
+
+        // Act
+        SearchResponse response = ldapService.search(request, BIND_DN, BIND_PASSWORD);
+
+        // Assert
+        assertEquals(5, response.getCount());
+        assertEquals("Echo", response.getEntries().get(0).getAttributes().get("sn"));
+        assertEquals("Alpha", response.getEntries().get(4).getAttributes().get("sn"));
+        assertNull(response.getTargetPosition());
+    }
+
+    @Test
+    public void testSearchWithVirtualListViewOffset() throws Exception {
+        // Arrange
+        SearchRequest request = new SearchRequest(uri, "ou=users,dc=example,dc=com", "(objectClass=inetOrgPerson)", "one");
+        request.setSortKeys(List.of("sn"));
+        request.setVlv(new SearchRequest.VirtualListView(2, 0, 1));
+
+        // Act
+        SearchResponse response = ldapService.search(request, BIND_DN, BIND_PASSWORD);
+
+        // Assert
+        assertEquals(2, response.getCount());
+        assertEquals("Bravo", response.getEntries().get(0).getAttributes().get("sn"));
+        assertEquals("Charlie", response.getEntries().get(1).getAttributes().get("sn"));
+        assertEquals(2, response.getTargetPosition());
+        assertEquals(5, response.getContentCount());
+    }
+
+    @Test
+    public void testSearchWithVirtualListViewAssertionValue() throws Exception {
+        // Arrange
+        SearchRequest request = new SearchRequest(uri, "ou=users,dc=example,dc=com", "(objectClass=inetOrgPerson)", "one");
+        request.setSortKeys(List.of("sn"));
+        SearchRequest.VirtualListView vlv = new SearchRequest.VirtualListView();
+        vlv.setAssertionValue("D");
+        vlv.setAfterCount(1);
+        request.setVlv(vlv);
+
+        // Act
+        SearchResponse response = ldapService.search(request, BIND_DN, BIND_PASSWORD);
+
+        // Assert
+        assertEquals(4, response.getTargetPosition());
+        assertEquals("Delta", response.getEntries().get(0).getAttributes().get("sn"));
+        assertEquals("Echo", response.getEntries().get(1).getAttributes().get("sn"));
+    }
+
+    @Test
+    public void testVirtualListViewRequiresSortKeys() {
+        // Arrange
+        SearchRequest request = new SearchRequest(uri, "ou=users,dc=example,dc=com", "(objectClass=inetOrgPerson)", "one");
+        request.setVlv(new SearchRequest.VirtualListView(1, 0, 10));
+
+        // Act & Assert
+        assertThrows(RequestValidationException.class, () -> ldapService.search(request, BIND_DN, BIND_PASSWORD));
+    }
+
+    @Test
+    public void testMalformedVirtualListViewContextIdIsRejected() {
+        // Arrange
+        SearchRequest request = new SearchRequest(uri, "ou=users,dc=example,dc=com", "(objectClass=inetOrgPerson)", "one");
+        request.setSortKeys(List.of("sn"));
+        SearchRequest.VirtualListView vlv = new SearchRequest.VirtualListView(1, 0, 10);
+        vlv.setContextId("not base64!");
+        request.setVlv(vlv);
+
+        // Act & Assert
+        assertThrows(RequestValidationException.class, () -> ldapService.search(request, BIND_DN, BIND_PASSWORD));
+    }
+
+    @Test
+    public void testSearchBeyondMemoryBudgetIsRejected() throws Exception {
+        // Arrange - room for a few entries, not all five
+        memoryConfig.setBudgetBytes(1200);
+        SearchRequest request = new SearchRequest(uri, "ou=users,dc=example,dc=com", "(objectClass=inetOrgPerson)", "one");
+
+        // Act
+        long start = System.currentTimeMillis();
+        BackendUnavailableException e = assertThrows(BackendUnavailableException.class,
+            () -> ldapService.search(request, BIND_DN, BIND_PASSWORD));
+        long elapsed = System.currentTimeMillis() - start;
+        memoryConfig.setBudgetBytes(0);
+        SearchResponse response = ldapService.search(request, BIND_DN, BIND_PASSWORD);
+
+        // Assert - rejected without waiting for the response timeout, nothing stays reserved,
+        // and the same search fits a larger budget
+        assertTrue(elapsed < 5000, "Rejection took " + elapsed + " ms");
+        assertEquals(1, e.getRetryAfterSeconds());
+        assertEquals(0, memoryBudget.getReservedBytes());
+        assertEquals(5, response.getEntries().size());
+    }
+
+    @Test
+    public void testResponseStaysReservedUntilTheLeaseIsClosed() throws Exception {
+        // Arrange
+        SearchRequest request = new SearchRequest(uri, "ou=users,dc=example,dc=com", "(objectClass=inetOrgPerson)", "one");
+        MemoryBudget.Lease lease = memoryBudget.open();
+
+        // Act - the response is returned, as to a controller that has yet to write it
+        SearchResponse response = ldapService.search(request, BIND_DN, BIND_PASSWORD, null,
+            OperationHandle.unbounded(), lease);
+        double whileHeld = meterRegistry.get("ldap.memory.reserved").gauge().value();
+        lease.close();
+
+        // Assert
+        assertEquals(5, response.getCount());
+        assertTrue(whileHeld > 0);
+        assertEquals(0.0, meterRegistry.get("ldap.memory.reserved").gauge().value());
+    }
+
+    @Test
+    public void testSearchPastTimeoutIsAbandoned() throws Exception {
+        // Arrange - the server answers well after the deadline
+        searchDelayMillis = 1000;
+        SearchRequest request = new SearchRequest(uri, "ou=users,dc=example,dc=com", "(objectClass=inetOrgPerson)", "one");
+
+        // Act
+        long start = System.currentTimeMillis();
+        OperationTimeoutException e = assertThrows(OperationTimeoutException.class,
+            () -> ldapService.search(request, BIND_DN, BIND_PASSWORD, null, OperationHandle.withTimeout(100)));
+        long elapsed = System.currentTimeMillis() - start;
+        searchDelayMillis = 0;
+        SearchResponse response = ldapService.search(request, BIND_DN, BIND_PASSWORD);
+
+        // Assert - the caller is answered at the deadline, and the connection stays usable
+        assertEquals(ResultCode.TIME_LIMIT_EXCEEDED, e.getResultCode());
+        assertTrue(elapsed < 900, "Answered after " + elapsed + " ms");
+        assertEquals(5, response.getCount());
+        assertEquals(0, memoryBudget.getReservedBytes());
+    }
+
+    @Test
+    public void testCancelledSearchIsNotRun() throws Exception {
+        // Arrange
+        SearchRequest request = new SearchRequest(uri, "ou=users,dc=example,dc=com", "(objectClass=inetOrgPerson)", "one");
+        OperationHandle handle = OperationHandle.unbounded();
+        handle.cancel("client disconnected");
+
+        // Act
+        LDAPException e = assertThrows(LDAPException.class,
+            () -> ldapService.search(request, BIND_DN, BIND_PASSWORD, null, handle));
+
+        // Assert
+        assertEquals(ResultCode.CANCELED, e.getResultCode());
+    }
+
+    @Test
+    public void testSearchFailsOverToHealthyHost() throws Exception {
+        // Arrange - the first host refuses connections
+        String multiHostUri = "ldap://localhost:1,localhost:" + server.getListenPort();
+        SearchRequest request = new SearchRequest(multiHostUri, "ou=users,dc=example,dc=com", "(uid=alpha)", "one");
+
+        // Act & Assert - every request lands on the healthy host
+        for (int i = 0; i < 3; i++) {
+            SearchResponse response = ldapService.search(request, BIND_DN, BIND_PASSWORD);
+            assertEquals(1, response.getCount());
+        }
+    }
+
+    @Test
+    public void testBackendReadsAreRoutedToReplicasAndPinnedAfterWrite() throws Exception {
+        // Arrange - the replica is unreachable, so reads only succeed when pinned to the primary
+        LdapBackendConfig.Backend backend = new LdapBackendConfig.Backend();
+        backend.setPrimary(uri);
+        backend.setReplicas(List.of("ldap://localhost:1"));
+        backend.setReadYourWritesWindowMillis(60000);
+        backendConfig.getBackends().put("corp", backend);
+
+        SearchRequest search = new SearchRequest(null, "ou=users,dc=example,dc=com", "(uid=alpha)", "one");
+        search.setBackend("corp");
+        ModifyRequest modify = new ModifyRequest(null, "uid=alpha,ou=users,dc=example,dc=com",
+            List.of(new ModifyRequest.Modification("replace", "description", List.of("updated"))));
+        modify.setBackend("corp");
+
+        // Act & Assert
+        assertThrows(Exception.class, () -> ldapService.search(search, BIND_DN, BIND_PASSWORD));
+
+        ModifyResponse modifyResponse = ldapService.modify(modify, BIND_DN, BIND_PASSWORD);
+        assertTrue(modifyResponse.isSuccess());
+
+        SearchResponse response = ldapService.search(search, BIND_DN, BIND_PASSWORD);
+        assertEquals("updated", response.getEntries().get(0).getAttributes().get("description"));
+    }
+
+    @Test
+    public void testIdlePoolInUseIsNotClosed() throws Exception {
+        // Arrange - every pool counts as idle
+        LdapPoolConfig poolConfig = new LdapPoolConfig();
+        poolConfig.setIdlePoolTimeoutMillis(-60000);
+        LdapConnectionManager manager = new LdapConnectionManager(
+            new LdapSslConfig(), poolConfig, new LdapAdmissionConfig(), new LdapBackendConfig(), new SimpleMeterRegistry());
+
+        try {
+            // Act - sweep while a request holds the pool, then again after it is done
+            String result = manager.withConnection(uri, BIND_DN, BIND_PASSWORD, connection -> {
+                manager.closeIdlePools();
+                return connection.getEntry("dc=example,dc=com") != null ? "read" : "missing";
+            });
+            int activeAfterRequest = manager.getActiveEndpoints().size();
+            manager.closeIdlePools();
+
+            // Assert
+            assertEquals("read", result);
+            assertEquals(1, activeAfterRequest);
+            assertTrue(manager.getActiveEndpoints().isEmpty());
+            assertNotNull(manager.withConnection(uri, BIND_DN, BIND_PASSWORD,
+                connection -> connection.getEntry("dc=example,dc=com")));
+        } finally {
+            manager.shutdown();
+        }
+    }
+
+    @Test
+    public void testBackendProfileLimitsOnlyItsOwnEndpoints() throws Exception {
+        // Arrange - one request at a time and no queue for the backend; the same server under another URI is unaffected
+        LdapBackendConfig.Backend backend = new LdapBackendConfig.Backend();
+        backend.setPrimary(uri);
+        backend.getAdmission().setMaxConcurrentRequests(1);
+        backend.getAdmission().setMaxQueuedRequests(0);
+        backendConfig.getBackends().put("corp", backend);
+        String otherUri = "ldap://127.0.0.1:" + server.getListenPort();
+
+        // Act
+        String nested = connectionManager.withConnection(uri, BIND_DN, BIND_PASSWORD, outer -> {
+            assertThrows(BackendUnavailableException.class,
+                () -> connectionManager.withConnection(uri, BIND_DN, BIND_PASSWORD, inner -> null));
+            return connectionManager.withConnection(otherUri, BIND_DN, BIND_PASSWORD,
+                inner -> connectionManager.withConnection(otherUri, BIND_DN, BIND_PASSWORD, innermost -> "ok"));
+        });
+
+        // Assert
+        assertEquals("ok", nested);
+    }
+
+    @Test
+    public void testBackendServersShareOneAdmissionLimit() throws Exception {
+        // Arrange - the replica is the same server under another name
+        LdapBackendConfig.Backend backend = new LdapBackendConfig.Backend();
+        backend.setPrimary(uri);
+        String replica = "ldap://127.0.0.1:" + server.getListenPort();
+        backend.setReplicas(List.of(replica));
+        backend.getAdmission().setMaxConcurrentRequests(1);
+        backend.getAdmission().setMaxQueuedRequests(0);
+        backendConfig.getBackends().put("corp", backend);
+
+        // Act & Assert - a request on the primary takes the backend's only slot
+        connectionManager.withConnection(uri, BIND_DN, BIND_PASSWORD, outer -> {
+            assertThrows(BackendUnavailableException.class,
+                () -> connectionManager.withConnection(replica, BIND_DN, BIND_PASSWORD, inner -> null));
+            return null;
+        });
+        assertNotNull(connectionManager.withConnection(replica, BIND_DN, BIND_PASSWORD,
+            connection -> connection.getEntry(USERS)));
+    }
+
+    @Test
+    public void testArbitraryUrisAreRefusedWhenDisallowed() throws Exception {
+        // Arrange
+        LdapBackendConfig.Backend backend = new LdapBackendConfig.Backend();
+        backend.setPrimary(uri);
+        String replica = "ldap://127.0.0.1:" + server.getListenPort();
+        backend.setReplicas(List.of(replica, "ldap://localhost:1"));
+        backendConfig.getBackends().put("corp", backend);
+        backendConfig.setAllowArbitraryUris(false);
+        SearchRequest byName = new SearchRequest(null, USERS, "(uid=alpha)", "one");
+        byName.setBackend("corp");
+
+        // Act
+        SearchResponse response = ldapService.search(byName, BIND_DN, BIND_PASSWORD);
+        SearchResponse byConfiguredUri = ldapService.search(
+            new SearchRequest(uri, USERS, "(uid=alpha)", "one"), BIND_DN, BIND_PASSWORD);
+
+        // Assert
+        assertEquals(1, response.getCount());
+        assertEquals(1, byConfiguredUri.getCount());
+        // Any set of the backend's hosts, as csn routing produces, counts as the backend
+        assertNotNull(connectionManager.withConnection(uri + " " + replica, BIND_DN, BIND_PASSWORD,
+            connection -> connection.getEntry(USERS)));
+        assertThrows(RequestValidationException.class, () -> ldapService.search(
+            new SearchRequest("ldap://127.0.0.2:" + server.getListenPort(), USERS, "(uid=alpha)", "one"),
+            BIND_DN, BIND_PASSWORD));
+    }
+
+    @Test
+    public void testInvalidRoutingIsAValidationError() {
+        // Arrange
+        SearchRequest unknown = new SearchRequest(null, USERS, "(uid=alpha)", "one");
+        unknown.setBackend("missing");
+        SearchRequest neither = new SearchRequest(null, USERS, "(uid=alpha)", "one");
+        ModifyRequest both = new ModifyRequest(uri, "uid=alpha,ou=users,dc=example,dc=com",
+            List.of(new ModifyRequest.Modification("replace", "description", List.of("x"))));
+        both.setBackend("missing");
+
+        // Act & Assert
+        assertThrows(RequestValidationException.class, () -> ldapService.search(unknown, BIND_DN, BIND_PASSWORD));
+        assertThrows(RequestValidationException.class, () -> ldapService.search(neither, BIND_DN, BIND_PASSWORD));
+        assertThrows(RequestValidationException.class, () -> ldapService.modify(both, BIND_DN, BIND_PASSWORD));
+    }
+
+    @Test
+    public void testModifyReturnsEntryStateFromReadControls() throws Exception {
+        // Arrange
+        ModifyRequest modify = new ModifyRequest(uri, "uid=alpha,ou=users,dc=example,dc=com",
+            List.of(new ModifyRequest.Modification("replace", "cn", List.of("Renamed"))));
+        modify.setPreRead(List.of("cn"));
+        modify.setPostRead(List.of("cn"));
+        String ldif = "dn: uid=bravo,ou=users,dc=example,dc=com\nchangetype: modify\nreplace: sn\nsn: Beta\n";
+
+        // Act
+        ModifyResponse response = ldapService.modify(modify, BIND_DN, BIND_PASSWORD);
+        ModifyResponse ldifResponse = ldapService.modifyFromLdif(ldif, uri, null, null, List.of("sn"), BIND_DN, BIND_PASSWORD);
+
+        // Assert
+        assertEquals("User Alpha", response.getBefore().getAttributes().get("cn"));
+        assertEquals("Renamed", response.getAfter().getAttributes().get("cn"));
+        assertFalse(response.getAfter().getAttributes().containsKey("sn"));
+        assertEquals(1, ldifResponse.getChanges().size());
+        assertNull(ldifResponse.getChanges().get(0).getBefore());
+        assertEquals("Beta", ldifResponse.getChanges().get(0).getAfter().getAttributes().get("sn"));
+    }
+
+    @Test
+    public void testWarmUpOpensPoolsForConfiguredBackends() {
+        // Arrange - one reachable backend, one whose only host is down
+        LdapBackendConfig.Backend backend = new LdapBackendConfig.Backend();
+        backend.setPrimary(uri);
+        backendConfig.getBackends().put("corp", backend);
+
+        LdapWarmupConfig warmupConfig = new LdapWarmupConfig();
+        warmupConfig.setUris(List.of("ldap://localhost:1"));
+        warmupConfig.setSyntheticRequests(3);
+        LdapWarmupRunner runner = new LdapWarmupRunner(warmupConfig, connectionManager,
+            new BackendRouter(backendConfig, connectionManager), ldapService, new ObjectMapper());
+
+        // Act
+        int warmed = runner.warmUp();
+
+        // Assert
+        assertEquals(1, warmed);
+        assertTrue(connectionManager.getActiveEndpoints().stream()
+            .anyMatch(endpoint -> endpoint.getKey().equals(LdapEndpoint.parse(uri).getKey())));
+    }
+
+    @Test
+    public void testSchemaDrivesValidationAndValueShape() throws Exception {
+        // Arrange - a second server that publishes the standard schema
+        InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig("dc=example,dc=com");
+        config.addAdditionalBindCredentials(BIND_DN, BIND_PASSWORD);
+        config.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig("default", 0));
+        InMemoryDirectoryServer schemaServer = new InMemoryDirectoryServer(config);
+        try {
+            schemaServer.add("dn: dc=example,dc=com", "objectClass: top", "objectClass: domain", "dc: example");
+            Entry user = new Entry("uid=jdoe,dc=example,dc=com");
+            user.addAttribute("objectClass", "top", "person", "organizationalPerson", "inetOrgPerson");
+            user.addAttribute("uid", "jdoe");
+            user.addAttribute("cn", "John Doe");
+            user.addAttribute("sn", "Doe");
+            user.addAttribute("displayName", "John");
+            user.addAttribute(new Attribute("jpegPhoto", new byte[] {(byte) 0xFF, (byte) 0xD8, 0x00}));
+            schemaServer.add(user);
+            schemaServer.startListening();
+            String schemaUri = "ldap://localhost:" + schemaServer.getListenPort();
+
+            // Act
+            SearchResponse response = ldapService.search(
+                new SearchRequest(schemaUri, "dc=example,dc=com", "(uid=jdoe)", "sub"), BIND_DN, BIND_PASSWORD);
+
+            // Assert - multi-valued attributes are always arrays, single-valued ones scalars, binary base64
+            Map<String, Object> attributes = response.getEntries().get(0).getAttributes();
+            assertEquals(List.of("Doe"), attributes.get("sn"));
+            assertEquals("John", attributes.get("displayName"));
+            assertEquals(List.of("/9gA"), attributes.get("jpegPhoto"));
+
+            // Unknown attributes and extra values for single-valued attributes are rejected locally
+            assertThrows(RequestValidationException.class, () -> ldapService.search(
+                new SearchRequest(schemaUri, "dc=example,dc=com", "(noSuchAttribute=x)", "sub"), BIND_DN, BIND_PASSWORD));
+            ModifyRequest modify = new ModifyRequest(schemaUri, "uid=jdoe,dc=example,dc=com",
+                List.of(new ModifyRequest.Modification("replace", "displayName", List.of("A", "B"))));
+            assertThrows(RequestValidationException.class, () -> ldapService.modify(modify, BIND_DN, BIND_PASSWORD));
+        } finally {
+            schemaServer.shutDown(true);
+        }
+    }
+
+    @Test
+    public void testResultETagTracksChangesAndMatchesStampOnlyCheck() throws Exception {
+        // Arrange
+        SearchRequest request = new SearchRequest(uri, "ou=users,dc=example,dc=com", "(objectClass=inetOrgPerson)", "one");
+        ResultETag first = new ResultETag(ResultETag.JSON, BIND_DN);
+        SearchResponse response = ldapService.search(request, BIND_DN, BIND_PASSWORD, first);
+
+        // Act
+        String current = ldapService.currentETag(request, ResultETag.JSON, BIND_DN, BIND_PASSWORD);
+        String currentLdif = ldapService.currentETag(request, ResultETag.LDIF, BIND_DN, BIND_PASSWORD);
+        Thread.sleep(5);
+        server.modify("uid=alpha,ou=users,dc=example,dc=com",
+            new Modification(ModificationType.REPLACE, "cn", "Changed"),
+            new Modification(ModificationType.ADD, "userPassword", "alpha"));
+        String changed = ldapService.currentETag(request, ResultETag.JSON, BIND_DN, BIND_PASSWORD);
+        String otherCaller = ldapService.currentETag(request, ResultETag.JSON, "uid=alpha,ou=users,dc=example,dc=com", "alpha");
+        String sameCallerRespelled = ldapService.currentETag(request, ResultETag.JSON, BIND_DN.toUpperCase(), BIND_PASSWORD);
+
+        // Assert - the stamps requested for the tag are not part of the result, and callers do not share tags
+        assertNotNull(first.getValue());
+        assertEquals(first.getValue(), current);
+        assertNotEquals(current, currentLdif);
+        assertNotEquals(current, changed);
+        assertNotEquals(changed, otherCaller);
+        assertEquals(changed, sameCallerRespelled);
+        assertFalse(response.getEntries().get(0).getAttributes().containsKey("modifyTimestamp"));
+        assertTrue(ResultETag.matches("W/\"x\", " + current, current));
+        assertFalse(ResultETag.matches(current, changed));
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapBackendConfig;
+import com.example.ldapwebtool.config.LdapLocalReplicaConfig;
+import com.example.ldapwebtool.config.LdapSchemaConfig;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.ChangeType;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchRequest;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchScope;
+import com.unboundid.ldap.sdk.schema.Schema;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import static com.example.ldapwebtool.service.TestDirectory.BIND_DN;
+import static com.example.ldapwebtool.service.TestDirectory.BIND_PASSWORD;
+import static com.example.ldapwebtool.service.TestDirectory.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalReplicaServiceTest {
+
+    private static final String READER_DN = "cn=Reader";
+    private static final String READER_PASSWORD = "reader";
+    private static final String USERS = "ou=users,dc=example,dc=com";
+    private static final String ALPHA = "uid=alpha," + USERS;
+
+    private PersistentSearchEmulator emulator;
+    private TestDirectory directory;
+    private InMemoryDirectoryServer server;
+    private LdapConnectionManager connectionManager;
+    private LdapLocalReplicaConfig.Subtree subtree;
+    private SimpleMeterRegistry meterRegistry;
+    private LocalReplicaService replicaService;
+    private String uri;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        emulator = new PersistentSearchEmulator();
+        InMemoryDirectoryServerConfig config = TestDirectory.schemalessConfig();
+        config.addAdditionalBindCredentials(READER_DN, READER_PASSWORD);
+        config.addInMemoryOperationInterceptor(emulator);
+        directory = new TestDirectory(config);
+        server = directory.getServer();
+        emulator.attach(server);
+        server.add("dn: " + USERS, "objectClass: organizationalUnit", "ou: users");
+        server.add("dn: " + ALPHA, "objectClass: inetOrgPerson", "uid: alpha", "cn: Alpha", "sn: Alpha");
+
+        uri = directory.getUri();
+        connectionManager = directory.getConnectionManager();
+
+        subtree = new LdapLocalReplicaConfig.Subtree();
+        subtree.setUri(uri);
+        subtree.setBase(USERS);
+        subtree.setBindDn(BIND_DN);
+        subtree.setBindPassword(BIND_PASSWORD);
+        // The in-memory server does not list persistent search in its root DSE
+        subtree.setMechanism(ChangeStreamService.PERSISTENT_SEARCH);
+        subtree.setMaxStalenessMillis(60000);
+        subtree.setReloadDelayMillis(100);
+        LdapLocalReplicaConfig replicaConfig = new LdapLocalReplicaConfig();
+        replicaConfig.setLocalReplicas(Map.of("users", subtree));
+
+        meterRegistry = new SimpleMeterRegistry();
+        replicaService = new LocalReplicaService(replicaConfig, connectionManager,
+            new BackendRouter(new LdapBackendConfig(), connectionManager),
+            new SchemaCache(new LdapSchemaConfig(), connectionManager), meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        replicaService.shutdown();
+        emulator.setRunning(false);
+        directory.close();
+    }
+
+    private LocalReplicaService.LocalReplica loadedReplica() throws InterruptedException {
+        replicaService.start();
+        LocalReplicaService.LocalReplica replica = replicaService.find(uri, null, ALPHA);
+        assertNotNull(replica);
+        await(replica::isCurrent);
+        return replica;
+    }
+
+    private static SearchRequest searchAlpha() throws LDAPException {
+        return new SearchRequest(USERS, SearchScope.SUB, "(uid=alpha)");
+    }
+
+    @Test
+    public void testReplicaAnswersSearchesAndFollowsChanges() throws Exception {
+        // Arrange
+        LocalReplicaService.LocalReplica replica = loadedReplica();
+
+        // Act - changes go through a connection, so that the emulator sees them
+        try (LDAPConnection connection = server.getConnection()) {
+            connection.modify(ALPHA, new Modification(ModificationType.REPLACE, "cn", "Renamed"));
+            connection.add("dn: uid=bravo," + USERS, "objectClass: inetOrgPerson", "uid: bravo", "cn: Bravo", "sn: Bravo");
+        }
+        await(() -> replicaHas(replica, "(uid=bravo)"));
+        SearchResult result = replica.search(searchAlpha(), null, BIND_DN, BIND_PASSWORD);
+
+        // Assert
+        assertEquals(1, result.getEntryCount());
+        assertEquals("Renamed", result.getSearchEntries().get(0).getAttributeValue("cn"));
+        assertNull(replicaService.find(uri, null, "ou=groups,dc=example,dc=com"));
+        assertTrue(meterRegistry.get("ldap.local.replica.searches").tag("result", "local").counter().count() >= 2);
+    }
+
+    @Test
+    public void testOtherCallersAndWritesFallBackToDirectory() throws Exception {
+        // Arrange
+        LocalReplicaService.LocalReplica replica = loadedReplica();
+
+        // Act
+        SearchResult otherCaller = replica.search(searchAlpha(), null, READER_DN, READER_PASSWORD);
+        LDAPException wrongPassword = assertThrows(LDAPException.class,
+            () -> replica.search(searchAlpha(), null, BIND_DN, "wrong"));
+        replicaService.onDirectoryChange(new DirectoryChangeEvent(this, uri, ALPHA, ChangeType.MODIFY));
+        SearchResult afterWrite = replica.search(searchAlpha(), null, BIND_DN, BIND_PASSWORD);
+
+        // Assert
+        assertNull(otherCaller);
+        assertEquals(ResultCode.INVALID_CREDENTIALS, wrongPassword.getResultCode());
+        assertNull(afterWrite);
+        assertEquals(2.0, meterRegistry.get("ldap.local.replica.searches").tag("result", "fallback").counter().count());
+    }
+
+    @Test
+    public void testLostChangeSearchReloadsReplica() throws Exception {
+        // Arrange
+        LocalReplicaService.LocalReplica replica = loadedReplica();
+
+        // Act - the server ends the persistent search, and changes while it is gone
+        emulator.setRunning(false);
+        await(() -> !replica.isCurrent());
+        server.modify(ALPHA, new Modification(ModificationType.REPLACE, "cn", "Changed meanwhile"));
+        emulator.setRunning(true);
+        await(replica::isCurrent);
+
+        // Assert
+        SearchResult result = replica.search(searchAlpha(), null, BIND_DN, BIND_PASSWORD);
+        assertEquals("Changed meanwhile", result.getSearchEntries().get(0).getAttributeValue("cn"));
+    }
+
+    @Test
+    public void testWriteKeepsReplicaFromAnsweringUntilItsChangeIsApplied() throws Exception {
+        // Arrange - the write's notification comes before the event, as it may from a real server
+        subtree.setMaxStalenessMillis(1000);
+        LocalReplicaService.LocalReplica replica = loadedReplica();
+        try (LDAPConnection connection = server.getConnection()) {
+            connection.modify(ALPHA, new Modification(ModificationType.REPLACE, "cn", "Written"));
+        }
+        awaitChecked(() -> "Written".equals(cn(replica)));
+
+        // Act
+        replicaService.onDirectoryChange(new DirectoryChangeEvent(this, uri, ALPHA, ChangeType.MODIFY));
+        boolean currentBeforeCheck = replica.isCurrent();
+        awaitChecked(replica::isCurrent);
+
+        // Assert - the check read the entry again instead of just pinging the server
+        assertFalse(currentBeforeCheck);
+        assertEquals("Written", cn(replica));
+    }
+
+    @Test
+    public void testEntriesMovedOutOfTheSubtreeAreDropped() throws Exception {
+        // Arrange
+        subtree.setSweepIntervalMillis(200);
+        server.add("dn: ou=former,dc=example,dc=com", "objectClass: organizationalUnit", "ou: former");
+        LocalReplicaService.LocalReplica replica = loadedReplica();
+
+        // Act - moved by another client; persistent search reports nothing
+        server.modifyDN(ALPHA, "uid=alpha", true, "ou=former,dc=example,dc=com");
+        awaitChecked(() -> {
+            try {
+                SearchResult result = replica.search(searchAlpha(), null, BIND_DN, BIND_PASSWORD);
+                return result != null && result.getEntryCount() == 0;
+            } catch (LDAPException e) {
+                return false;
+            }
+        });
+
+        // Assert
+        assertTrue(replica.isCurrent());
+    }
+
+    @Test
+    public void testChecksConfirmWithoutReadingTheSubtree() throws Exception {
+        // Arrange - no sweeps, and a bound short enough for several checks
+        subtree.setMaxStalenessMillis(200);
+        subtree.setSweepIntervalMillis(0);
+        server.add("dn: ou=former,dc=example,dc=com", "objectClass: organizationalUnit", "ou: former");
+        LocalReplicaService.LocalReplica replica = loadedReplica();
+
+        // Act - a move no check could see without reading the subtree, then longer than the bound
+        server.modifyDN(ALPHA, "uid=alpha", true, "ou=former,dc=example,dc=com");
+        long until = System.currentTimeMillis() + 600;
+        awaitChecked(() -> System.currentTimeMillis() > until);
+
+        // Assert - confirmed all the same, and the moved entry is still held
+        assertTrue(replica.isCurrent());
+        assertEquals("Alpha", cn(replica));
+    }
+
+    @Test
+    public void testOrderingAndSubstringFiltersNeedCaseIgnoreMatching() throws Exception {
+        // Arrange
+        DirectorySchema schema = new DirectorySchema(new Schema(new Entry("cn=schema",
+            new Attribute("attributeTypes",
+                "( 2.5.4.3 NAME 'cn' EQUALITY caseIgnoreMatch SUBSTR caseIgnoreSubstringsMatch"
+                    + " SYNTAX 1.3.6.1.4.1.1466.115.121.1.15 )",
+                "( 1.3.6.1.1.1.1.0 NAME 'uidNumber' EQUALITY integerMatch ORDERING integerOrderingMatch"
+                    + " SYNTAX 1.3.6.1.4.1.1466.115.121.1.27 SINGLE-VALUE )"))), null, null);
+
+        // Act & Assert - uidNumber is an integer, cn a case-ignore string
+        assertFalse(LocalReplicaService.evaluatesLikeDirectory(Filter.create("(uidNumber>=1000)"), schema));
+        assertFalse(LocalReplicaService.evaluatesLikeDirectory(Filter.create("(&(cn=a*)(!(uidNumber<=5)))"), schema));
+        assertTrue(LocalReplicaService.evaluatesLikeDirectory(Filter.create("(&(cn>=m)(cn=*lph*))"), schema));
+        assertTrue(LocalReplicaService.evaluatesLikeDirectory(Filter.create("(uidNumber=1000)"), schema));
+        assertFalse(LocalReplicaService.evaluatesLikeDirectory(Filter.create("(cn>=m)"), null));
+    }
+
+    private static String cn(LocalReplicaService.LocalReplica replica) {
+        try {
+            SearchResult result = replica.search(searchAlpha(), null, BIND_DN, BIND_PASSWORD);
+            return result != null ? result.getSearchEntries().get(0).getAttributeValue("cn") : null;
+        } catch (LDAPException e) {
+            return null;
+        }
+    }
+
+    private static boolean replicaHas(LocalReplicaService.LocalReplica replica, String filter) {
+        try {
+            SearchResult result = replica.search(new SearchRequest(USERS, SearchScope.SUB, filter), null, BIND_DN, BIND_PASSWORD);
+            return result != null && result.getEntryCount() == 1;
+        } catch (LDAPException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Waits for the condition, running the scheduled replica checks meanwhile.
+     */
+    private void awaitChecked(BooleanSupplier condition) throws InterruptedException {
+        await(() -> {
+            replicaService.checkReplicas();
+            return condition.getAsBoolean();
+        });
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapMemoryConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MemoryBudgetTest {
+
+    private static MemoryBudget budget(long bytes) {
+        LdapMemoryConfig config = new LdapMemoryConfig();
+        config.setBudgetBytes(bytes);
+        config.setMinSortMemoryBytes(100);
+        return new MemoryBudget(config, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void testReservationsBeyondBudgetFailUntilReleased() {
+        MemoryBudget budget = budget(1000);
+        MemoryBudget.Lease first = budget.open();
+        MemoryBudget.Lease second = budget.open();
+
+        first.reserve(600);
+        assertFalse(second.tryReserve(500));
+        BackendUnavailableException e = assertThrows(BackendUnavailableException.class, () -> second.reserve(500));
+        assertEquals(1, e.getRetryAfterSeconds());
+
+        first.close();
+        assertTrue(second.tryReserve(500));
+        assertEquals(500, budget.getReservedBytes());
+        second.close();
+        assertEquals(0, budget.getReservedBytes());
+    }
+
+    @Test
+    public void testSortBuffersShrinkToWhatIsLeft() {
+        MemoryBudget budget = budget(1000);
+        MemoryBudget.Lease lease = budget.open();
+
+        assertEquals(800, lease.reserveSortBuffer(800));
+        assertEquals(200, lease.reserveSortBuffer(800));
+        assertThrows(BackendUnavailableException.class, () -> lease.reserveSortBuffer(800));
+
+        lease.close();
+        assertEquals(0, budget.getReservedBytes());
+    }
+
+    @Test
+    public void testDisabledBudgetAcceptsEverything() {
+        LdapMemoryConfig config = new LdapMemoryConfig();
+        config.setEnabled(false);
+        config.setBudgetBytes(10);
+        MemoryBudget budget = new MemoryBudget(config, new SimpleMeterRegistry());
+
+        try (MemoryBudget.Lease lease = budget.open()) {
+            lease.reserve(1000);
+            assertEquals(0, budget.getReservedBytes());
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapAdmissionConfig;
+import com.example.ldapwebtool.config.LdapBackendConfig;
+import com.example.ldapwebtool.config.LdapExportConfig;
+import com.example.ldapwebtool.config.LdapPoolConfig;
+import com.example.ldapwebtool.config.LdapSchemaConfig;
+import com.example.ldapwebtool.config.LdapSearchConfig;
+import com.example.ldapwebtool.model.ExportRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldif.LDIFReader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.ldapwebtool.service.TestDirectory.BIND_DN;
+import static com.example.ldapwebtool.service.TestDirectory.BIND_PASSWORD;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PartitionedExporterTest {
+
+    private TestDirectory directory;
+    private InMemoryDirectoryServer server;
+    private LdapConnectionManager connectionManager;
+    private PartitionedExporter exporter;
+    private String uri;
+    private int entryCount;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = TestDirectory.schemaless();
+        server = directory.getServer();
+        entryCount = 1;
+        // Uneven tree: one large unit with nested containers, and a few small ones
+        for (String unit : new String[] {"sales", "engineering", "support"}) {
+            String unitDn = "ou=" + unit + ",dc=example,dc=com";
+            server.add("dn: " + unitDn, "objectClass: organizationalUnit", "ou: " + unit);
+            entryCount++;
+            int teams = "engineering".equals(unit) ? 4 : 1;
+            for (int t = 0; t < teams; t++) {
+                String teamDn = "ou=team" + t + "," + unitDn;
+                server.add("dn: " + teamDn, "objectClass: organizationalUnit", "ou: team" + t);
+                entryCount++;
+                for (int u = 0; u < 10; u++) {
+                    server.add("dn: uid=" + unit + t + "-" + u + "," + teamDn,
+                        "objectClass: inetOrgPerson", "uid: " + unit + t + "-" + u, "cn: User " + u, "sn: " + unit);
+                    entryCount++;
+                }
+            }
+        }
+
+        uri = directory.getUri();
+        connectionManager = directory.getConnectionManager();
+        exporter = new PartitionedExporter(connectionManager,
+            new BackendRouter(new LdapBackendConfig(), connectionManager),
+            new SchemaCache(new LdapSchemaConfig(), connectionManager),
+            new SearchPlanCache(new LdapSearchConfig(), new SimpleMeterRegistry()),
+            new LdapExportConfig(), new LdapPoolConfig(), new ObjectMapper());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        exporter.shutdown();
+        directory.close();
+    }
+
+    @Test
+    public void testOrderedExportWritesEveryEntryAfterItsParent() throws Exception {
+        // Arrange
+        ExportRequest request = new ExportRequest(uri, "dc=example,dc=com", "(objectClass=*)", "sub");
+        request.setParallelism(4);
+
+        // Act
+        PartitionedExporter.Export export = exporter.prepare(request, BIND_DN, BIND_PASSWORD);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        export.writeTo(out);
+
+        // Assert
+        List<Entry> entries = new ArrayList<>();
+        try (LDIFReader reader = new LDIFReader(new ByteArrayInputStream(out.toByteArray()))) {
+            Entry entry;
+            while ((entry = reader.readEntry()) != null) {
+                entries.add(entry);
+            }
+        }
+        assertEquals(entryCount, entries.size());
+        assertEquals(entryCount, export.getEntryCount());
+        assertEquals(out.size(), export.getByteCount());
+
+        Set<DN> seen = new HashSet<>();
+        for (Entry entry : entries) {
+            DN dn = entry.getParsedDN();
+            if (!dn.equals(new DN("dc=example,dc=com"))) {
+                assertTrue(seen.contains(dn.getParent()), dn + " was written before its parent");
+            }
+            assertTrue(seen.add(dn), dn + " was written twice");
+        }
+    }
+
+    @Test
+    public void testUnorderedNdjsonExportAppliesFilter() throws Exception {
+        // Arrange
+        ExportRequest request = new ExportRequest(uri, "dc=example,dc=com", "(sn=engineering)", "sub");
+        request.setFormat("ndjson");
+        request.setOrdered(false);
+
+        // Act
+        PartitionedExporter.Export export = exporter.prepare(request, BIND_DN, BIND_PASSWORD);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        export.writeTo(out);
+
+        // Assert
+        assertEquals("application/x-ndjson", export.getContentType());
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(40, lines.length);
+        ObjectMapper objectMapper = new ObjectMapper();
+        Set<String> dns = new HashSet<>();
+        for (String line : lines) {
+            JsonNode node = objectMapper.readTree(line);
+            assertEquals("engineering", node.get("attributes").get("sn").asText());
+            dns.add(node.get("dn").asText());
+        }
+        assertEquals(40, dns.size());
+    }
+
+    @Test
+    public void testPartitionsRefusedByAdmissionAreRetried() throws Exception {
+        // Arrange: one backend slot and no queue, held by another request when the export starts
+        LdapAdmissionConfig admissionConfig = new LdapAdmissionConfig();
+        admissionConfig.setMaxConcurrentRequests(1);
+        admissionConfig.setMaxQueuedRequests(0);
+        LdapConnectionManager busyManager = TestDirectory.connectionManager(new LdapPoolConfig(), admissionConfig);
+        PartitionedExporter busyExporter = new PartitionedExporter(busyManager,
+            new BackendRouter(new LdapBackendConfig(), busyManager),
+            new SchemaCache(new LdapSchemaConfig(), busyManager),
+            new SearchPlanCache(new LdapSearchConfig(), new SimpleMeterRegistry()),
+            new LdapExportConfig(), new LdapPoolConfig(), new ObjectMapper());
+        ExportRequest request = new ExportRequest(uri, "ou=engineering,dc=example,dc=com", "(objectClass=*)", "sub");
+        request.setParallelism(2);
+
+        CountDownLatch holding = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            try {
+                busyManager.withConnection(uri, BIND_DN, BIND_PASSWORD, connection -> {
+                    holding.countDown();
+                    Thread.sleep(500);
+                    return null;
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        try {
+            PartitionedExporter.Export export = busyExporter.prepare(request, BIND_DN, BIND_PASSWORD);
+            holder.start();
+            assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+            // Act
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            export.writeTo(out);
+
+            // Assert: the engineering unit, its four teams and their users
+            assertEquals(1 + 4 + 40, export.getEntryCount());
+        } finally {
+            holder.join();
+            busyExporter.shutdown();
+            busyManager.shutdown();
+        }
+    }
+
+    @Test
+    public void testRejectsSortedExportBeforeStreaming() {
+        // Arrange
+        ExportRequest request = new ExportRequest(uri, "dc=example,dc=com", "(objectClass=*)", "sub");
+        request.setSortKeys(List.of("sn"));
+
+        // Act & Assert
+        assertThrows(RequestValidationException.class, () -> exporter.prepare(request, BIND_DN, BIND_PASSWORD));
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.ldapwebtool.service;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedAddResult;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedModifyResult;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.controls.EntryChangeNotificationControl;
+import com.unboundid.ldap.sdk.controls.PersistentSearchChangeType;
+import com.unboundid.ldap.sdk.controls.PersistentSearchRequestControl;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers searches with the persistent search control, which the in-memory server does not
+ * support, by holding them open and returning each added or modified entry with an entry
+ * change notification while running. Only changes made through a connection are seen, and
+ * the server the interceptor is configured on must be attached before any are made.
+ */
+final class PersistentSearchEmulator extends InMemoryOperationInterceptor {
+
+    private final List<BlockingQueue<Change>> searches = new CopyOnWriteArrayList<>();
+    private volatile InMemoryDirectoryServer server;
+    private volatile boolean running = true;
+
+    void attach(InMemoryDirectoryServer server) {
+        this.server = server;
+    }
+
+    /** Returns the number of persistent searches currently held open. */
+    int getSearchCount() {
+        return searches.size();
+    }
+
+    /** Ends the open persistent searches when cleared; new ones last until it is set again. */
+    void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    @Override
+    public void processSearchRequest(InMemoryInterceptedSearchRequest request) throws LDAPException {
+        if (!request.getRequest().hasControl(PersistentSearchRequestControl.PERSISTENT_SEARCH_REQUEST_OID)) {
+            return;
+        }
+        BlockingQueue<Change> changes = new LinkedBlockingQueue<>();
+        searches.add(changes);
+        try {
+            while (running) {
+                Change change = changes.poll(10, TimeUnit.MILLISECONDS);
+                if (change != null) {
+                    Entry entry = server.getEntry(change.dn, request.getRequest().getAttributeList().toArray(new String[0]));
+                    request.sendSearchEntry(new SearchResultEntry(entry,
+                        new EntryChangeNotificationControl(change.changeType, null, -1)));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            searches.remove(changes);
+        }
+        throw new LDAPException(ResultCode.UNAVAILABLE, "Persistent search ended");
+    }
+
+    @Override
+    public void processAddResult(InMemoryInterceptedAddResult result) {
+        if (result.getResult().getResultCode() == ResultCode.SUCCESS) {
+            publish(new Change(result.getRequest().getDN(), PersistentSearchChangeType.ADD));
+        }
+    }
+
+    @Override
+    public void processModifyResult(InMemoryInterceptedModifyResult result) {
+        if (result.getResult().getResultCode() == ResultCode.SUCCESS) {
+            publish(new Change(result.getRequest().getDN(), PersistentSearchChangeType.MODIFY));
+        }
+    }
+
+    private void publish(Change change) {
+        for (BlockingQueue<Change> changes : searches) {
+            changes.add(change);
+        }
+    }
+
+    private static final class Change {
+        private final String dn;
+        private final PersistentSearchChangeType changeType;
+
+        private Change(String dn, PersistentSearchChangeType changeType) {
+            this.dn = dn;
+            this.changeType = changeType;
+        }
+    }
+}
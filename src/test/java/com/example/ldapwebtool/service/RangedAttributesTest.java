@@ -0,0 +1,118 @@
+package com.example.ldapwebtool.service;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchEntry;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RangedAttributesTest {
+
+    private static final String GROUP_DN = "cn=all,dc=example,dc=com";
+    private static final int MAX_VAL_RANGE = 2;
+
+    private InMemoryDirectoryServer server;
+    private LDAPConnection connection;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig("dc=example,dc=com");
+        config.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig("default", 0));
+        config.setSchema(null);
+        config.addInMemoryOperationInterceptor(new RangingInterceptor());
+
+        server = new InMemoryDirectoryServer(config);
+        server.add("dn: dc=example,dc=com", "objectClass: domain", "dc: example");
+        server.add("dn: " + GROUP_DN, "objectClass: groupOfNames", "cn: all",
+            "member: uid=u0", "member: uid=u1", "member: uid=u2", "member: uid=u3", "member: uid=u4");
+        server.startListening();
+        connection = server.getConnection();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        connection.close();
+        server.shutDown(true);
+    }
+
+    @Test
+    public void testRangedAttributeIsCompleted() throws Exception {
+        // Arrange
+        Entry ranged = connection.getEntry(GROUP_DN, "cn", "member");
+
+        // Act
+        Entry completed = RangedAttributes.complete(connection, ranged);
+
+        // Assert
+        assertEquals(2, ranged.getAttribute("member;range=0-1").size());
+        assertEquals(List.of("uid=u0", "uid=u1", "uid=u2", "uid=u3", "uid=u4"),
+            Arrays.asList(completed.getAttributeValues("member")));
+        assertNull(completed.getAttribute("member;range=0-1"));
+        assertEquals("all", completed.getAttributeValue("cn"));
+    }
+
+    @Test
+    public void testRangeIsFetchedAsPage() throws Exception {
+        // Arrange
+        Entry unranged = connection.getEntry("dc=example,dc=com");
+
+        // Act
+        Attribute middle = RangedAttributes.fetch(connection, GROUP_DN, "member", 2, 10);
+        Attribute last = RangedAttributes.fetch(connection, GROUP_DN, "member", 4, 10);
+
+        // Assert - the server returns no more than its MaxValRange
+        assertEquals("2-3", RangedAttributes.rangeOption(middle));
+        assertEquals(List.of("uid=u2", "uid=u3"), Arrays.asList(middle.getValues()));
+        assertEquals("4-*", RangedAttributes.rangeOption(last));
+        assertSame(unranged, RangedAttributes.complete(connection, unranged));
+    }
+
+    /**
+     * Returns member values in ranges of MAX_VAL_RANGE, as Active Directory does.
+     */
+    private final class RangingInterceptor extends InMemoryOperationInterceptor {
+
+        @Override
+        public void processSearchEntry(InMemoryInterceptedSearchEntry result) {
+            try {
+                Entry stored = server.getEntry(result.getSearchEntry().getDN());
+                String[] members = stored != null ? stored.getAttributeValues("member") : null;
+                if (members == null) {
+                    return;
+                }
+                Entry entry = result.getSearchEntry().duplicate();
+                entry.removeAttribute("member");
+                for (String requested : result.getRequest().getAttributeList()) {
+                    long low;
+                    if (requested.equalsIgnoreCase("member")) {
+                        low = 0;
+                    } else if (requested.toLowerCase().startsWith("member;range=")) {
+                        low = RangedAttributes.Range.parse(requested.substring("member;range=".length())).low;
+                    } else {
+                        continue;
+                    }
+                    int high = (int) Math.min(members.length - 1, low + MAX_VAL_RANGE - 1);
+                    List<String> values = new ArrayList<>(Arrays.asList(members).subList((int) low, high + 1));
+                    String end = high == members.length - 1 ? "*" : Integer.toString(high);
+                    entry.addAttribute(new Attribute("member;range=" + low + "-" + end, values));
+                }
+                result.setSearchEntry(entry);
+            } catch (LDAPException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
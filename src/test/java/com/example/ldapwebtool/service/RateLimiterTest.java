@@ -0,0 +1,58 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.RateLimitConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimiterTest {
+
+    private static final String VICTIM = "uid=alice,ou=users,dc=example,dc=com";
+
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    public void setUp() {
+        RateLimitConfig config = new RateLimitConfig();
+        config.setEnabled(true);
+        config.setIpRequestsPerSecond(0);
+        config.getDefaults().setRequestsPerSecond(1);
+        config.getDefaults().setRequestBurst(2);
+        config.getDefaults().setEntriesPerSecond(1);
+        config.getDefaults().setEntryBurst(10);
+        rateLimiter = new RateLimiter(config, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void testWrongPasswordDoesNotDrainOwnersRequestBudget() {
+        // Arrange - someone else names the victim's DN until its budget would be gone
+        while (rateLimiter.tryAcquire(VICTIM, "guess", "10.0.0.2") == 0) {
+            // Keep drawing
+        }
+
+        // Act & Assert
+        assertEquals(0, rateLimiter.tryAcquire(VICTIM, "secret", "10.0.0.1"));
+        assertTrue(rateLimiter.tryAcquire(VICTIM, "guess", "10.0.0.2") > 0);
+    }
+
+    @Test
+    public void testWrongPasswordDoesNotOverdrawOwnersEntryBudget() {
+        // Arrange
+        rateLimiter.chargeEntries(VICTIM, "guess", 1000);
+
+        // Act & Assert
+        assertEquals(0, rateLimiter.tryAcquire(VICTIM, "secret", "10.0.0.1"));
+        assertTrue(rateLimiter.tryAcquire(VICTIM, "guess", "10.0.0.2") > 0);
+    }
+
+    @Test
+    public void testSameCallerSharesBudgetAcrossDnSpellings() {
+        // Arrange
+        rateLimiter.chargeEntries(VICTIM, "secret", 1000);
+
+        // Act & Assert
+        assertTrue(rateLimiter.tryAcquire("UID=Alice, ou=users,dc=example,dc=com", "secret", "10.0.0.1") > 0);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapSearchConfig;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.SearchScope;
+import com.unboundid.ldap.sdk.schema.Schema;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.times;
+
+public class SearchPlanTest {
+
+    @Test
+    public void testTemplateReplacesValues() throws Exception {
+        SearchPlan plan = SearchPlan.compile("(&(objectClass=person)(|(uid=jdoe)(cn=J*n*Doe))(!(age>=30)))", "one", null);
+
+        assertEquals("(&(objectclass=?)(|(uid=?)(cn=?*?*?))(!(age>=?)))", plan.getFilterTemplate());
+        assertEquals(SearchScope.ONE, plan.getScope());
+    }
+
+    @Test
+    public void testSearchesDifferingOnlyInValuesShareShapeKey() throws Exception {
+        SearchPlan alice = SearchPlan.compile("(uid=alice)", "sub", List.of("-sn"));
+        SearchPlan bob = SearchPlan.compile("(UID=bob)", "sub", List.of("-SN"));
+
+        assertEquals("sub|(uid=?)|-sn", alice.getShapeKey());
+        assertEquals(alice.getShapeKey(), bob.getShapeKey());
+    }
+
+    @Test
+    public void testInvalidFilterIsRejected() {
+        assertThrows(RequestValidationException.class, () -> SearchPlan.compile("(uid=alice", "sub", null));
+    }
+
+    @Test
+    public void testEmptyOrMalformedSortKeyIsRejected() {
+        assertThrows(RequestValidationException.class, () -> SearchPlan.compile("(uid=alice)", "sub", List.of("")));
+        assertThrows(RequestValidationException.class, () -> SearchPlan.compile("(uid=alice)", "sub", List.of("-")));
+        assertThrows(RequestValidationException.class, () -> SearchPlan.compile("(uid=alice)", "sub", List.of(":2.5.13.3")));
+    }
+
+    @Test
+    public void testRepeatedSearchIsNotParsedAgain() throws Exception {
+        SearchPlanCache cache = new SearchPlanCache(new LdapSearchConfig(), new SimpleMeterRegistry());
+
+        try (MockedStatic<Filter> filters = mockStatic(Filter.class, CALLS_REAL_METHODS)) {
+            SearchPlan first = cache.getPlan("(uid=alice)", "sub", List.of("sn"));
+            SearchPlan second = cache.getPlan("(uid=alice)", "sub", List.of("sn"));
+
+            filters.verify(() -> Filter.create("(uid=alice)"), times(1));
+            assertSame(first, second);
+            assertSame(first.getSortControl(), second.getSortControl());
+        }
+    }
+
+    @Test
+    public void testCacheSharesValidationPerShapeAndSchema() throws Exception {
+        SearchPlanCache cache = new SearchPlanCache(new LdapSearchConfig(), new SimpleMeterRegistry());
+        DirectorySchema schema = new DirectorySchema(Schema.getDefaultStandardSchema(), null, null);
+        DirectorySchema otherSchema = new DirectorySchema(Schema.getDefaultStandardSchema(), null, null);
+
+        SearchPlan alice = cache.getPlan("(uid=alice)", "sub", null);
+        alice.markValidated(schema);
+        SearchPlan bob = cache.getPlan("(UID=bob)", "sub", null);
+        SearchPlan carol = cache.getPlan("(cn=carol)", "sub", null);
+
+        assertEquals(Filter.createEqualityFilter("UID", "bob"), bob.getFilter());
+        assertTrue(bob.isValidatedAgainst(schema));
+        assertFalse(bob.isValidatedAgainst(otherSchema));
+        assertFalse(carol.isValidatedAgainst(schema));
+
+        // Validating against another backend's schema keeps the first one
+        bob.markValidated(otherSchema);
+        assertTrue(alice.isValidatedAgainst(schema));
+        assertTrue(alice.isValidatedAgainst(otherSchema));
+    }
+}
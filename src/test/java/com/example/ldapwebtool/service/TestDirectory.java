@@ -0,0 +1,105 @@
+package com.example.ldapwebtool.service;
+
+import com.example.ldapwebtool.config.LdapAdmissionConfig;
+import com.example.ldapwebtool.config.LdapBackendConfig;
+import com.example.ldapwebtool.config.LdapPoolConfig;
+import com.example.ldapwebtool.config.LdapSslConfig;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A listening in-memory directory for service tests, holding dc=example,dc=com and the BIND_DN
+ * account, with a connection manager for it. Tests add their own entries, and choose whether
+ * the server checks them against a schema.
+ */
+final class TestDirectory implements AutoCloseable {
+
+    static final String BIND_DN = "cn=Directory Manager";
+    static final String BIND_PASSWORD = "password";
+
+    private static final String BASE_DN = "dc=example,dc=com";
+
+    private final InMemoryDirectoryServer server;
+    private final LdapConnectionManager connectionManager;
+    private final String uri;
+
+    TestDirectory(InMemoryDirectoryServerConfig config) throws LDAPException {
+        this(config, new LdapPoolConfig());
+    }
+
+    TestDirectory(InMemoryDirectoryServerConfig config, LdapPoolConfig poolConfig) throws LDAPException {
+        server = new InMemoryDirectoryServer(config);
+        server.add(new Entry(BASE_DN, new Attribute("objectClass", "top", "domain"), new Attribute("dc", "example")));
+        server.startListening();
+        uri = "ldap://localhost:" + server.getListenPort();
+        connectionManager = connectionManager(poolConfig, new LdapAdmissionConfig());
+    }
+
+    /**
+     * A directory without a schema, so that tests may add entries without their superior
+     * object classes or required attributes.
+     */
+    static TestDirectory schemaless() throws LDAPException {
+        return new TestDirectory(schemalessConfig());
+    }
+
+    static InMemoryDirectoryServerConfig schemalessConfig() throws LDAPException {
+        InMemoryDirectoryServerConfig config = config();
+        config.setSchema(null);
+        return config;
+    }
+
+    /**
+     * The configuration of a directory that checks entries against the standard schema,
+     * listening on a free port.
+     */
+    static InMemoryDirectoryServerConfig config() throws LDAPException {
+        InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig(BASE_DN);
+        config.addAdditionalBindCredentials(BIND_DN, BIND_PASSWORD);
+        config.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig("default", 0));
+        return config;
+    }
+
+    static LdapConnectionManager connectionManager(LdapPoolConfig poolConfig, LdapAdmissionConfig admissionConfig) {
+        return new LdapConnectionManager(
+            new LdapSslConfig(), poolConfig, admissionConfig, new LdapBackendConfig(), new SimpleMeterRegistry());
+    }
+
+    /**
+     * Polls the condition every 10 ms, failing the test if it does not hold within 5 seconds.
+     */
+    static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting");
+            Thread.sleep(10);
+        }
+    }
+
+    InMemoryDirectoryServer getServer() {
+        return server;
+    }
+
+    LdapConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    String getUri() {
+        return uri;
+    }
+
+    @Override
+    public void close() {
+        connectionManager.shutdown();
+        server.shutDown(true);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.ldapwebtool.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBucketTableTest {
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1000));
+    private final TokenBucketTable table = new TokenBucketTable(clock::get);
+
+    @Test
+    public void testAllowsBurstThenRejects() {
+        TokenBucketTable.Bucket bucket = table.bucket("dn:alice", 10, 3);
+
+        assertEquals(0, bucket.tryAcquire(1));
+        assertEquals(0, bucket.tryAcquire(1));
+        assertEquals(0, bucket.tryAcquire(1));
+
+        long wait = bucket.tryAcquire(1);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), wait);
+    }
+
+    @Test
+    public void testRefillsOverTime() {
+        TokenBucketTable.Bucket bucket = table.bucket("dn:alice", 10, 1);
+
+        assertEquals(0, bucket.tryAcquire(1));
+        assertTrue(bucket.tryAcquire(1) > 0);
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(0, bucket.tryAcquire(1));
+    }
+
+    @Test
+    public void testChargeGoesIntoDebt() {
+        TokenBucketTable.Bucket bucket = table.bucket("dn:alice", 100, 100);
+
+        bucket.charge(300);
+
+        assertEquals(TimeUnit.SECONDS.toNanos(2), bucket.debtNanos());
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertEquals(0, bucket.debtNanos());
+    }
+
+    @Test
+    public void testEvictsIdleBuckets() {
+        table.bucket("dn:alice", 10, 1).tryAcquire(1);
+        table.bucket("dn:bob", 10, 1);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        table.bucket("dn:carol", 10, 1).tryAcquire(1);
+
+        assertEquals(2, table.evictIdle(TimeUnit.SECONDS.toNanos(1)));
+        assertEquals(1, table.size());
+    }
+}
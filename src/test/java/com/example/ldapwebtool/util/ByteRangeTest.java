@@ -0,0 +1,44 @@
+package com.example.ldapwebtool.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ByteRangeTest {
+
+    @Test
+    public void testParsesClosedOpenAndSuffixRanges() {
+        ByteRange closed = ByteRange.parse("bytes=100-199", 1000);
+        assertEquals(100, closed.getStart());
+        assertEquals(199, closed.getEnd());
+        assertEquals(100, closed.getLength());
+        assertEquals("bytes 100-199/1000", closed.toContentRange(1000));
+
+        ByteRange open = ByteRange.parse("bytes=900-", 1000);
+        assertEquals(900, open.getStart());
+        assertEquals(999, open.getEnd());
+
+        ByteRange suffix = ByteRange.parse("bytes=-50", 1000);
+        assertEquals(950, suffix.getStart());
+        assertEquals(999, suffix.getEnd());
+
+        ByteRange clipped = ByteRange.parse("bytes=500-5000", 1000);
+        assertEquals(999, clipped.getEnd());
+    }
+
+    @Test
+    public void testUnsatisfiableRange() {
+        ByteRange range = ByteRange.parse("bytes=1000-", 1000);
+        assertFalse(range.isSatisfiable());
+        assertEquals("bytes */1000", range.toContentRange(1000));
+    }
+
+    @Test
+    public void testIgnoresMissingMalformedAndMultipleRanges() {
+        assertNull(ByteRange.parse(null, 1000));
+        assertNull(ByteRange.parse("items=0-1", 1000));
+        assertNull(ByteRange.parse("bytes=abc-", 1000));
+        assertNull(ByteRange.parse("bytes=200-100", 1000));
+        assertNull(ByteRange.parse("bytes=0-1,5-6", 1000));
+    }
+}
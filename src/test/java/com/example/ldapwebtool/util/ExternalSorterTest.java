@@ -0,0 +1,72 @@
+package com.example.ldapwebtool.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExternalSorterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testMergesSpilledRunsInKeyOrder() throws Exception {
+        // Arrange: a budget of a few records forces many runs
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            keys.add(String.format("key-%04d", i));
+        }
+        Collections.shuffle(keys, new Random(42));
+
+        try (ExternalSorter sorter = new ExternalSorter(directory, 1024, Comparator.naturalOrder())) {
+            for (String key : keys) {
+                sorter.add(key, ("payload " + key).getBytes(StandardCharsets.UTF_8));
+            }
+
+            // Act
+            Iterator<ExternalSorter.Record> sorted = sorter.sorted();
+
+            // Assert
+            assertTrue(sorter.getRunCount() > 1);
+            assertEquals(1000, sorter.getRecordCount());
+            for (int i = 0; i < 1000; i++) {
+                ExternalSorter.Record record = sorted.next();
+                assertEquals(String.format("key-%04d", i), record.getKey());
+                assertEquals("payload " + record.getKey(), new String(record.getPayload(), StandardCharsets.UTF_8));
+            }
+            assertFalse(sorted.hasNext());
+        }
+
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void testSortsInMemoryInGivenOrder() throws Exception {
+        try (ExternalSorter sorter = new ExternalSorter(directory, 1 << 20, Comparator.reverseOrder())) {
+            sorter.add("a", new byte[0]);
+            sorter.add("c", new byte[0]);
+            sorter.add("b", new byte[0]);
+
+            Iterator<ExternalSorter.Record> sorted = sorter.sorted();
+
+            assertEquals(0, sorter.getRunCount());
+            assertEquals("c", sorted.next().getKey());
+            assertEquals("b", sorted.next().getKey());
+            assertEquals("a", sorted.next().getKey());
+            assertFalse(sorted.hasNext());
+        }
+    }
+}